@@ -35,6 +35,43 @@ public enum PerformanceOptionsEnum {
 	 * Android or low powered devices.
 	 * </p> 
 	 */
-	DEFERRED_MODEL_SCANNING
-	
+	DEFERRED_MODEL_SCANNING,
+
+	/**
+	 * When this option is set, parsers will store the value of each primitive datatype
+	 * (e.g. a date, dateTime, decimal or integer) exactly as it was found in the
+	 * source document, and will not convert it into its typed value (e.g. a {@link java.util.Date})
+	 * until the typed value is first requested by calling a method such as
+	 * {@link org.hl7.fhir.instance.model.api.IPrimitiveType#getValue()}.
+	 * <p>
+	 * The effect of this option is that parsing is faster for documents with many primitive values,
+	 * and the conversion never happens for values which are only ever re-encoded (the encoded
+	 * output is identical either way). The tradeoff is that invalid primitive values are not reported
+	 * to the parser error handler during parsing. Instead, a {@link ca.uhn.fhir.parser.DataFormatException}
+	 * is thrown by the first method which needs the typed value.
+	 * </p>
+	 */
+	DEFERRED_PRIMITIVE_COERCION,
+
+	/**
+	 * When this option is set, parsers will store the narrative XHTML of each resource
+	 * (the <code>div</code> in <code>Resource.text</code>) as a string, and will not parse it
+	 * into a node tree until the tree is first accessed (e.g. by calling
+	 * <code>getDiv().getChildNodes()</code>).
+	 * <p>
+	 * The effect of this option is that parsing and encoding narrative-heavy documents (such as
+	 * Compositions generated from C-CDA documents) is faster and creates less garbage when the
+	 * narrative is never examined, since the XHTML string is passed straight through to the encoder.
+	 * The encoded XHTML is therefore the original text (with the XHTML namespace declared on the
+	 * outer <code>div</code>), which may be formatted differently than XHTML encoded from a parsed
+	 * tree. Invalid XHTML causes an exception to be thrown when the tree is first accessed
+	 * instead of during parsing.
+	 * </p>
+	 * <p>
+	 * This option has no effect on the DSTU2 structures in the <code>ca.uhn.fhir.model</code>
+	 * package, which always store the narrative as a string.
+	 * </p>
+	 */
+	DEFERRED_NARRATIVE_PARSING
+
 }
@@ -0,0 +1,201 @@
+package ca.uhn.fhir.context.support;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * An indexed package of conformance resources (StructureDefinitions, ValueSets, CodeSystems, etc.)
+ * created at build time by the validation resources modules. The package contains an index of every
+ * resource by type and canonical URL, followed by the individually compressed XML of each
+ * resource, so that a single resource can be parsed on demand without parsing the large
+ * bundles distributed with the FHIR specification.
+ * <p>
+ * If the package is found on the filesystem it is memory mapped, otherwise (e.g. when it is
+ * packaged in a JAR) its (compressed) contents are read into memory.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ */
+public class ConformancePackage {
+
+	static final int MAGIC = 0x48465043;
+	static final int FORMAT_VERSION = 1;
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ConformancePackage.class);
+
+	private final ByteBuffer myData;
+	private final Map<String, Map<String, Entry>> myIndex;
+
+	private ConformancePackage(ByteBuffer theBuffer) throws IOException {
+		ByteBuffer buffer = theBuffer.duplicate();
+		if (buffer.getInt() != MAGIC) {
+			throw new IOException("Not a conformance package");
+		}
+		int version = buffer.getInt();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported conformance package version: " + version);
+		}
+
+		int count = buffer.getInt();
+		Map<String, Map<String, Entry>> index = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			String type = readString(buffer);
+			String url = readString(buffer);
+			int offset = buffer.getInt();
+			int length = buffer.getInt();
+			int uncompressedLength = buffer.getInt();
+			index.computeIfAbsent(type, t -> new LinkedHashMap<>()).put(url, new Entry(offset, length, uncompressedLength));
+		}
+
+		myIndex = index;
+		myData = buffer.slice();
+	}
+
+	/**
+	 * Returns the canonical URLs of all resources of the given type in the package
+	 *
+	 * @param theResourceType The resource type, e.g. "StructureDefinition"
+	 */
+	public Set<String> getUrls(String theResourceType) {
+		Map<String, Entry> entries = myIndex.get(theResourceType);
+		if (entries == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	/**
+	 * Returns the XML encoding of the resource with the given type and canonical URL, or
+	 * <code>null</code> if the package does not contain it
+	 *
+	 * @param theResourceType The resource type, e.g. "StructureDefinition"
+	 * @param theUrl          The canonical URL of the resource
+	 */
+	public String getResourceText(String theResourceType, String theUrl) {
+		Map<String, Entry> entries = myIndex.get(theResourceType);
+		Entry entry = entries != null ? entries.get(theUrl) : null;
+		if (entry == null) {
+			return null;
+		}
+
+		byte[] compressed = new byte[entry.myLength];
+		ByteBuffer data = myData.duplicate();
+		data.position(entry.myOffset);
+		data.get(compressed);
+
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			byte[] uncompressed = new byte[entry.myUncompressedLength];
+			int length = inflater.inflate(uncompressed);
+			Validate.isTrue(length == uncompressed.length, "Corrupt entry for %s %s", theResourceType, theUrl);
+			return new String(uncompressed, StandardCharsets.UTF_8);
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("Corrupt entry for " + theResourceType + " " + theUrl, e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Returns the number of resources in the package
+	 */
+	public int size() {
+		int retVal = 0;
+		for (Map<String, Entry> next : myIndex.values()) {
+			retVal += next.size();
+		}
+		return retVal;
+	}
+
+	/**
+	 * Loads a package from the classpath, returning <code>null</code> if it can not be found
+	 *
+	 * @param theClass     The class whose class loader should be used to find the package
+	 * @param theClasspath The classpath location of the package
+	 */
+	public static ConformancePackage loadFromClasspath(Class<?> theClass, String theClasspath) {
+		URL url = theClass.getResource(theClasspath);
+		if (url == null) {
+			return null;
+		}
+
+		try {
+			ByteBuffer buffer;
+			if ("file".equals(url.getProtocol())) {
+				try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+					buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				}
+			} else {
+				try (InputStream inputStream = url.openStream()) {
+					buffer = ByteBuffer.wrap(IOUtils.toByteArray(inputStream));
+				}
+			}
+			ConformancePackage retVal = new ConformancePackage(buffer);
+			ourLog.info("Loaded conformance package from {} containing {} resources", theClasspath, retVal.size());
+			return retVal;
+		} catch (IOException | URISyntaxException e) {
+			ourLog.warn("Failed to load conformance package from {}: {}", theClasspath, e.toString());
+			return null;
+		}
+	}
+
+	/**
+	 * Reads a package from a stream
+	 */
+	public static ConformancePackage read(InputStream theInputStream) throws IOException {
+		return new ConformancePackage(ByteBuffer.wrap(IOUtils.toByteArray(theInputStream)));
+	}
+
+	private static String readString(ByteBuffer theBuffer) {
+		int length = theBuffer.getShort() & 0xFFFF;
+		byte[] bytes = new byte[length];
+		theBuffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static class Entry {
+		private final int myOffset;
+		private final int myLength;
+		private final int myUncompressedLength;
+
+		Entry(int theOffset, int theLength, int theUncompressedLength) {
+			myOffset = theOffset;
+			myLength = theLength;
+			myUncompressedLength = theUncompressedLength;
+		}
+	}
+
+}
@@ -30,9 +30,20 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 import ca.uhn.fhir.parser.DataFormatException;
 
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
 public abstract class BasePrimitive<T> extends BaseIdentifiableElement implements IPrimitiveDatatype<T>, Externalizable {
 
 	private T myCoercedValue;
+	/**
+	 * Only cleared once a deferred value has been coerced, so that a thread which
+	 * reads <code>false</code> also sees the coerced value
+	 */
+	private volatile boolean myCoercionDeferred;
+	/**
+	 * Only accessed while holding the lock on this object
+	 */
+	private boolean myCoercing;
 	private String myStringValue;
 
 	/**
@@ -44,6 +55,52 @@ public abstract class BasePrimitive<T> extends BaseIdentifiableElement implement
 	 */
 	protected abstract String encode(T theValue);
 
+	/**
+	 * If the value of this datatype was set using {@link #setValueAsStringDeferred(String)}
+	 * and has not yet been converted into its typed value, converts it now. Subclasses which
+	 * store additional state derived from the string value (e.g. a timezone) must call this
+	 * method before reading or modifying that state.
+	 * <p>
+	 * Parsed models are often shared between threads, so the conversion is synchronized
+	 * and happens only once. If the value is invalid, it stays deferred so that every
+	 * access reports the problem.
+	 * </p>
+	 */
+	protected void ensureCoerced() {
+		if (myCoercionDeferred) {
+			coerceDeferredValue();
+		}
+	}
+
+	private synchronized void coerceDeferredValue() {
+		// Another thread may have coerced the value while this one was waiting for the lock, and
+		// subclasses call back into ensureCoerced() when parsing reads their derived state
+		if (!myCoercionDeferred || myCoercing) {
+			return;
+		}
+		myCoercing = true;
+		try {
+			setValueAsString(myStringValue);
+		} finally {
+			myCoercing = false;
+		}
+	}
+
+	/**
+	 * Like {@link #ensureCoerced()}, but clears the value instead of throwing an exception if
+	 * a deferred value is invalid. Setters which replace the value, but keep some state derived
+	 * from the current one (e.g. the precision of a date), call this before reading that state.
+	 */
+	protected void discardInvalidDeferredValue() {
+		if (myCoercionDeferred) {
+			try {
+				coerceDeferredValue();
+			} catch (RuntimeException e) {
+				setValueAsString(null);
+			}
+		}
+	}
+
 	@Override
 	public boolean equals(Object theObj) {
 		if (theObj == null) {
@@ -62,6 +119,7 @@ public abstract class BasePrimitive<T> extends BaseIdentifiableElement implement
 
 	@Override
 	public T getValue() {
+		ensureCoerced();
 		return myCoercedValue;
 	}
 
@@ -77,7 +135,8 @@ public abstract class BasePrimitive<T> extends BaseIdentifiableElement implement
 
 	@Override
 	public boolean isEmpty() {
-		return super.isBaseEmpty() && getValue() == null;
+		// A deferred value is never blank, so treat it as non-empty without coercing it
+		return super.isBaseEmpty() && !myCoercionDeferred && getValue() == null;
 	}
 
 	/**
@@ -97,6 +156,7 @@ public abstract class BasePrimitive<T> extends BaseIdentifiableElement implement
 
 	@Override
 	public BasePrimitive<T> setValue(T theValue) throws DataFormatException {
+		myCoercionDeferred = false;
 		myCoercedValue = theValue;
 		updateStringValue();
 		return this;
@@ -104,6 +164,10 @@ public abstract class BasePrimitive<T> extends BaseIdentifiableElement implement
 
 	@Override
 	public void setValueAsString(String theValue) throws DataFormatException {
+		if (!myCoercing) {
+			// Setting a new value replaces a deferred one
+			myCoercionDeferred = false;
+		}
 		if (theValue == null) {
 			myCoercedValue = null;
 		} else {
@@ -111,6 +175,23 @@ public abstract class BasePrimitive<T> extends BaseIdentifiableElement implement
 			myCoercedValue = parse(theValue);
 		}
 		myStringValue = theValue;
+		myCoercionDeferred = false;
+	}
+
+	/**
+	 * Stores the given string value, but does not convert it into the typed value
+	 * until {@link #getValue()} (or another method which needs the typed value) is
+	 * first called. Any exception caused by an invalid value is thrown at that point.
+	 */
+	@Override
+	public void setValueAsStringDeferred(String theValue) throws DataFormatException {
+		if (isBlank(theValue)) {
+			setValueAsString(theValue);
+			return;
+		}
+		myStringValue = theValue;
+		myCoercedValue = null;
+		myCoercionDeferred = true;
 	}
 
 	@Override
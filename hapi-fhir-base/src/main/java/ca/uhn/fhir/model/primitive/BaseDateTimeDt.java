@@ -216,6 +216,7 @@ public abstract class BaseDateTimeDt extends BasePrimitive<Date> {
 	 * </p>
 	 */
 	public Long getNanos() {
+		ensureCoerced();
 		if (isBlank(myFractionalSeconds)) {
 			return null;
 		}
@@ -244,6 +245,7 @@ public abstract class BaseDateTimeDt extends BasePrimitive<Date> {
 	 * @see #setPrecision(TemporalPrecisionEnum)
 	 */
 	public TemporalPrecisionEnum getPrecision() {
+		ensureCoerced();
 		if (myPrecision == null) {
 			return getDefaultPrecisionForDatatype();
 		}
@@ -262,6 +264,7 @@ public abstract class BaseDateTimeDt extends BasePrimitive<Date> {
 	 * supplied.
 	 */
 	public TimeZone getTimeZone() {
+		ensureCoerced();
 		if (myTimeZoneZulu) {
 			return TimeZone.getTimeZone("GMT");
 		}
@@ -301,6 +304,7 @@ public abstract class BaseDateTimeDt extends BasePrimitive<Date> {
 	 * Returns true if the timezone is set to GMT-0:00 (Z)
 	 */
 	public boolean isTimeZoneZulu() {
+		ensureCoerced();
 		return myTimeZoneZulu;
 	}
 
@@ -546,6 +550,7 @@ public abstract class BaseDateTimeDt extends BasePrimitive<Date> {
 		if (thePrecision == null) {
 			throw new NullPointerException("Precision may not be null");
 		}
+		ensureCoerced();
 		myPrecision = thePrecision;
 		updateStringValue();
 		return this;
@@ -581,12 +586,14 @@ public abstract class BaseDateTimeDt extends BasePrimitive<Date> {
 	}
 
 	public BaseDateTimeDt setTimeZone(TimeZone theTimeZone) {
+		ensureCoerced();
 		myTimeZone = theTimeZone;
 		updateStringValue();
 		return this;
 	}
 
 	public BaseDateTimeDt setTimeZoneZulu(boolean theTimeZoneZulu) {
+		ensureCoerced();
 		myTimeZoneZulu = theTimeZoneZulu;
 		updateStringValue();
 		return this;
@@ -599,6 +606,8 @@ public abstract class BaseDateTimeDt extends BasePrimitive<Date> {
 	 */
 	@Override
 	public BaseDateTimeDt setValue(Date theValue) {
+		// An invalid deferred value is being replaced, so it must not prevent reading the current precision
+		discardInvalidDeferredValue();
 		setValue(theValue, getPrecision());
 		return this;
 	}
@@ -615,6 +624,7 @@ public abstract class BaseDateTimeDt extends BasePrimitive<Date> {
 	 * @throws DataFormatException
 	 */
 	public void setValue(Date theValue, TemporalPrecisionEnum thePrecision) throws DataFormatException {
+		discardInvalidDeferredValue();
 		if (getTimeZone() == null) {
 			setTimeZone(TimeZone.getDefault());
 		}
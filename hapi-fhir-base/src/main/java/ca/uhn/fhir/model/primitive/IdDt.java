@@ -415,6 +415,15 @@ public class IdDt extends UriDt implements /*IPrimitiveDatatype<String>, */IIdTy
 		setValue(theValue);
 	}
 
+	/**
+	 * IDs are always parsed immediately, since the ID parts are needed
+	 * to resolve references while parsing
+	 */
+	@Override
+	public void setValueAsStringDeferred(String theValue) throws DataFormatException {
+		setValueAsString(theValue);
+	}
+
 	@Override
 	public String getVersionIdPart() {
 		return myUnqualifiedVersionId;
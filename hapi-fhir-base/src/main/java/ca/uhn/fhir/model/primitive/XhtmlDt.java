@@ -133,6 +133,15 @@ public class XhtmlDt extends BasePrimitive<String> {
 		}
 	}
 
+	/**
+	 * XHTML is always processed immediately, since the stored string is the
+	 * normalized form of the supplied value
+	 */
+	@Override
+	public void setValueAsStringDeferred(String theValue) throws DataFormatException {
+		setValueAsString(theValue);
+	}
+
 	public static String preprocessXhtmlNamespaceDeclaration(String value) {
 		if (value.charAt(0) != '<') {
 			value = DIV_OPEN_FIRST + value + "</div>";
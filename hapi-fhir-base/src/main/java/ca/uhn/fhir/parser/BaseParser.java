@@ -53,6 +53,8 @@ public abstract class BaseParser implements IParser {
 	private Set<String> myEncodeElementsAppliesToResourceTypes;
 	private boolean myEncodeElementsIncludesStars;
 	private IIdType myEncodeForceResourceId;
+	private Map<RuntimeResourceDefinition, ElementFilterNode> myElementFilterRoots;
+	private Map<RuntimeResourceDefinition, ElementFilterNode> myElementFilterSubResourceRoots;
 	private IParserErrorHandler myErrorHandler;
 	private boolean myOmitResourceId;
 	private List<Class<? extends IBaseResource>> myPreferTypes;
@@ -73,6 +75,34 @@ public abstract class BaseParser implements IParser {
 		myErrorHandler = theParserErrorHandler;
 	}
 
+	private void clearElementFilter() {
+		myElementFilterRoots = null;
+		myElementFilterSubResourceRoots = null;
+	}
+
+	/**
+	 * Returns the root of the tree which caches whether elements within the given resource type
+	 * should be encoded, or <code>null</code> if no element filter is configured
+	 */
+	private ElementFilterNode getElementFilterRoot(RuntimeResourceDefinition theResDef, boolean theSubResource) {
+		if (myEncodeElements == null && myDontEncodeElements == null) {
+			return null;
+		}
+		Map<RuntimeResourceDefinition, ElementFilterNode> roots;
+		if (theSubResource) {
+			if (myElementFilterSubResourceRoots == null) {
+				myElementFilterSubResourceRoots = new IdentityHashMap<>();
+			}
+			roots = myElementFilterSubResourceRoots;
+		} else {
+			if (myElementFilterRoots == null) {
+				myElementFilterRoots = new IdentityHashMap<>();
+			}
+			roots = myElementFilterRoots;
+		}
+		return roots.computeIfAbsent(theResDef, t -> new ElementFilterNode());
+	}
+
 	protected Iterable<CompositeChildElement> compositeChildIterator(IBase theCompositeElement, final boolean theContainedResource, final boolean theSubResource, final CompositeChildElement theParent) {
 
 		BaseRuntimeElementCompositeDefinition<?> elementDef = (BaseRuntimeElementCompositeDefinition<?>) myContext.getElementDefinition(theCompositeElement.getClass());
@@ -402,6 +432,7 @@ public abstract class BaseParser implements IParser {
 
 	@Override
 	public void setEncodeElements(Set<String> theEncodeElements) {
+		clearElementFilter();
 		myEncodeElementsIncludesStars = false;
 		if (theEncodeElements == null || theEncodeElements.isEmpty()) {
 			myEncodeElements = null;
@@ -425,6 +456,7 @@ public abstract class BaseParser implements IParser {
 
 	@Override
 	public void setEncodeElementsAppliesToResourceTypes(Set<String> theEncodeElementsAppliesToResourceTypes) {
+		clearElementFilter();
 		if (theEncodeElementsAppliesToResourceTypes == null || theEncodeElementsAppliesToResourceTypes.isEmpty()) {
 			myEncodeElementsAppliesToResourceTypes = null;
 		} else {
@@ -571,6 +603,7 @@ public abstract class BaseParser implements IParser {
 
 	@Override
 	public void setEncodeElementsAppliesToChildResourcesOnly(boolean theEncodeElementsAppliesToChildResourcesOnly) {
+		clearElementFilter();
 		myEncodeElementsAppliesToChildResourcesOnly = theEncodeElementsAppliesToChildResourcesOnly;
 	}
 
@@ -806,6 +839,7 @@ public abstract class BaseParser implements IParser {
 
 	@Override
 	public void setDontEncodeElements(Set<String> theDontEncodeElements) {
+		clearElementFilter();
 		myDontEncodeElementsIncludesStars = false;
 		if (theDontEncodeElements == null || theDontEncodeElements.isEmpty()) {
 			myDontEncodeElements = null;
@@ -961,8 +995,29 @@ public abstract class BaseParser implements IParser {
 
 	}
 
+	/**
+	 * A node in the tree which caches the result of {@link CompositeChildElement#shouldBeEncoded()}.
+	 * The result only depends on the path to the element and on the element filter settings
+	 * of the parser, so the tree is keyed by the child definitions along the path (which are
+	 * singletons, so identity lookups are used) and is discarded whenever the settings change.
+	 * This means that the element filter paths only need to be matched once for each distinct
+	 * path, instead of once for every element being encoded.
+	 */
+	private static class ElementFilterNode {
+		private Map<BaseRuntimeChildDefinition, ElementFilterNode> myChildren;
+		private Boolean myShouldBeEncoded;
+
+		private ElementFilterNode getChild(BaseRuntimeChildDefinition theDef) {
+			if (myChildren == null) {
+				myChildren = new IdentityHashMap<>();
+			}
+			return myChildren.computeIfAbsent(theDef, t -> new ElementFilterNode());
+		}
+	}
+
 	protected class CompositeChildElement {
 		private final BaseRuntimeChildDefinition myDef;
+		private final ElementFilterNode myElementFilterNode;
 		private final CompositeChildElement myParent;
 		private final RuntimeResourceDefinition myResDef;
 		private final boolean mySubResource;
@@ -972,6 +1027,11 @@ public abstract class BaseParser implements IParser {
 			myParent = theParent;
 			myResDef = null;
 			mySubResource = theSubResource;
+			if (theParent != null && theParent.myElementFilterNode != null) {
+				myElementFilterNode = theParent.myElementFilterNode.getChild(theDef);
+			} else {
+				myElementFilterNode = null;
+			}
 
 			if (ourLog.isTraceEnabled()) {
 				if (theParent != null) {
@@ -991,6 +1051,7 @@ public abstract class BaseParser implements IParser {
 			myDef = null;
 			myParent = null;
 			mySubResource = theSubResource;
+			myElementFilterNode = getElementFilterRoot(theResDef, theSubResource);
 		}
 
 		private void addParent(CompositeChildElement theParent, StringBuilder theB) {
@@ -1122,6 +1183,18 @@ public abstract class BaseParser implements IParser {
 		}
 
 		public boolean shouldBeEncoded() {
+			if (myElementFilterNode == null) {
+				return checkShouldBeEncoded();
+			}
+			Boolean retVal = myElementFilterNode.myShouldBeEncoded;
+			if (retVal == null) {
+				retVal = checkShouldBeEncoded();
+				myElementFilterNode.myShouldBeEncoded = retVal;
+			}
+			return retVal;
+		}
+
+		private boolean checkShouldBeEncoded() {
 			boolean retVal = true;
 			if (myEncodeElements != null) {
 				retVal = checkIfParentShouldBeEncodedAndBuildPath(new StringBuilder(), false);
@@ -225,15 +225,21 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 						theEventWriter.write(((IBaseIntegerDatatype) value).getValue());
 					}
 				} else if (value instanceof IBaseDecimalDatatype) {
-					BigDecimal decimalValue = ((IBaseDecimalDatatype) value).getValue();
-					decimalValue = new BigDecimal(decimalValue.toString()) {
-						private static final long serialVersionUID = 1L;
-
-						@Override
-						public String toString() {
-							return value.getValueAsString();
-						}
-					};
+					// Built from the string value so that a value whose coercion was deferred
+					// doesn't need to be coerced just to be encoded
+					BigDecimal decimalValue;
+					try {
+						decimalValue = new BigDecimal(value.getValueAsString()) {
+							private static final long serialVersionUID = 1L;
+
+							@Override
+							public String toString() {
+								return value.getValueAsString();
+							}
+						};
+					} catch (NumberFormatException e) {
+						throw new DataFormatException("Invalid decimal value: " + value.getValueAsString(), e);
+					}
 					if (theChildName != null) {
 						write(theEventWriter, theChildName, decimalValue);
 					} else {
@@ -48,6 +48,8 @@ class ParserState<T> {
 
 	private List<String> myComments = new ArrayList<String>(2);
 	private final FhirContext myContext;
+	private final boolean myDeferNarrativeParsing;
+	private final boolean myDeferPrimitiveCoercion;
 	private final IParserErrorHandler myErrorHandler;
 	private final boolean myJsonMode;
 	private T myObject;
@@ -58,6 +60,8 @@ class ParserState<T> {
 	private ParserState(IParser theParser, FhirContext theContext, boolean theJsonMode, IParserErrorHandler theErrorHandler) {
 		myParser = theParser;
 		myContext = theContext;
+		myDeferNarrativeParsing = theContext.getPerformanceOptions().contains(PerformanceOptionsEnum.DEFERRED_NARRATIVE_PARSING);
+		myDeferPrimitiveCoercion = theContext.getPerformanceOptions().contains(PerformanceOptionsEnum.DEFERRED_PRIMITIVE_COERCION);
 		myJsonMode = theJsonMode;
 		myErrorHandler = theErrorHandler;
 	}
@@ -1285,7 +1289,11 @@ class ParserState<T> {
 					myErrorHandler.invalidValue(null, theValue, "Attribute values must not be empty (\"\")");
 				} else {
 					try {
-						myInstance.setValueAsString(theValue);
+						if (myDeferPrimitiveCoercion) {
+							myInstance.setValueAsStringDeferred(theValue);
+						} else {
+							myInstance.setValueAsString(theValue);
+						}
 					} catch (DataFormatException | IllegalArgumentException e) {
 						myErrorHandler.invalidValue(null, theValue, e.getMessage());
 					}
@@ -1597,7 +1605,11 @@ class ParserState<T> {
 		public void doPop() {
 			// TODO: this is not very efficient
 			String value = getDt().getValueAsString();
-			myHl7OrgDatatype.setValueAsString(value);
+			if (myDeferNarrativeParsing) {
+				myHl7OrgDatatype.setValueAsStringDeferred(value);
+			} else {
+				myHl7OrgDatatype.setValueAsString(value);
+			}
 
 			super.doPop();
 		}
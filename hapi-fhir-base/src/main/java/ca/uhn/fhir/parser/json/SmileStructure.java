@@ -0,0 +1,274 @@
+package ca.uhn.fhir.parser.json;
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import ca.uhn.fhir.parser.DataFormatException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link JsonLikeStructure} backed by the binary
+ * <a href="https://github.com/FasterXML/smile-format-specification">Smile</a> format. Smile
+ * is a binary encoding of the JSON data model which writes numbers in binary form and replaces
+ * repeated field names and short string values with back-references, so it is both smaller
+ * and cheaper to read than textual JSON.
+ * <p>
+ * Because the content is binary, it must be read using {@link #load(InputStream)} and written
+ * using {@link #getJsonLikeWriter(OutputStream)}. The methods which accept a <code>Reader</code> or
+ * <code>Writer</code> throw {@link UnsupportedOperationException}.
+ * </p>
+ * <p>
+ * This class requires <code>com.fasterxml.jackson.dataformat:jackson-dataformat-smile</code>
+ * on the classpath.
+ * </p>
+ */
+public class SmileStructure implements JsonLikeStructure {
+
+	private static final SmileFactory ourSmileFactory;
+
+	static {
+		ourSmileFactory = new SmileFactory();
+		ourSmileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+		ourSmileFactory.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+	}
+
+	private JsonLikeValue jsonLikeRoot = null;
+	private SmileWriter jsonLikeWriter = null;
+
+	@Override
+	public JsonLikeStructure getInstance() {
+		return new SmileStructure();
+	}
+
+	@Override
+	public void load(Reader theReader) throws DataFormatException {
+		this.load(theReader, false);
+	}
+
+	@Override
+	public void load(Reader theReader, boolean allowArray) throws DataFormatException {
+		throw new UnsupportedOperationException("Smile content is binary and can not be read from a Reader");
+	}
+
+	/**
+	 * Parse the Smile document into the Json-like structure
+	 * so that it can be navigated. The stream is not closed.
+	 *
+	 * @throws DataFormatException when invalid Smile content is received
+	 */
+	public void load(InputStream theInputStream) throws DataFormatException {
+		this.load(theInputStream, false);
+	}
+
+	public void load(InputStream theInputStream, boolean allowArray) throws DataFormatException {
+		try (JsonParser parser = ourSmileFactory.createParser(theInputStream)) {
+			JsonToken token = parser.nextToken();
+			if (token == null) {
+				throw new DataFormatException("Did not find any content to parse");
+			}
+			if (token != JsonToken.START_OBJECT && !(allowArray && token == JsonToken.START_ARRAY)) {
+				throw new DataFormatException("Content does not appear to be FHIR Smile, first token was: " + token + " (must be " + (allowArray ? "an object or an array" : "an object") + ")");
+			}
+			jsonLikeRoot = readValue(parser);
+		} catch (JsonProcessingException e) {
+			throw new DataFormatException("Failed to parse Smile encoded FHIR content: " + e.getMessage(), e);
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to parse Smile content, error was: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public JsonLikeWriter getJsonLikeWriter(Writer writer) {
+		throw new UnsupportedOperationException("Smile content is binary and can not be written to a Writer");
+	}
+
+	/**
+	 * Returns a writer which must have an <code>OutputStream</code> supplied using
+	 * {@link SmileWriter#setOutputStream(OutputStream)} before it is initialized
+	 */
+	@Override
+	public JsonLikeWriter getJsonLikeWriter() {
+		if (null == jsonLikeWriter) {
+			jsonLikeWriter = new SmileWriter();
+		}
+		return jsonLikeWriter;
+	}
+
+	public JsonLikeWriter getJsonLikeWriter(OutputStream theOutputStream) {
+		if (null == jsonLikeWriter) {
+			jsonLikeWriter = new SmileWriter(theOutputStream);
+		}
+		return jsonLikeWriter;
+	}
+
+	@Override
+	public JsonLikeObject getRootObject() throws DataFormatException {
+		if (jsonLikeRoot != null && jsonLikeRoot.isObject()) {
+			return jsonLikeRoot.getAsObject();
+		}
+		throw new DataFormatException("Content must be a valid Smile Object.");
+	}
+
+	@Override
+	public JsonLikeArray getRootArray() throws DataFormatException {
+		if (jsonLikeRoot != null && jsonLikeRoot.isArray()) {
+			return jsonLikeRoot.getAsArray();
+		}
+		throw new DataFormatException("Content must be a valid Smile Array.");
+	}
+
+	static SmileFactory getSmileFactory() {
+		return ourSmileFactory;
+	}
+
+	private static JsonLikeValue readValue(JsonParser theParser) throws IOException {
+		JsonToken token = theParser.getCurrentToken();
+		switch (token) {
+			case START_OBJECT:
+				SmileJsonObject object = new SmileJsonObject();
+				while (theParser.nextToken() == JsonToken.FIELD_NAME) {
+					String name = theParser.getCurrentName();
+					theParser.nextToken();
+					object.put(name, readValue(theParser));
+				}
+				return object;
+			case START_ARRAY:
+				SmileJsonArray array = new SmileJsonArray();
+				while (theParser.nextToken() != JsonToken.END_ARRAY) {
+					array.add(readValue(theParser));
+				}
+				return array;
+			case VALUE_STRING:
+				return new SmileJsonValue(ScalarType.STRING, theParser.getText());
+			case VALUE_NUMBER_INT:
+				return new SmileJsonValue(ScalarType.NUMBER, theParser.getNumberValue());
+			case VALUE_NUMBER_FLOAT:
+				return new SmileJsonValue(ScalarType.NUMBER, theParser.getDecimalValue());
+			case VALUE_TRUE:
+				return new SmileJsonValue(ScalarType.BOOLEAN, Boolean.TRUE);
+			case VALUE_FALSE:
+				return new SmileJsonValue(ScalarType.BOOLEAN, Boolean.FALSE);
+			case VALUE_NULL:
+				return JsonLikeValue.NULL;
+			default:
+				throw new DataFormatException("Unexpected token in Smile content: " + token);
+		}
+	}
+
+	private static class SmileJsonObject extends JsonLikeObject {
+		private final Map<String, JsonLikeValue> nativeObject = new LinkedHashMap<>();
+
+		void put(String theName, JsonLikeValue theValue) {
+			nativeObject.put(theName, theValue);
+		}
+
+		@Override
+		public Object getValue() {
+			return null;
+		}
+
+		@Override
+		public Set<String> keySet() {
+			return nativeObject.keySet();
+		}
+
+		@Override
+		public JsonLikeValue get(String key) {
+			return nativeObject.get(key);
+		}
+	}
+
+	private static class SmileJsonArray extends JsonLikeArray {
+		private final List<JsonLikeValue> nativeArray = new ArrayList<>();
+
+		void add(JsonLikeValue theValue) {
+			nativeArray.add(theValue);
+		}
+
+		@Override
+		public Object getValue() {
+			return null;
+		}
+
+		@Override
+		public int size() {
+			return nativeArray.size();
+		}
+
+		@Override
+		public JsonLikeValue get(int index) {
+			return nativeArray.get(index);
+		}
+	}
+
+	private static class SmileJsonValue extends JsonLikeValue {
+		private final ScalarType dataType;
+		private final Object nativeValue;
+
+		SmileJsonValue(ScalarType theDataType, Object theValue) {
+			dataType = theDataType;
+			nativeValue = theValue;
+		}
+
+		@Override
+		public Object getValue() {
+			return nativeValue;
+		}
+
+		@Override
+		public ValueType getJsonType() {
+			return ValueType.SCALAR;
+		}
+
+		@Override
+		public ScalarType getDataType() {
+			return dataType;
+		}
+
+		@Override
+		public String getAsString() {
+			return nativeValue.toString();
+		}
+
+		@Override
+		public boolean getAsBoolean() {
+			if (dataType == ScalarType.BOOLEAN) {
+				return (Boolean) nativeValue;
+			}
+			return super.getAsBoolean();
+		}
+	}
+
+}
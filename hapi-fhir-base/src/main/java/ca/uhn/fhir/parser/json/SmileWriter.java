@@ -0,0 +1,261 @@
+package ca.uhn.fhir.parser.json;
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Stack;
+
+/**
+ * A {@link JsonLikeWriter} which writes binary Smile content to an <code>OutputStream</code>.
+ * Pretty printing is not supported and is ignored.
+ *
+ * @see SmileStructure
+ */
+public class SmileWriter extends JsonLikeWriter {
+	private static final Logger log = LoggerFactory.getLogger(SmileWriter.class);
+
+	private OutputStream outputStream;
+	private JsonGenerator eventWriter;
+	private enum BlockType {
+		NONE, OBJECT, ARRAY
+	}
+	private BlockType blockType = BlockType.NONE;
+	private Stack<BlockType> blockStack = new Stack<BlockType>();
+
+	public SmileWriter () {
+		super();
+	}
+	public SmileWriter (OutputStream theOutputStream) {
+		setOutputStream(theOutputStream);
+	}
+
+	public void setOutputStream (OutputStream theOutputStream) {
+		this.outputStream = theOutputStream;
+	}
+	public OutputStream getOutputStream () {
+		return outputStream;
+	}
+
+	@Override
+	public JsonLikeWriter init() throws IOException {
+		eventWriter = SmileStructure.getSmileFactory().createGenerator(outputStream);
+		blockType = BlockType.NONE;
+		blockStack.clear();
+		return this;
+	}
+
+	@Override
+	public JsonLikeWriter flush() throws IOException {
+		if (blockType != BlockType.NONE) {
+			log.error("JsonLikeStreamWriter.flush() called but Smile document is not finished");
+		}
+		eventWriter.flush();
+		return this;
+	}
+
+	@Override
+	public void close() throws IOException {
+		eventWriter.close();
+	}
+
+	@Override
+	public JsonLikeWriter beginObject() throws IOException {
+		blockStack.push(blockType);
+		blockType = BlockType.OBJECT;
+		eventWriter.writeStartObject();
+		return this;
+	}
+
+	@Override
+	public JsonLikeWriter beginArray() throws IOException {
+		blockStack.push(blockType);
+		blockType = BlockType.ARRAY;
+		eventWriter.writeStartArray();
+		return this;
+	}
+
+	@Override
+	public JsonLikeWriter beginObject(String name) throws IOException {
+		eventWriter.writeFieldName(name);
+		return beginObject();
+	}
+
+	@Override
+	public JsonLikeWriter beginArray(String name) throws IOException {
+		eventWriter.writeFieldName(name);
+		return beginArray();
+	}
+
+	@Override
+	public JsonLikeWriter write(String value) throws IOException {
+		eventWriter.writeString(value);
+		return this;
+	}
+
+	@Override
+	public JsonLikeWriter write(BigInteger value) throws IOException {
+		eventWriter.writeNumber(value);
+		return this;
+	}
+
+	@Override
+	public JsonLikeWriter write(BigDecimal value) throws IOException {
+		eventWriter.writeNumber(value);
+		return this;
+	}
+
+	@Override
+	public JsonLikeWriter write(long value) throws IOException {
+		eventWriter.writeNumber(value);
+		return this;
+	}
+
+	@Override
+	public JsonLikeWriter write(double value) throws IOException {
+		eventWriter.writeNumber(value);
+		return this;
+	}
+
+	@Override
+	public JsonLikeWriter write(Boolean value) throws IOException {
+		if (value == null) {
+			eventWriter.writeNull();
+		} else {
+			eventWriter.writeBoolean(value);
+		}
+		return this;
+	}
+
+	@Override
+	public JsonLikeWriter write(boolean value) throws IOException {
+		eventWriter.writeBoolean(value);
+		return this;
+	}
+
+	@Override
+	public JsonLikeWriter writeNull() throws IOException {
+		eventWriter.writeNull();
+		return this;
+	}
+
+	@Override
+	public JsonLikeWriter write(String name, String value) throws IOException {
+		eventWriter.writeFieldName(name);
+		return write(value);
+	}
+
+	@Override
+	public JsonLikeWriter write(String name, BigInteger value) throws IOException {
+		eventWriter.writeFieldName(name);
+		return write(value);
+	}
+
+	@Override
+	public JsonLikeWriter write(String name, BigDecimal value) throws IOException {
+		eventWriter.writeFieldName(name);
+		return write(value);
+	}
+
+	@Override
+	public JsonLikeWriter write(String name, long value) throws IOException {
+		eventWriter.writeFieldName(name);
+		return write(value);
+	}
+
+	@Override
+	public JsonLikeWriter write(String name, double value) throws IOException {
+		eventWriter.writeFieldName(name);
+		return write(value);
+	}
+
+	@Override
+	public JsonLikeWriter write(String name, Boolean value) throws IOException {
+		eventWriter.writeFieldName(name);
+		return write(value);
+	}
+
+	@Override
+	public JsonLikeWriter write(String name, boolean value) throws IOException {
+		eventWriter.writeFieldName(name);
+		return write(value);
+	}
+
+	@Override
+	public JsonLikeWriter writeNull(String name) throws IOException {
+		eventWriter.writeFieldName(name);
+		return writeNull();
+	}
+
+	@Override
+	public JsonLikeWriter endObject() throws IOException {
+		if (blockType == BlockType.NONE) {
+			log.error("JsonLikeStreamWriter.endObject(); called with no active Smile document");
+		} else {
+			if (blockType != BlockType.OBJECT) {
+				log.error("JsonLikeStreamWriter.endObject(); called outside a Smile object. (Use endArray() instead?)");
+				eventWriter.writeEndArray();
+			} else {
+				eventWriter.writeEndObject();
+			}
+			blockType = blockStack.pop();
+		}
+		return this;
+	}
+
+	@Override
+	public JsonLikeWriter endArray() throws IOException {
+		if (blockType == BlockType.NONE) {
+			log.error("JsonLikeStreamWriter.endArray(); called with no active Smile document");
+		} else {
+			if (blockType != BlockType.ARRAY) {
+				log.error("JsonLikeStreamWriter.endArray(); called outside a Smile array. (Use endObject() instead?)");
+				eventWriter.writeEndObject();
+			} else {
+				eventWriter.writeEndArray();
+			}
+			blockType = blockStack.pop();
+		}
+		return this;
+	}
+
+	@Override
+	public JsonLikeWriter endBlock() throws IOException {
+		if (blockType == BlockType.NONE) {
+			log.error("JsonLikeStreamWriter.endBlock(); called with no active Smile document");
+		} else {
+			if (blockType == BlockType.ARRAY) {
+				eventWriter.writeEndArray();
+			} else {
+				eventWriter.writeEndObject();
+			}
+			blockType = blockStack.pop();
+		}
+		return this;
+	}
+
+}
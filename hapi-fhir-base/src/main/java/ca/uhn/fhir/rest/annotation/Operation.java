@@ -87,4 +87,31 @@ public @interface Operation {
 	 */
 	BundleTypeEnum bundleType() default BundleTypeEnum.COLLECTION;
 
+	/**
+	 * If this is set to <code>true</code> (default is <code>false</code>), the method
+	 * annotated with this annotation is responsible for writing the complete HTTP response
+	 * (status, headers and body) itself using an <code>HttpServletResponse</code>
+	 * parameter, and must have a return type of <code>void</code>. This can be used for
+	 * operations whose response is not a FHIR resource, such as a file download or an
+	 * asynchronous <code>202 Accepted</code> response.
+	 * <p>
+	 * This value has no effect when used on client implementations.
+	 * </p>
+	 */
+	boolean manualResponse() default false;
+
+	/**
+	 * If this is set to <code>true</code> (default is <code>false</code>), the body of a
+	 * <code>POST</code> request is not read or parsed as a <code>Parameters</code> resource
+	 * by the server, so that the method can read it itself (e.g. as a stream) using an
+	 * <code>HttpServletRequest</code> or <code>RequestDetails</code> parameter. This can be
+	 * used for operations whose request body is not a FHIR resource, such as an NDJSON
+	 * upload. Any <code>@OperationParam</code> values are taken from the URL parameters, so
+	 * they must be primitive types.
+	 * <p>
+	 * This value has no effect when used on client implementations.
+	 * </p>
+	 */
+	boolean manualRequest() default false;
+
 }
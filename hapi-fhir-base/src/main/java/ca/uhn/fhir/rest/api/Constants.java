@@ -46,6 +46,11 @@ public class Constants {
 	 * The FHIR MimeType for JSON encoding in FHIR DSTU3+
 	 */
 	public static final String CT_FHIR_JSON_NEW = "application/fhir+json";
+	/**
+	 * The FHIR MimeType for NDJSON (newline delimited JSON) encoding, as used by the
+	 * Bulk Data specification
+	 */
+	public static final String CT_FHIR_NDJSON = "application/fhir+ndjson";
 	public static final String CT_FHIR_XML = "application/xml+fhir";
 	/**
 	 * The FHIR MimeType for XML encoding in FHIR DSTU3+
@@ -99,6 +104,7 @@ public class Constants {
 	public static final String HEADER_CORS_EXPOSE_HEADERS = "Access-Control-Expose-Headers";
 	public static final String HEADER_ETAG = "ETag";
 	public static final String HEADER_ETAG_LC = HEADER_ETAG.toLowerCase();
+	public static final String HEADER_EXPIRES = "Expires";
 	public static final String HEADER_IF_MATCH = "If-Match";
 	public static final String HEADER_IF_MATCH_LC = HEADER_IF_MATCH.toLowerCase();
 	public static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
@@ -117,7 +123,10 @@ public class Constants {
 	public static final String HEADER_PREFER_RETURN_MINIMAL = "minimal";
 	public static final String HEADER_PREFER_RETURN_REPRESENTATION = "representation";
 	public static final String HEADER_PREFER_RETURN_OPERATION_OUTCOME = "OperationOutcome";
+	public static final String HEADER_PREFER_RESPOND_ASYNC = "respond-async";
+	public static final String HEADER_RETRY_AFTER = "Retry-After";
 	public static final String HEADER_SUFFIX_CT_UTF_8 = "; charset=UTF-8";
+	public static final String HEADER_VARY = "Vary";
 	public static final String HEADERVALUE_CORS_ALLOW_METHODS_ALL = "GET, POST, PUT, DELETE, OPTIONS";
 	public static final Map<Integer, String> HTTP_STATUS_NAMES;
 	public static final String LINK_FHIR_BASE = "fhir-base";
@@ -174,6 +183,7 @@ public class Constants {
 	public static final String PARAMQUALIFIER_TOKEN_TEXT = ":text";
 	public static final int STATUS_HTTP_200_OK = 200;
 	public static final int STATUS_HTTP_201_CREATED = 201;
+	public static final int STATUS_HTTP_202_ACCEPTED = 202;
 	public static final int STATUS_HTTP_204_NO_CONTENT = 204;
 	public static final int STATUS_HTTP_304_NOT_MODIFIED = 304;
 	public static final int STATUS_HTTP_400_BAD_REQUEST = 400;
@@ -196,6 +206,7 @@ public class Constants {
 	public static final String OO_INFOSTATUS_PROCESSING = "processing";
 	public static final String PARAM_GRAPHQL_QUERY = "query";
 	public static final String HEADER_X_CACHE = "X-Cache";
+	public static final String HEADER_X_PROGRESS = "X-Progress";
 	public static final String HEADER_X_SECURITY_CONTEXT = "X-Security-Context";
 	public static final String POWERED_BY_HEADER = "X-Powered-By";
 	public static final Charset CHARSET_US_ASCII;
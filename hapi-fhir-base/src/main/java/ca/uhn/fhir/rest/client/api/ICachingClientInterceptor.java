@@ -0,0 +1,54 @@
+package ca.uhn.fhir.rest.client.api;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+
+/**
+ * Client interceptor which is able to answer requests from a cache, and to
+ * replace the response received from the server (e.g. with a cached response
+ * when the server indicates that a cached copy is still valid).
+ *
+ * @since 3.7.0
+ */
+public interface ICachingClientInterceptor extends IClientInterceptor {
+
+	/**
+	 * Fired by the client after {@link #interceptRequest(IHttpRequest)} has been invoked on
+	 * all interceptors, just before invoking the HTTP client request. If this method returns a
+	 * non-null response, the request is not sent and the returned response is processed
+	 * as though it had been received from the server.
+	 *
+	 * @return A response, or <code>null</code> if the request should be sent to the server
+	 */
+	IHttpResponse getCachedResponse(IHttpRequest theRequest);
+
+	/**
+	 * Fired by the client upon receiving an HTTP response, before {@link #interceptResponse(IHttpResponse)}
+	 * is invoked on any interceptors. The returned response is processed in place of the
+	 * received response. Implementations which return a different response are responsible
+	 * for closing <code>theResponse</code>.
+	 *
+	 * @return The response to process (may be <code>theResponse</code>)
+	 */
+	IHttpResponse cacheResponse(IHttpRequest theRequest, IHttpResponse theResponse) throws IOException;
+
+}
@@ -23,6 +23,8 @@ package ca.uhn.fhir.rest.client.api;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Http Request. Allows addition of headers and execution of the request.
@@ -44,6 +46,31 @@ public interface IHttpRequest {
 	 */
 	IHttpResponse execute() throws IOException;
 
+	/**
+	 * Execute the request without blocking the calling thread
+	 * <p>
+	 * The default implementation simply invokes {@link #execute()} using the given executor.
+	 * Implementations backed by an HTTP library with a non-blocking API should override
+	 * this method.
+	 * </p>
+	 *
+	 * @param theExecutor An executor which may be used to perform blocking work
+	 * @return A future which will be completed with the response, or completed exceptionally
+	 * with the exception that {@link #execute()} would have thrown
+	 * @since 3.7.0
+	 */
+	default CompletableFuture<IHttpResponse> executeAsync(Executor theExecutor) {
+		CompletableFuture<IHttpResponse> retVal = new CompletableFuture<>();
+		theExecutor.execute(() -> {
+			try {
+				retVal.complete(execute());
+			} catch (Throwable t) {
+				retVal.completeExceptionally(t);
+			}
+		});
+		return retVal;
+	}
+
 	/**
 	 * @return all request headers in lower case. Note that this method
 	 * returns an <b>immutable</b> Map
@@ -22,6 +22,8 @@ package ca.uhn.fhir.rest.client.api;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import ca.uhn.fhir.context.ConfigurationException;
 import ca.uhn.fhir.rest.api.RequestTypeEnum;
@@ -57,7 +59,42 @@ public interface IRestfulClientFactory {
 	 * Default value for {@link #getPoolMaxPerRoute() }
 	 */
 	public static final int DEFAULT_POOL_MAX_PER_ROUTE = DEFAULT_POOL_MAX;
+
+	/**
+	 * Default value for {@link #getAsyncMaxRequestsPerServer()}
+	 */
+	public static final int DEFAULT_ASYNC_MAX_REQUESTS_PER_SERVER = DEFAULT_POOL_MAX_PER_ROUTE;
 	
+	/**
+	 * Gets the executor which is used to parse responses to asynchronous requests (see
+	 * {@link ca.uhn.fhir.rest.gclient.IClientExecutable#executeAsync()}), and to perform the
+	 * request itself if the underlying HTTP library does not support non-blocking requests.
+	 * If no executor has been set, a shared pool of daemon threads (one per processor) is created on first use.
+	 * <p>
+	 * The default implementation of this method returns {@link ForkJoinPool#commonPool()}.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	default Executor getAsyncExecutor() {
+		return ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * Gets the maximum number of asynchronous requests (see
+	 * {@link ca.uhn.fhir.rest.gclient.IClientExecutable#executeAsync()}) which may be in flight
+	 * to a single server base URL at any given time. Additional requests are queued and are
+	 * sent as earlier requests complete.
+	 * <p>
+	 * The default value for this setting is defined by {@link #DEFAULT_ASYNC_MAX_REQUESTS_PER_SERVER}
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	default int getAsyncMaxRequestsPerServer() {
+		return DEFAULT_ASYNC_MAX_REQUESTS_PER_SERVER;
+	}
+
 	/**
 	 * Gets the connection request timeout, in milliseconds. This is the amount of time that the HTTPClient connection
 	 * pool may wait for an available connection before failing. This setting typically does not need to be adjusted.
@@ -157,6 +194,63 @@ public interface IRestfulClientFactory {
 	 */
 	IGenericClient newGenericClient(String theServerBase);
 
+	/**
+	 * Returns the interceptors which are registered with this factory. These interceptors
+	 * are registered with every client subsequently created by this factory.
+	 *
+	 * @see #registerInterceptor(IClientInterceptor)
+	 * @since 3.7.0
+	 */
+	List<IClientInterceptor> getInterceptors();
+
+	/**
+	 * Registers an interceptor which will be registered with every client subsequently
+	 * created by this factory. This is useful for interceptors which hold state that should
+	 * be shared between clients, such as a response cache (see
+	 * {@link ICachingClientInterceptor}). Clients which have already been created
+	 * are not affected.
+	 *
+	 * @since 3.7.0
+	 */
+	void registerInterceptor(IClientInterceptor theInterceptor);
+
+	/**
+	 * Unregisters an interceptor previously registered using {@link #registerInterceptor(IClientInterceptor)}.
+	 * Clients which have already been created are not affected.
+	 *
+	 * @since 3.7.0
+	 */
+	void unregisterInterceptor(IClientInterceptor theInterceptor);
+
+	/**
+	 * Sets the executor which is used to parse responses to asynchronous requests
+	 *
+	 * <p>
+	 * The default implementation of this method throws {@link UnsupportedOperationException}.
+	 * </p>
+	 *
+	 * @see #getAsyncExecutor()
+	 * @since 3.7.0
+	 */
+	default void setAsyncExecutor(Executor theAsyncExecutor) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Sets the maximum number of asynchronous requests which may be in flight to a
+	 * single server base URL at any given time
+	 *
+	 * <p>
+	 * The default implementation of this method throws {@link UnsupportedOperationException}.
+	 * </p>
+	 *
+	 * @see #getAsyncMaxRequestsPerServer()
+	 * @since 3.7.0
+	 */
+	default void setAsyncMaxRequestsPerServer(int theAsyncMaxRequestsPerServer) {
+		throw new UnsupportedOperationException();
+	}
+
 	/**
 	 * Sets the connection request timeout, in milliseconds. This is the amount of time that the HTTPClient connection
 	 * pool may wait for an available connection before failing. This setting typically does not need to be adjusted.
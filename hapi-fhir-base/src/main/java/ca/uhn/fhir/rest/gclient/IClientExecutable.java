@@ -7,6 +7,7 @@ import ca.uhn.fhir.rest.api.SummaryEnum;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /*
  * #%L
@@ -93,6 +94,28 @@ public interface IClientExecutable<T extends IClientExecutable<?, Y>, Y> {
 	 */
 	Y execute();
 
+	/**
+	 * Execute the client operation asynchronously. The returned future is completed with
+	 * the same value that {@link #execute()} would have returned, or completed exceptionally
+	 * with the exception that {@link #execute()} would have thrown.
+	 * <p>
+	 * The number of asynchronous requests in flight to a single server at any given time
+	 * is limited by {@link ca.uhn.fhir.rest.client.api.IRestfulClientFactory#setAsyncMaxRequestsPerServer(int)},
+	 * and responses are parsed using the executor supplied to
+	 * {@link ca.uhn.fhir.rest.client.api.IRestfulClientFactory#setAsyncExecutor(java.util.concurrent.Executor)}
+	 * rather than on the thread which received the HTTP response.
+	 * </p>
+	 * <p>
+	 * The default implementation of this method runs {@link #execute()} using
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	default CompletableFuture<Y> executeAsync() {
+		return CompletableFuture.supplyAsync(this::execute);
+	}
+
 	/**
 	 * Explicitly specify a custom structure type to attempt to use when parsing the response. This
 	 * is useful for invocations where the response is a Bundle/Parameters containing nested resources,
@@ -7,6 +7,7 @@ import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.SummaryEnum;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import java.util.Collection;
 import java.util.List;
@@ -166,6 +167,35 @@ public interface IQuery<Y> extends IBaseQuery<IQuery<Y>>, IClientExecutable<IQue
 	 */
 	IQuery<Y> withTag(String theSystem, String theCode);
 
+	/**
+	 * Executes the search and returns an iterator over every resource of the given type in all pages
+	 * of the results, following the <code>next</code> link of each page. Resources of other types in the
+	 * returned Bundles (e.g. <code>_include</code>d resources) are skipped.
+	 * <p>
+	 * The first page is requested immediately, and while a page is being consumed the following
+	 * page is loaded in the background, so that iteration is not limited by the round trip time
+	 * for each page. This method uses {@link ISearchResultIterator#DEFAULT_PREFETCH_PAGES} and
+	 * {@link ISearchResultIterator#DEFAULT_MAX_BUFFERED_RESOURCES}.
+	 * </p>
+	 *
+	 * @param theResourceType The type of resource to return
+	 * @since 3.7.0
+	 */
+	<T extends IBaseResource> ISearchResultIterator<T> iterate(Class<T> theResourceType);
+
+	/**
+	 * Executes the search and returns an iterator over every resource of the given type in all pages
+	 * of the results, loading subsequent pages in the background.
+	 *
+	 * @param theResourceType         The type of resource to return
+	 * @param thePrefetchPages        The maximum number of pages which may be loaded ahead of the page being consumed (must be at least 1)
+	 * @param theMaxBufferedResources Pages are not loaded in the background while at least this many resources
+	 *                                are loaded and waiting to be consumed (must be at least 1)
+	 * @see #iterate(Class)
+	 * @since 3.7.0
+	 */
+	<T extends IBaseResource> ISearchResultIterator<T> iterate(Class<T> theResourceType, int thePrefetchPages, int theMaxBufferedResources);
+
 //	Y execute();
 
 }
@@ -0,0 +1,74 @@
+package ca.uhn.fhir.rest.gclient;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterator over every resource in a paged search result, as returned by
+ * {@link IQuery#iterate(Class)}. Pages after the first are loaded in the background
+ * while earlier pages are being consumed.
+ * <p>
+ * Iterators should be {@link #close() closed} if they are abandoned before
+ * being fully consumed, so that no further pages are loaded.
+ * </p>
+ *
+ * @since 3.7.0
+ */
+public interface ISearchResultIterator<T extends IBaseResource> extends Iterator<T>, AutoCloseable {
+
+	/**
+	 * Default value for the number of pages which may be loaded ahead of the page being consumed
+	 */
+	int DEFAULT_PREFETCH_PAGES = 1;
+
+	/**
+	 * Default value for the maximum number of loaded but not yet consumed resources. No further
+	 * pages are loaded in the background while this many resources are waiting to be consumed.
+	 */
+	int DEFAULT_MAX_BUFFERED_RESOURCES = 5000;
+
+	/**
+	 * Stops loading further pages and discards any pages which have been loaded but not consumed
+	 */
+	@Override
+	void close();
+
+	/**
+	 * Returns the number of pages which have been loaded from the server so far
+	 */
+	int getPagesLoaded();
+
+	/**
+	 * Returns a sequential stream over the remaining resources. Closing the stream closes this iterator.
+	 */
+	default Stream<T> stream() {
+		Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false).onClose(this::close);
+	}
+
+}
@@ -0,0 +1,365 @@
+package ca.uhn.fhir.validation;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.util.BundleUtil;
+import ca.uhn.fhir.util.StopWatch;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Validates large numbers of resources (the entries of a Bundle, or the lines of an
+ * <a href="http://ndjson.org/">NDJSON</a> file) in parallel using a {@link FhirValidator}.
+ * <p>
+ * Each resource is validated individually by all of the validator's modules, using a pool
+ * of worker threads (by default one per available processor). Because the same validator
+ * is used for every resource, any caches held by its modules (profiles, terminology, etc.)
+ * are shared by all of the workers. Results are passed to an {@link IResultHandler} on the
+ * calling thread as soon as they are available, in the same order as the input, and only a
+ * small window of resources is held in memory at any time so that arbitrarily large NDJSON
+ * files may be validated.
+ * </p>
+ * <p>
+ * To obtain a bulk validator, call {@link FhirValidator#newBulkValidator()}. Note that the
+ * validator modules which are registered must be thread safe.
+ * </p>
+ *
+ * @see FhirValidator
+ */
+public class BulkValidator {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BulkValidator.class);
+	private final FhirContext myContext;
+	private final FhirValidator myValidator;
+	private int myThreadCount = Runtime.getRuntime().availableProcessors();
+	private int myLogInterval = 1000;
+
+	/**
+	 * Constructor (generally {@link FhirValidator#newBulkValidator()} should be called instead)
+	 */
+	public BulkValidator(FhirContext theContext, FhirValidator theValidator) {
+		Validate.notNull(theContext, "theContext must not be null");
+		Validate.notNull(theValidator, "theValidator must not be null");
+		myContext = theContext;
+		myValidator = theValidator;
+	}
+
+	/**
+	 * Returns the number of resources validated between progress log messages (default is 1000)
+	 */
+	public int getLogInterval() {
+		return myLogInterval;
+	}
+
+	/**
+	 * Sets the number of resources validated between progress log messages (default is 1000)
+	 *
+	 * @return Returns a reference to <code>this</code> for method chaining
+	 */
+	public BulkValidator setLogInterval(int theLogInterval) {
+		Validate.isTrue(theLogInterval > 0, "theLogInterval must be greater than 0");
+		myLogInterval = theLogInterval;
+		return this;
+	}
+
+	/**
+	 * Returns the number of worker threads which will be used to validate resources
+	 * (default is the number of available processors)
+	 */
+	public int getThreadCount() {
+		return myThreadCount;
+	}
+
+	/**
+	 * Sets the number of worker threads which will be used to validate resources
+	 * (default is the number of available processors)
+	 *
+	 * @return Returns a reference to <code>this</code> for method chaining
+	 */
+	public BulkValidator setThreadCount(int theThreadCount) {
+		Validate.isTrue(theThreadCount > 0, "theThreadCount must be greater than 0");
+		myThreadCount = theThreadCount;
+		return this;
+	}
+
+	/**
+	 * Validates each resource contained in the entries of a Bundle. Entries without a
+	 * resource are skipped. The index passed to the handler is the (zero based) index of
+	 * the resource within the Bundle.
+	 *
+	 * @param theBundle  The bundle whose entries should be validated
+	 * @param theHandler Receives the results of each individual validation
+	 * @return A summary of the validation
+	 */
+	public Summary validateBundleEntries(IBaseBundle theBundle, IResultHandler theHandler) {
+		Validate.notNull(theBundle, "theBundle must not be null");
+		Validate.notNull(theHandler, "theHandler must not be null");
+
+		List<IBaseResource> resources = BundleUtil.toListOfResources(myContext, theBundle);
+		try (Batch batch = new Batch(theHandler)) {
+			for (IBaseResource next : resources) {
+				batch.submit(() -> myValidator.validateWithResult(next));
+			}
+			return batch.finish();
+		}
+	}
+
+	/**
+	 * Validates each line of an NDJSON stream as a separate resource. Blank lines are
+	 * skipped. The index passed to the handler is the (one based) line number. A line
+	 * which can not be parsed results in a validation failure for that line only.
+	 *
+	 * @param theReader  The NDJSON content. The reader is not closed by this method.
+	 * @param theHandler Receives the results of each individual validation
+	 * @return A summary of the validation
+	 */
+	public Summary validateNdjson(Reader theReader, IResultHandler theHandler) throws IOException {
+		Validate.notNull(theReader, "theReader must not be null");
+		Validate.notNull(theHandler, "theHandler must not be null");
+
+		BufferedReader reader = theReader instanceof BufferedReader ? (BufferedReader) theReader : new BufferedReader(theReader);
+		try (Batch batch = new Batch(theHandler)) {
+			int lineNumber = 0;
+			String nextLine;
+			while ((nextLine = reader.readLine()) != null) {
+				lineNumber++;
+				if (isBlank(nextLine)) {
+					continue;
+				}
+				String line = nextLine;
+				batch.submit(lineNumber, () -> myValidator.validateWithResult(line));
+			}
+			return batch.finish();
+		}
+	}
+
+	private ValidationResult newFailureResult(Throwable theCause) {
+		SingleValidationMessage message = new SingleValidationMessage();
+		message.setSeverity(ResultSeverityEnum.FATAL);
+		message.setMessage(theCause.getMessage() != null ? theCause.getMessage() : theCause.toString());
+		return new ValidationResult(myContext, Collections.singletonList(message));
+	}
+
+	/**
+	 * Receives the results of a bulk validation. Results are delivered one at a time on
+	 * the thread which started the validation, in the same order as the input.
+	 */
+	@FunctionalInterface
+	public interface IResultHandler {
+
+		/**
+		 * Called once for each resource which has been validated
+		 *
+		 * @param theIndex  The position of the resource in the input (see the individual validation methods for its meaning)
+		 * @param theResult The validation result. Use {@link ValidationResult#toOperationOutcome()} to obtain an OperationOutcome.
+		 */
+		void handleResult(int theIndex, ValidationResult theResult);
+
+	}
+
+	/**
+	 * Summary of a bulk validation
+	 */
+	public static class Summary {
+		private final int myResourceCount;
+		private final int myFailedResourceCount;
+		private final int myErrorCount;
+		private final int myWarningCount;
+		private final long myMillis;
+		private final String myThroughput;
+
+		Summary(int theResourceCount, int theFailedResourceCount, int theErrorCount, int theWarningCount, StopWatch theStopWatch) {
+			myResourceCount = theResourceCount;
+			myFailedResourceCount = theFailedResourceCount;
+			myErrorCount = theErrorCount;
+			myWarningCount = theWarningCount;
+			myMillis = theStopWatch.getMillis();
+			myThroughput = theStopWatch.formatThroughput(theResourceCount, TimeUnit.SECONDS);
+		}
+
+		/**
+		 * Returns the total number of issues at severity {@link ResultSeverityEnum#ERROR} or {@link ResultSeverityEnum#FATAL}
+		 */
+		public int getErrorCount() {
+			return myErrorCount;
+		}
+
+		/**
+		 * Returns the number of resources whose validation was not {@link ValidationResult#isSuccessful() successful}
+		 */
+		public int getFailedResourceCount() {
+			return myFailedResourceCount;
+		}
+
+		/**
+		 * Returns the elapsed time of the validation
+		 */
+		public long getMillis() {
+			return myMillis;
+		}
+
+		/**
+		 * Returns the number of resources validated
+		 */
+		public int getResourceCount() {
+			return myResourceCount;
+		}
+
+		/**
+		 * Returns the number of resources validated per second
+		 */
+		public double getResourcesPerSecond() {
+			if (myMillis == 0) {
+				return myResourceCount;
+			}
+			return myResourceCount / (myMillis / 1000.0);
+		}
+
+		/**
+		 * Returns the total number of issues at severity {@link ResultSeverityEnum#WARNING}
+		 */
+		public int getWarningCount() {
+			return myWarningCount;
+		}
+
+		/**
+		 * Returns <code>true</code> if every resource was validated successfully
+		 */
+		public boolean isSuccessful() {
+			return myFailedResourceCount == 0;
+		}
+
+		@Override
+		public String toString() {
+			return "Validated " + myResourceCount + " resources in " + StopWatch.formatMillis(myMillis) + " (" + myThroughput + "/sec) - " + myFailedResourceCount + " failed, " + myErrorCount + " errors, " + myWarningCount + " warnings";
+		}
+	}
+
+	/**
+	 * Submits validations to the worker pool, keeping a bounded window of pending
+	 * validations, and hands completed results to the handler in order
+	 */
+	private class Batch implements AutoCloseable {
+		private final IResultHandler myHandler;
+		private final ExecutorService myExecutor;
+		private final Deque<Pending> myPending = new ArrayDeque<>();
+		private final int myMaxPending;
+		private final StopWatch myStopWatch = new StopWatch();
+		private int myResourceCount;
+		private int myFailedResourceCount;
+		private int myErrorCount;
+		private int myWarningCount;
+
+		Batch(IResultHandler theHandler) {
+			myHandler = theHandler;
+			// Make sure the default modules are registered before the workers start using the validator
+			myValidator.applyDefaultValidators();
+			BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+				.namingPattern("hapi-fhir-bulk-validation-%d")
+				.daemon(true)
+				.build();
+			myExecutor = Executors.newFixedThreadPool(myThreadCount, threadFactory);
+			myMaxPending = myThreadCount * 4;
+		}
+
+		@Override
+		public void close() {
+			myExecutor.shutdownNow();
+		}
+
+		private void drainHead() {
+			Pending next = myPending.removeFirst();
+			ValidationResult result;
+			try {
+				result = next.myFuture.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for validation", e);
+			} catch (ExecutionException e) {
+				ourLog.debug("Failed to validate resource at index {}", next.myIndex, e.getCause());
+				result = newFailureResult(e.getCause());
+			}
+
+			myResourceCount++;
+			if (!result.isSuccessful()) {
+				myFailedResourceCount++;
+			}
+			for (SingleValidationMessage nextMessage : result.getMessages()) {
+				if (nextMessage.getSeverity() == null || nextMessage.getSeverity().ordinal() >= ResultSeverityEnum.ERROR.ordinal()) {
+					myErrorCount++;
+				} else if (nextMessage.getSeverity() == ResultSeverityEnum.WARNING) {
+					myWarningCount++;
+				}
+			}
+
+			myHandler.handleResult(next.myIndex, result);
+
+			if (myResourceCount % myLogInterval == 0) {
+				ourLog.info("Have validated {} resources in {} ({}/sec)", myResourceCount, myStopWatch, myStopWatch.formatThroughput(myResourceCount, TimeUnit.SECONDS));
+			}
+		}
+
+		Summary finish() {
+			while (!myPending.isEmpty()) {
+				drainHead();
+			}
+			Summary retVal = new Summary(myResourceCount, myFailedResourceCount, myErrorCount, myWarningCount, myStopWatch);
+			ourLog.info(retVal.toString());
+			return retVal;
+		}
+
+		void submit(Callable<ValidationResult> theTask) {
+			submit(myResourceCount + myPending.size(), theTask);
+		}
+
+		void submit(int theIndex, Callable<ValidationResult> theTask) {
+			myPending.addLast(new Pending(theIndex, myExecutor.submit(theTask)));
+			if (myPending.size() >= myMaxPending) {
+				drainHead();
+			}
+		}
+	}
+
+	private static class Pending {
+		private final int myIndex;
+		private final Future<ValidationResult> myFuture;
+
+		Pending(int theIndex, Future<ValidationResult> theFuture) {
+			myIndex = theIndex;
+			myFuture = theFuture;
+		}
+	}
+
+}
@@ -164,7 +164,7 @@ public class FhirValidator {
 	}
 
 
-	private void applyDefaultValidators() {
+	void applyDefaultValidators() {
 		if (myValidators.isEmpty()) {
 			setValidateAgainstStandardSchema(true);
 			if (ourPhPresentOnClasspath) {
@@ -173,6 +173,16 @@ public class FhirValidator {
 		}
 	}
 
+	/**
+	 * Creates a new {@link BulkValidator} which uses this validator (and the modules registered
+	 * with it) to validate large numbers of resources in parallel
+	 *
+	 * @since 3.7.0
+	 */
+	public BulkValidator newBulkValidator() {
+		return new BulkValidator(myContext, this);
+	}
+
 	/**
 	 * Validates a resource instance, throwing a {@link ValidationFailureException} if the validation fails
 	 * 
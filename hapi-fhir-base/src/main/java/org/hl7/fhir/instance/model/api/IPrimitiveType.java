@@ -31,5 +31,25 @@ public interface IPrimitiveType<T> extends IBaseDatatype {
 	T getValue();
 	
 	IPrimitiveType<T> setValue(T theValue) throws IllegalArgumentException;
-	
+
+	/**
+	 * Sets the value of this primitive using its encoded (string) representation, but
+	 * may defer converting it into the typed value (e.g. a {@link java.util.Date} for
+	 * a dateTime) until the typed value is first requested. The string value itself is
+	 * always retained exactly as supplied.
+	 * <p>
+	 * Because the conversion may be deferred, an invalid value may not cause an exception
+	 * to be thrown by this method, but by the first call to {@link #getValue()} (or another
+	 * method that needs the typed value) instead.
+	 * </p>
+	 * <p>
+	 * The default implementation simply calls {@link #setValueAsString(String)}.
+	 * </p>
+	 *
+	 * @see ca.uhn.fhir.context.PerformanceOptionsEnum#DEFERRED_PRIMITIVE_COERCION
+	 */
+	default void setValueAsStringDeferred(String theValue) throws IllegalArgumentException {
+		setValueAsString(theValue);
+	}
+
 }
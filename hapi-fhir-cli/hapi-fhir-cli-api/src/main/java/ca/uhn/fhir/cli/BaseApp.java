@@ -157,6 +157,7 @@ public abstract class BaseApp {
 		commands.add(new ExportConceptMapToCsvCommand());
 		commands.add(new ImportCsvToConceptMapCommand());
 		commands.add(new HapiMigrateDatabaseCommand());
+		commands.add(new BulkImportCommand());
 		return commands;
 	}
 
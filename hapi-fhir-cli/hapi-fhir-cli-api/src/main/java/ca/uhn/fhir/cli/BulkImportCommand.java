@@ -0,0 +1,154 @@
+package ca.uhn.fhir.cli;
+
+/*-
+ * #%L
+ * HAPI FHIR - Command Line Client - API
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirVersionEnum;
+import ca.uhn.fhir.jpa.util.JpaConstants;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.util.StopWatch;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.EntityTemplate;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.hl7.fhir.r4.model.Parameters;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+public class BulkImportCommand extends BaseCommand {
+	// TODO: Don't use qualified names for loggers in HAPI CLI.
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BulkImportCommand.class);
+	private static final String DATA_PARAM = "d";
+	private static final String INDEX_IMMEDIATELY_PARAM = "i";
+
+	@Override
+	public String getCommandDescription() {
+		return "Uploads one or more NDJSON files (one resource per line, optionally GZip compressed) to a HAPI FHIR JPA server, using the " + JpaConstants.OPERATION_IMPORT + " operation.";
+	}
+
+	@Override
+	public String getCommandName() {
+		return "bulk-import";
+	}
+
+	@Override
+	public Options getOptions() {
+		Options options = new Options();
+
+		addFhirVersionOption(options);
+		addBaseUrlOption(options);
+		addRequiredOption(options, DATA_PARAM, "data", true, "The NDJSON file(s) to upload. Files ending in \".gz\" are assumed to be GZip compressed.");
+		addOptionalOption(options, INDEX_IMMEDIATELY_PARAM, "index-immediately", false, "If specified, resources are indexed as they are stored instead of after the whole file has been stored. This requires every resource to appear after the resources it references.");
+		addBasicAuthOption(options);
+
+		return options;
+	}
+
+	@Override
+	public void run(CommandLine theCommandLine) throws ParseException {
+		parseFhirContext(theCommandLine);
+		if (getFhirContext().getVersion().getVersion() != FhirVersionEnum.R4) {
+			throw new ParseException("This command does not support FHIR version " + getFhirContext().getVersion().getVersion());
+		}
+
+		String baseUrl = theCommandLine.getOptionValue(BASE_URL_PARAM);
+		if (isBlank(baseUrl)) {
+			throw new ParseException("No target server (-" + BASE_URL_PARAM + ") specified.");
+		} else if (!baseUrl.startsWith("http")) {
+			throw new ParseException("Invalid target server specified, must begin with 'http'.");
+		}
+
+		String[] dataFiles = theCommandLine.getOptionValues(DATA_PARAM);
+		if (dataFiles == null || dataFiles.length == 0) {
+			throw new ParseException("No data file provided");
+		}
+		for (String next : dataFiles) {
+			if (!new File(next).isFile()) {
+				throw new ParseException("File does not exist: " + next);
+			}
+		}
+
+		String url = baseUrl.replaceAll("/$", "") + "/" + JpaConstants.OPERATION_IMPORT;
+		if (theCommandLine.hasOption(INDEX_IMMEDIATELY_PARAM)) {
+			url = url + "?" + JpaConstants.PARAM_IMPORT_DEFER_INDEXING + "=false";
+		}
+		String authorizationHeader = getAndParseOptionBasicAuthHeader(theCommandLine);
+
+		try (CloseableHttpClient client = HttpClientBuilder.create().build()) {
+			for (String next : dataFiles) {
+				uploadFile(client, url, authorizationHeader, new File(next));
+			}
+		} catch (IOException e) {
+			throw new CommandFailureException(e);
+		}
+	}
+
+	private void uploadFile(CloseableHttpClient theClient, String theUrl, String theAuthorizationHeader, File theFile) throws IOException {
+		boolean compressed = theFile.getName().toLowerCase().endsWith(".gz");
+
+		// The file is streamed (and compressed if needed) as it is sent, so that large files aren't held in memory
+		EntityTemplate entity = new EntityTemplate(theOutputStream -> {
+			try (InputStream inputStream = new BufferedInputStream(new FileInputStream(theFile))) {
+				if (compressed) {
+					IOUtils.copy(inputStream, theOutputStream);
+				} else {
+					GZIPOutputStream gzipOutputStream = new GZIPOutputStream(theOutputStream);
+					IOUtils.copy(inputStream, gzipOutputStream);
+					gzipOutputStream.finish();
+				}
+			}
+		});
+		entity.setChunked(true);
+		entity.setContentType(Constants.CT_FHIR_NDJSON);
+		entity.setContentEncoding(Constants.ENCODING_GZIP);
+
+		HttpPost post = new HttpPost(theUrl);
+		post.setEntity(entity);
+		post.addHeader(Constants.HEADER_ACCEPT, Constants.CT_FHIR_JSON_NEW);
+		if (isNotBlank(theAuthorizationHeader)) {
+			post.addHeader(Constants.HEADER_AUTHORIZATION, theAuthorizationHeader);
+		}
+
+		ourLog.info("Uploading {} ({}) - This may take a while...", theFile.getName(), FileUtils.byteCountToDisplaySize(theFile.length()));
+		StopWatch sw = new StopWatch();
+		try (CloseableHttpResponse response = theClient.execute(post)) {
+			String responseBody = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+			int status = response.getStatusLine().getStatusCode();
+			if (status != Constants.STATUS_HTTP_200_OK) {
+				throw new CommandFailureException("Failed to upload " + theFile.getName() + " (HTTP " + status + "): " + responseBody);
+			}
+
+			Parameters outcome = getFhirContext().newJsonParser().parseResource(Parameters.class, responseBody);
+			ourLog.info("Uploaded {} in {}, outcome:\n{}", theFile.getName(), sw.toString(), getFhirContext().newXmlParser().setPrettyPrint(true).encodeResourceToString(outcome));
+		}
+	}
+
+}
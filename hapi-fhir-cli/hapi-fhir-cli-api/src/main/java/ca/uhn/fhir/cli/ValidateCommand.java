@@ -24,7 +24,9 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.igpacks.parser.IgPackParserDstu2;
 import ca.uhn.fhir.igpacks.parser.IgPackParserDstu3;
 import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.parser.LenientErrorHandler;
+import ca.uhn.fhir.validation.BulkValidator;
 import ca.uhn.fhir.validation.FhirValidator;
 import ca.uhn.fhir.validation.SingleValidationMessage;
 import ca.uhn.fhir.validation.ValidationResult;
@@ -39,12 +41,10 @@ import org.hl7.fhir.dstu3.hapi.validation.DefaultProfileValidationSupport;
 import org.hl7.fhir.dstu3.hapi.validation.FhirInstanceValidator;
 import org.hl7.fhir.dstu3.hapi.validation.ValidationSupportChain;
 import org.hl7.fhir.dstu3.model.StructureDefinition;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.*;
 
 import static org.apache.commons.lang3.StringUtils.*;
 import static org.fusesource.jansi.Ansi.ansi;
@@ -52,6 +52,11 @@ import static org.fusesource.jansi.Ansi.ansi;
 public class ValidateCommand extends BaseCommand {
 	// TODO: Don't use qualified names for loggers in HAPI CLI.
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ValidateCommand.class);
+	private static final String NDJSON_PARAM = "ndjson";
+	private static final String BUNDLE_ENTRIES_PARAM = "bundle-entries";
+	private static final String THREADS_PARAM = "threads";
+	private static final String OUTPUT_PARAM = "o";
+	private static final String OUTPUT_PARAM_LONGOPT = "output";
 
 	@Override
 	public String getCommandDescription() {
@@ -81,6 +86,10 @@ public class ValidateCommand extends BaseCommand {
 		addOptionalOption(retVal, "x", "xsd", false, "Validate using Schemas");
 		addOptionalOption(retVal, "s", "sch", false, "Validate using Schematrons");
 		addOptionalOption(retVal, "e", "encoding","encoding", "File encoding (default is UTF-8)");
+		addOptionalOption(retVal, null, NDJSON_PARAM, false, "The input is NDJSON (one JSON resource per line). Each line is validated separately, in parallel.");
+		addOptionalOption(retVal, null, BUNDLE_ENTRIES_PARAM, false, "The input is a Bundle. Each entry is validated separately, in parallel.");
+		addOptionalOption(retVal, null, THREADS_PARAM, "count", "The number of threads to use for validating NDJSON or Bundle entries (default is the number of processors)");
+		addOptionalOption(retVal, OUTPUT_PARAM, OUTPUT_PARAM_LONGOPT, "filename", "When validating NDJSON or Bundle entries, write an OperationOutcome for each resource to this file (as NDJSON)");
 
     return retVal;
 	}
@@ -112,7 +121,8 @@ public class ValidateCommand extends BaseCommand {
 			throw new ParseException("Must supply either a file (-n) or data (-d)");
 		}
 
-		if (isNotBlank(fileName)) {
+		boolean ndjson = theCommandLine.hasOption(NDJSON_PARAM);
+		if (isNotBlank(fileName) && !ndjson) {
 			String encoding = theCommandLine.getOptionValue("e", "UTF-8");
 			ourLog.info("Reading file '{}' using encoding {}", fileName, encoding);
 
@@ -124,9 +134,12 @@ public class ValidateCommand extends BaseCommand {
 			ourLog.info("Fully read - Size is {}", FileHelper.getFileSizeDisplay(contents.length()));
 		}
 
-		ca.uhn.fhir.rest.api.EncodingEnum enc = ca.uhn.fhir.rest.api.EncodingEnum.detectEncodingNoDefault(defaultString(contents));
-		if (enc == null) {
-			throw new ParseException("Could not detect encoding (json/xml) of contents");
+		ca.uhn.fhir.rest.api.EncodingEnum enc = null;
+		if (!ndjson) {
+			enc = ca.uhn.fhir.rest.api.EncodingEnum.detectEncodingNoDefault(defaultString(contents));
+			if (enc == null) {
+				throw new ParseException("Could not detect encoding (json/xml) of contents");
+			}
 		}
 
 		FhirContext ctx = getFhirContext();
@@ -200,6 +213,11 @@ public class ValidateCommand extends BaseCommand {
 		val.setValidateAgainstStandardSchema(theCommandLine.hasOption("x"));
 		val.setValidateAgainstStandardSchematron(theCommandLine.hasOption("s"));
 
+		if (ndjson || theCommandLine.hasOption(BUNDLE_ENTRIES_PARAM)) {
+			validateBulk(theCommandLine, val, fileName, contents, enc);
+			return;
+		}
+
 		ValidationResult results;
 		try {
 			results = val.validateWithResult(contents);
@@ -207,9 +225,81 @@ public class ValidateCommand extends BaseCommand {
 			throw new CommandFailureException(e.getMessage());
 		}
 
-		StringBuilder b = new StringBuilder("Validation results:" + ansi().boldOff());
+		if (results.getMessages().size() > 0) {
+			ourLog.info("Validation results:" + ansi().boldOff() + formatMessages(results));
+		}
+
+		if (results.isSuccessful()) {
+			ourLog.info("Validation successful!");
+		} else {
+			throw new CommandFailureException("Validation failed");
+		}
+	}
+
+	private void validateBulk(CommandLine theCommandLine, FhirValidator theValidator, String theFileName, String theContents, ca.uhn.fhir.rest.api.EncodingEnum theEncoding) throws ParseException {
+		BulkValidator bulkValidator = theValidator.newBulkValidator();
+		Integer threadCount = getAndParsePositiveIntegerParam(theCommandLine, THREADS_PARAM);
+		if (threadCount != null) {
+			bulkValidator.setThreadCount(threadCount);
+		}
+		boolean ndjson = theCommandLine.hasOption(NDJSON_PARAM);
+		String indexLabel = ndjson ? "Line" : "Entry";
+		String outputFileName = theCommandLine.getOptionValue(OUTPUT_PARAM);
+
+		BulkValidator.Summary summary;
+		try (Writer output = isNotBlank(outputFileName) ? new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFileName), Charsets.UTF_8)) : null) {
+			IParser outputParser = getFhirContext().newJsonParser();
+			BulkValidator.IResultHandler handler = (theIndex, theResult) -> {
+				if (!theResult.isSuccessful()) {
+					ourLog.warn(indexLabel + " " + theIndex + " failed validation:" + formatMessages(theResult));
+				}
+				if (output != null) {
+					try {
+						outputParser.encodeResourceToWriter(theResult.toOperationOutcome(), output);
+						output.write("\n");
+					} catch (IOException e) {
+						throw new CommandFailureException("Failed to write to " + outputFileName, e);
+					}
+				}
+			};
+
+			if (ndjson) {
+				if (isNotBlank(theFileName)) {
+					String encoding = theCommandLine.getOptionValue("e", "UTF-8");
+					ourLog.info("Validating NDJSON file '{}' using encoding {}", theFileName, encoding);
+					try (Reader reader = new InputStreamReader(new FileInputStream(theFileName), encoding)) {
+						summary = bulkValidator.validateNdjson(reader, handler);
+					}
+				} else {
+					summary = bulkValidator.validateNdjson(new StringReader(theContents), handler);
+				}
+			} else {
+				IBaseResource bundle;
+				try {
+					bundle = theEncoding.newParser(getFhirContext()).parseResource(theContents);
+				} catch (DataFormatException e) {
+					throw new CommandFailureException(e.getMessage());
+				}
+				if (!(bundle instanceof IBaseBundle)) {
+					throw new ParseException("Option --" + BUNDLE_ENTRIES_PARAM + " requires a Bundle, but the input is a " + getFhirContext().getResourceDefinition(bundle).getName());
+				}
+				summary = bulkValidator.validateBundleEntries((IBaseBundle) bundle, handler);
+			}
+		} catch (IOException e) {
+			throw new CommandFailureException(e);
+		}
+
+		ourLog.info(summary.toString());
+		if (!summary.isSuccessful()) {
+			throw new CommandFailureException("Validation failed for " + summary.getFailedResourceCount() + " of " + summary.getResourceCount() + " resources");
+		}
+		ourLog.info("Validation successful!");
+	}
+
+	private String formatMessages(ValidationResult theResults) {
+		StringBuilder b = new StringBuilder();
 		int count = 0;
-		for (SingleValidationMessage next : results.getMessages()) {
+		for (SingleValidationMessage next : theResults.getMessages()) {
 			count++;
 			b.append(App.LINESEP);
 			String leftString = "Issue " + count + ": ";
@@ -230,15 +320,6 @@ public class ValidateCommand extends BaseCommand {
 
 		}
 		b.append(App.LINESEP);
-
-		if (count > 0) {
-			ourLog.info(b.toString());
-		}
-
-		if (results.isSuccessful()) {
-			ourLog.info("Validation successful!");
-		} else {
-			throw new CommandFailureException("Validation failed");
-		}
+		return b.toString();
 	}
 }
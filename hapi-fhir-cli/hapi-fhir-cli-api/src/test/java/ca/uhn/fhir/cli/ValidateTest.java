@@ -3,6 +3,7 @@ package ca.uhn.fhir.cli;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 public class ValidateTest {
@@ -25,6 +26,33 @@ public class ValidateTest {
 			"-n", resourcePath});
 	}
 
+	@Test
+	public void testValidateNdjson() {
+		App.main(new String[] {
+			"validate",
+			"-v", "dstu3",
+			"-p",
+			"--ndjson",
+			"--threads", "2",
+			"-d", "{\"resourceType\":\"Patient\",\"active\":true}\n{\"resourceType\":\"Patient\",\"gender\":\"female\"}"});
+	}
+
+	@Test
+	public void testValidateNdjsonFailing() {
+		try {
+			App.main(new String[] {
+				"validate",
+				"-v", "dstu3",
+				"-p",
+				"--ndjson",
+				"-d", "{\"resourceType\":\"Patient\",\"active\":true}\n{\"resourceType\":\"Patient\",\"foo\":\"bar\"}"});
+			// Should not get here
+			fail();
+		} catch (CommandFailureException e) {
+			assertEquals("Validation failed for 1 of 2 resources", e.getMessage());
+		}
+	}
+
 	@Test
 	public void testValidateUsingIgPackSucceedingDstu2() {
 		String resourcePath = ValidateTest.class.getResource("/argo-dstu2-observation-good.json").getFile();
@@ -31,6 +31,7 @@ import ca.uhn.fhir.rest.client.api.Header;
 import ca.uhn.fhir.rest.client.api.IHttpClient;
 import ca.uhn.fhir.rest.client.impl.RestfulClientFactory;
 import okhttp3.Call;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 
 /**
@@ -62,7 +63,13 @@ public class OkHttpRestfulClientFactory extends RestfulClientFactory {
 
     public synchronized Call.Factory getNativeClient() {
         if (myNativeClient == null) {
-            myNativeClient = new OkHttpClient();
+            // The default dispatcher only allows 5 concurrent asynchronous calls per host
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequestsPerHost(getAsyncMaxRequestsPerServer());
+            dispatcher.setMaxRequests(Math.max(dispatcher.getMaxRequests(), getAsyncMaxRequestsPerServer()));
+            myNativeClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .build();
         }
 
         return myNativeClient;
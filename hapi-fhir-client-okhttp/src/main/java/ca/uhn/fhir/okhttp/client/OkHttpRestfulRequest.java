@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /*
  * #%L
@@ -31,8 +33,10 @@ import ca.uhn.fhir.rest.client.api.IHttpResponse;
 import ca.uhn.fhir.util.StopWatch;
 import okhttp3.Call;
 import okhttp3.Call.Factory;
+import okhttp3.Callback;
 import okhttp3.Request;
 import okhttp3.RequestBody;
+import okhttp3.Response;
 
 /**
  * Adapter for building an OkHttp-specific request.
@@ -73,6 +77,31 @@ public class OkHttpRestfulRequest implements IHttpRequest {
 		 return new OkHttpRestfulResponse(call.execute(), responseStopWatch);
     }
 
+    /**
+     * Enqueues the call on the OkHttp dispatcher, so that no thread is blocked while
+     * waiting for the server to respond. The executor is not used.
+     */
+    @Override
+    public CompletableFuture<IHttpResponse> executeAsync(Executor theExecutor) {
+		 StopWatch responseStopWatch = new StopWatch();
+		 myRequestBuilder.method(getHttpVerbName(), myRequestBody);
+		 Call call = myClient.newCall(myRequestBuilder.build());
+
+		 CompletableFuture<IHttpResponse> retVal = new CompletableFuture<>();
+		 call.enqueue(new Callback() {
+			 @Override
+			 public void onFailure(Call theCall, IOException theException) {
+				 retVal.completeExceptionally(theException);
+			 }
+
+			 @Override
+			 public void onResponse(Call theCall, Response theResponse) {
+				 retVal.complete(new OkHttpRestfulResponse(theResponse, responseStopWatch));
+			 }
+		 });
+		 return retVal;
+    }
+
     @Override
     public Map<String, List<String>> getAllHeaders() {
         return Collections.unmodifiableMap(myRequestBuilder.build().headers().toMultimap());
@@ -5,6 +5,9 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -34,10 +37,13 @@ import ca.uhn.fhir.okhttp.client.OkHttpRestfulClientFactory;
 import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.rest.api.*;
 import ca.uhn.fhir.rest.client.api.*;
+import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
 import ca.uhn.fhir.rest.client.exceptions.InvalidResponseException;
 import ca.uhn.fhir.rest.client.impl.RestfulClientFactory;
 import ca.uhn.fhir.rest.client.interceptor.LoggingInterceptor;
 import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.util.PortUtil;
 
 public class GenericOkHttpClientDstu2Test {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(GenericOkHttpClientDstu2Test.class);
@@ -1119,6 +1125,89 @@ public class GenericOkHttpClientDstu2Test {
 		assertEquals("http://localhost:" + ourPort + "/fhir/prev", ourRequestUri);
 	}
 
+	@Test
+	public void testReadAsync() throws Exception {
+		Patient patient = new Patient();
+		patient.addName().addFamily("FAM");
+		ourResponseContentType = Constants.CT_FHIR_XML + "; charset=UTF-8";
+		ourResponseBody = ourCtx.newXmlParser().encodeResourceToString(patient);
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://localhost:" + ourPort + "/fhir");
+
+		CompletableFuture<Patient> future = client.read().resource(Patient.class).withId("123").executeAsync();
+		Patient response = future.get(10, TimeUnit.SECONDS);
+
+		assertEquals("http://localhost:" + ourPort + "/fhir/Patient/123", ourRequestUri);
+		assertEquals("GET", ourRequestMethod);
+		assertEquals("FAM", response.getName().get(0).getFamily().get(0).getValue());
+	}
+
+	@Test
+	public void testReadAsyncWithErrorResponse() throws Exception {
+		OperationOutcome oo = new OperationOutcome();
+		oo.addIssue().setDiagnostics("NOT FOUND");
+		ourResponseStatus = 404;
+		ourResponseContentType = Constants.CT_FHIR_XML + "; charset=UTF-8";
+		ourResponseBody = ourCtx.newXmlParser().encodeResourceToString(oo);
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://localhost:" + ourPort + "/fhir");
+
+		CompletableFuture<Patient> future = client.read().resource(Patient.class).withId("123").executeAsync();
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals(ResourceNotFoundException.class, e.getCause().getClass());
+			assertThat(e.getCause().getMessage(), containsString("NOT FOUND"));
+		}
+	}
+
+	@Test
+	public void testReadAsyncConnectionRefused() throws Exception {
+		int port = PortUtil.findFreePort();
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://localhost:" + port + "/fhir");
+
+		CompletableFuture<Patient> future = client.read().resource(Patient.class).withId("123").executeAsync();
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals(FhirClientConnectionException.class, e.getCause().getClass());
+		}
+	}
+
+	@Test
+	public void testSearchAsyncRespectsMaxRequestsPerServer() throws Exception {
+		Bundle bundle = new Bundle();
+		bundle.addEntry().setResource(new Patient().setId("Patient/1"));
+		ourResponseContentType = Constants.CT_FHIR_XML + "; charset=UTF-8";
+		ourResponseBody = ourCtx.newXmlParser().encodeResourceToString(bundle);
+		ourRequestUriAll = Collections.synchronizedList(new ArrayList<String>());
+
+		ourCtx.getRestfulClientFactory().setAsyncMaxRequestsPerServer(1);
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://localhost:" + ourPort + "/fhir");
+
+		List<CompletableFuture<Bundle>> futures = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			futures.add(client
+				.search()
+				.forResource(Patient.class)
+				.where(Patient.NAME.matches().value("NAME" + i))
+				.returnBundle(Bundle.class)
+				.executeAsync());
+		}
+
+		for (CompletableFuture<Bundle> next : futures) {
+			Bundle response = next.get(10, TimeUnit.SECONDS);
+			assertEquals("Patient/1", response.getEntryFirstRep().getResource().getIdElement().toUnqualifiedVersionless().getValue());
+		}
+
+		assertEquals(5, ourRequestUriAll.size());
+		for (int i = 0; i < 5; i++) {
+			assertThat(ourRequestUriAll, hasItem("http://localhost:" + ourPort + "/fhir/Patient?name=NAME" + i));
+		}
+	}
+
 	@Test
 	public void testReadByUri() throws Exception {
 		Patient patient = new Patient();
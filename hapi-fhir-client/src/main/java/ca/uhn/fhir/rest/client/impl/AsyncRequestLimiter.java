@@ -0,0 +1,138 @@
+package ca.uhn.fhir.rest.client.impl;
+
+/*
+ * #%L
+ * HAPI FHIR - Client Framework
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of asynchronous requests which are in flight to a single
+ * server at any given time. Requests submitted while the limit is reached are
+ * queued (without blocking the submitting thread) and started as earlier
+ * requests complete.
+ */
+class AsyncRequestLimiter {
+
+	private final Deque<Runnable> myPending = new ArrayDeque<>();
+	private int myInFlight;
+	private volatile int myMaxInFlight;
+	private int myPendingReleases;
+	private boolean myReleasing;
+
+	AsyncRequestLimiter(int theMaxInFlight) {
+		setMaxInFlight(theMaxInFlight);
+	}
+
+	synchronized int getInFlight() {
+		return myInFlight;
+	}
+
+	synchronized int getPending() {
+		return myPending.size();
+	}
+
+	void setMaxInFlight(int theMaxInFlight) {
+		Validate.isTrue(theMaxInFlight > 0, "theMaxInFlight must be > 0");
+		myMaxInFlight = theMaxInFlight;
+	}
+
+	/**
+	 * Starts the given task immediately if fewer than the maximum number of
+	 * tasks are in flight, or queues it otherwise
+	 *
+	 * @param theTask Starts the request and returns a future which completes when the request (including response processing) is complete
+	 * @return A future which mirrors the future returned by the task
+	 */
+	<T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> theTask) {
+		CompletableFuture<T> retVal = new CompletableFuture<>();
+		Runnable start = () -> {
+			CompletableFuture<T> future;
+			try {
+				future = theTask.get();
+			} catch (Throwable t) {
+				future = new CompletableFuture<>();
+				future.completeExceptionally(t);
+			}
+			future.whenComplete((theResult, theError) -> {
+				release();
+				if (theError != null) {
+					retVal.completeExceptionally(theError);
+				} else {
+					retVal.complete(theResult);
+				}
+			});
+		};
+
+		boolean startNow;
+		synchronized (this) {
+			startNow = myInFlight < myMaxInFlight;
+			if (startNow) {
+				myInFlight++;
+			} else {
+				myPending.add(start);
+			}
+		}
+
+		if (startNow) {
+			start.run();
+		}
+		return retVal;
+	}
+
+	/**
+	 * Called when a task completes. The freed slot is handed to the next queued
+	 * task, if any. Tasks whose futures complete synchronously call back into
+	 * this method while it is starting them, so rather than recursing (which
+	 * could overflow the stack with a long queue) those nested calls are just
+	 * counted and handled by the loop of the outermost call.
+	 */
+	private void release() {
+		synchronized (this) {
+			myPendingReleases++;
+			if (myReleasing) {
+				return;
+			}
+			myReleasing = true;
+		}
+
+		while (true) {
+			Runnable next;
+			synchronized (this) {
+				if (myPendingReleases == 0) {
+					myReleasing = false;
+					return;
+				}
+				myPendingReleases--;
+				next = myPending.poll();
+				if (next == null) {
+					myInFlight--;
+					continue;
+				}
+			}
+			next.run();
+		}
+	}
+
+}
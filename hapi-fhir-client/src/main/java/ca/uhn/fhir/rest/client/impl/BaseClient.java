@@ -45,6 +45,10 @@ import org.hl7.fhir.instance.model.api.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -78,6 +82,9 @@ public abstract class BaseClient implements IRestfulClient {
 		myClient = theClient;
 		myUrlBase = theUrlBase;
 		myFactory = theFactory;
+		if (theFactory != null) {
+			myInterceptors.addAll(theFactory.getInterceptors());
+		}
 
 		/*
 		 * This property is used by unit tests - do not rely on it in production code
@@ -218,169 +225,290 @@ public abstract class BaseClient implements IRestfulClient {
 		IHttpRequest httpRequest = null;
 		IHttpResponse response = null;
 		try {
-			Map<String, List<String>> params = createExtraParams(theCustomAcceptHeader);
-
-			if (clientInvocation instanceof HttpGetClientInvocation) {
-				if (myRequestFormatParamStyle == RequestFormatParamStyleEnum.SHORT && isBlank(theCustomAcceptHeader)) {
-					if (theEncoding == EncodingEnum.XML) {
-						params.put(Constants.PARAM_FORMAT, Collections.singletonList("xml"));
-					} else if (theEncoding == EncodingEnum.JSON) {
-						params.put(Constants.PARAM_FORMAT, Collections.singletonList("json"));
-					}
-				}
-			}
-
-			if (theSummaryMode != null) {
-				params.put(Constants.PARAM_SUMMARY, Collections.singletonList(theSummaryMode.getCode()));
-			} else if (mySummary != null) {
-				params.put(Constants.PARAM_SUMMARY, Collections.singletonList(mySummary.getCode()));
-			}
+			httpRequest = createHttpRequest(clientInvocation, theEncoding, thePrettyPrint, theLogRequestAndResponse, theSummaryMode, theSubsetElements, theCacheControlDirective, theCustomAcceptHeader);
 
-			if (thePrettyPrint == Boolean.TRUE) {
-				params.put(Constants.PARAM_PRETTY, Collections.singletonList(Constants.PARAM_PRETTY_VALUE_TRUE));
+			response = getCachedResponse(httpRequest);
+			if (response == null) {
+				response = httpRequest.execute();
+				response = cacheResponse(httpRequest, response);
 			}
 
-			if (theSubsetElements != null && theSubsetElements.isEmpty() == false) {
-				params.put(Constants.PARAM_ELEMENTS, Collections.singletonList(StringUtils.join(theSubsetElements, ',')));
+			return handleResponse(theContext, binding, response, theLogRequestAndResponse);
+		} catch (Exception e) {
+			throw translateInvocationException(httpRequest, e);
+		} finally {
+			if (response != null) {
+				response.close();
 			}
+		}
+	}
 
-			EncodingEnum encoding = getEncoding();
-			if (theEncoding != null) {
-				encoding = theEncoding;
-			}
+	/**
+	 * Asynchronous equivalent of {@link #invokeClient(FhirContext, IClientResponseHandler, BaseHttpClientInvocation, EncodingEnum, Boolean, boolean, SummaryEnum, Set, CacheControlDirective, String)}.
+	 * The request is sent once fewer than {@link IRestfulClientFactory#getAsyncMaxRequestsPerServer()} requests
+	 * are in flight to this server, and the response is processed using the factory's
+	 * {@link IRestfulClientFactory#getAsyncExecutor() async executor}.
+	 */
+	<T> CompletableFuture<T> invokeClientAsync(FhirContext theContext, IClientResponseHandler<T> binding, BaseHttpClientInvocation clientInvocation, EncodingEnum theEncoding, Boolean thePrettyPrint,
+															 boolean theLogRequestAndResponse, SummaryEnum theSummaryMode, Set<String> theSubsetElements, CacheControlDirective theCacheControlDirective, String theCustomAcceptHeader) {
+		Executor executor = myFactory.getAsyncExecutor();
+		AsyncRequestLimiter limiter = myFactory.getAsyncRequestLimiter(myUrlBase);
 
-			httpRequest = clientInvocation.asHttpRequest(myUrlBase, params, encoding, thePrettyPrint);
+		/*
+		 * The conformance check may need to fetch the server's capability statement, so
+		 * it is done before taking a slot from the limiter, and without blocking the caller
+		 */
+		CompletableFuture<Void> validated;
+		if (myDontValidateConformance) {
+			validated = CompletableFuture.completedFuture(null);
+		} else {
+			validated = myFactory.validateServerBaseIfConfiguredToDoSoAsync(myUrlBase, myClient, this);
+		}
 
-			if (isNotBlank(theCustomAcceptHeader)) {
-				httpRequest.removeHeaders(Constants.HEADER_ACCEPT);
-				httpRequest.addHeader(Constants.HEADER_ACCEPT, theCustomAcceptHeader);
+		return validated.thenCompose(t -> limiter.submit(() -> {
+			IHttpRequest httpRequest = null;
+			CompletableFuture<IHttpResponse> responseFuture;
+			try {
+				httpRequest = createHttpRequest(clientInvocation, theEncoding, thePrettyPrint, theLogRequestAndResponse, theSummaryMode, theSubsetElements, theCacheControlDirective, theCustomAcceptHeader);
+				IHttpResponse cachedResponse = getCachedResponse(httpRequest);
+				if (cachedResponse != null) {
+					responseFuture = CompletableFuture.completedFuture(cachedResponse);
+				} else {
+					final IHttpRequest sentRequest = httpRequest;
+					responseFuture = httpRequest.executeAsync(executor).thenApply(theResponse -> {
+						try {
+							return cacheResponse(sentRequest, theResponse);
+						} catch (IOException e) {
+							theResponse.close();
+							throw new CompletionException(e);
+						}
+					});
+				}
+			} catch (Exception e) {
+				responseFuture = new CompletableFuture<>();
+				responseFuture.completeExceptionally(e);
 			}
 
-			if (theCacheControlDirective != null) {
-				StringBuilder b = new StringBuilder();
-				addToCacheControlHeader(b, Constants.CACHE_CONTROL_NO_CACHE, theCacheControlDirective.isNoCache());
-				addToCacheControlHeader(b, Constants.CACHE_CONTROL_NO_STORE, theCacheControlDirective.isNoStore());
-				if (theCacheControlDirective.getMaxResults() != null) {
-					addToCacheControlHeader(b, Constants.CACHE_CONTROL_MAX_RESULTS + "=" + Integer.toString(theCacheControlDirective.getMaxResults().intValue()), true);
+			final IHttpRequest request = httpRequest;
+			return responseFuture.handleAsync((theResponse, theError) -> {
+				if (theError != null) {
+					Throwable cause = theError instanceof CompletionException && theError.getCause() != null ? theError.getCause() : theError;
+					if (cause instanceof Exception) {
+						throw translateInvocationException(request, (Exception) cause);
+					}
+					throw new CompletionException(cause);
 				}
-				if (b.length() > 0) {
-					httpRequest.addHeader(Constants.HEADER_CACHE_CONTROL, b.toString());
+				try {
+					return handleResponse(theContext, binding, theResponse, theLogRequestAndResponse);
+				} catch (Exception e) {
+					throw translateInvocationException(request, e);
+				} finally {
+					theResponse.close();
 				}
-			}
+			}, executor);
+		}));
+	}
 
-			if (theLogRequestAndResponse) {
-				ourLog.info("Client invoking: {}", httpRequest);
-				String body = httpRequest.getRequestBodyFromStream();
-				if (body != null) {
-					ourLog.info("Client request body: {}", body);
+	/**
+	 * Runs a blocking client operation on the factory's {@link IRestfulClientFactory#getAsyncExecutor() async executor},
+	 * subject to the same per-server in-flight limit as {@link #invokeClientAsync(FhirContext, IClientResponseHandler, BaseHttpClientInvocation, EncodingEnum, Boolean, boolean, SummaryEnum, Set, CacheControlDirective, String)}.
+	 * This is used for operations which do not yet have a non-blocking implementation.
+	 */
+	<T> CompletableFuture<T> executeBlockingAsync(Supplier<T> theOperation) {
+		Executor executor = myFactory.getAsyncExecutor();
+		return myFactory.getAsyncRequestLimiter(myUrlBase).submit(() -> CompletableFuture.supplyAsync(theOperation, executor));
+	}
+
+	private IHttpRequest createHttpRequest(BaseHttpClientInvocation clientInvocation, EncodingEnum theEncoding, Boolean thePrettyPrint, boolean theLogRequestAndResponse, SummaryEnum theSummaryMode,
+														Set<String> theSubsetElements, CacheControlDirective theCacheControlDirective, String theCustomAcceptHeader) throws IOException {
+		Map<String, List<String>> params = createExtraParams(theCustomAcceptHeader);
+
+		if (clientInvocation instanceof HttpGetClientInvocation) {
+			if (myRequestFormatParamStyle == RequestFormatParamStyleEnum.SHORT && isBlank(theCustomAcceptHeader)) {
+				if (theEncoding == EncodingEnum.XML) {
+					params.put(Constants.PARAM_FORMAT, Collections.singletonList("xml"));
+				} else if (theEncoding == EncodingEnum.JSON) {
+					params.put(Constants.PARAM_FORMAT, Collections.singletonList("json"));
 				}
 			}
+		}
 
-			for (IClientInterceptor nextInterceptor : myInterceptors) {
-				nextInterceptor.interceptRequest(httpRequest);
-			}
+		if (theSummaryMode != null) {
+			params.put(Constants.PARAM_SUMMARY, Collections.singletonList(theSummaryMode.getCode()));
+		} else if (mySummary != null) {
+			params.put(Constants.PARAM_SUMMARY, Collections.singletonList(mySummary.getCode()));
+		}
+
+		if (thePrettyPrint == Boolean.TRUE) {
+			params.put(Constants.PARAM_PRETTY, Collections.singletonList(Constants.PARAM_PRETTY_VALUE_TRUE));
+		}
 
-			response = httpRequest.execute();
+		if (theSubsetElements != null && theSubsetElements.isEmpty() == false) {
+			params.put(Constants.PARAM_ELEMENTS, Collections.singletonList(StringUtils.join(theSubsetElements, ',')));
+		}
 
-			for (IClientInterceptor nextInterceptor : myInterceptors) {
-				nextInterceptor.interceptResponse(response);
+		EncodingEnum encoding = getEncoding();
+		if (theEncoding != null) {
+			encoding = theEncoding;
+		}
+
+		IHttpRequest httpRequest = clientInvocation.asHttpRequest(myUrlBase, params, encoding, thePrettyPrint);
+
+		if (isNotBlank(theCustomAcceptHeader)) {
+			httpRequest.removeHeaders(Constants.HEADER_ACCEPT);
+			httpRequest.addHeader(Constants.HEADER_ACCEPT, theCustomAcceptHeader);
+		}
+
+		if (theCacheControlDirective != null) {
+			StringBuilder b = new StringBuilder();
+			addToCacheControlHeader(b, Constants.CACHE_CONTROL_NO_CACHE, theCacheControlDirective.isNoCache());
+			addToCacheControlHeader(b, Constants.CACHE_CONTROL_NO_STORE, theCacheControlDirective.isNoStore());
+			if (theCacheControlDirective.getMaxResults() != null) {
+				addToCacheControlHeader(b, Constants.CACHE_CONTROL_MAX_RESULTS + "=" + Integer.toString(theCacheControlDirective.getMaxResults().intValue()), true);
+			}
+			if (b.length() > 0) {
+				httpRequest.addHeader(Constants.HEADER_CACHE_CONTROL, b.toString());
 			}
+		}
 
-			String mimeType;
-			if (Constants.STATUS_HTTP_204_NO_CONTENT == response.getStatus()) {
-				mimeType = null;
-			} else {
-				mimeType = response.getMimeType();
+		if (theLogRequestAndResponse) {
+			ourLog.info("Client invoking: {}", httpRequest);
+			String body = httpRequest.getRequestBodyFromStream();
+			if (body != null) {
+				ourLog.info("Client request body: {}", body);
 			}
+		}
 
-			Map<String, List<String>> headers = response.getAllHeaders();
+		for (IClientInterceptor nextInterceptor : myInterceptors) {
+			nextInterceptor.interceptRequest(httpRequest);
+		}
 
-			if (response.getStatus() < 200 || response.getStatus() > 299) {
-				String body = null;
-				try (Reader reader = response.createReader()) {
-					body = IOUtils.toString(reader);
-				} catch (Exception e) {
-					ourLog.debug("Failed to read input stream", e);
-				}
+		return httpRequest;
+	}
 
-				String message = "HTTP " + response.getStatus() + " " + response.getStatusInfo();
-				IBaseOperationOutcome oo = null;
-				if (Constants.CT_TEXT.equals(mimeType)) {
-					message = message + ": " + body;
-				} else {
-					EncodingEnum enc = EncodingEnum.forContentType(mimeType);
-					if (enc != null) {
-						IParser p = enc.newParser(theContext);
-						try {
-							// TODO: handle if something other than OO comes back
-							oo = (IBaseOperationOutcome) p.parseResource(body);
-							String details = OperationOutcomeUtil.getFirstIssueDetails(getFhirContext(), oo);
-							if (isNotBlank(details)) {
-								message = message + ": " + details;
-							}
-						} catch (Exception e) {
-							ourLog.debug("Failed to process OperationOutcome response");
-						}
-					}
+	private IHttpResponse getCachedResponse(IHttpRequest theHttpRequest) {
+		for (IClientInterceptor nextInterceptor : myInterceptors) {
+			if (nextInterceptor instanceof ICachingClientInterceptor) {
+				IHttpResponse cachedResponse = ((ICachingClientInterceptor) nextInterceptor).getCachedResponse(theHttpRequest);
+				if (cachedResponse != null) {
+					return cachedResponse;
 				}
+			}
+		}
+		return null;
+	}
 
-				keepResponseAndLogIt(theLogRequestAndResponse, response, body);
+	private IHttpResponse cacheResponse(IHttpRequest theHttpRequest, IHttpResponse theResponse) throws IOException {
+		IHttpResponse retVal = theResponse;
+		for (IClientInterceptor nextInterceptor : myInterceptors) {
+			if (nextInterceptor instanceof ICachingClientInterceptor) {
+				retVal = ((ICachingClientInterceptor) nextInterceptor).cacheResponse(theHttpRequest, retVal);
+			}
+		}
+		return retVal;
+	}
 
-				BaseServerResponseException exception = BaseServerResponseException.newInstance(response.getStatus(), message);
-				exception.setOperationOutcome(oo);
+	private <T> T handleResponse(FhirContext theContext, IClientResponseHandler<T> binding, IHttpResponse response, boolean theLogRequestAndResponse) throws IOException {
+		for (IClientInterceptor nextInterceptor : myInterceptors) {
+			nextInterceptor.interceptResponse(response);
+		}
 
-				if (body != null) {
-					exception.setResponseBody(body);
-				}
+		String mimeType;
+		if (Constants.STATUS_HTTP_204_NO_CONTENT == response.getStatus()) {
+			mimeType = null;
+		} else {
+			mimeType = response.getMimeType();
+		}
 
-				throw exception;
+		Map<String, List<String>> headers = response.getAllHeaders();
+
+		if (response.getStatus() < 200 || response.getStatus() > 299) {
+			String body = null;
+			try (Reader reader = response.createReader()) {
+				body = IOUtils.toString(reader);
+			} catch (Exception e) {
+				ourLog.debug("Failed to read input stream", e);
 			}
-			if (binding instanceof IClientResponseHandlerHandlesBinary) {
-				IClientResponseHandlerHandlesBinary<T> handlesBinary = (IClientResponseHandlerHandlesBinary<T>) binding;
-				if (handlesBinary.isBinary()) {
-					try (InputStream reader = response.readEntity()) {
-						return handlesBinary.invokeClientForBinary(mimeType, reader, response.getStatus(), headers);
+
+			String message = "HTTP " + response.getStatus() + " " + response.getStatusInfo();
+			IBaseOperationOutcome oo = null;
+			if (Constants.CT_TEXT.equals(mimeType)) {
+				message = message + ": " + body;
+			} else {
+				EncodingEnum enc = EncodingEnum.forContentType(mimeType);
+				if (enc != null) {
+					IParser p = enc.newParser(theContext);
+					try {
+						// TODO: handle if something other than OO comes back
+						oo = (IBaseOperationOutcome) p.parseResource(body);
+						String details = OperationOutcomeUtil.getFirstIssueDetails(getFhirContext(), oo);
+						if (isNotBlank(details)) {
+							message = message + ": " + details;
+						}
+					} catch (Exception e) {
+						ourLog.debug("Failed to process OperationOutcome response");
 					}
 				}
 			}
 
-			try (InputStream inputStream = response.readEntity()) {
-				InputStream inputStreamToReturn = inputStream;
+			keepResponseAndLogIt(theLogRequestAndResponse, response, body);
 
-				if (ourLog.isTraceEnabled() || myKeepResponses || theLogRequestAndResponse) {
-					if (inputStream != null) {
-						String responseString = IOUtils.toString(inputStream, Charsets.UTF_8);
-						keepResponseAndLogIt(theLogRequestAndResponse, response, responseString);
-						inputStreamToReturn = new ByteArrayInputStream(responseString.getBytes(Charsets.UTF_8));
-					}
+			BaseServerResponseException exception = BaseServerResponseException.newInstance(response.getStatus(), message);
+			exception.setOperationOutcome(oo);
+
+			if (body != null) {
+				exception.setResponseBody(body);
+			}
+
+			throw exception;
+		}
+		if (binding instanceof IClientResponseHandlerHandlesBinary) {
+			IClientResponseHandlerHandlesBinary<T> handlesBinary = (IClientResponseHandlerHandlesBinary<T>) binding;
+			if (handlesBinary.isBinary()) {
+				try (InputStream reader = response.readEntity()) {
+					return handlesBinary.invokeClientForBinary(mimeType, reader, response.getStatus(), headers);
 				}
+			}
+		}
+
+		try (InputStream inputStream = response.readEntity()) {
+			InputStream inputStreamToReturn = inputStream;
 
-				return binding.invokeClient(mimeType, inputStreamToReturn, response.getStatus(), headers);
+			if (ourLog.isTraceEnabled() || myKeepResponses || theLogRequestAndResponse) {
+				if (inputStream != null) {
+					String responseString = IOUtils.toString(inputStream, Charsets.UTF_8);
+					keepResponseAndLogIt(theLogRequestAndResponse, response, responseString);
+					inputStreamToReturn = new ByteArrayInputStream(responseString.getBytes(Charsets.UTF_8));
+				}
 			}
 
-		} catch (DataFormatException e) {
+			return binding.invokeClient(mimeType, inputStreamToReturn, response.getStatus(), headers);
+		}
+	}
+
+	private RuntimeException translateInvocationException(IHttpRequest theHttpRequest, Exception theException) {
+		if (theException instanceof DataFormatException) {
 			String msg;
-			if (httpRequest != null) {
-				msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", httpRequest.getHttpVerbName(), httpRequest.getUri(), e.toString());
+			if (theHttpRequest != null) {
+				msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", theHttpRequest.getHttpVerbName(), theHttpRequest.getUri(), theException.toString());
 			} else {
-				msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", "UNKNOWN", "UNKNOWN", e.toString());
+				msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", "UNKNOWN", "UNKNOWN", theException.toString());
 			}
-			throw new FhirClientConnectionException(msg, e);
-		} catch (IllegalStateException e) {
-			throw new FhirClientConnectionException(e);
-		} catch (IOException e) {
+			return new FhirClientConnectionException(msg, theException);
+		} else if (theException instanceof IllegalStateException) {
+			return new FhirClientConnectionException(theException);
+		} else if (theException instanceof IOException) {
 			String msg;
-			msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", httpRequest.getHttpVerbName(), httpRequest.getUri(), e.toString());
-			throw new FhirClientConnectionException(msg, e);
-		} catch (RuntimeException e) {
-			throw e;
-		} catch (Exception e) {
-			throw new FhirClientConnectionException(e);
-		} finally {
-			if (response != null) {
-				response.close();
+			if (theHttpRequest != null) {
+				msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", theHttpRequest.getHttpVerbName(), theHttpRequest.getUri(), theException.toString());
+			} else {
+				msg = getFhirContext().getLocalizer().getMessage(BaseClient.class, "failedToParseResponse", "UNKNOWN", "UNKNOWN", theException.toString());
 			}
+			return new FhirClientConnectionException(msg, theException);
+		} else if (theException instanceof RuntimeException) {
+			return (RuntimeException) theException;
 		}
+		return new FhirClientConnectionException(theException);
 	}
 
 	private void addToCacheControlHeader(StringBuilder theBuilder, String theDirective, boolean theActive) {
@@ -57,6 +57,8 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.apache.commons.lang3.StringUtils.*;
 
@@ -99,24 +101,66 @@ public class GenericClient extends BaseClient implements IGenericClient {
 
 	private <T extends IBaseResource> T doReadOrVRead(final Class<T> theType, IIdType theId, boolean theVRead, ICallable<T> theNotModifiedHandler, String theIfVersionMatches, Boolean thePrettyPrint,
 																	  SummaryEnum theSummary, EncodingEnum theEncoding, Set<String> theSubsetElements, String theCustomAcceptHeaderValue) {
-		String resName = toResourceName(theType);
+		IIdType id = toReadOrVReadId(theType, theId);
+		HttpGetClientInvocation invocation = createReadOrVReadInvocation(theType, id, theVRead, theIfVersionMatches, theCustomAcceptHeaderValue);
+
+		boolean allowHtmlResponse = SummaryEnum.TEXT.equals(theSummary);
+		ResourceResponseHandler<T> binding = new ResourceResponseHandler<>(theType, (Class<? extends IBaseResource>) null, id, allowHtmlResponse);
+
+		if (theNotModifiedHandler == null) {
+			return invokeClient(myContext, binding, invocation, theEncoding, thePrettyPrint, myLogRequestAndResponse, theSummary, theSubsetElements, null, theCustomAcceptHeaderValue);
+		}
+		try {
+			return invokeClient(myContext, binding, invocation, theEncoding, thePrettyPrint, myLogRequestAndResponse, theSummary, theSubsetElements, null, theCustomAcceptHeaderValue);
+		} catch (NotModifiedException e) {
+			return theNotModifiedHandler.call();
+		}
+
+	}
+
+	private <T extends IBaseResource> CompletableFuture<T> doReadOrVReadAsync(final Class<T> theType, IIdType theId, boolean theVRead, ICallable<T> theNotModifiedHandler, String theIfVersionMatches, Boolean thePrettyPrint,
+																									 SummaryEnum theSummary, EncodingEnum theEncoding, Set<String> theSubsetElements, String theCustomAcceptHeaderValue) {
+		IIdType id = toReadOrVReadId(theType, theId);
+		HttpGetClientInvocation invocation = createReadOrVReadInvocation(theType, id, theVRead, theIfVersionMatches, theCustomAcceptHeaderValue);
+
+		boolean allowHtmlResponse = SummaryEnum.TEXT.equals(theSummary);
+		ResourceResponseHandler<T> binding = new ResourceResponseHandler<>(theType, (Class<? extends IBaseResource>) null, id, allowHtmlResponse);
+
+		CompletableFuture<T> retVal = invokeClientAsync(myContext, binding, invocation, theEncoding, thePrettyPrint, myLogRequestAndResponse, theSummary, theSubsetElements, null, theCustomAcceptHeaderValue);
+		if (theNotModifiedHandler == null) {
+			return retVal;
+		}
+		return retVal.exceptionally(t -> {
+			Throwable cause = t instanceof CompletionException ? t.getCause() : t;
+			if (cause instanceof NotModifiedException) {
+				return theNotModifiedHandler.call();
+			}
+			throw t instanceof CompletionException ? (CompletionException) t : new CompletionException(t);
+		});
+	}
+
+	private IIdType toReadOrVReadId(Class<? extends IBaseResource> theType, IIdType theId) {
 		IIdType id = theId;
 		if (!id.hasBaseUrl()) {
-			id = new IdDt(resName, id.getIdPart(), id.getVersionIdPart());
+			id = new IdDt(toResourceName(theType), id.getIdPart(), id.getVersionIdPart());
 		}
+		return id;
+	}
 
+	private HttpGetClientInvocation createReadOrVReadInvocation(Class<? extends IBaseResource> theType, IIdType theId, boolean theVRead, String theIfVersionMatches, String theCustomAcceptHeaderValue) {
 		HttpGetClientInvocation invocation;
-		if (id.hasBaseUrl()) {
+		if (theId.hasBaseUrl()) {
 			if (theVRead) {
-				invocation = ReadMethodBinding.createAbsoluteVReadInvocation(getFhirContext(), id);
+				invocation = ReadMethodBinding.createAbsoluteVReadInvocation(getFhirContext(), theId);
 			} else {
-				invocation = ReadMethodBinding.createAbsoluteReadInvocation(getFhirContext(), id);
+				invocation = ReadMethodBinding.createAbsoluteReadInvocation(getFhirContext(), theId);
 			}
 		} else {
+			String resName = toResourceName(theType);
 			if (theVRead) {
-				invocation = ReadMethodBinding.createVReadInvocation(getFhirContext(), id, resName);
+				invocation = ReadMethodBinding.createVReadInvocation(getFhirContext(), theId, resName);
 			} else {
-				invocation = ReadMethodBinding.createReadInvocation(getFhirContext(), id, resName);
+				invocation = ReadMethodBinding.createReadInvocation(getFhirContext(), theId, resName);
 			}
 		}
 		if (isKeepResponses()) {
@@ -126,19 +170,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 		if (theIfVersionMatches != null) {
 			invocation.addHeader(Constants.HEADER_IF_NONE_MATCH, '"' + theIfVersionMatches + '"');
 		}
-
-		boolean allowHtmlResponse = SummaryEnum.TEXT.equals(theSummary);
-		ResourceResponseHandler<T> binding = new ResourceResponseHandler<>(theType, (Class<? extends IBaseResource>) null, id, allowHtmlResponse);
-
-		if (theNotModifiedHandler == null) {
-			return invokeClient(myContext, binding, invocation, theEncoding, thePrettyPrint, myLogRequestAndResponse, theSummary, theSubsetElements, null, theCustomAcceptHeaderValue);
-		}
-		try {
-			return invokeClient(myContext, binding, invocation, theEncoding, thePrettyPrint, myLogRequestAndResponse, theSummary, theSubsetElements, null, theCustomAcceptHeaderValue);
-		} catch (NotModifiedException e) {
-			return theNotModifiedHandler.call();
-		}
-
+		return invocation;
 	}
 
 	@Override
@@ -416,6 +448,27 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			return resp;
 		}
 
+		/**
+		 * Asynchronous equivalent of {@link #invoke(Map, IClientResponseHandler, BaseHttpClientInvocation)}
+		 */
+		protected <Z> CompletableFuture<Z> invokeAsync(Map<String, List<String>> theParams, IClientResponseHandler<Z> theHandler, BaseHttpClientInvocation theInvocation) {
+			if (isKeepResponses()) {
+				myLastRequest = theInvocation.asHttpRequest(getServerBase(), theParams, getEncoding(), myPrettyPrint);
+			}
+
+			return invokeClientAsync(myContext, theHandler, theInvocation, myParamEncoding, myPrettyPrint, myQueryLogRequestAndResponse || myLogRequestAndResponse, mySummaryMode, mySubsetElements, myCacheControlDirective, myCustomAcceptHeaderValue);
+		}
+
+		/**
+		 * Operations which can not yet issue a non-blocking request run {@link #execute()}
+		 * on the client's async executor. Subclasses override this method where a
+		 * non-blocking implementation is available.
+		 */
+		@Override
+		public CompletableFuture<Y> executeAsync() {
+			return executeBlockingAsync(this::execute);
+		}
+
 		protected IBaseResource parseResourceBody(String theResourceBody) {
 			EncodingEnum encoding = EncodingEnum.detectEncodingNoDefault(theResourceBody);
 			if (encoding == null) {
@@ -715,6 +768,16 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			return invoke(params, binding, invocation);
 		}
 
+		@Override
+		public CompletableFuture<Object> executeAsync() {
+			IClientResponseHandler binding;
+			binding = new ResourceResponseHandler(myBundleType, getPreferResponseTypes());
+			HttpSimpleGetClientInvocation invocation = new HttpSimpleGetClientInvocation(myContext, myUrl);
+
+			Map<String, List<String>> params = null;
+			return invokeAsync(params, binding, invocation);
+		}
+
 	}
 
 	@SuppressWarnings("rawtypes")
@@ -1519,6 +1582,12 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			return doReadOrVRead(myType.getImplementingClass(), myId, false, myNotModifiedHandler, myIfVersionMatches, myPrettyPrint, mySummaryMode, myParamEncoding, getSubsetElements(), getCustomAcceptHeaderValue());
 		}
 
+		@Override
+		public CompletableFuture executeAsync() {
+			boolean vread = myId.hasVersionIdPart();
+			return doReadOrVReadAsync(myType.getImplementingClass(), myId, vread, myNotModifiedHandler, myIfVersionMatches, myPrettyPrint, mySummaryMode, myParamEncoding, getSubsetElements(), getCustomAcceptHeaderValue());
+		}
+
 		@Override
 		public IReadIfNoneMatch ifVersionMatches(String theVersion) {
 			myIfVersionMatches = theVersion;
@@ -1716,6 +1785,18 @@ public class GenericClient extends BaseClient implements IGenericClient {
 
 		@Override
 		public OUTPUT execute() {
+			return (OUTPUT) doExecute(false);
+		}
+
+		@Override
+		public CompletableFuture<OUTPUT> executeAsync() {
+			return (CompletableFuture<OUTPUT>) doExecute(true);
+		}
+
+		/**
+		 * @return The search result, or a future for it if <code>theAsync</code> is true
+		 */
+		private Object doExecute(boolean theAsync) {
 
 			Map<String, List<String>> params = getParamMap();
 
@@ -1806,7 +1887,10 @@ public class GenericClient extends BaseClient implements IGenericClient {
 				invocation = SearchMethodBinding.createSearchInvocation(myContext, myResourceName, params, resourceId, myCompartmentName, mySearchStyle);
 			}
 
-			return (OUTPUT) invoke(params, binding, invocation);
+			if (theAsync) {
+				return invokeAsync(params, binding, invocation);
+			}
+			return invoke(params, binding, invocation);
 
 		}
 
@@ -1851,6 +1935,18 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			return this;
 		}
 
+		@Override
+		public ISearchResultIterator iterate(Class theResourceType) {
+			return iterate(theResourceType, ISearchResultIterator.DEFAULT_PREFETCH_PAGES, ISearchResultIterator.DEFAULT_MAX_BUFFERED_RESOURCES);
+		}
+
+		@Override
+		public ISearchResultIterator iterate(Class theResourceType, int thePrefetchPages, int theMaxBufferedResources) {
+			PrefetchingSearchResultIterator retVal = new PrefetchingSearchResultIterator(GenericClient.this, myContext, theResourceType, thePrefetchPages, theMaxBufferedResources);
+			retVal.start((CompletableFuture<?>) doExecute(true));
+			return retVal;
+		}
+
 		@Override
 		public IQuery returnBundle(Class theClass) {
 			if (theClass == null) {
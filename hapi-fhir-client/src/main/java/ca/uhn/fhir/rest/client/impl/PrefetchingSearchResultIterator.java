@@ -0,0 +1,209 @@
+package ca.uhn.fhir.rest.client.impl;
+
+/*
+ * #%L
+ * HAPI FHIR - Client Framework
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
+import ca.uhn.fhir.rest.gclient.ISearchResultIterator;
+import ca.uhn.fhir.util.BundleUtil;
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Iterates over all pages of a search result, loading the next page(s) in the
+ * background while the current page is consumed.
+ * <p>
+ * Because the URL of each page is only known once the previous page has been
+ * loaded, pages are always requested one at a time. A new page is requested
+ * as soon as the previous one arrives, provided that fewer than the prefetch
+ * limit of pages and fewer than the maximum number of resources are loaded
+ * and waiting to be consumed.
+ * </p>
+ */
+class PrefetchingSearchResultIterator<T extends IBaseResource> implements ISearchResultIterator<T> {
+
+	private final IGenericClient myClient;
+	private final FhirContext myContext;
+	private final int myMaxBufferedResources;
+	private final int myPrefetchPages;
+	private final Class<T> myResourceType;
+	private final Deque<List<T>> myLoadedPages = new ArrayDeque<>();
+	private Class<? extends IBaseBundle> myBundleType;
+	private int myBufferedResources;
+	private boolean myClosed;
+	private Iterator<T> myCurrentPage = Collections.emptyIterator();
+	private Throwable myFailure;
+	private boolean myLoadInProgress;
+	private String myNextUrl;
+	private int myPagesLoaded;
+
+	PrefetchingSearchResultIterator(IGenericClient theClient, FhirContext theContext, Class<T> theResourceType, int thePrefetchPages, int theMaxBufferedResources) {
+		Validate.notNull(theResourceType, "theResourceType must not be null");
+		Validate.isTrue(thePrefetchPages > 0, "thePrefetchPages must be > 0");
+		Validate.isTrue(theMaxBufferedResources > 0, "theMaxBufferedResources must be > 0");
+		myClient = theClient;
+		myContext = theContext;
+		myResourceType = theResourceType;
+		myPrefetchPages = thePrefetchPages;
+		myMaxBufferedResources = theMaxBufferedResources;
+	}
+
+	/**
+	 * Starts iterating using the given (possibly still outstanding) first page of results
+	 */
+	void start(CompletableFuture<?> theFirstPage) {
+		synchronized (this) {
+			myLoadInProgress = true;
+		}
+		theFirstPage.whenComplete(this::pageLoaded);
+	}
+
+	@Override
+	public synchronized void close() {
+		myClosed = true;
+		myNextUrl = null;
+		myLoadedPages.clear();
+		myBufferedResources = 0;
+		myCurrentPage = Collections.emptyIterator();
+		notifyAll();
+	}
+
+	@Override
+	public synchronized int getPagesLoaded() {
+		return myPagesLoaded;
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (true) {
+			if (myCurrentPage.hasNext()) {
+				return true;
+			}
+
+			synchronized (this) {
+				while (myLoadedPages.isEmpty() && myFailure == null && !myClosed && (myLoadInProgress || myNextUrl != null)) {
+					loadNextPageIfAppropriate();
+					if (myLoadedPages.isEmpty() && myFailure == null && myLoadInProgress) {
+						try {
+							wait();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new FhirClientConnectionException(e);
+						}
+					}
+				}
+
+				if (myFailure != null) {
+					Throwable failure = myFailure;
+					myFailure = null;
+					myNextUrl = null;
+					if (failure instanceof RuntimeException) {
+						throw (RuntimeException) failure;
+					}
+					throw new FhirClientConnectionException(failure);
+				}
+
+				if (myLoadedPages.isEmpty()) {
+					return false;
+				}
+
+				List<T> page = myLoadedPages.removeFirst();
+				myBufferedResources -= page.size();
+				myCurrentPage = page.iterator();
+				loadNextPageIfAppropriate();
+			}
+		}
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return myCurrentPage.next();
+	}
+
+	private synchronized void loadNextPageIfAppropriate() {
+		if (myClosed || myLoadInProgress || myNextUrl == null) {
+			return;
+		}
+		if (myLoadedPages.size() >= myPrefetchPages || myBufferedResources >= myMaxBufferedResources) {
+			return;
+		}
+
+		String url = myNextUrl;
+		myNextUrl = null;
+		myLoadInProgress = true;
+
+		CompletableFuture<? extends IBaseBundle> future;
+		try {
+			future = myClient
+				.loadPage()
+				.byUrl(url)
+				.andReturnBundle(myBundleType)
+				.executeAsync();
+		} catch (RuntimeException e) {
+			pageLoaded(null, e);
+			return;
+		}
+		future.whenComplete(this::pageLoaded);
+	}
+
+	private synchronized void pageLoaded(Object theBundle, Throwable theFailure) {
+		myLoadInProgress = false;
+		if (myClosed) {
+			return;
+		}
+
+		if (theFailure != null) {
+			myFailure = theFailure instanceof CompletionException && theFailure.getCause() != null ? theFailure.getCause() : theFailure;
+		} else if (!(theBundle instanceof IBaseBundle)) {
+			String type = theBundle != null ? theBundle.getClass().getName() : "null";
+			myFailure = new IllegalStateException("Search did not return a Bundle, got: " + type);
+		} else {
+			IBaseBundle bundle = (IBaseBundle) theBundle;
+			myBundleType = bundle.getClass();
+			myPagesLoaded++;
+
+			List<T> resources = BundleUtil.toListOfResourcesOfType(myContext, bundle, myResourceType);
+			if (!resources.isEmpty()) {
+				myLoadedPages.add(resources);
+				myBufferedResources += resources.size();
+			}
+
+			String nextUrl = BundleUtil.getLinkUrlOfType(myContext, bundle, Constants.LINK_NEXT);
+			myNextUrl = isNotBlank(nextUrl) ? nextUrl : null;
+			loadNextPageIfAppropriate();
+		}
+
+		notifyAll();
+	}
+
+}
@@ -21,9 +21,17 @@ package ca.uhn.fhir.rest.client.impl;
  */
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 
@@ -53,6 +61,11 @@ public abstract class RestfulClientFactory implements IRestfulClientFactory {
 	private String myProxyPassword;
 	private int myPoolMaxTotal = DEFAULT_POOL_MAX;
 	private int myPoolMaxPerRoute = DEFAULT_POOL_MAX_PER_ROUTE;
+	private int myAsyncMaxRequestsPerServer = DEFAULT_ASYNC_MAX_REQUESTS_PER_SERVER;
+	private Executor myAsyncExecutor;
+	private final Map<String, AsyncRequestLimiter> myAsyncRequestLimiters = new ConcurrentHashMap<>();
+	private final Map<String, CompletableFuture<Void>> myAsyncServerBaseValidations = new ConcurrentHashMap<>();
+	private final List<IClientInterceptor> myInterceptors = new CopyOnWriteArrayList<>();
 
 	/**
 	 * Constructor
@@ -70,6 +83,52 @@ public abstract class RestfulClientFactory implements IRestfulClientFactory {
 		myContext = theFhirContext;
 	}
 
+	@Override
+	public synchronized Executor getAsyncExecutor() {
+		if (myAsyncExecutor == null) {
+			BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+				.namingPattern("hapi-fhir-client-async-%d")
+				.daemon(true)
+				.build();
+			int threadCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+			executor.allowCoreThreadTimeOut(true);
+			myAsyncExecutor = executor;
+		}
+		return myAsyncExecutor;
+	}
+
+	@Override
+	public int getAsyncMaxRequestsPerServer() {
+		return myAsyncMaxRequestsPerServer;
+	}
+
+	/**
+	 * Returns the limiter which bounds the number of asynchronous requests in flight to the given server
+	 */
+	AsyncRequestLimiter getAsyncRequestLimiter(String theServerBase) {
+		return myAsyncRequestLimiters.computeIfAbsent(normalizeBaseUrlForMap(theServerBase), t -> new AsyncRequestLimiter(myAsyncMaxRequestsPerServer));
+	}
+
+	@Override
+	public List<IClientInterceptor> getInterceptors() {
+		return Collections.unmodifiableList(myInterceptors);
+	}
+
+	@Override
+	public void registerInterceptor(IClientInterceptor theInterceptor) {
+		Validate.notNull(theInterceptor, "Interceptor can not be null");
+		if (!myInterceptors.contains(theInterceptor)) {
+			myInterceptors.add(theInterceptor);
+		}
+	}
+
+	@Override
+	public void unregisterInterceptor(IClientInterceptor theInterceptor) {
+		Validate.notNull(theInterceptor, "Interceptor can not be null");
+		myInterceptors.remove(theInterceptor);
+	}
+
 	@Override
 	public int getConnectionRequestTimeout() {
 		return myConnectionRequestTimeout;
@@ -185,6 +244,21 @@ public abstract class RestfulClientFactory implements IRestfulClientFactory {
 		return serverBase;
 	}
 
+	@Override
+	public synchronized void setAsyncExecutor(Executor theAsyncExecutor) {
+		myAsyncExecutor = theAsyncExecutor;
+	}
+
+	@Override
+	public synchronized void setAsyncMaxRequestsPerServer(int theAsyncMaxRequestsPerServer) {
+		Validate.isTrue(theAsyncMaxRequestsPerServer > 0, "theAsyncMaxRequestsPerServer must be > 0");
+		myAsyncMaxRequestsPerServer = theAsyncMaxRequestsPerServer;
+		for (AsyncRequestLimiter next : myAsyncRequestLimiters.values()) {
+			next.setMaxInFlight(theAsyncMaxRequestsPerServer);
+		}
+		resetHttpClient();
+	}
+
 	@Override
 	public synchronized void setConnectionRequestTimeout(int theConnectionRequestTimeout) {
 		myConnectionRequestTimeout = theConnectionRequestTimeout;
@@ -268,13 +342,32 @@ public abstract class RestfulClientFactory implements IRestfulClientFactory {
 
 	}
 
+	/**
+	 * Asynchronous equivalent of {@link #validateServerBaseIfConfiguredToDoSo(String, IHttpClient, IRestfulClient)}.
+	 * The server's conformance statement is only fetched once (on the {@link #getAsyncExecutor() async executor})
+	 * no matter how many requests are waiting for it, and the check is retried by the next request if it fails.
+	 */
+	CompletableFuture<Void> validateServerBaseIfConfiguredToDoSoAsync(String theServerBase, IHttpClient theHttpClient, IRestfulClient theClient) {
+		String serverBase = normalizeBaseUrlForMap(theServerBase);
+		if (getServerValidationMode() == ServerValidationModeEnum.NEVER || myValidatedServerBaseUrls.contains(serverBase)) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		CompletableFuture<Void> retVal = myAsyncServerBaseValidations.computeIfAbsent(serverBase,
+			t -> CompletableFuture.runAsync(() -> validateServerBaseIfConfiguredToDoSo(theServerBase, theHttpClient, theClient), getAsyncExecutor()));
+		retVal.whenComplete((theResult, theError) -> myAsyncServerBaseValidations.remove(serverBase, retVal));
+		return retVal;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public void validateServerBase(String theServerBase, IHttpClient theHttpClient, IRestfulClient theClient) {
 		GenericClient client = new GenericClient(myContext, theHttpClient, theServerBase, this);
 		client.setEncoding(theClient.getEncoding());
 		for (IClientInterceptor interceptor : theClient.getInterceptors()) {
-			client.registerInterceptor(interceptor);
+			if (!client.getInterceptors().contains(interceptor)) {
+				client.registerInterceptor(interceptor);
+			}
 		}
 		client.setDontValidateConformance(true);
 
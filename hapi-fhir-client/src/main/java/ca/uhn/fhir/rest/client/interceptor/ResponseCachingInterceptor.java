@@ -0,0 +1,564 @@
+package ca.uhn.fhir.rest.client.interceptor;
+
+/*-
+ * #%L
+ * HAPI FHIR - Client Framework
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
+import ca.uhn.fhir.rest.client.api.ICachingClientInterceptor;
+import ca.uhn.fhir.rest.client.api.IHttpRequest;
+import ca.uhn.fhir.rest.client.api.IHttpResponse;
+import ca.uhn.fhir.rest.client.impl.BaseHttpResponse;
+import ca.uhn.fhir.util.StopWatch;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.commons.lang3.StringUtils.*;
+
+/**
+ * Client interceptor which caches the bodies of responses to <code>GET</code> requests, and uses
+ * the <code>ETag</code> and <code>Last-Modified</code> headers returned by the server to revalidate
+ * them using conditional requests (<code>If-None-Match</code> / <code>If-Modified-Since</code>).
+ * When the server responds with <code>304 Not Modified</code> the cached body is parsed as though
+ * it had been returned by the server. Responses which specify a <code>Cache-Control: max-age</code>
+ * are served directly from the cache until they expire.
+ * <p>
+ * Response bodies (not parsed resources) are cached, so every call still returns a new resource
+ * instance which the caller is free to modify.
+ * </p>
+ * <p>
+ * A single instance may be shared between several clients (and threads). To use the same cache
+ * for all clients created by a context, register it with the client factory:
+ * </p>
+ * <pre>
+ * ResponseCachingInterceptor cache = new ResponseCachingInterceptor();
+ * ctx.getRestfulClientFactory().registerInterceptor(cache);
+ * </pre>
+ * <p>
+ * Requests which specify a <code>Cache-Control: no-cache</code> or <code>no-store</code> directive (see
+ * {@link ca.uhn.fhir.rest.api.CacheControlDirective}), or which already carry their own conditional
+ * headers, bypass the cache. Any non-<code>GET</code> request invalidates cached responses for the
+ * same URL path.
+ * </p>
+ * <p>
+ * Cached responses are only shared between requests with the same <code>Accept</code> and
+ * <code>Authorization</code> headers (the latter is only held as a hash). If the server lists
+ * other request headers in a <code>Vary</code> header, a cached response is only used for
+ * requests with the same values for those headers, and responses with <code>Vary: *</code> are
+ * not cached.
+ * </p>
+ *
+ * @since 3.7.0
+ */
+public class ResponseCachingInterceptor implements ICachingClientInterceptor {
+
+	/**
+	 * Default value for {@link #setMaxCacheSizeBytes(long)}
+	 */
+	public static final long DEFAULT_MAX_CACHE_SIZE_BYTES = 50 * FileUtils.ONE_MB;
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ResponseCachingInterceptor.class);
+
+	private final LinkedHashMap<String, CacheEntry> myEntries = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<IHttpRequest, PendingLookup> myPendingLookups = Collections.synchronizedMap(new WeakHashMap<>());
+	private final AtomicLong myHitCount = new AtomicLong();
+	private final AtomicLong myRevalidatedCount = new AtomicLong();
+	private final AtomicLong myMissCount = new AtomicLong();
+	private long myMaxCacheSizeBytes = DEFAULT_MAX_CACHE_SIZE_BYTES;
+	private long myCacheSizeBytes;
+
+	/**
+	 * Constructor
+	 */
+	public ResponseCachingInterceptor() {
+		super();
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theMaxCacheSizeBytes The maximum combined size of all cached response bodies
+	 */
+	public ResponseCachingInterceptor(long theMaxCacheSizeBytes) {
+		this();
+		setMaxCacheSizeBytes(theMaxCacheSizeBytes);
+	}
+
+	@Override
+	public IHttpResponse cacheResponse(IHttpRequest theRequest, IHttpResponse theResponse) throws IOException {
+		if (!RequestTypeEnum.GET.name().equals(theRequest.getHttpVerbName())) {
+			return theResponse;
+		}
+		PendingLookup lookup = myPendingLookups.remove(theRequest);
+		if (lookup == null) {
+			return theResponse;
+		}
+
+		CacheEntry existing = lookup.myEntry;
+		if (existing != null && theResponse.getStatus() == Constants.STATUS_HTTP_304_NOT_MODIFIED) {
+			myRevalidatedCount.incrementAndGet();
+			existing.setExpires(determineExpiry(theResponse));
+			theResponse.close();
+			ourLog.trace("Revalidated cached response for {}", lookup.myKey);
+			return new CachedHttpResponse(existing, theResponse.getRequestStopWatch());
+		}
+
+		myMissCount.incrementAndGet();
+		List<String> varyHeaders = parseVary(theResponse.getHeaders(Constants.HEADER_VARY));
+		if (theResponse.getStatus() != Constants.STATUS_HTTP_200_OK || !isStorable(theResponse) || varyHeaders.contains("*")) {
+			removeEntry(lookup.myKey);
+			return theResponse;
+		}
+
+		byte[] body;
+		try (InputStream inputStream = theResponse.readEntity()) {
+			body = inputStream != null ? IOUtils.toByteArray(inputStream) : new byte[0];
+		} finally {
+			theResponse.close();
+		}
+
+		String varyKey = createVaryKey(varyHeaders, theRequest.getAllHeaders());
+		CacheEntry entry = new CacheEntry(stripQuery(theRequest.getUri()), theResponse, body, determineExpiry(theResponse), varyHeaders, varyKey);
+		putEntry(lookup.myKey, entry);
+		return new CachedHttpResponse(entry, theResponse.getRequestStopWatch());
+	}
+
+	/**
+	 * Removes all entries from the cache
+	 */
+	public synchronized void clear() {
+		myEntries.clear();
+		myCacheSizeBytes = 0;
+	}
+
+	/**
+	 * Returns the combined size of all response bodies currently held in the cache
+	 */
+	public synchronized long getCacheSizeBytes() {
+		return myCacheSizeBytes;
+	}
+
+	@Override
+	public IHttpResponse getCachedResponse(IHttpRequest theRequest) {
+		PendingLookup lookup = myPendingLookups.get(theRequest);
+		if (lookup == null || !lookup.myFresh) {
+			return null;
+		}
+		myPendingLookups.remove(theRequest);
+		myHitCount.incrementAndGet();
+		ourLog.trace("Returning cached response for {}", lookup.myKey);
+		return new CachedHttpResponse(lookup.myEntry, new StopWatch());
+	}
+
+	/**
+	 * Returns the number of requests which were answered from the cache without contacting the server
+	 */
+	public long getHitCount() {
+		return myHitCount.get();
+	}
+
+	/**
+	 * Returns the proportion (between 0 and 1) of cacheable requests which were answered using a cached
+	 * response body, either directly or following a successful revalidation
+	 */
+	public double getHitRatio() {
+		long hits = myHitCount.get() + myRevalidatedCount.get();
+		long total = hits + myMissCount.get();
+		if (total == 0) {
+			return 0;
+		}
+		return (double) hits / total;
+	}
+
+	/**
+	 * Returns the maximum combined size of all response bodies held in the cache. When this size is
+	 * exceeded, the least recently used entries are discarded.
+	 */
+	public synchronized long getMaxCacheSizeBytes() {
+		return myMaxCacheSizeBytes;
+	}
+
+	/**
+	 * Sets the maximum combined size of all response bodies held in the cache. When this size is
+	 * exceeded, the least recently used entries are discarded. Default is {@link #DEFAULT_MAX_CACHE_SIZE_BYTES}.
+	 */
+	public synchronized void setMaxCacheSizeBytes(long theMaxCacheSizeBytes) {
+		Validate.isTrue(theMaxCacheSizeBytes >= 0, "theMaxCacheSizeBytes must not be negative");
+		myMaxCacheSizeBytes = theMaxCacheSizeBytes;
+		evictIfNeeded();
+	}
+
+	/**
+	 * Returns the number of requests which could not be answered from the cache
+	 */
+	public long getMissCount() {
+		return myMissCount.get();
+	}
+
+	/**
+	 * Returns the number of requests for which the server confirmed (using a <code>304 Not Modified</code>
+	 * response) that the cached response body was still valid
+	 */
+	public long getRevalidatedCount() {
+		return myRevalidatedCount.get();
+	}
+
+	/**
+	 * Returns the number of responses currently held in the cache
+	 */
+	public synchronized int size() {
+		return myEntries.size();
+	}
+
+	@Override
+	public void interceptRequest(IHttpRequest theRequest) {
+		if (!RequestTypeEnum.GET.name().equals(theRequest.getHttpVerbName())) {
+			invalidate(theRequest.getUri());
+			return;
+		}
+
+		Map<String, List<String>> headers = theRequest.getAllHeaders();
+		if (hasHeader(headers, Constants.HEADER_IF_NONE_MATCH) || hasHeader(headers, Constants.HEADER_IF_MODIFIED_SINCE)) {
+			return;
+		}
+		Set<String> directives = parseCacheControl(getHeaderValues(headers, Constants.HEADER_CACHE_CONTROL));
+		if (directives.contains(Constants.CACHE_CONTROL_NO_STORE) || directives.contains(Constants.CACHE_CONTROL_NO_CACHE)) {
+			return;
+		}
+
+		String key = createKey(theRequest.getUri(), headers);
+		CacheEntry entry = getEntry(key);
+		if (entry != null && !entry.myVaryKey.equals(createVaryKey(entry.myVaryHeaders, headers))) {
+			// The cached response was selected by request headers which differ from this request
+			ourLog.trace("Cached response for {} varies by {}", theRequest.getUri(), entry.myVaryHeaders);
+			entry = null;
+		}
+		if (entry == null) {
+			myPendingLookups.put(theRequest, new PendingLookup(key, null, false));
+			return;
+		}
+
+		if (entry.isFresh()) {
+			myPendingLookups.put(theRequest, new PendingLookup(key, entry, true));
+			return;
+		}
+
+		if (isNotBlank(entry.myETag)) {
+			theRequest.addHeader(Constants.HEADER_IF_NONE_MATCH, entry.myETag);
+		}
+		if (isNotBlank(entry.myLastModified)) {
+			theRequest.addHeader(Constants.HEADER_IF_MODIFIED_SINCE, entry.myLastModified);
+		}
+		myPendingLookups.put(theRequest, new PendingLookup(key, entry, false));
+	}
+
+	@Override
+	public void interceptResponse(IHttpResponse theResponse) {
+		// nothing
+	}
+
+	private synchronized CacheEntry getEntry(String theKey) {
+		return myEntries.get(theKey);
+	}
+
+	private synchronized void putEntry(String theKey, CacheEntry theEntry) {
+		removeEntry(theKey);
+		if (theEntry.myBody.length > myMaxCacheSizeBytes) {
+			return;
+		}
+		myEntries.put(theKey, theEntry);
+		myCacheSizeBytes += theEntry.myBody.length;
+		evictIfNeeded();
+	}
+
+	private synchronized void removeEntry(String theKey) {
+		CacheEntry removed = myEntries.remove(theKey);
+		if (removed != null) {
+			myCacheSizeBytes -= removed.myBody.length;
+		}
+	}
+
+	private synchronized void invalidate(String theUri) {
+		String path = stripQuery(theUri);
+		for (Iterator<Map.Entry<String, CacheEntry>> iter = myEntries.entrySet().iterator(); iter.hasNext(); ) {
+			Map.Entry<String, CacheEntry> next = iter.next();
+			String nextPath = next.getValue().myPath;
+			if (nextPath.equals(path) || nextPath.startsWith(path + "/")) {
+				myCacheSizeBytes -= next.getValue().myBody.length;
+				iter.remove();
+			}
+		}
+	}
+
+	private void evictIfNeeded() {
+		for (Iterator<CacheEntry> iter = myEntries.values().iterator(); myCacheSizeBytes > myMaxCacheSizeBytes && iter.hasNext(); ) {
+			myCacheSizeBytes -= iter.next().myBody.length;
+			iter.remove();
+		}
+	}
+
+	private static String createKey(String theUri, Map<String, List<String>> theRequestHeaders) {
+		// Responses are only shared between requests which would have received the same representation
+		StringBuilder b = new StringBuilder(theUri);
+		b.append('\n').append(defaultString(join(getHeaderValues(theRequestHeaders, Constants.HEADER_ACCEPT), ", ")));
+		// Only a hash of the credentials is held by the cache
+		String authorization = join(getHeaderValues(theRequestHeaders, Constants.HEADER_AUTHORIZATION), ", ");
+		if (isNotBlank(authorization)) {
+			b.append('\n').append(DigestUtils.sha256Hex(authorization));
+		}
+		return b.toString();
+	}
+
+	/**
+	 * Creates a hash of the values of the request headers listed in the <code>Vary</code> header of a response
+	 */
+	private static String createVaryKey(List<String> theVaryHeaders, Map<String, List<String>> theRequestHeaders) {
+		if (theVaryHeaders.isEmpty()) {
+			return "";
+		}
+		StringBuilder b = new StringBuilder();
+		for (String next : theVaryHeaders) {
+			b.append(next).append(':').append(defaultString(join(getHeaderValues(theRequestHeaders, next), ", "))).append('\n');
+		}
+		return DigestUtils.sha256Hex(b.toString());
+	}
+
+	private static long determineExpiry(IHttpResponse theResponse) {
+		for (String next : parseCacheControl(theResponse.getHeaders(Constants.HEADER_CACHE_CONTROL))) {
+			if (next.startsWith("max-age=")) {
+				try {
+					return System.currentTimeMillis() + (Long.parseLong(next.substring("max-age=".length()).trim()) * 1000L);
+				} catch (NumberFormatException e) {
+					ourLog.debug("Ignoring invalid Cache-Control directive: {}", next);
+				}
+			}
+		}
+		return 0;
+	}
+
+	private static String getFirstHeader(IHttpResponse theResponse, String theName) {
+		List<String> values = theResponse.getHeaders(theName);
+		if (values == null || values.isEmpty()) {
+			return null;
+		}
+		return values.get(0);
+	}
+
+	private static List<String> getHeaderValues(Map<String, List<String>> theHeaders, String theName) {
+		List<String> retVal = new ArrayList<>();
+		for (Map.Entry<String, List<String>> next : theHeaders.entrySet()) {
+			if (theName.equalsIgnoreCase(next.getKey())) {
+				retVal.addAll(next.getValue());
+			}
+		}
+		return retVal;
+	}
+
+	private static boolean hasHeader(Map<String, List<String>> theHeaders, String theName) {
+		return !getHeaderValues(theHeaders, theName).isEmpty();
+	}
+
+	private static boolean isStorable(IHttpResponse theResponse) {
+		Set<String> directives = parseCacheControl(theResponse.getHeaders(Constants.HEADER_CACHE_CONTROL));
+		if (directives.contains(Constants.CACHE_CONTROL_NO_STORE)) {
+			return false;
+		}
+		return isNotBlank(getFirstHeader(theResponse, Constants.HEADER_ETAG))
+			|| isNotBlank(getFirstHeader(theResponse, Constants.HEADER_LAST_MODIFIED))
+			|| determineExpiry(theResponse) > System.currentTimeMillis();
+	}
+
+	private static List<String> parseVary(List<String> theValues) {
+		Set<String> retVal = new TreeSet<>();
+		if (theValues != null) {
+			for (String nextValue : theValues) {
+				for (String next : split(defaultString(nextValue), ',')) {
+					if (isNotBlank(next)) {
+						retVal.add(next.trim().toLowerCase());
+					}
+				}
+			}
+		}
+		return new ArrayList<>(retVal);
+	}
+
+	private static Set<String> parseCacheControl(List<String> theValues) {
+		Set<String> retVal = new HashSet<>();
+		if (theValues != null) {
+			for (String nextValue : theValues) {
+				for (String next : split(defaultString(nextValue), ',')) {
+					if (isNotBlank(next)) {
+						retVal.add(next.trim().toLowerCase());
+					}
+				}
+			}
+		}
+		return retVal;
+	}
+
+	private static String stripQuery(String theUri) {
+		int idx = theUri.indexOf('?');
+		String retVal = idx != -1 ? theUri.substring(0, idx) : theUri;
+		return removeEnd(retVal, "/");
+	}
+
+	private static class PendingLookup {
+		private final String myKey;
+		private final CacheEntry myEntry;
+		private final boolean myFresh;
+
+		PendingLookup(String theKey, CacheEntry theEntry, boolean theFresh) {
+			myKey = theKey;
+			myEntry = theEntry;
+			myFresh = theFresh;
+		}
+	}
+
+	private static class CacheEntry {
+		private final byte[] myBody;
+		private final String myETag;
+		private final Map<String, List<String>> myHeaders;
+		private final String myLastModified;
+		private final String myMimeType;
+		private final String myPath;
+		private final int myStatus;
+		private final String myStatusInfo;
+		private final List<String> myVaryHeaders;
+		private final String myVaryKey;
+		private volatile long myExpires;
+
+		CacheEntry(String thePath, IHttpResponse theResponse, byte[] theBody, long theExpires, List<String> theVaryHeaders, String theVaryKey) {
+			myBody = theBody;
+			myETag = getFirstHeader(theResponse, Constants.HEADER_ETAG);
+			myLastModified = getFirstHeader(theResponse, Constants.HEADER_LAST_MODIFIED);
+			myMimeType = theResponse.getMimeType();
+			myStatus = theResponse.getStatus();
+			myStatusInfo = theResponse.getStatusInfo();
+			myExpires = theExpires;
+			myPath = thePath;
+			myVaryHeaders = theVaryHeaders;
+			myVaryKey = theVaryKey;
+
+			Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			for (Map.Entry<String, List<String>> next : theResponse.getAllHeaders().entrySet()) {
+				headers.put(next.getKey(), Collections.unmodifiableList(new ArrayList<>(next.getValue())));
+			}
+			myHeaders = Collections.unmodifiableMap(headers);
+		}
+
+		boolean isFresh() {
+			return myExpires > System.currentTimeMillis();
+		}
+
+		void setExpires(long theExpires) {
+			myExpires = theExpires;
+		}
+	}
+
+	private static class CachedHttpResponse extends BaseHttpResponse {
+		private final CacheEntry myEntry;
+
+		CachedHttpResponse(CacheEntry theEntry, StopWatch theRequestStopWatch) {
+			super(theRequestStopWatch);
+			myEntry = theEntry;
+		}
+
+		@Override
+		@Deprecated
+		public void bufferEntitity() {
+			// nothing - the entity is already held in memory
+		}
+
+		@Override
+		public void bufferEntity() {
+			// nothing - the entity is already held in memory
+		}
+
+		@Override
+		public void close() {
+			// nothing
+		}
+
+		@Override
+		public Reader createReader() {
+			return new InputStreamReader(readEntity(), determineCharset());
+		}
+
+		private Charset determineCharset() {
+			for (String next : getHeaders(Constants.HEADER_CONTENT_TYPE)) {
+				int idx = next.toLowerCase().indexOf("charset=");
+				if (idx != -1) {
+					String charsetName = trim(remove(next.substring(idx + "charset=".length()), '"'));
+					try {
+						return Charset.forName(substringBefore(charsetName, ";"));
+					} catch (IllegalArgumentException e) {
+						ourLog.debug("Unknown response charset: {}", charsetName);
+					}
+				}
+			}
+			return StandardCharsets.UTF_8;
+		}
+
+		@Override
+		public Map<String, List<String>> getAllHeaders() {
+			return myEntry.myHeaders;
+		}
+
+		@Override
+		public List<String> getHeaders(String theName) {
+			List<String> retVal = myEntry.myHeaders.get(theName);
+			return retVal != null ? retVal : Collections.emptyList();
+		}
+
+		@Override
+		public String getMimeType() {
+			return myEntry.myMimeType;
+		}
+
+		@Override
+		public Object getResponse() {
+			return null;
+		}
+
+		@Override
+		public int getStatus() {
+			return myEntry.myStatus;
+		}
+
+		@Override
+		public String getStatusInfo() {
+			return myEntry.myStatusInfo;
+		}
+
+		@Override
+		public InputStream readEntity() {
+			return new ByteArrayInputStream(myEntry.myBody);
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package ca.uhn.fhir.rest.client.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncRequestLimiterTest {
+
+	@Test
+	public void testQueuesRequestsOverLimit() {
+		AsyncRequestLimiter limiter = new AsyncRequestLimiter(2);
+
+		List<CompletableFuture<String>> started = new ArrayList<>();
+		List<CompletableFuture<String>> results = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			results.add(limiter.submit(() -> {
+				CompletableFuture<String> future = new CompletableFuture<>();
+				started.add(future);
+				return future;
+			}));
+		}
+
+		assertEquals(2, started.size());
+		assertEquals(2, limiter.getInFlight());
+		assertEquals(1, limiter.getPending());
+
+		started.get(0).complete("0");
+		assertEquals("0", results.get(0).join());
+		assertEquals(3, started.size());
+		assertEquals(2, limiter.getInFlight());
+		assertEquals(0, limiter.getPending());
+
+		started.get(1).complete("1");
+		started.get(2).complete("2");
+		assertEquals("2", results.get(2).join());
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	/**
+	 * Queued tasks which complete synchronously must not cause release()
+	 * to recurse once per queued task
+	 */
+	@Test
+	public void testDrainLongQueueOfSynchronousTasks() {
+		AsyncRequestLimiter limiter = new AsyncRequestLimiter(1);
+
+		CompletableFuture<Integer> first = new CompletableFuture<>();
+		CompletableFuture<Integer> firstResult = limiter.submit(() -> first);
+
+		int count = 100000;
+		List<CompletableFuture<Integer>> results = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			int value = i;
+			results.add(limiter.submit(() -> CompletableFuture.completedFuture(value)));
+		}
+		assertEquals(count, limiter.getPending());
+		assertFalse(results.get(0).isDone());
+
+		first.complete(-1);
+
+		assertEquals(-1, firstResult.join().intValue());
+		for (int i = 0; i < count; i++) {
+			assertTrue(results.get(i).isDone());
+			assertEquals(i, results.get(i).join().intValue());
+		}
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(0, limiter.getPending());
+	}
+
+	@Test
+	public void testFailedTaskReleasesSlot() {
+		AsyncRequestLimiter limiter = new AsyncRequestLimiter(1);
+
+		CompletableFuture<String> failed = limiter.submit(() -> {
+			throw new IllegalStateException("FAILED");
+		});
+		assertTrue(failed.isCompletedExceptionally());
+		assertEquals(0, limiter.getInFlight());
+
+		assertEquals("OK", limiter.submit(() -> CompletableFuture.completedFuture("OK")).join());
+	}
+
+}
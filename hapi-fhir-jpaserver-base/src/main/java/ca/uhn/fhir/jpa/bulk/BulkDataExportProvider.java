@@ -0,0 +1,236 @@
+package ca.uhn.fhir.jpa.bulk;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.util.JpaConstants;
+import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.util.UrlUtil;
+import com.google.gson.stream.JsonWriter;
+import org.apache.commons.io.IOUtils;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.InstantType;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.StringType;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.*;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+import static org.apache.commons.lang3.StringUtils.*;
+
+/**
+ * Provides the FHIR Bulk Data <code>$export</code> operation, along with the
+ * operations used to poll for the status of an export job and to download
+ * the generated files.
+ * <p>
+ * These operations do not return resources, so they write their responses
+ * directly.
+ * </p>
+ */
+public class BulkDataExportProvider {
+
+	private static final Set<String> VALID_OUTPUT_FORMATS = new HashSet<>(Arrays.asList(Constants.CT_FHIR_NDJSON, "application/ndjson", "ndjson"));
+
+	@Autowired
+	private IBulkDataExportSvc myBulkDataExportSvc;
+
+	/**
+	 * System level <code>$export</code>
+	 */
+	@Operation(name = JpaConstants.OPERATION_EXPORT, idempotent = true, manualResponse = true)
+	public void export(
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_OUTPUT_FORMAT, min = 0, max = 1) StringType theOutputFormat,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_TYPE, min = 0, max = 1) StringType theType,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_SINCE, min = 0, max = 1) InstantType theSince,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_TYPE_FILTER, min = 0, max = OperationParam.MAX_UNLIMITED) List<StringType> theTypeFilter,
+		RequestDetails theRequestDetails,
+		HttpServletResponse theServletResponse
+	) {
+		submitJob(BulkExportStyleEnum.SYSTEM, null, theOutputFormat, theType, theSince, theTypeFilter, theRequestDetails, theServletResponse);
+	}
+
+	/**
+	 * Patient level <code>$export</code> (all resources in any patient compartment)
+	 */
+	@Operation(name = JpaConstants.OPERATION_EXPORT, type = Patient.class, idempotent = true, manualResponse = true)
+	public void patientExport(
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_OUTPUT_FORMAT, min = 0, max = 1) StringType theOutputFormat,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_TYPE, min = 0, max = 1) StringType theType,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_SINCE, min = 0, max = 1) InstantType theSince,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_TYPE_FILTER, min = 0, max = OperationParam.MAX_UNLIMITED) List<StringType> theTypeFilter,
+		RequestDetails theRequestDetails,
+		HttpServletResponse theServletResponse
+	) {
+		submitJob(BulkExportStyleEnum.PATIENT, null, theOutputFormat, theType, theSince, theTypeFilter, theRequestDetails, theServletResponse);
+	}
+
+	/**
+	 * Group level <code>$export</code> (all resources in the compartments of the
+	 * patients who are members of the group)
+	 */
+	@Operation(name = JpaConstants.OPERATION_EXPORT, type = org.hl7.fhir.r4.model.Group.class, idempotent = true, manualResponse = true)
+	public void groupExport(
+		@IdParam IdType theGroupId,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_OUTPUT_FORMAT, min = 0, max = 1) StringType theOutputFormat,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_TYPE, min = 0, max = 1) StringType theType,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_SINCE, min = 0, max = 1) InstantType theSince,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_TYPE_FILTER, min = 0, max = OperationParam.MAX_UNLIMITED) List<StringType> theTypeFilter,
+		RequestDetails theRequestDetails,
+		HttpServletResponse theServletResponse
+	) {
+		String groupId = theGroupId.toUnqualifiedVersionless().getValue();
+		submitJob(BulkExportStyleEnum.GROUP, groupId, theOutputFormat, theType, theSince, theTypeFilter, theRequestDetails, theServletResponse);
+	}
+
+	/**
+	 * Returns the status of an export job, or the manifest of the generated files
+	 * once the job is complete
+	 */
+	@Operation(name = JpaConstants.OPERATION_EXPORT_POLL_STATUS, idempotent = true, manualResponse = true)
+	public void exportPollStatus(
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID, min = 1, max = 1) StringType theJobId,
+		RequestDetails theRequestDetails,
+		HttpServletResponse theServletResponse
+	) throws IOException {
+		IBulkDataExportSvc.JobInfo job = myBulkDataExportSvc.getJobStatusOrThrowResourceNotFound(toValue(theJobId));
+
+		switch (job.getStatus()) {
+			case SUBMITTED:
+			case BUILDING:
+				theServletResponse.setStatus(Constants.STATUS_HTTP_202_ACCEPTED);
+				theServletResponse.addHeader(Constants.HEADER_X_PROGRESS, "Job status is " + job.getStatus() + " as of " + new InstantType(job.getStatusTime()).getValueAsString());
+				theServletResponse.addHeader(Constants.HEADER_RETRY_AFTER, "120");
+				break;
+
+			case COMPLETE:
+				theServletResponse.setStatus(Constants.STATUS_HTTP_200_OK);
+				theServletResponse.setContentType(Constants.CT_JSON);
+				theServletResponse.setCharacterEncoding(Constants.CHARSET_NAME_UTF8);
+				if (job.getExpiry() != null) {
+					theServletResponse.addHeader(Constants.HEADER_EXPIRES, DateTimeFormatter.RFC_1123_DATE_TIME.format(job.getExpiry().toInstant().atZone(ZoneOffset.UTC)));
+				}
+
+				String serverBase = theRequestDetails.getServerBaseForRequest();
+				try (JsonWriter writer = new JsonWriter(theServletResponse.getWriter())) {
+					writer.setIndent("  ");
+					writer.beginObject();
+					writer.name("transactionTime").value(new InstantType(job.getTransactionTime()).getValueAsString());
+					writer.name("request").value(job.getRequest());
+					writer.name("requiresAccessToken").value(false);
+					writer.name("output").beginArray();
+					for (IBulkDataExportSvc.FileInfo next : job.getFiles()) {
+						writer.beginObject();
+						writer.name("type").value(next.getResourceType());
+						writer.name("url").value(serverBase + "/" + JpaConstants.OPERATION_EXPORT_DOWNLOAD + "?" + JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID + "=" + UrlUtil.escapeUrlParam(job.getJobId()) + "&" + JpaConstants.PARAM_EXPORT_DOWNLOAD_FILE + "=" + UrlUtil.escapeUrlParam(next.getFileName()));
+						writer.name("count").value(next.getResourceCount());
+						writer.endObject();
+					}
+					writer.endArray();
+					writer.name("error").beginArray().endArray();
+					writer.endObject();
+				}
+				break;
+
+			case ERROR:
+			default:
+				theServletResponse.setStatus(Constants.STATUS_HTTP_500_INTERNAL_ERROR);
+				theServletResponse.setContentType(Constants.CT_TEXT);
+				theServletResponse.setCharacterEncoding(Constants.CHARSET_NAME_UTF8);
+				theServletResponse.getWriter().append("Export job failed: ").append(defaultString(job.getStatusMessage()));
+				theServletResponse.getWriter().close();
+				break;
+		}
+	}
+
+	/**
+	 * Streams one of the files generated by a completed export job
+	 */
+	@Operation(name = JpaConstants.OPERATION_EXPORT_DOWNLOAD, idempotent = true, manualResponse = true)
+	public void exportDownload(
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID, min = 1, max = 1) StringType theJobId,
+		@OperationParam(name = JpaConstants.PARAM_EXPORT_DOWNLOAD_FILE, min = 1, max = 1) StringType theFile,
+		HttpServletResponse theServletResponse
+	) throws IOException {
+		File file = myBulkDataExportSvc.getFileOrThrowResourceNotFound(toValue(theJobId), toValue(theFile));
+
+		theServletResponse.setStatus(Constants.STATUS_HTTP_200_OK);
+		theServletResponse.setContentType(Constants.CT_FHIR_NDJSON);
+		theServletResponse.setCharacterEncoding(Constants.CHARSET_NAME_UTF8);
+		theServletResponse.setContentLengthLong(file.length());
+		try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+			OutputStream outputStream = theServletResponse.getOutputStream();
+			IOUtils.copy(inputStream, outputStream);
+			outputStream.close();
+		}
+	}
+
+	private void submitJob(BulkExportStyleEnum theStyle, String theGroupId, StringType theOutputFormat, StringType theType, InstantType theSince, List<StringType> theTypeFilter, RequestDetails theRequestDetails, HttpServletResponse theServletResponse) {
+		String prefer = theRequestDetails.getHeader(Constants.HEADER_PREFER);
+		if (prefer == null || !prefer.contains(Constants.HEADER_PREFER_RESPOND_ASYNC)) {
+			throw new InvalidRequestException("Must request async processing for " + JpaConstants.OPERATION_EXPORT + " (use header \"" + Constants.HEADER_PREFER + ": " + Constants.HEADER_PREFER_RESPOND_ASYNC + "\")");
+		}
+
+		String outputFormat = toValue(theOutputFormat);
+		if (isNotBlank(outputFormat) && !VALID_OUTPUT_FORMATS.contains(outputFormat)) {
+			throw new InvalidRequestException("Invalid " + JpaConstants.PARAM_EXPORT_OUTPUT_FORMAT + " value, only " + Constants.CT_FHIR_NDJSON + " is supported: " + outputFormat);
+		}
+
+		Set<String> resourceTypes = new HashSet<>();
+		String type = toValue(theType);
+		if (isNotBlank(type)) {
+			for (String next : split(type, ',')) {
+				if (isNotBlank(next)) {
+					resourceTypes.add(next.trim());
+				}
+			}
+		}
+
+		Set<String> typeFilters = new HashSet<>();
+		if (theTypeFilter != null) {
+			for (StringType next : theTypeFilter) {
+				if (isNotBlank(next.getValue())) {
+					typeFilters.add(next.getValue().trim());
+				}
+			}
+		}
+
+		Date since = theSince != null ? theSince.getValue() : null;
+		IBulkDataExportSvc.JobInfo job = myBulkDataExportSvc.submitJob(theStyle, theGroupId, resourceTypes, since, typeFilters, theRequestDetails.getCompleteUrl());
+
+		String pollLocation = theRequestDetails.getServerBaseForRequest() + "/" + JpaConstants.OPERATION_EXPORT_POLL_STATUS + "?" + JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID + "=" + UrlUtil.escapeUrlParam(job.getJobId());
+		theServletResponse.setStatus(Constants.STATUS_HTTP_202_ACCEPTED);
+		theServletResponse.addHeader(Constants.HEADER_CONTENT_LOCATION, pollLocation);
+	}
+
+	private static String toValue(StringType theValue) {
+		return theValue != null ? theValue.getValue() : null;
+	}
+
+}
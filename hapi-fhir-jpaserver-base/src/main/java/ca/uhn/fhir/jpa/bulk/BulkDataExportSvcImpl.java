@@ -0,0 +1,753 @@
+package ca.uhn.fhir.jpa.bulk;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.jpa.dao.BaseHapiFhirDao;
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.ISearchBuilder;
+import ca.uhn.fhir.jpa.dao.data.*;
+import ca.uhn.fhir.jpa.dao.index.IdHelperService;
+import ca.uhn.fhir.jpa.entity.BulkExportFileEntity;
+import ca.uhn.fhir.jpa.entity.BulkExportJobEntity;
+import ca.uhn.fhir.jpa.entity.ResourceSearchView;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.jpa.model.entity.ResourceTag;
+import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.searchparam.extractor.BaseSearchParamExtractor;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.util.StopWatch;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.time.DateUtils;
+import org.hibernate.search.util.impl.Executors;
+import org.hl7.fhir.instance.model.api.IBaseReference;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Generates the files for FHIR Bulk Data <code>$export</code> jobs.
+ * <p>
+ * Submitted jobs are processed by a scheduled task. The resources of each requested
+ * type are split into ranges of resource PIDs, and each range is written to its own
+ * NDJSON file by a separate thread. Within a range, resources are read in pages using
+ * the PID as a key, so the database never needs to sort or count the full result set.
+ * </p>
+ * <p>
+ * The stored resource body is written to the file as-is (after decompressing it
+ * if needed) with its ID and meta spliced in, so that the resource does not need
+ * to be parsed and re-encoded. Only resources with tags (which are stored separately)
+ * are parsed.
+ * </p>
+ */
+public class BulkDataExportSvcImpl implements IBulkDataExportSvc {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(BulkDataExportSvcImpl.class);
+	private static final String DEFAULT_DIRECTORY_NAME = "hapi-fhir-bulk-export";
+	private static final String FILE_SUFFIX = ".ndjson";
+	private static final int PAGE_SIZE = 1000;
+	private static final int PARTITION_SIZE = 800;
+	private static final String PATIENT = "Patient";
+	private final ReentrantLock myBuildLock = new ReentrantLock();
+	@Autowired
+	private IBulkExportJobDao myJobDao;
+	@Autowired
+	private IBulkExportFileDao myFileDao;
+	@Autowired
+	private IResourceTableDao myResourceTableDao;
+	@Autowired
+	private IResourceSearchViewDao myResourceSearchViewDao;
+	@Autowired
+	private IResourceTagDao myResourceTagDao;
+	@Autowired
+	private IResourceLinkDao myResourceLinkDao;
+	@Autowired
+	private IdHelperService myIdHelperService;
+	@Autowired
+	private MatchUrlService myMatchUrlService;
+	@Autowired
+	private DaoConfig myDaoConfig;
+	@Autowired
+	private DaoRegistry myDaoRegistry;
+	@Autowired
+	private FhirContext myContext;
+	@Autowired
+	private PlatformTransactionManager myTxManager;
+	private TransactionTemplate myTxTemplate;
+	private ThreadPoolExecutor myExecutor;
+
+	@PostConstruct
+	public void start() {
+		myTxTemplate = new TransactionTemplate(myTxManager);
+		myTxTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+		/*
+		 * The core size has to be the full thread count: with a bounded queue, threads
+		 * beyond the core size are only started once the queue is full, so a smaller
+		 * core size would leave most ranges queued behind a single thread. Idle threads
+		 * are allowed to time out since jobs are only run occasionally.
+		 */
+		int threadCount = myDaoConfig.getBulkExportThreadCount();
+		myExecutor = new ThreadPoolExecutor(threadCount, threadCount,
+			1L, TimeUnit.MINUTES,
+			new LinkedBlockingQueue<>(100),
+			new BasicThreadFactory.Builder().namingPattern("BulkExport-%d").build(),
+			new Executors.BlockPolicy()
+		);
+		myExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	@PreDestroy
+	public void stop() {
+		myExecutor.shutdown();
+	}
+
+	@Override
+	public JobInfo submitJob(BulkExportStyleEnum theStyle, String theGroupId, Set<String> theResourceTypes, Date theSince, Set<String> theTypeFilters, String theRequest) {
+		if (theStyle == BulkExportStyleEnum.GROUP && isBlank(theGroupId)) {
+			throw new InvalidRequestException("A group ID is required for a group export");
+		}
+
+		Set<String> resourceTypes = new TreeSet<>();
+		if (theResourceTypes != null) {
+			for (String next : theResourceTypes) {
+				if (!myDaoRegistry.isResourceTypeSupported(next)) {
+					throw new InvalidRequestException("Unknown or unsupported resource type: " + next);
+				}
+				resourceTypes.add(next);
+			}
+		}
+
+		Set<String> typeFilters = new TreeSet<>();
+		if (theTypeFilters != null) {
+			for (String next : theTypeFilters) {
+				int questionMarkIdx = next.indexOf('?');
+				String resourceType = questionMarkIdx > 0 ? next.substring(0, questionMarkIdx) : null;
+				if (resourceType == null || !myDaoRegistry.isResourceTypeSupported(resourceType)) {
+					throw new InvalidRequestException("Invalid _typeFilter value, must be in the form [ResourceType]?[search parameters]: " + next);
+				}
+				if (!resourceTypes.isEmpty() && !resourceTypes.contains(resourceType)) {
+					throw new InvalidRequestException("Invalid _typeFilter value, resource type " + resourceType + " is not being exported: " + next);
+				}
+				typeFilters.add(next);
+			}
+		}
+
+		BulkExportJobEntity job = new BulkExportJobEntity();
+		job.setJobId(UUID.randomUUID().toString());
+		job.setExportStyle(theStyle);
+		job.setGroupId(theStyle == BulkExportStyleEnum.GROUP ? theGroupId : null);
+		job.setResourceTypes(resourceTypes.isEmpty() ? null : StringUtils.join(resourceTypes, ','));
+		job.setTypeFilters(typeFilters.isEmpty() ? null : StringUtils.join(typeFilters, '\n'));
+		job.setSince(theSince);
+		job.setRequest(StringUtils.left(theRequest, BulkExportJobEntity.REQUEST_LENGTH));
+		job.setCreated(new Date());
+		job.setStatus(BulkJobStatusEnum.SUBMITTED);
+
+		if (job.getResourceTypes() != null && job.getResourceTypes().length() > BulkExportJobEntity.RESOURCE_TYPES_LENGTH) {
+			throw new InvalidRequestException("Too many resource types requested");
+		}
+		if (job.getTypeFilters() != null && job.getTypeFilters().length() > BulkExportJobEntity.TYPE_FILTERS_LENGTH) {
+			throw new InvalidRequestException("The _typeFilter values are too long");
+		}
+
+		BulkExportJobEntity saved = myTxTemplate.execute(t -> myJobDao.save(job));
+		assert saved != null;
+		ourLog.info("Submitted bulk export job: {}", saved);
+		return toJobInfo(saved, Collections.emptyList());
+	}
+
+	@Override
+	public JobInfo getJobStatusOrThrowResourceNotFound(String theJobId) {
+		JobInfo retVal = myTxTemplate.execute(t -> {
+			BulkExportJobEntity job = myJobDao.findByJobId(theJobId).orElseThrow(() -> new ResourceNotFoundException("Unknown bulk export job ID: " + theJobId));
+			return toJobInfo(job, myFileDao.findByJobPid(job.getId()));
+		});
+		assert retVal != null;
+		return retVal;
+	}
+
+	@Override
+	public File getFileOrThrowResourceNotFound(String theJobId, String theFileName) {
+		JobInfo job = getJobStatusOrThrowResourceNotFound(theJobId);
+		if (job.getStatus() == BulkJobStatusEnum.COMPLETE) {
+			for (FileInfo next : job.getFiles()) {
+				if (next.getFileName().equals(theFileName)) {
+					File file = new File(getJobDirectory(theJobId), next.getFileName());
+					if (file.exists()) {
+						return file;
+					}
+				}
+			}
+		}
+		throw new ResourceNotFoundException("Unknown file " + theFileName + " for bulk export job ID: " + theJobId);
+	}
+
+	@Scheduled(fixedDelay = 10 * DateUtils.MILLIS_PER_SECOND)
+	public void scheduleBuildExportFiles() {
+		if (myDaoConfig.isSchedulingDisabled()) {
+			return;
+		}
+		buildExportFiles();
+	}
+
+	@Scheduled(fixedDelay = DateUtils.MILLIS_PER_MINUTE)
+	public void schedulePurgeExpiredJobs() {
+		if (myDaoConfig.isSchedulingDisabled()) {
+			return;
+		}
+		purgeExpiredJobs();
+	}
+
+	@Override
+	public int buildExportFiles() {
+		if (!myBuildLock.tryLock()) {
+			return 0;
+		}
+		try {
+			int retVal = 0;
+			while (true) {
+				BulkExportJobEntity job = myTxTemplate.execute(t -> {
+					Slice<BulkExportJobEntity> submitted = myJobDao.findByStatus(PageRequest.of(0, 1), BulkJobStatusEnum.SUBMITTED);
+					if (!submitted.hasContent()) {
+						return null;
+					}
+					BulkExportJobEntity next = submitted.getContent().get(0);
+					next.setStatus(BulkJobStatusEnum.BUILDING);
+					next.setStarted(new Date());
+					return myJobDao.save(next);
+				});
+				if (job == null) {
+					return retVal;
+				}
+
+				processJob(job);
+				retVal++;
+			}
+		} finally {
+			myBuildLock.unlock();
+		}
+	}
+
+	private void processJob(BulkExportJobEntity theJob) {
+		StopWatch sw = new StopWatch();
+		ourLog.info("Starting bulk export job: {}", theJob);
+
+		File jobDirectory = getJobDirectory(theJob.getJobId());
+		List<FileInfo> files = new ArrayList<>();
+		String errorMessage = null;
+		try {
+			FileUtils.forceMkdir(jobDirectory);
+
+			List<Future<FileInfo>> futures = new ArrayList<>();
+			for (String nextType : determineResourceTypes(theJob)) {
+				PidFilter filter = myTxTemplate.execute(t -> createPidFilter(theJob, nextType));
+				for (PidRange nextRange : determinePidRanges(nextType)) {
+					futures.add(myExecutor.submit(new ExportRangeTask(jobDirectory, nextType, nextRange, theJob.getSince(), filter)));
+				}
+			}
+
+			for (Future<FileInfo> next : futures) {
+				FileInfo file = next.get();
+				if (file != null) {
+					files.add(file);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			errorMessage = e.toString();
+		} catch (ExecutionException e) {
+			ourLog.error("Failure during bulk export job " + theJob.getJobId(), e.getCause());
+			errorMessage = e.getCause().getMessage();
+		} catch (Exception e) {
+			ourLog.error("Failure during bulk export job " + theJob.getJobId(), e);
+			errorMessage = e.getMessage();
+		}
+
+		String statusMessage = errorMessage;
+		int resourceCount = files.stream().mapToInt(FileInfo::getResourceCount).sum();
+		BulkExportJobEntity job = myTxTemplate.execute(t -> {
+			BulkExportJobEntity retVal = myJobDao.findById(theJob.getId()).orElseThrow(IllegalStateException::new);
+			if (statusMessage != null) {
+				retVal.setStatus(BulkJobStatusEnum.ERROR);
+				retVal.setStatusMessage(StringUtils.left(statusMessage, BulkExportJobEntity.STATUS_MESSAGE_LENGTH));
+			} else {
+				for (FileInfo next : files) {
+					BulkExportFileEntity file = new BulkExportFileEntity();
+					file.setJob(retVal);
+					file.setResourceType(next.getResourceType());
+					file.setFileName(next.getFileName());
+					file.setResourceCount(next.getResourceCount());
+					myFileDao.save(file);
+				}
+				retVal.setStatus(BulkJobStatusEnum.COMPLETE);
+				retVal.setResourceCount(resourceCount);
+			}
+			retVal.setExpiry(new Date(System.currentTimeMillis() + myDaoConfig.getBulkExportFileRetentionMillis()));
+			return myJobDao.save(retVal);
+		});
+		assert job != null;
+
+		if (statusMessage != null) {
+			FileUtils.deleteQuietly(jobDirectory);
+		}
+
+		Double throughput = job.getThroughputPerSecond();
+		ourLog.info("Finished bulk export job {} with status {} in {} - Wrote {} resources to {} files ({} resources/sec)", job.getJobId(), job.getStatus(), sw.toString(), resourceCount, files.size(), throughput != null ? String.format("%.1f", throughput) : "-");
+	}
+
+	private List<String> determineResourceTypes(BulkExportJobEntity theJob) {
+		Set<String> retVal = new TreeSet<>();
+		if (isNotBlank(theJob.getResourceTypes())) {
+			retVal.addAll(Arrays.asList(theJob.getResourceTypes().split(",")));
+		} else {
+			// Only bother with types which actually have resources
+			List<Map<?, ?>> counts = myTxTemplate.execute(t -> myResourceTableDao.getResourceCounts());
+			assert counts != null;
+			for (Map<?, ?> next : counts) {
+				String type = (String) next.get("type");
+				if (myDaoRegistry.isResourceTypeSupported(type)) {
+					retVal.add(type);
+				}
+			}
+		}
+
+		if (theJob.getExportStyle() != BulkExportStyleEnum.SYSTEM) {
+			retVal.removeIf(t -> !PATIENT.equals(t) && getPatientCompartmentPaths(t).isEmpty());
+		}
+
+		return new ArrayList<>(retVal);
+	}
+
+	/**
+	 * Returns a filter for the resources of the given type which applies the job's
+	 * <code>_typeFilter</code> and compartment restrictions, or <code>null</code> if all
+	 * resources of the given type may be exported
+	 */
+	private PidFilter createPidFilter(BulkExportJobEntity theJob, String theResourceType) {
+		List<String> typeFilters = new ArrayList<>();
+		if (isNotBlank(theJob.getTypeFilters())) {
+			for (String next : theJob.getTypeFilters().split("\n")) {
+				if (next.startsWith(theResourceType + "?")) {
+					typeFilters.add(next);
+				}
+			}
+		}
+
+		Set<String> compartmentPaths = null;
+		Set<Long> groupMemberPids = null;
+		if (theJob.getExportStyle() != BulkExportStyleEnum.SYSTEM) {
+			if (!PATIENT.equals(theResourceType)) {
+				compartmentPaths = getPatientCompartmentPaths(theResourceType);
+			}
+			if (theJob.getExportStyle() == BulkExportStyleEnum.GROUP) {
+				groupMemberPids = new HashSet<>(getGroupMemberPids(theJob.getGroupId()));
+			}
+		}
+
+		if (typeFilters.isEmpty() && compartmentPaths == null && groupMemberPids == null) {
+			return null;
+		}
+		return new PidFilter(theResourceType, typeFilters, compartmentPaths, groupMemberPids);
+	}
+
+	private List<Long> getGroupMemberPids(String theGroupId) {
+		IFhirResourceDao<?> groupDao = myDaoRegistry.getResourceDao("Group");
+		IBaseResource group = groupDao.read(myContext.getVersion().newIdType().setValue(theGroupId).withResourceType("Group"));
+
+		List<Long> retVal = new ArrayList<>();
+		for (IBaseReference next : myContext.newTerser().getValues(group, "Group.member.entity", IBaseReference.class)) {
+			IIdType memberId = next.getReferenceElement();
+			if (PATIENT.equals(memberId.getResourceType()) && memberId.hasIdPart()) {
+				try {
+					retVal.addAll(myIdHelperService.translateForcedIdToPids(memberId.toUnqualifiedVersionless()));
+				} catch (ResourceNotFoundException e) {
+					ourLog.debug("Skipping unknown group member {}", memberId.getValue());
+				}
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the paths of the search parameters by which resources of the given type
+	 * become members of a patient compartment, in the form that they are stored in
+	 * the resource links table
+	 */
+	private Set<String> getPatientCompartmentPaths(String theResourceType) {
+		Set<String> retVal = new HashSet<>();
+		for (RuntimeSearchParam next : myContext.getResourceDefinition(theResourceType).getSearchParams()) {
+			if (next.getProvidesMembershipInCompartments() != null && next.getProvidesMembershipInCompartments().contains(PATIENT) && isNotBlank(next.getPath())) {
+				for (String nextPath : BaseSearchParamExtractor.SPLIT.split(next.getPath())) {
+					if (isNotBlank(nextPath)) {
+						retVal.add(nextPath.trim());
+					}
+				}
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Splits the PIDs of the given resource type into one range per export thread
+	 */
+	private List<PidRange> determinePidRanges(String theResourceType) {
+		List<Object[]> minAndMax = myTxTemplate.execute(t -> myResourceTableDao.findPidRangeOfResourcesOfType(theResourceType));
+		if (minAndMax == null || minAndMax.isEmpty() || minAndMax.get(0)[0] == null) {
+			return Collections.emptyList();
+		}
+
+		long min = ((Number) minAndMax.get(0)[0]).longValue();
+		long max = ((Number) minAndMax.get(0)[1]).longValue();
+		int rangeCount = (int) Math.max(1, Math.min(myDaoConfig.getBulkExportThreadCount(), (max - min + 1) / PAGE_SIZE));
+		long rangeSize = (max - min + rangeCount) / rangeCount;
+
+		List<PidRange> retVal = new ArrayList<>();
+		long low = min - 1;
+		for (int i = 0; i < rangeCount && low < max; i++) {
+			long high = Math.min(max, low + rangeSize);
+			retVal.add(new PidRange(i, low, high));
+			low = high;
+		}
+		return retVal;
+	}
+
+	@Override
+	public void purgeExpiredJobs() {
+		while (true) {
+			List<BulkExportJobEntity> expired = myTxTemplate.execute(t -> myJobDao.findByExpiry(PageRequest.of(0, 10), new Date()).getContent());
+			if (expired == null || expired.isEmpty()) {
+				return;
+			}
+			for (BulkExportJobEntity next : expired) {
+				ourLog.info("Purging expired bulk export job {}", next.getJobId());
+				deleteJob(next);
+			}
+		}
+	}
+
+	@Override
+	public void cancelAndPurgeAllJobs() {
+		myBuildLock.lock();
+		try {
+			List<BulkExportJobEntity> jobs = myTxTemplate.execute(t -> myJobDao.findAll());
+			assert jobs != null;
+			for (BulkExportJobEntity next : jobs) {
+				deleteJob(next);
+			}
+		} finally {
+			myBuildLock.unlock();
+		}
+	}
+
+	private void deleteJob(BulkExportJobEntity theJob) {
+		myTxTemplate.execute(t -> {
+			myFileDao.deleteByJobPid(theJob.getId());
+			myJobDao.deleteById(theJob.getId());
+			return null;
+		});
+		FileUtils.deleteQuietly(getJobDirectory(theJob.getJobId()));
+	}
+
+	private File getJobDirectory(String theJobId) {
+		File baseDirectory;
+		if (isNotBlank(myDaoConfig.getBulkExportDirectory())) {
+			baseDirectory = new File(myDaoConfig.getBulkExportDirectory());
+		} else {
+			baseDirectory = new File(System.getProperty("java.io.tmpdir"), DEFAULT_DIRECTORY_NAME);
+		}
+		return new File(baseDirectory, theJobId);
+	}
+
+	private JobInfo toJobInfo(BulkExportJobEntity theJob, List<BulkExportFileEntity> theFiles) {
+		JobInfo retVal = new JobInfo()
+			.setJobId(theJob.getJobId())
+			.setStatus(theJob.getStatus())
+			.setStatusTime(theJob.getStatusTime())
+			.setStatusMessage(theJob.getStatusMessage())
+			.setRequest(theJob.getRequest())
+			.setTransactionTime(theJob.getCreated())
+			.setExpiry(theJob.getExpiry())
+			.setResourceCount(theJob.getResourceCount())
+			.setThroughputPerSecond(theJob.getThroughputPerSecond());
+		for (BulkExportFileEntity next : theFiles) {
+			retVal.addFile()
+				.setResourceType(next.getResourceType())
+				.setFileName(next.getFileName())
+				.setResourceCount(next.getResourceCount());
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the resource as a single line of JSON. If possible, this is done by splicing
+	 * the ID and meta into the stored resource body instead of parsing it.
+	 */
+	@VisibleForTesting
+	String toNdjsonLine(ResourceSearchView theView, Collection<ResourceTag> theTags) {
+		String resourceText = BaseHapiFhirDao.decodeResource(theView.getResource(), theView.getEncoding());
+		if (resourceText == null) {
+			return null;
+		}
+
+		String resourceType = theView.getResourceType();
+		String prefix = "{\"resourceType\":\"" + resourceType + "\"";
+		boolean canSplice = !theView.isHasTags() && resourceText.startsWith(prefix) && resourceText.length() > prefix.length() && (resourceText.charAt(prefix.length()) == ',' || resourceText.charAt(prefix.length()) == '}');
+		if (canSplice) {
+			StringBuilder b = new StringBuilder(resourceText.length() + 128);
+			b.append(prefix);
+			b.append(",\"id\":\"").append(theView.getIdDt().getIdPart()).append('"');
+			b.append(",\"meta\":{\"versionId\":\"").append(theView.getVersion()).append('"');
+			b.append(",\"lastUpdated\":\"").append(theView.getUpdated().getValueAsString()).append("\"}");
+			b.append(resourceText, prefix.length(), resourceText.length());
+			return b.toString();
+		}
+
+		IFhirResourceDao<?> dao = myDaoRegistry.getResourceDao(resourceType);
+		Class<? extends IBaseResource> resourceClass = myContext.getResourceDefinition(resourceType).getImplementingClass();
+		IBaseResource resource = dao.toResource(resourceClass, theView, theTags, false);
+		return myContext.newJsonParser().setPrettyPrint(false).encodeResourceToString(resource);
+	}
+
+	private static class PidRange {
+		private final int myIndex;
+		/**
+		 * Exclusive
+		 */
+		private final long myLow;
+		/**
+		 * Inclusive
+		 */
+		private final long myHigh;
+
+		PidRange(int theIndex, long theLow, long theHigh) {
+			myIndex = theIndex;
+			myLow = theLow;
+			myHigh = theHigh;
+		}
+	}
+
+	/**
+	 * Restricts a page of resource PIDs to the ones allowed by a job. The restrictions are
+	 * applied as queries against each page, so the full set of allowed PIDs is never loaded.
+	 */
+	private class PidFilter {
+		private final String myResourceType;
+		private final List<String> myTypeFilters;
+		/**
+		 * Null unless only resources in a patient compartment may be exported
+		 */
+		private final Set<String> myCompartmentPaths;
+		/**
+		 * Null unless only resources in the compartment of a group's members may be exported
+		 */
+		private final Set<Long> myGroupMemberPids;
+
+		PidFilter(String theResourceType, List<String> theTypeFilters, Set<String> theCompartmentPaths, Set<Long> theGroupMemberPids) {
+			myResourceType = theResourceType;
+			myTypeFilters = theTypeFilters;
+			myCompartmentPaths = theCompartmentPaths;
+			myGroupMemberPids = theGroupMemberPids;
+		}
+
+		/**
+		 * Must be called within a transaction
+		 */
+		List<Long> filter(List<Long> thePids) {
+			List<Long> retVal = new ArrayList<>(thePids);
+
+			if (!myTypeFilters.isEmpty()) {
+				RuntimeResourceDefinition resourceDef = myContext.getResourceDefinition(myResourceType);
+				IFhirResourceDao<?> dao = myDaoRegistry.getResourceDao(myResourceType);
+				Set<Long> matching = new HashSet<>();
+				for (String next : myTypeFilters) {
+					for (List<Long> nextPartition : Lists.partition(retVal, PARTITION_SIZE)) {
+						SearchParameterMap params = myMatchUrlService.translateMatchUrl(next, resourceDef);
+						params.setLoadSynchronous(true);
+						ISearchBuilder sb = dao.newSearchBuilder();
+						sb.setType(resourceDef.getImplementingClass(), myResourceType);
+						sb.setRestrictToPids(nextPartition);
+						Iterator<Long> iter = sb.createQuery(params, UUID.randomUUID().toString());
+						while (iter.hasNext()) {
+							matching.add(iter.next());
+						}
+					}
+				}
+				retVal.removeIf(t -> !matching.contains(t));
+			}
+
+			if (retVal.isEmpty()) {
+				return retVal;
+			}
+
+			if (myGroupMemberPids != null && myCompartmentPaths == null) {
+				retVal.removeIf(t -> !myGroupMemberPids.contains(t));
+			} else if (myCompartmentPaths != null) {
+				Set<Long> inCompartment = new HashSet<>();
+				if (!myCompartmentPaths.isEmpty()) {
+					if (myGroupMemberPids == null) {
+						inCompartment.addAll(myResourceLinkDao.findSourcePidsOfLinksToType(retVal, myCompartmentPaths, PATIENT));
+					} else {
+						for (List<Long> nextPartition : Lists.partition(new ArrayList<>(myGroupMemberPids), PARTITION_SIZE)) {
+							inCompartment.addAll(myResourceLinkDao.findSourcePidsOfLinksToTargets(retVal, myCompartmentPaths, nextPartition));
+						}
+					}
+				}
+				retVal.removeIf(t -> !inCompartment.contains(t));
+			}
+
+			return retVal;
+		}
+	}
+
+	private class ExportRangeTask implements Callable<FileInfo> {
+		private final File myDirectory;
+		private final String myResourceType;
+		private final PidRange myRange;
+		private final Date mySince;
+		private final PidFilter myFilter;
+
+		ExportRangeTask(File theDirectory, String theResourceType, PidRange theRange, Date theSince, PidFilter theFilter) {
+			myDirectory = theDirectory;
+			myResourceType = theResourceType;
+			myRange = theRange;
+			mySince = theSince;
+			myFilter = theFilter;
+		}
+
+		@Override
+		public FileInfo call() throws IOException {
+			StopWatch sw = new StopWatch();
+			String fileName = myResourceType + "-" + myRange.myIndex + FILE_SUFFIX;
+			File file = new File(myDirectory, fileName);
+
+			int count = 0;
+			try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+				long low = myRange.myLow;
+				while (true) {
+					long pageLow = low;
+					Slice<Long> ids = myTxTemplate.execute(t -> {
+						if (mySince != null) {
+							return myResourceTableDao.findIdsOfCurrentResourcesOfTypeWithinPidRange(PageRequest.of(0, PAGE_SIZE), myResourceType, pageLow, myRange.myHigh, mySince);
+						}
+						return myResourceTableDao.findIdsOfCurrentResourcesOfTypeWithinPidRange(PageRequest.of(0, PAGE_SIZE), myResourceType, pageLow, myRange.myHigh);
+					});
+					assert ids != null;
+					if (!ids.hasContent()) {
+						break;
+					}
+
+					List<Long> pagePids = ids.getContent();
+					low = pagePids.get(pagePids.size() - 1);
+					Integer written = myTxTemplate.execute(t -> {
+						List<Long> allowedPids = myFilter != null ? myFilter.filter(pagePids) : pagePids;
+						return allowedPids.isEmpty() ? 0 : writePage(writer, allowedPids);
+					});
+					assert written != null;
+					count += written;
+
+					if (!ids.hasNext()) {
+						break;
+					}
+				}
+			}
+
+			if (count == 0) {
+				FileUtils.deleteQuietly(file);
+				return null;
+			}
+
+			ourLog.info("Wrote {} {} resources to {} in {} ({} resources/sec)", count, myResourceType, fileName, sw.toString(), sw.formatThroughput(count, TimeUnit.SECONDS));
+			return new FileInfo()
+				.setResourceType(myResourceType)
+				.setFileName(fileName)
+				.setResourceCount(count);
+		}
+
+		private int writePage(Writer theWriter, List<Long> thePids) {
+			List<Long> idsWithTags = new ArrayList<>();
+			List<ResourceSearchView> views = new ArrayList<>(myResourceSearchViewDao.findByResourceIds(thePids));
+			views.sort(Comparator.comparing(ResourceSearchView::getId));
+			for (ResourceSearchView next : views) {
+				if (next.isHasTags()) {
+					idsWithTags.add(next.getId());
+				}
+			}
+
+			Map<Long, Collection<ResourceTag>> tags = new HashMap<>();
+			if (!idsWithTags.isEmpty()) {
+				for (ResourceTag next : myResourceTagDao.findByResourceIds(idsWithTags)) {
+					tags.computeIfAbsent(next.getResourceId(), t -> new ArrayList<>()).add(next);
+				}
+			}
+
+			int retVal = 0;
+			try {
+				for (ResourceSearchView next : views) {
+					if (next.getDeleted() != null || next.getEncoding() == ResourceEncodingEnum.DEL) {
+						continue;
+					}
+					String line = toNdjsonLine(next, tags.get(next.getId()));
+					if (line != null) {
+						theWriter.append(line);
+						theWriter.append('\n');
+						retVal++;
+					}
+				}
+			} catch (IOException e) {
+				throw new InternalErrorException(e);
+			}
+			return retVal;
+		}
+	}
+
+}
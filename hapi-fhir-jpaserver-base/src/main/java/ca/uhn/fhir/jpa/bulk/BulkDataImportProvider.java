@@ -0,0 +1,104 @@
+package ca.uhn.fhir.jpa.bulk;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.util.JpaConstants;
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.hl7.fhir.r4.model.BooleanType;
+import org.hl7.fhir.r4.model.CodeType;
+import org.hl7.fhir.r4.model.IntegerType;
+import org.hl7.fhir.r4.model.Parameters;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.apache.commons.lang3.StringUtils.*;
+
+/**
+ * Provides the <code>$import</code> operation, which stores the resources in
+ * an NDJSON request body (optionally GZip compressed) using {@link IBulkDataImportSvc}.
+ * <p>
+ * The request body is streamed directly from the request instead of being
+ * parsed as a <code>Parameters</code> resource (see {@link Operation#manualRequest()}),
+ * so options are passed as URL parameters.
+ * </p>
+ */
+public class BulkDataImportProvider {
+
+	private static final Set<String> VALID_CONTENT_TYPES = new HashSet<>(Arrays.asList(Constants.CT_FHIR_NDJSON, "application/ndjson", "ndjson"));
+
+	@Autowired
+	private IBulkDataImportSvc myBulkDataImportSvc;
+
+	/**
+	 * System level <code>$import</code>
+	 */
+	@Operation(name = JpaConstants.OPERATION_IMPORT, manualRequest = true)
+	public Parameters importNdjson(
+		@OperationParam(name = JpaConstants.PARAM_IMPORT_DEFER_INDEXING, min = 0, max = 1) BooleanType theDeferIndexing,
+		HttpServletRequest theServletRequest
+	) throws IOException {
+		String contentType = trim(substringBefore(theServletRequest.getContentType(), ";"));
+		if (!VALID_CONTENT_TYPES.contains(contentType)) {
+			throw new InvalidRequestException("Invalid content type for " + JpaConstants.OPERATION_IMPORT + ", only " + Constants.CT_FHIR_NDJSON + " is supported: " + contentType);
+		}
+
+		IBulkDataImportSvc.ImportOptions options = new IBulkDataImportSvc.ImportOptions();
+		if (theDeferIndexing != null && theDeferIndexing.getValue() != null) {
+			options.setDeferIndexing(theDeferIndexing.getValue());
+		}
+
+		IBulkDataImportSvc.ImportOutcome outcome;
+		InputStream inputStream = theServletRequest.getInputStream();
+		if (Constants.ENCODING_GZIP.equals(trim(theServletRequest.getHeader(Constants.HEADER_CONTENT_ENCODING)))) {
+			inputStream = new GZIPInputStream(inputStream);
+		}
+		try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+			outcome = myBulkDataImportSvc.importNdjson(reader, options);
+		}
+
+		Parameters retVal = new Parameters();
+		retVal.addParameter().setName("resourceCount").setValue(new IntegerType(outcome.getResourceCount()));
+		retVal.addParameter().setName("failedResourceCount").setValue(new IntegerType(outcome.getFailedResourceCount()));
+		retVal.addParameter().setName("millis").setValue(new IntegerType((int) outcome.getMillis()));
+		for (Map.Entry<String, Integer> next : outcome.getResourceCountsByType().entrySet()) {
+			Parameters.ParametersParameterComponent typeParam = retVal.addParameter().setName("resourceType");
+			typeParam.addPart().setName("type").setValue(new CodeType(next.getKey()));
+			typeParam.addPart().setName("count").setValue(new IntegerType(next.getValue()));
+		}
+		return retVal;
+	}
+
+}
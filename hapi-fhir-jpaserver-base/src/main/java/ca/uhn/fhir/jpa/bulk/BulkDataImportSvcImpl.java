@@ -0,0 +1,332 @@
+package ca.uhn.fhir.jpa.bulk;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.data.IForcedIdDao;
+import ca.uhn.fhir.jpa.model.entity.ForcedId;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.search.reindex.IResourceReindexingSvc;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.util.StopWatch;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.ListMultimap;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.hibernate.Session;
+import org.hibernate.search.util.impl.Executors;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceContextType;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Stores the resources in an NDJSON stream in chunks, using a single database
+ * transaction (with JDBC batching) for each chunk instead of processing each
+ * resource as a FHIR transaction. Chunks are parsed and stored in parallel.
+ * <p>
+ * To make this fast, several of the checks performed by a normal create are relaxed:
+ * </p>
+ * <ul>
+ * <li>
+ * Whether or not each client assigned ID already exists is checked using a single
+ * query per resource type per chunk. Resources with an existing ID (or a numeric ID)
+ * are stored using a normal update, and all other resources are created without
+ * looking up any previous versions.
+ * </li>
+ * <li>
+ * Interceptors are not invoked for created resources, so (for example) no
+ * subscriptions are triggered by the import.
+ * </li>
+ * <li>
+ * If indexing is deferred (the default), referential integrity is only checked once
+ * every resource has been stored, by indexing the imported resources in parallel.
+ * Resources which fail to index are marked as such (exactly as they would be by
+ * <code>$reindex</code>) and counted as failed.
+ * </li>
+ * </ul>
+ */
+public class BulkDataImportSvcImpl implements IBulkDataImportSvc {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(BulkDataImportSvcImpl.class);
+	private static final int PARTITION_SIZE = 800;
+	@Autowired
+	private IForcedIdDao myForcedIdDao;
+	@Autowired
+	private IResourceReindexingSvc myResourceReindexingSvc;
+	@Autowired
+	private DaoConfig myDaoConfig;
+	@Autowired
+	private DaoRegistry myDaoRegistry;
+	@Autowired
+	private FhirContext myContext;
+	@Autowired
+	private PlatformTransactionManager myTxManager;
+	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
+	private EntityManager myEntityManager;
+	private TransactionTemplate myTxTemplate;
+	private ThreadPoolExecutor myExecutor;
+
+	@PostConstruct
+	public void start() {
+		myTxTemplate = new TransactionTemplate(myTxManager);
+		myTxTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+		int threadCount = myDaoConfig.getBulkImportThreadCount();
+		// Core threads are used (and allowed to time out) so that chunks are processed in parallel even when the queue isn't full
+		myExecutor = new ThreadPoolExecutor(threadCount, threadCount,
+			60L, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(threadCount),
+			new BasicThreadFactory.Builder().namingPattern("BulkImport-%d").build(),
+			new Executors.BlockPolicy()
+		);
+		myExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	@PreDestroy
+	public void stop() {
+		myExecutor.shutdown();
+	}
+
+	@Override
+	public ImportOutcome importNdjson(Reader theReader, ImportOptions theOptions) {
+		StopWatch sw = new StopWatch();
+		ImportOutcome retVal = new ImportOutcome();
+
+		/*
+		 * Phase 1: Parse and store the resources. The stream is read in this
+		 * thread, and each chunk of lines is handed to the executor.
+		 */
+		List<Future<ChunkOutcome>> chunkFutures = new ArrayList<>();
+		int chunkSize = myDaoConfig.getBulkImportChunkSize();
+		try {
+			BufferedReader reader = new BufferedReader(theReader);
+			List<String> chunk = new ArrayList<>(chunkSize);
+			int lineNumber = 0;
+			int chunkFirstLineNumber = 1;
+			for (String nextLine = reader.readLine(); nextLine != null; nextLine = reader.readLine()) {
+				lineNumber++;
+				chunk.add(nextLine);
+				if (chunk.size() == chunkSize) {
+					chunkFutures.add(myExecutor.submit(new ChunkTask(chunk, chunkFirstLineNumber, theOptions)));
+					chunk = new ArrayList<>(chunkSize);
+					chunkFirstLineNumber = lineNumber + 1;
+				}
+			}
+			if (!chunk.isEmpty()) {
+				chunkFutures.add(myExecutor.submit(new ChunkTask(chunk, chunkFirstLineNumber, theOptions)));
+			}
+		} catch (IOException e) {
+			throw new InvalidRequestException("Failed to read NDJSON input: " + e.toString());
+		}
+
+		List<Long> pids = new ArrayList<>();
+		int failed = 0;
+		for (ChunkOutcome next : awaitAll(chunkFutures)) {
+			pids.addAll(next.myPids);
+			failed += next.myFailedCount;
+			for (Map.Entry<String, Integer> nextEntry : next.myCountsByType.entrySet()) {
+				retVal.getResourceCountsByType().merge(nextEntry.getKey(), nextEntry.getValue(), Integer::sum);
+			}
+		}
+		ourLog.info("Stored {} resources ({} failed) in {}", pids.size(), failed, sw.toString());
+
+		/*
+		 * Phase 2: Index the stored resources. Every resource in the stream now
+		 * exists, so references between them can be resolved in any order.
+		 */
+		if (theOptions.isDeferIndexing() && !pids.isEmpty()) {
+			StopWatch indexSw = new StopWatch();
+			List<List<Long>> partitions = Lists.partition(pids, myDaoConfig.getReindexChunkSize());
+			List<Future<Integer>> indexFutures = new ArrayList<>();
+			for (List<Long> nextPartition : partitions) {
+				indexFutures.add(myExecutor.submit(() -> myResourceReindexingSvc.reindexResourcesNow(nextPartition)));
+			}
+			int indexed = 0;
+			for (Integer next : awaitAll(indexFutures)) {
+				indexed += next;
+			}
+			failed += pids.size() - indexed;
+			ourLog.info("Indexed {} of {} imported resources in {}", indexed, pids.size(), indexSw.toString());
+		}
+
+		retVal.setFailedResourceCount(failed);
+		retVal.setResourceCount(pids.size());
+		retVal.setMillis(sw.getMillis());
+		ourLog.info(retVal.toString());
+		return retVal;
+	}
+
+	private <T> List<T> awaitAll(List<Future<T>> theFutures) {
+		List<T> retVal = new ArrayList<>(theFutures.size());
+		for (Future<T> next : theFutures) {
+			try {
+				retVal.add(next.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InternalErrorException(e);
+			} catch (ExecutionException e) {
+				throw new InternalErrorException(e.getCause());
+			}
+		}
+		return retVal;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void storeResources(List<IBaseResource> theResources, boolean thePerformIndexing, ChunkOutcome theOutcome) {
+		myEntityManager.unwrap(Session.class).setJdbcBatchSize(myDaoConfig.getBulkImportChunkSize());
+		Date updateTime = new Date();
+
+		// Find out which client assigned IDs already exist, using one query per resource type
+		ListMultimap<String, String> typeToClientAssignedIds = ArrayListMultimap.create();
+		for (IBaseResource next : theResources) {
+			IIdType id = next.getIdElement();
+			if (id.hasIdPart() && !id.isIdPartValidLong()) {
+				typeToClientAssignedIds.put(myContext.getResourceDefinition(next).getName(), id.getIdPart());
+			}
+		}
+		Set<String> existingIds = new HashSet<>();
+		for (String nextType : typeToClientAssignedIds.keySet()) {
+			for (List<String> nextPartition : Lists.partition(typeToClientAssignedIds.get(nextType), PARTITION_SIZE)) {
+				for (ForcedId nextForcedId : myForcedIdDao.findByTypeAndForcedIds(nextType, nextPartition)) {
+					existingIds.add(nextType + "/" + nextForcedId.getForcedId());
+				}
+			}
+		}
+
+		for (IBaseResource next : theResources) {
+			String resourceType = myContext.getResourceDefinition(next).getName();
+			IFhirResourceDao<IBaseResource> dao = myDaoRegistry.getResourceDao(resourceType);
+			IIdType id = next.getIdElement();
+
+			ResourceTable entity;
+			if (id.hasIdPart() && (id.isIdPartValidLong() || existingIds.contains(resourceType + "/" + id.getIdPart()))) {
+				entity = dao.update(next, null, thePerformIndexing, null).getEntity();
+			} else {
+				entity = dao.createForBulkImport(next, thePerformIndexing, updateTime);
+			}
+
+			theOutcome.myPids.add(entity.getId());
+			theOutcome.myCountsByType.merge(resourceType, 1, Integer::sum);
+		}
+	}
+
+	private static class ChunkOutcome {
+		private final List<Long> myPids = new ArrayList<>();
+		private final Map<String, Integer> myCountsByType = new HashMap<>();
+		private int myFailedCount;
+	}
+
+	private class ChunkTask implements Callable<ChunkOutcome> {
+		private final List<String> myLines;
+		private final int myFirstLineNumber;
+		private final ImportOptions myOptions;
+
+		ChunkTask(List<String> theLines, int theFirstLineNumber, ImportOptions theOptions) {
+			myLines = theLines;
+			myFirstLineNumber = theFirstLineNumber;
+			myOptions = theOptions;
+		}
+
+		@Override
+		public ChunkOutcome call() {
+			ChunkOutcome retVal = new ChunkOutcome();
+			boolean performIndexing = !myOptions.isDeferIndexing();
+
+			IParser parser = myContext.newJsonParser();
+			List<IBaseResource> resources = new ArrayList<>(myLines.size());
+			List<String> originalIds = new ArrayList<>(myLines.size());
+			for (int i = 0; i < myLines.size(); i++) {
+				String nextLine = myLines.get(i);
+				if (isBlank(nextLine)) {
+					continue;
+				}
+				try {
+					IBaseResource resource = parser.parseResource(nextLine);
+					String resourceType = myContext.getResourceDefinition(resource).getName();
+					if (!myDaoRegistry.isResourceTypeSupported(resourceType)) {
+						throw new InvalidRequestException("Unknown or unsupported resource type: " + resourceType);
+					}
+					resources.add(resource);
+					originalIds.add(resource.getIdElement().getValue());
+				} catch (Exception e) {
+					ourLog.warn("Failed to parse resource on line {}: {}", myFirstLineNumber + i, e.toString());
+					retVal.myFailedCount++;
+				}
+			}
+
+			try {
+				ChunkOutcome chunkOutcome = new ChunkOutcome();
+				myTxTemplate.execute(t -> {
+					storeResources(resources, performIndexing, chunkOutcome);
+					return null;
+				});
+				retVal.myPids.addAll(chunkOutcome.myPids);
+				retVal.myCountsByType.putAll(chunkOutcome.myCountsByType);
+			} catch (Exception e) {
+				ourLog.warn("Failed to store chunk of {} resources, going to store them individually: {}", resources.size(), e.toString());
+				for (int i = 0; i < resources.size(); i++) {
+					// The failed attempt may have assigned IDs to the resources
+					IBaseResource next = resources.get(i);
+					next.setId(originalIds.get(i));
+					try {
+						ChunkOutcome resourceOutcome = new ChunkOutcome();
+						myTxTemplate.execute(t -> {
+							storeResources(Collections.singletonList(next), performIndexing, resourceOutcome);
+							return null;
+						});
+						retVal.myPids.addAll(resourceOutcome.myPids);
+						resourceOutcome.myCountsByType.forEach((k, v) -> retVal.myCountsByType.merge(k, v, Integer::sum));
+					} catch (Exception e2) {
+						ourLog.warn("Failed to store resource {}: {}", next.getIdElement().getValue(), e2.toString());
+						retVal.myFailedCount++;
+					}
+				}
+			}
+
+			return retVal;
+		}
+	}
+
+}
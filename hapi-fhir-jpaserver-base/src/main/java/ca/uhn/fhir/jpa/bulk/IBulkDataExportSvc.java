@@ -0,0 +1,228 @@
+package ca.uhn.fhir.jpa.bulk;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates the NDJSON files for FHIR Bulk Data <code>$export</code> jobs
+ */
+public interface IBulkDataExportSvc {
+
+	/**
+	 * Submits a new export job. The files will be generated in the background.
+	 *
+	 * @param theStyle         The scope of the export
+	 * @param theGroupId       The ID of the group whose members should be exported (required for {@link BulkExportStyleEnum#GROUP} exports, otherwise ignored)
+	 * @param theResourceTypes The resource types to export, or <code>null</code> for all types
+	 * @param theSince         If not <code>null</code>, only resources updated at or after this time are exported
+	 * @param theTypeFilters   Search URLs (e.g. <code>Observation?status=final</code>) which the exported resources of the given type must match, or <code>null</code>
+	 * @param theRequest       The original request URL, which is returned in the completed job manifest
+	 * @return The status of the new job
+	 */
+	JobInfo submitJob(BulkExportStyleEnum theStyle, String theGroupId, Set<String> theResourceTypes, Date theSince, Set<String> theTypeFilters, String theRequest);
+
+	/**
+	 * @throws ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException If no job exists with the given ID
+	 */
+	JobInfo getJobStatusOrThrowResourceNotFound(String theJobId);
+
+	/**
+	 * Returns a file generated by a completed job
+	 *
+	 * @throws ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException If the job or the file do not exist
+	 */
+	File getFileOrThrowResourceNotFound(String theJobId, String theFileName);
+
+	/**
+	 * Generates the files for any jobs which have been submitted, and returns once
+	 * they have all been processed
+	 *
+	 * @return The number of jobs which were processed
+	 */
+	int buildExportFiles();
+
+	/**
+	 * Deletes any jobs (and their files) whose expiry time has passed
+	 */
+	void purgeExpiredJobs();
+
+	/**
+	 * Deletes all jobs and their files (intended for testing)
+	 */
+	void cancelAndPurgeAllJobs();
+
+	class JobInfo {
+
+		private String myJobId;
+		private BulkJobStatusEnum myStatus;
+		private Date myStatusTime;
+		private String myStatusMessage;
+		private String myRequest;
+		private Date myTransactionTime;
+		private Date myExpiry;
+		private Integer myResourceCount;
+		private Double myThroughputPerSecond;
+		private List<FileInfo> myFiles = new ArrayList<>();
+
+		public Date getExpiry() {
+			return myExpiry;
+		}
+
+		public JobInfo setExpiry(Date theExpiry) {
+			myExpiry = theExpiry;
+			return this;
+		}
+
+		public List<FileInfo> getFiles() {
+			return myFiles;
+		}
+
+		public FileInfo addFile() {
+			FileInfo retVal = new FileInfo();
+			myFiles.add(retVal);
+			return retVal;
+		}
+
+		public String getJobId() {
+			return myJobId;
+		}
+
+		public JobInfo setJobId(String theJobId) {
+			myJobId = theJobId;
+			return this;
+		}
+
+		public String getRequest() {
+			return myRequest;
+		}
+
+		public JobInfo setRequest(String theRequest) {
+			myRequest = theRequest;
+			return this;
+		}
+
+		/**
+		 * The total number of resources exported, or <code>null</code> if the job has not completed
+		 */
+		public Integer getResourceCount() {
+			return myResourceCount;
+		}
+
+		public JobInfo setResourceCount(Integer theResourceCount) {
+			myResourceCount = theResourceCount;
+			return this;
+		}
+
+		public BulkJobStatusEnum getStatus() {
+			return myStatus;
+		}
+
+		public JobInfo setStatus(BulkJobStatusEnum theStatus) {
+			myStatus = theStatus;
+			return this;
+		}
+
+		public String getStatusMessage() {
+			return myStatusMessage;
+		}
+
+		public JobInfo setStatusMessage(String theStatusMessage) {
+			myStatusMessage = theStatusMessage;
+			return this;
+		}
+
+		public Date getStatusTime() {
+			return myStatusTime;
+		}
+
+		public JobInfo setStatusTime(Date theStatusTime) {
+			myStatusTime = theStatusTime;
+			return this;
+		}
+
+		/**
+		 * The average number of resources written per second, or <code>null</code> if the
+		 * job has not completed
+		 */
+		public Double getThroughputPerSecond() {
+			return myThroughputPerSecond;
+		}
+
+		public JobInfo setThroughputPerSecond(Double theThroughputPerSecond) {
+			myThroughputPerSecond = theThroughputPerSecond;
+			return this;
+		}
+
+		/**
+		 * The time at which the job was submitted. Resources updated after this time
+		 * may or may not be included in the export.
+		 */
+		public Date getTransactionTime() {
+			return myTransactionTime;
+		}
+
+		public JobInfo setTransactionTime(Date theTransactionTime) {
+			myTransactionTime = theTransactionTime;
+			return this;
+		}
+	}
+
+	class FileInfo {
+
+		private String myResourceType;
+		private String myFileName;
+		private int myResourceCount;
+
+		public String getFileName() {
+			return myFileName;
+		}
+
+		public FileInfo setFileName(String theFileName) {
+			myFileName = theFileName;
+			return this;
+		}
+
+		public int getResourceCount() {
+			return myResourceCount;
+		}
+
+		public FileInfo setResourceCount(int theResourceCount) {
+			myResourceCount = theResourceCount;
+			return this;
+		}
+
+		public String getResourceType() {
+			return myResourceType;
+		}
+
+		public FileInfo setResourceType(String theResourceType) {
+			myResourceType = theResourceType;
+			return this;
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+package ca.uhn.fhir.jpa.bulk;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Reader;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stores the resources in a FHIR Bulk Data NDJSON stream (one resource per line)
+ * without processing each resource as a separate FHIR transaction
+ */
+public interface IBulkDataImportSvc {
+
+	/**
+	 * Stores every resource in the given NDJSON stream. Resources with an ID which
+	 * already exists on the server are updated, and all other resources are created
+	 * (using the ID in the resource if it has one).
+	 * <p>
+	 * Unlike a FHIR transaction, the import is not atomic. Resources which can not be
+	 * parsed or stored are skipped and counted as failed in the returned outcome.
+	 * </p>
+	 *
+	 * @param theReader  The NDJSON stream. The reader is not closed by this method.
+	 * @param theOptions The import options
+	 * @return The outcome of the import
+	 */
+	ImportOutcome importNdjson(Reader theReader, ImportOptions theOptions);
+
+	class ImportOptions {
+
+		private boolean myDeferIndexing = true;
+
+		/**
+		 * If <code>true</code> (which is the default), resources are stored without
+		 * being indexed, and are then indexed once every resource in the stream has been
+		 * stored. This means that references between resources in the stream may
+		 * appear in any order, and that references are only validated once at the end.
+		 */
+		public boolean isDeferIndexing() {
+			return myDeferIndexing;
+		}
+
+		/**
+		 * If <code>true</code> (which is the default), resources are stored without
+		 * being indexed, and are then indexed once every resource in the stream has been
+		 * stored. This means that references between resources in the stream may
+		 * appear in any order, and that references are only validated once at the end.
+		 */
+		public ImportOptions setDeferIndexing(boolean theDeferIndexing) {
+			myDeferIndexing = theDeferIndexing;
+			return this;
+		}
+	}
+
+	class ImportOutcome {
+
+		private final Map<String, Integer> myResourceCountsByType = new TreeMap<>();
+		private int myResourceCount;
+		private int myFailedResourceCount;
+		private long myMillis;
+
+		/**
+		 * The number of resources which were stored, keyed by resource type
+		 */
+		public Map<String, Integer> getResourceCountsByType() {
+			return myResourceCountsByType;
+		}
+
+		/**
+		 * The number of resources which were stored
+		 */
+		public int getResourceCount() {
+			return myResourceCount;
+		}
+
+		public ImportOutcome setResourceCount(int theResourceCount) {
+			myResourceCount = theResourceCount;
+			return this;
+		}
+
+		/**
+		 * The number of resources (or lines) which could not be parsed, stored or indexed
+		 */
+		public int getFailedResourceCount() {
+			return myFailedResourceCount;
+		}
+
+		public ImportOutcome setFailedResourceCount(int theFailedResourceCount) {
+			myFailedResourceCount = theFailedResourceCount;
+			return this;
+		}
+
+		public long getMillis() {
+			return myMillis;
+		}
+
+		public ImportOutcome setMillis(long theMillis) {
+			myMillis = theMillis;
+			return this;
+		}
+
+		public double getThroughputPerSecond() {
+			if (myMillis == 0) {
+				return myResourceCount;
+			}
+			return myResourceCount * 1000.0 / myMillis;
+		}
+
+		@Override
+		public String toString() {
+			return "Imported " + myResourceCount + " resources (" + myFailedResourceCount + " failed) in " + myMillis + "ms (" + Math.round(getThroughputPerSecond()) + "/sec): " + myResourceCountsByType;
+		}
+	}
+}
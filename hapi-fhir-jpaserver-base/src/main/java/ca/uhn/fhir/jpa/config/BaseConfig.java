@@ -2,6 +2,10 @@ package ca.uhn.fhir.jpa.config;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.i18n.HapiLocalizer;
+import ca.uhn.fhir.jpa.bulk.BulkDataExportSvcImpl;
+import ca.uhn.fhir.jpa.bulk.BulkDataImportSvcImpl;
+import ca.uhn.fhir.jpa.bulk.IBulkDataExportSvc;
+import ca.uhn.fhir.jpa.bulk.IBulkDataImportSvc;
 import ca.uhn.fhir.jpa.provider.SubscriptionTriggeringProvider;
 import ca.uhn.fhir.jpa.search.DatabaseBackedPagingProvider;
 import ca.uhn.fhir.jpa.search.IStaleSearchDeletingSvc;
@@ -10,6 +14,8 @@ import ca.uhn.fhir.jpa.search.reindex.IResourceReindexingSvc;
 import ca.uhn.fhir.jpa.search.reindex.ResourceReindexingSvcImpl;
 import ca.uhn.fhir.jpa.subscription.dbmatcher.CompositeInMemoryDaoSubscriptionMatcher;
 import ca.uhn.fhir.jpa.subscription.dbmatcher.DaoSubscriptionMatcher;
+import ca.uhn.fhir.jpa.searchparam.registry.IRegistryChangeChannel;
+import ca.uhn.fhir.jpa.searchparam.registry.LocalRegistryChangeChannel;
 import ca.uhn.fhir.jpa.subscription.module.cache.ISubscribableChannelFactory;
 import ca.uhn.fhir.jpa.subscription.module.cache.LinkedBlockingQueueSubscribableChannelFactory;
 import ca.uhn.fhir.jpa.subscription.module.matcher.ISubscriptionMatcher;
@@ -134,6 +140,16 @@ public abstract class BaseConfig implements SchedulingConfigurer {
 		return new StaleSearchDeletingSvcImpl();
 	}
 
+	@Bean
+	public IBulkDataExportSvc bulkDataExportSvc() {
+		return new BulkDataExportSvcImpl();
+	}
+
+	@Bean
+	public IBulkDataImportSvc bulkDataImportSvc() {
+		return new BulkDataImportSvcImpl();
+	}
+
 	@Bean
 	public InMemorySubscriptionMatcher inMemorySubscriptionMatcher() {
 		return new InMemorySubscriptionMatcher();
@@ -152,6 +168,15 @@ public abstract class BaseConfig implements SchedulingConfigurer {
 		return new LinkedBlockingQueueSubscribableChannelFactory();
 	}
 
+	/**
+	 * Create a @Primary @Bean if you need a different implementation (e.g. one which
+	 * broadcasts changes to the other nodes in a cluster)
+	 */
+	@Bean
+	public IRegistryChangeChannel localRegistryChangeChannel() {
+		return new LocalRegistryChangeChannel();
+	}
+
 	@Bean
 	@Primary
 	public ISubscriptionMatcher subscriptionMatcherCompositeInMemoryDatabase() {
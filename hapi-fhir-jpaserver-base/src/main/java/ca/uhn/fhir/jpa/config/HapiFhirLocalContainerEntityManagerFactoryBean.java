@@ -64,6 +64,10 @@ public class HapiFhirLocalContainerEntityManagerFactoryBean extends LocalContain
 			retVal.put(AvailableSettings.BATCH_VERSIONED_DATA, "true");
 		}
 
+		if (!retVal.containsKey(AvailableSettings.IN_CLAUSE_PARAMETER_PADDING)) {
+			retVal.put(AvailableSettings.IN_CLAUSE_PARAMETER_PADDING, "true");
+		}
+
 		return retVal;
 	}
 
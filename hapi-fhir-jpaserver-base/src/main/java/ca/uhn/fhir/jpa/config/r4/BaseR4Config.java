@@ -2,6 +2,8 @@ package ca.uhn.fhir.jpa.config.r4;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.ParserOptions;
+import ca.uhn.fhir.jpa.bulk.BulkDataExportProvider;
+import ca.uhn.fhir.jpa.bulk.BulkDataImportProvider;
 import ca.uhn.fhir.jpa.config.BaseConfig;
 import ca.uhn.fhir.jpa.dao.FulltextSearchSvcImpl;
 import ca.uhn.fhir.jpa.dao.IFhirSystemDao;
@@ -86,6 +88,18 @@ public class BaseR4Config extends BaseConfig {
 		return new TransactionProcessor<>();
 	}
 
+	@Bean(name = "myBulkDataExportProvider")
+	@Lazy
+	public BulkDataExportProvider bulkDataExportProvider() {
+		return new BulkDataExportProvider();
+	}
+
+	@Bean(name = "myBulkDataImportProvider")
+	@Lazy
+	public BulkDataImportProvider bulkDataImportProvider() {
+		return new BulkDataImportProvider();
+	}
+
 	@Bean(name = "myGraphQLProvider")
 	@Lazy
 	public GraphQLProvider graphQLProvider() {
@@ -72,6 +72,7 @@ import javax.persistence.TypedQuery;
 import javax.servlet.http.HttpServletResponse;
 import java.util.*;
 
+import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 @Transactional(propagation = Propagation.REQUIRED)
@@ -87,6 +88,8 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 	protected DaoConfig myDaoConfig;
 	@Autowired
 	private MatchResourceUrlService myMatchResourceUrlService;
+	@Autowired
+	private RegistryChangePublisher myRegistryChangePublisher;
 
 	private String myResourceName;
 	private Class<T> myResourceType;
@@ -384,6 +387,64 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 		}
 	}
 
+	@Override
+	public ResourceTable createForBulkImport(T theResource, boolean thePerformIndexing, Date theUpdateTime) {
+		preProcessResourceForStorage(theResource);
+
+		ResourceTable entity = new ResourceTable();
+		entity.setResourceType(toResourceName(theResource));
+		boolean serverAssignedId = !createForcedIdForClientAssignedId(theResource, entity);
+
+		ResourceTable retVal = updateEntity(null, theResource, entity, null, thePerformIndexing, true, theUpdateTime, true, true);
+
+		theResource.setId(entity.getIdDt());
+		if (serverAssignedId) {
+			createForcedIdForServerAssignedId(theResource, retVal);
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * @return Returns <code>true</code> if the resource has a client assigned ID
+	 */
+	private boolean createForcedIdForClientAssignedId(T theResource, ResourceTable theEntity) {
+		if (isBlank(theResource.getIdElement().getIdPart())) {
+			return false;
+		}
+
+		switch (myDaoConfig.getResourceClientIdStrategy()) {
+			case NOT_ALLOWED:
+				throw new ResourceNotFoundException(
+					getContext().getLocalizer().getMessage(BaseHapiFhirResourceDao.class, "failedToCreateWithClientAssignedIdNotAllowed", theResource.getIdElement().getIdPart()));
+			case ALPHANUMERIC:
+				if (theResource.getIdElement().isIdPartValidLong()) {
+					throw new InvalidRequestException(
+						getContext().getLocalizer().getMessage(BaseHapiFhirResourceDao.class, "failedToCreateWithClientAssignedNumericId", theResource.getIdElement().getIdPart()));
+				}
+				createForcedIdIfNeeded(theEntity, theResource.getIdElement(), false);
+				break;
+			case ANY:
+				createForcedIdIfNeeded(theEntity, theResource.getIdElement(), true);
+				break;
+		}
+		return true;
+	}
+
+	private void createForcedIdForServerAssignedId(T theResource, ResourceTable theEntity) {
+		switch (myDaoConfig.getResourceClientIdStrategy()) {
+			case NOT_ALLOWED:
+			case ALPHANUMERIC:
+				break;
+			case ANY:
+				ForcedId forcedId = createForcedIdIfNeeded(theEntity, theResource.getIdElement(), true);
+				if (forcedId != null) {
+					myForcedIdDao.save(forcedId);
+				}
+				break;
+		}
+	}
+
 	private DaoMethodOutcome doCreate(T theResource, String theIfNoneExist, boolean thePerformIndexing, Date theUpdateTime, RequestDetails theRequest) {
 		StopWatch w = new StopWatch();
 
@@ -406,27 +467,7 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 			}
 		}
 
-		boolean serverAssignedId;
-		if (isNotBlank(theResource.getIdElement().getIdPart())) {
-			switch (myDaoConfig.getResourceClientIdStrategy()) {
-				case NOT_ALLOWED:
-					throw new ResourceNotFoundException(
-						getContext().getLocalizer().getMessage(BaseHapiFhirResourceDao.class, "failedToCreateWithClientAssignedIdNotAllowed", theResource.getIdElement().getIdPart()));
-				case ALPHANUMERIC:
-					if (theResource.getIdElement().isIdPartValidLong()) {
-						throw new InvalidRequestException(
-							getContext().getLocalizer().getMessage(BaseHapiFhirResourceDao.class, "failedToCreateWithClientAssignedNumericId", theResource.getIdElement().getIdPart()));
-					}
-					createForcedIdIfNeeded(entity, theResource.getIdElement(), false);
-					break;
-				case ANY:
-					createForcedIdIfNeeded(entity, theResource.getIdElement(), true);
-					break;
-			}
-			serverAssignedId = false;
-		} else {
-			serverAssignedId = true;
-		}
+		boolean serverAssignedId = !createForcedIdForClientAssignedId(theResource, entity);
 
 		// Notify interceptors
 		if (theRequest != null) {
@@ -452,17 +493,7 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 
 		theResource.setId(entity.getIdDt());
 		if (serverAssignedId) {
-			switch (myDaoConfig.getResourceClientIdStrategy()) {
-				case NOT_ALLOWED:
-				case ALPHANUMERIC:
-					break;
-				case ANY:
-					ForcedId forcedId = createForcedIdIfNeeded(updatedEntity, theResource.getIdElement(), true);
-					if (forcedId != null) {
-						myForcedIdDao.save(forcedId);
-					}
-					break;
-			}
+			createForcedIdForServerAssignedId(theResource, updatedEntity);
 		}
 
 		/*
@@ -694,6 +725,18 @@ public abstract class BaseHapiFhirResourceDao<T extends IBaseResource> extends B
 		mySearchParamRegistry.requestRefresh();
 	}
 
+	/**
+	 * Notifies the registries on other nodes that a resource which they hold has been
+	 * modified (once the current transaction has committed)
+	 */
+	protected void publishRegistryChange(ResourceTable theEntity, T theResource, boolean theDeleted) {
+		// Reindexing doesn't change the resource
+		if (theResource != null && Boolean.TRUE.equals(CURRENTLY_REINDEXING.get(theResource))) {
+			return;
+		}
+		myRegistryChangePublisher.publishAfterCommit(getResourceName(), theEntity.getIdDt().getIdPart(), theDeleted);
+	}
+
 	@Autowired
 	private IResourceReindexingSvc myResourceReindexingSvc;
 
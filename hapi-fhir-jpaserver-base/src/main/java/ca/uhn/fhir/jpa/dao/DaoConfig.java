@@ -53,6 +53,30 @@ public class DaoConfig {
 	 * See {@link #setStatusBasedReindexingDisabled(boolean)}
 	 */
 	public static final String DISABLE_STATUS_BASED_REINDEX = "disable_status_based_reindex";
+	/**
+	 * Default value for {@link #setReindexChunkSize(int)}: 250
+	 *
+	 * @since 3.7.0
+	 */
+	public static final int DEFAULT_REINDEX_CHUNK_SIZE = 250;
+	/**
+	 * Default value for {@link #setExpungeBatchSize(int)}: 800
+	 *
+	 * @since 3.7.0
+	 */
+	public static final int DEFAULT_EXPUNGE_BATCH_SIZE = 800;
+	/**
+	 * Default value for {@link #setBulkExportFileRetentionMillis(long)}: 1 hour
+	 *
+	 * @since 3.7.0
+	 */
+	public static final long DEFAULT_BULK_EXPORT_FILE_RETENTION_MILLIS = DateUtils.MILLIS_PER_HOUR;
+	/**
+	 * Default value for {@link #setBulkImportChunkSize(int)}: 500
+	 *
+	 * @since 3.7.0
+	 */
+	public static final int DEFAULT_BULK_IMPORT_CHUNK_SIZE = 500;
 	/**
 	 * Default value for {@link #setMaximumSearchResultCountInTransaction(Integer)}
 	 *
@@ -135,7 +159,15 @@ public class DaoConfig {
 	private IdStrategyEnum myResourceServerIdStrategy = IdStrategyEnum.SEQUENTIAL_NUMERIC;
 	private boolean myMarkResourcesForReindexingUponSearchParameterChange;
 	private boolean myExpungeEnabled;
+	private int myExpungeBatchSize = DEFAULT_EXPUNGE_BATCH_SIZE;
+	private int myExpungeThreadCount;
+	private String myBulkExportDirectory;
+	private int myBulkExportThreadCount;
+	private long myBulkExportFileRetentionMillis = DEFAULT_BULK_EXPORT_FILE_RETENTION_MILLIS;
+	private int myBulkImportThreadCount;
+	private int myBulkImportChunkSize = DEFAULT_BULK_IMPORT_CHUNK_SIZE;
 	private int myReindexThreadCount;
+	private int myReindexChunkSize = DEFAULT_REINDEX_CHUNK_SIZE;
 	private Set<String> myBundleTypesAllowedForStorage;
 	private boolean myValidateSearchParameterExpressionsOnSave = true;
 	private List<Integer> mySearchPreFetchThresholds = Arrays.asList(500, 2000, -1);
@@ -143,6 +175,13 @@ public class DaoConfig {
 	private boolean myDisableHashBasedSearches;
 	private boolean myEnableInMemorySubscriptionMatching = true;
 	private ClientIdStrategyEnum myResourceClientIdStrategy = ClientIdStrategyEnum.ALPHANUMERIC;
+	private SearchQueryEngineEnum mySearchQueryEngine = SearchQueryEngineEnum.CRITERIA;
+	private Integer myTopNSearchMaxCount;
+	/**
+	 * update setter javadoc if default changes
+	 */
+	private Long myEstimatedTotalCountCacheMillis = DateUtils.MILLIS_PER_MINUTE;
+	private boolean myChainedSearchFlatJoinEnabled = true;
 
 	/**
 	 * Constructor
@@ -153,6 +192,9 @@ public class DaoConfig {
 		setSubscriptionPurgeInactiveAfterMillis(Long.MAX_VALUE);
 		setMarkResourcesForReindexingUponSearchParameterChange(true);
 		setReindexThreadCount(Runtime.getRuntime().availableProcessors());
+		setExpungeThreadCount(Runtime.getRuntime().availableProcessors());
+		setBulkExportThreadCount(Runtime.getRuntime().availableProcessors());
+		setBulkImportThreadCount(Runtime.getRuntime().availableProcessors());
 		setBundleTypesAllowedForStorage(DEFAULT_BUNDLE_TYPES_ALLOWED_FOR_STORAGE);
 
 		if ("true".equalsIgnoreCase(System.getProperty(DISABLE_STATUS_BASED_REINDEX))) {
@@ -168,6 +210,12 @@ public class DaoConfig {
 	 * count to always be calculated for all searches. This can have a performance impact
 	 * since it means that a count query will always be performed, but this is desirable
 	 * for some solutions.
+	 * <p>
+	 * Setting this value to {@link SearchTotalModeEnum#ESTIMATED} provides a total
+	 * without always performing a count query. See
+	 * {@link #setEstimatedTotalCountCacheMillis(Long)} for details on how the estimate
+	 * is calculated.
+	 * </p>
 	 */
 	public SearchTotalModeEnum getDefaultTotalMode() {
 		return myDefaultTotalMode;
@@ -180,6 +228,12 @@ public class DaoConfig {
 	 * count to always be calculated for all searches. This can have a performance impact
 	 * since it means that a count query will always be performed, but this is desirable
 	 * for some solutions.
+	 * <p>
+	 * Setting this value to {@link SearchTotalModeEnum#ESTIMATED} provides a total
+	 * without always performing a count query. See
+	 * {@link #setEstimatedTotalCountCacheMillis(Long)} for details on how the estimate
+	 * is calculated.
+	 * </p>
 	 */
 	public void setDefaultTotalMode(SearchTotalModeEnum theDefaultTotalMode) {
 		myDefaultTotalMode = theDefaultTotalMode;
@@ -593,6 +647,40 @@ public class DaoConfig {
 		myMaximumSearchResultCountInTransaction = theMaximumSearchResultCountInTransaction;
 	}
 
+	/**
+	 * This setting controls the number of resources which are reindexed together in a single
+	 * database transaction by each reindexing thread. The current index rows for all of the
+	 * resources in a chunk are loaded together, and changed index rows are written using
+	 * JDBC batching (for best results the <code>hibernate.order_inserts</code> and
+	 * <code>hibernate.order_updates</code> properties should also be enabled).
+	 * <p>
+	 * The default value is {@value #DEFAULT_REINDEX_CHUNK_SIZE}. Value for this setting
+	 * must be a positive integer.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public int getReindexChunkSize() {
+		return myReindexChunkSize;
+	}
+
+	/**
+	 * This setting controls the number of resources which are reindexed together in a single
+	 * database transaction by each reindexing thread. The current index rows for all of the
+	 * resources in a chunk are loaded together, and changed index rows are written using
+	 * JDBC batching (for best results the <code>hibernate.order_inserts</code> and
+	 * <code>hibernate.order_updates</code> properties should also be enabled).
+	 * <p>
+	 * The default value is {@value #DEFAULT_REINDEX_CHUNK_SIZE}. Value for this setting
+	 * must be a positive integer.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public void setReindexChunkSize(int theReindexChunkSize) {
+		myReindexChunkSize = Math.max(theReindexChunkSize, 1); // Minimum of 1
+	}
+
 	/**
 	 * This setting controls the number of threads allocated to resource reindexing
 	 * (which is only ever used if SearchParameters change, or a manual reindex is
@@ -1069,6 +1157,343 @@ public class DaoConfig {
 		myExpungeEnabled = theExpungeEnabled;
 	}
 
+	/**
+	 * This setting controls the number of resources (or resource versions) which are
+	 * deleted together by the $expunge operation. Each batch is deleted in its own
+	 * database transaction using a small number of set-based <code>DELETE</code>
+	 * statements.
+	 * <p>
+	 * The default value is {@value #DEFAULT_EXPUNGE_BATCH_SIZE}. Value for this setting
+	 * must be a positive integer.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public int getExpungeBatchSize() {
+		return myExpungeBatchSize;
+	}
+
+	/**
+	 * This setting controls the number of resources (or resource versions) which are
+	 * deleted together by the $expunge operation. Each batch is deleted in its own
+	 * database transaction using a small number of set-based <code>DELETE</code>
+	 * statements.
+	 * <p>
+	 * The default value is {@value #DEFAULT_EXPUNGE_BATCH_SIZE}. Value for this setting
+	 * must be a positive integer.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public void setExpungeBatchSize(int theExpungeBatchSize) {
+		myExpungeBatchSize = Math.max(theExpungeBatchSize, 1); // Minimum of 1
+	}
+
+	/**
+	 * This setting controls the maximum number of batches which the $expunge operation
+	 * will delete in parallel, which can be reduced in order to limit the load that a
+	 * large expunge places on the database.
+	 * <p>
+	 * The default value is set to the number of available processors
+	 * (via <code>Runtime.getRuntime().availableProcessors()</code>). Value
+	 * for this setting must be a positive integer.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public int getExpungeThreadCount() {
+		return myExpungeThreadCount;
+	}
+
+	/**
+	 * This setting controls the maximum number of batches which the $expunge operation
+	 * will delete in parallel, which can be reduced in order to limit the load that a
+	 * large expunge places on the database.
+	 * <p>
+	 * The default value is set to the number of available processors
+	 * (via <code>Runtime.getRuntime().availableProcessors()</code>). Value
+	 * for this setting must be a positive integer.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public void setExpungeThreadCount(int theExpungeThreadCount) {
+		myExpungeThreadCount = Math.max(theExpungeThreadCount, 1); // Minimum of 1
+	}
+
+	/**
+	 * The directory on the local filesystem in which the NDJSON files generated by the
+	 * <code>$export</code> operation are written. If not set (which is the default), a
+	 * directory called <code>hapi-fhir-bulk-export</code> will be created inside the
+	 * system temporary directory (<code>java.io.tmpdir</code>).
+	 *
+	 * @since 3.7.0
+	 */
+	public String getBulkExportDirectory() {
+		return myBulkExportDirectory;
+	}
+
+	/**
+	 * The directory on the local filesystem in which the NDJSON files generated by the
+	 * <code>$export</code> operation are written. If not set (which is the default), a
+	 * directory called <code>hapi-fhir-bulk-export</code> will be created inside the
+	 * system temporary directory (<code>java.io.tmpdir</code>).
+	 *
+	 * @since 3.7.0
+	 */
+	public void setBulkExportDirectory(String theBulkExportDirectory) {
+		myBulkExportDirectory = theBulkExportDirectory;
+	}
+
+	/**
+	 * This setting controls the number of threads used to generate <code>$export</code>
+	 * files. The resources of each type in an export job are split into ranges,
+	 * each of which is written to a separate file by a separate thread.
+	 * <p>
+	 * The default value is set to the number of available processors
+	 * (via <code>Runtime.getRuntime().availableProcessors()</code>). Value
+	 * for this setting must be a positive integer.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public int getBulkExportThreadCount() {
+		return myBulkExportThreadCount;
+	}
+
+	/**
+	 * This setting controls the number of threads used to generate <code>$export</code>
+	 * files. The resources of each type in an export job are split into ranges,
+	 * each of which is written to a separate file by a separate thread.
+	 * <p>
+	 * The default value is set to the number of available processors
+	 * (via <code>Runtime.getRuntime().availableProcessors()</code>). Value
+	 * for this setting must be a positive integer.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public void setBulkExportThreadCount(int theBulkExportThreadCount) {
+		myBulkExportThreadCount = Math.max(theBulkExportThreadCount, 1); // Minimum of 1
+	}
+
+	/**
+	 * The amount of time that a completed <code>$export</code> job and its files are kept
+	 * before being deleted. The default is {@link #DEFAULT_BULK_EXPORT_FILE_RETENTION_MILLIS 1 hour}.
+	 *
+	 * @since 3.7.0
+	 */
+	public long getBulkExportFileRetentionMillis() {
+		return myBulkExportFileRetentionMillis;
+	}
+
+	/**
+	 * The amount of time that a completed <code>$export</code> job and its files are kept
+	 * before being deleted. The default is {@link #DEFAULT_BULK_EXPORT_FILE_RETENTION_MILLIS 1 hour}.
+	 *
+	 * @since 3.7.0
+	 */
+	public void setBulkExportFileRetentionMillis(long theBulkExportFileRetentionMillis) {
+		myBulkExportFileRetentionMillis = theBulkExportFileRetentionMillis;
+	}
+
+	/**
+	 * This setting controls the number of threads used to parse and store resources
+	 * during a bulk <code>$import</code>, and to index them afterwards.
+	 * <p>
+	 * The default value is set to the number of available processors
+	 * (via <code>Runtime.getRuntime().availableProcessors()</code>). Value
+	 * for this setting must be a positive integer.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public int getBulkImportThreadCount() {
+		return myBulkImportThreadCount;
+	}
+
+	/**
+	 * This setting controls the number of threads used to parse and store resources
+	 * during a bulk <code>$import</code>, and to index them afterwards.
+	 * <p>
+	 * The default value is set to the number of available processors
+	 * (via <code>Runtime.getRuntime().availableProcessors()</code>). Value
+	 * for this setting must be a positive integer.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public void setBulkImportThreadCount(int theBulkImportThreadCount) {
+		myBulkImportThreadCount = Math.max(theBulkImportThreadCount, 1); // Minimum of 1
+	}
+
+	/**
+	 * The number of resources which are parsed and stored in a single database
+	 * transaction during a bulk <code>$import</code>. The default is
+	 * {@link #DEFAULT_BULK_IMPORT_CHUNK_SIZE}.
+	 *
+	 * @since 3.7.0
+	 */
+	public int getBulkImportChunkSize() {
+		return myBulkImportChunkSize;
+	}
+
+	/**
+	 * The number of resources which are parsed and stored in a single database
+	 * transaction during a bulk <code>$import</code>. The default is
+	 * {@link #DEFAULT_BULK_IMPORT_CHUNK_SIZE}.
+	 *
+	 * @since 3.7.0
+	 */
+	public void setBulkImportChunkSize(int theBulkImportChunkSize) {
+		Validate.isTrue(theBulkImportChunkSize > 0, "theBulkImportChunkSize must be > 0");
+		myBulkImportChunkSize = theBulkImportChunkSize;
+	}
+
+	/**
+	 * Selects the mechanism used to build the SQL for searches (default is
+	 * {@link SearchQueryEngineEnum#CRITERIA}).
+	 * <p>
+	 * When set to {@link SearchQueryEngineEnum#NATIVE_SQL}, searches that only use
+	 * string and token parameters (with no modifiers other than <code>:exact</code>),
+	 * <code>_lastUpdated</code> and an optional <code>_lastUpdated</code> sort are
+	 * executed using hand-built SQL against the hash columns of the index tables. Any
+	 * other search falls back to the Criteria API query builder.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public SearchQueryEngineEnum getSearchQueryEngine() {
+		return mySearchQueryEngine;
+	}
+
+	/**
+	 * Selects the mechanism used to build the SQL for searches (default is
+	 * {@link SearchQueryEngineEnum#CRITERIA}).
+	 * <p>
+	 * When set to {@link SearchQueryEngineEnum#NATIVE_SQL}, searches that only use
+	 * string and token parameters (with no modifiers other than <code>:exact</code>),
+	 * <code>_lastUpdated</code> and an optional <code>_lastUpdated</code> sort are
+	 * executed using hand-built SQL against the hash columns of the index tables. Any
+	 * other search falls back to the Criteria API query builder.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public void setSearchQueryEngine(SearchQueryEngineEnum theSearchQueryEngine) {
+		Validate.notNull(theSearchQueryEngine, "theSearchQueryEngine must not be null");
+		mySearchQueryEngine = theSearchQueryEngine;
+	}
+
+	/**
+	 * If set to a non-null value (default is <code>null</code>), searches which have a
+	 * <code>_sort</code> and a <code>_count</code> no larger than this value, and which
+	 * do not request an accurate <code>_total</code>, are loaded one page at a time
+	 * instead of using the {@link #setSearchPreFetchThresholds(List) pre-fetch thresholds}.
+	 * This lets the database stop sorting as soon as it has found the first page.
+	 * <p>
+	 * Later pages of searches sorted by <code>_lastUpdated</code> continue from the last
+	 * resource that was returned (keyset pagination) rather than re-reading and skipping
+	 * the earlier results.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public Integer getTopNSearchMaxCount() {
+		return myTopNSearchMaxCount;
+	}
+
+	/**
+	 * If set to a non-null value (default is <code>null</code>), searches which have a
+	 * <code>_sort</code> and a <code>_count</code> no larger than this value, and which
+	 * do not request an accurate <code>_total</code>, are loaded one page at a time
+	 * instead of using the {@link #setSearchPreFetchThresholds(List) pre-fetch thresholds}.
+	 * This lets the database stop sorting as soon as it has found the first page.
+	 * <p>
+	 * Later pages of searches sorted by <code>_lastUpdated</code> continue from the last
+	 * resource that was returned (keyset pagination) rather than re-reading and skipping
+	 * the earlier results.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public void setTopNSearchMaxCount(Integer theTopNSearchMaxCount) {
+		Validate.isTrue(theTopNSearchMaxCount == null || theTopNSearchMaxCount > 0, "theTopNSearchMaxCount must be null or > 0");
+		myTopNSearchMaxCount = theTopNSearchMaxCount;
+	}
+
+	/**
+	 * When a search requests an estimated total (<code>_total=estimated</code>), the
+	 * total calculated by an identical search performed within this many milliseconds
+	 * is reused. Only totals that were actually calculated (by a count query or by
+	 * loading every result) are reused, never totals that were themselves estimated.
+	 * Searches with no parameters are instead estimated using the cached resource
+	 * counts. If no estimate is available, no count query is performed and the total
+	 * is only returned once all of the results have been loaded.
+	 * <p>
+	 * Default is 60000 (one minute). Set to <code>null</code> to disable reusing totals
+	 * from previous searches.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public Long getEstimatedTotalCountCacheMillis() {
+		return myEstimatedTotalCountCacheMillis;
+	}
+
+	/**
+	 * When a search requests an estimated total (<code>_total=estimated</code>), the
+	 * total calculated by an identical search performed within this many milliseconds
+	 * is reused. Only totals that were actually calculated (by a count query or by
+	 * loading every result) are reused, never totals that were themselves estimated.
+	 * Searches with no parameters are instead estimated using the cached resource
+	 * counts. If no estimate is available, no count query is performed and the total
+	 * is only returned once all of the results have been loaded.
+	 * <p>
+	 * Default is 60000 (one minute). Set to <code>null</code> to disable reusing totals
+	 * from previous searches.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public void setEstimatedTotalCountCacheMillis(Long theEstimatedTotalCountCacheMillis) {
+		myEstimatedTotalCountCacheMillis = theEstimatedTotalCountCacheMillis;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>true</code>), chained searches
+	 * such as <code>Observation?subject:Patient.identifier=123</code> whose chain can
+	 * only point to a single resource type are performed by joining the resource link
+	 * table directly to the target resource and its indexes. If set to <code>false</code>,
+	 * each link in the chain is instead performed as a nested subquery.
+	 * <p>
+	 * Chains that could point to more than one resource type, or that have more than
+	 * one value, always use subqueries.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public boolean isChainedSearchFlatJoinEnabled() {
+		return myChainedSearchFlatJoinEnabled;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>true</code>), chained searches
+	 * such as <code>Observation?subject:Patient.identifier=123</code> whose chain can
+	 * only point to a single resource type are performed by joining the resource link
+	 * table directly to the target resource and its indexes. If set to <code>false</code>,
+	 * each link in the chain is instead performed as a nested subquery.
+	 * <p>
+	 * Chains that could point to more than one resource type, or that have more than
+	 * one value, always use subqueries.
+	 * </p>
+	 *
+	 * @since 3.7.0
+	 */
+	public void setChainedSearchFlatJoinEnabled(boolean theChainedSearchFlatJoinEnabled) {
+		myChainedSearchFlatJoinEnabled = theChainedSearchFlatJoinEnabled;
+	}
+
 	/**
 	 * Should contained IDs be indexed the same way that non-contained IDs are (default is
 	 * <code>true</code>)
@@ -1558,6 +1983,19 @@ public class DaoConfig {
 	}
 
 
+	public enum SearchQueryEngineEnum {
+		/**
+		 * Searches are built using the JPA Criteria API. This is the default.
+		 */
+		CRITERIA,
+		/**
+		 * Searches are built as native SQL using <code>EXISTS</code> clauses against
+		 * the index table hash columns where possible, falling back to the Criteria API
+		 * for any search that can not be expressed this way.
+		 */
+		NATIVE_SQL
+	}
+
 	public enum IndexEnabledEnum {
 		ENABLED,
 		DISABLED
@@ -76,6 +76,14 @@ public class DaoRegistry implements ApplicationContextAware {
 		return retVal;
 	}
 
+	/**
+	 * Returns <code>true</code> if a DAO exists for the given resource type
+	 */
+	public boolean isResourceTypeSupported(String theResourceType) {
+		init();
+		return myResourceNameToResourceDao.containsKey(theResourceType);
+	}
+
 	public <R extends IBaseResource> IFhirResourceDao<R> getResourceDao(Class<R> theResourceType) {
 		IFhirResourceDao<R> retVal = getResourceDaoIfExists(theResourceType);
 		Validate.notNull(retVal, "No DAO exists for resource type %s - Have: %s", theResourceType, myResourceNameToResourceDao);
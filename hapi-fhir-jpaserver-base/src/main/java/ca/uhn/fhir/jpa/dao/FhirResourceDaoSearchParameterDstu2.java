@@ -50,18 +50,21 @@ public class FhirResourceDaoSearchParameterDstu2 extends FhirResourceDaoDstu2<Se
 	protected void postPersist(ResourceTable theEntity, SearchParameter theResource) {
 		super.postPersist(theEntity, theResource);
 		markAffectedResources(theResource);
+		publishRegistryChange(theEntity, theResource, false);
 	}
 
 	@Override
 	protected void postUpdate(ResourceTable theEntity, SearchParameter theResource) {
 		super.postUpdate(theEntity, theResource);
 		markAffectedResources(theResource);
+		publishRegistryChange(theEntity, theResource, false);
 	}
 
 	@Override
 	protected void preDelete(SearchParameter theResourceToDelete, ResourceTable theEntityToDelete) {
 		super.preDelete(theResourceToDelete, theEntityToDelete);
 		markAffectedResources(theResourceToDelete);
+		publishRegistryChange(theEntityToDelete, theResourceToDelete, true);
 	}
 
 	@Override
@@ -69,6 +69,13 @@ public class FhirResourceDaoSubscriptionDstu2 extends FhirResourceDaoDstu2<Subsc
 		super.postPersist(theEntity, theSubscription);
 
 		createSubscriptionTable(theEntity, theSubscription);
+		publishRegistryChange(theEntity, theSubscription, false);
+	}
+
+	@Override
+	protected void postUpdate(ResourceTable theEntity, Subscription theSubscription) {
+		super.postUpdate(theEntity, theSubscription);
+		publishRegistryChange(theEntity, theSubscription, false);
 	}
 
 
@@ -78,6 +85,7 @@ public class FhirResourceDaoSubscriptionDstu2 extends FhirResourceDaoDstu2<Subsc
 		ResourceTable retVal = super.updateEntity(theRequest, theResource, theEntity, theDeletedTimestampOrNull, thePerformIndexing, theUpdateVersion, theUpdateTime, theForceUpdate, theCreateNewHistoryEntry);
 
 		if (theDeletedTimestampOrNull != null) {
+			publishRegistryChange(theEntity, null, true);
 			mySubscriptionTableDao.deleteAllForSubscription(theEntity);
 		}
 		return retVal;
@@ -78,6 +78,18 @@ public interface IFhirResourceDao<T extends IBaseResource> extends IDao {
 
 	DaoMethodOutcome create(T theResource, String theIfNoneExist, RequestDetails theRequestDetails);
 
+	/**
+	 * Stores a new resource as a part of a bulk import. Unlike {@link #create(IBaseResource)}, this
+	 * does not notify any interceptors or check whether a resource with the same ID already exists
+	 * (the caller is responsible for this).
+	 *
+	 * @param thePerformIndexing If <code>false</code>, the search indexes are not extracted and the
+	 *                           resource is left unindexed. It must then be indexed using
+	 *                           {@link #reindex(IBaseResource, ResourceTable)} once any resources it
+	 *                           refers to have also been stored.
+	 */
+	ResourceTable createForBulkImport(T theResource, boolean thePerformIndexing, Date theUpdateTime);
+
 	/**
 	 * Delete a resource - Note that this variant of the method does not take in a {@link RequestDetails} and
 	 * therefore can not fire any interceptors. Use only for internal system calls
@@ -28,6 +28,7 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import javax.persistence.EntityManager;
 import java.util.Collection;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -55,4 +56,17 @@ public interface ISearchBuilder {
 
 	void setPreviouslyAddedResourcePids(List<Long> thePreviouslyAddedResourcePids);
 
+	/**
+	 * For searches sorted by <code>_lastUpdated</code>, only return resources which
+	 * sort after the given resource (keyset pagination). Ignored for other sorts.
+	 */
+	void setSeekAfter(Date theLastUpdated, Long thePid);
+
+	/**
+	 * Only return resources with one of the given PIDs, in addition to applying the
+	 * search parameters. The caller is responsible for keeping the collection small
+	 * enough to be used in an IN clause.
+	 */
+	void setRestrictToPids(Collection<Long> thePids);
+
 }
@@ -0,0 +1,314 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.model.util.StringNormalizer;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.searchparam.registry.ISearchParamRegistry;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.LongType;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TemporalType;
+import javax.persistence.TypedQuery;
+import java.util.*;
+import java.util.Map.Entry;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Builds search queries as native SQL instead of using the JPA Criteria API.
+ * <p>
+ * Each AND clause becomes an <code>EXISTS</code> semijoin against the index table
+ * for the parameter, matching on the hash columns. Because no rows are joined into
+ * the outer query, no <code>DISTINCT</code> is needed. OR values which are matched
+ * against different hash columns are combined using <code>UNION ALL</code> inside the
+ * semijoin so that each branch can use the index on its own column. Row limits are
+ * applied by Hibernate, so each database gets its dialect's own paging syntax.
+ * </p>
+ * <p>
+ * Only a subset of searches can be built this way, see
+ * {@link #canHandle(SearchParameterMap, SortSpec)}. Everything else is built by
+ * {@link SearchBuilder} using the Criteria API.
+ * </p>
+ */
+class NativeSearchQueryBuilder {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(NativeSearchQueryBuilder.class);
+	private final DaoConfig myDaoConfig;
+	private final ISearchParamRegistry mySearchParamRegistry;
+	private final String myResourceName;
+	private final Map<String, Object> myParameters = new LinkedHashMap<>();
+	private int myNextAlias;
+	private Date mySeekAfterLastUpdated;
+	private Long mySeekAfterPid;
+
+	NativeSearchQueryBuilder(DaoConfig theDaoConfig, ISearchParamRegistry theSearchParamRegistry, String theResourceName) {
+		myDaoConfig = theDaoConfig;
+		mySearchParamRegistry = theSearchParamRegistry;
+		myResourceName = theResourceName;
+	}
+
+	/**
+	 * Returns <code>true</code> if the search only uses plain string and token
+	 * parameters (no <code>:missing</code> and no modifiers other than <code>:exact</code>),
+	 * <code>_lastUpdated</code>, and no sort other than <code>_lastUpdated</code>
+	 */
+	boolean canHandle(SearchParameterMap theParams, SortSpec theSort) {
+		if (theParams.getEverythingMode() != null) {
+			return false;
+		}
+		if (theSort != null && isNotBlank(theSort.getParamName())) {
+			if (!Constants.PARAM_LASTUPDATED.equals(theSort.getParamName()) || theSort.getChain() != null) {
+				return false;
+			}
+		}
+
+		for (Entry<String, List<List<? extends IQueryParameterType>>> nextParamEntry : theParams.entrySet()) {
+			String nextParamName = nextParamEntry.getKey();
+			if (nextParamName.startsWith("_")) {
+				return false;
+			}
+			RuntimeSearchParam nextParamDef = mySearchParamRegistry.getActiveSearchParam(myResourceName, nextParamName);
+			if (nextParamDef == null) {
+				return false;
+			}
+			for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
+				for (IQueryParameterType nextOr : nextAnd) {
+					if (!canHandle(nextParamDef.getParamType(), nextOr)) {
+						return false;
+					}
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private boolean canHandle(RestSearchParameterTypeEnum theParamType, IQueryParameterType theParam) {
+		if (theParam.getMissing() != null) {
+			return false;
+		}
+
+		switch (theParamType) {
+			case TOKEN:
+				if (!(theParam instanceof TokenParam)) {
+					return false;
+				}
+				TokenParam token = (TokenParam) theParam;
+				if (token.getModifier() != null) {
+					return false;
+				}
+				if (token.getSystem() == null && isBlank(token.getValue())) {
+					return false;
+				}
+				return isWithinMaxLength(token.getSystem(), ResourceIndexedSearchParamToken.MAX_LENGTH) && isWithinMaxLength(token.getValue(), ResourceIndexedSearchParamToken.MAX_LENGTH);
+			case STRING:
+				if (!(theParam instanceof StringParam)) {
+					return false;
+				}
+				StringParam string = (StringParam) theParam;
+				return !string.isContains() && string.getValue() != null && isWithinMaxLength(string.getValue(), ResourceIndexedSearchParamString.MAX_LENGTH);
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Only return resources which sort after the given one. Must only be used with a
+	 * <code>_lastUpdated</code> sort.
+	 */
+	void setSeekAfter(Date theLastUpdated, Long thePid) {
+		mySeekAfterLastUpdated = theLastUpdated;
+		mySeekAfterPid = thePid;
+	}
+
+	/**
+	 * Builds the query. {@link #canHandle(SearchParameterMap, SortSpec)} must have returned
+	 * <code>true</code> for the given parameters.
+	 */
+	TypedQuery<Long> createQuery(EntityManager theEntityManager, SearchParameterMap theParams, SortSpec theSort, Integer theMaximumResults, boolean theCount) {
+		String resultColumn = theCount ? "RES_COUNT" : "RES_ID";
+
+		StringBuilder sql = new StringBuilder();
+		if (theCount) {
+			sql.append("SELECT COUNT(r.RES_ID) AS ").append(resultColumn);
+		} else {
+			sql.append("SELECT r.RES_ID AS ").append(resultColumn);
+		}
+		sql.append(" FROM HFJ_RESOURCE r WHERE r.RES_TYPE = ").append(bind(myResourceName));
+		sql.append(" AND r.RES_DELETED_AT IS NULL");
+
+		for (Entry<String, List<List<? extends IQueryParameterType>>> nextParamEntry : theParams.entrySet()) {
+			String nextParamName = nextParamEntry.getKey();
+			RuntimeSearchParam nextParamDef = mySearchParamRegistry.getActiveSearchParam(myResourceName, nextParamName);
+			for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
+				if (nextAnd.isEmpty()) {
+					continue;
+				}
+				String alias = "i" + myNextAlias++;
+				if (nextParamDef.getParamType() == RestSearchParameterTypeEnum.TOKEN) {
+					appendExists(sql, "HFJ_SPIDX_TOKEN", alias, createTokenPredicates(alias, nextParamName, nextAnd));
+				} else {
+					appendExists(sql, "HFJ_SPIDX_STRING", alias, createStringPredicates(alias, nextParamName, nextAnd));
+				}
+			}
+		}
+
+		DateRangeParam lastUpdated = theParams.getLastUpdated();
+		if (lastUpdated != null) {
+			if (lastUpdated.getLowerBoundAsInstant() != null) {
+				sql.append(" AND r.RES_UPDATED >= ").append(bind(lastUpdated.getLowerBoundAsInstant()));
+			}
+			if (lastUpdated.getUpperBoundAsInstant() != null) {
+				sql.append(" AND r.RES_UPDATED <= ").append(bind(lastUpdated.getUpperBoundAsInstant()));
+			}
+		}
+
+		boolean descending = theSort != null && theSort.getOrder() == SortOrderEnum.DESC;
+		if (mySeekAfterPid != null) {
+			String comparator = descending ? " < " : " > ";
+			String lastUpdated = bind(mySeekAfterLastUpdated);
+			sql.append(" AND (r.RES_UPDATED").append(comparator).append(lastUpdated);
+			sql.append(" OR (r.RES_UPDATED = ").append(lastUpdated).append(" AND r.RES_ID").append(comparator).append(bind(mySeekAfterPid)).append("))");
+		}
+
+		if (!theCount && theSort != null && isNotBlank(theSort.getParamName())) {
+			if (descending) {
+				sql.append(" ORDER BY r.RES_UPDATED DESC, r.RES_ID DESC");
+			} else {
+				sql.append(" ORDER BY r.RES_UPDATED, r.RES_ID");
+			}
+		}
+
+		String sqlString = sql.toString();
+		ourLog.debug("Native search query: {}", sqlString);
+
+		@SuppressWarnings("unchecked")
+		NativeQuery<Long> query = theEntityManager.createNativeQuery(sqlString).unwrap(NativeQuery.class);
+		query.addScalar(resultColumn, LongType.INSTANCE);
+		for (Entry<String, Object> nextParameter : myParameters.entrySet()) {
+			Object value = nextParameter.getValue();
+			if (value instanceof Collection) {
+				query.setParameterList(nextParameter.getKey(), (Collection<?>) value);
+			} else if (value instanceof Date) {
+				query.setParameter(nextParameter.getKey(), (Date) value, TemporalType.TIMESTAMP);
+			} else {
+				query.setParameter(nextParameter.getKey(), value);
+			}
+		}
+
+		if (theMaximumResults != null) {
+			query.setMaxResults(theMaximumResults);
+		}
+
+		return query;
+	}
+
+	private void appendExists(StringBuilder theSql, String theTable, String theAlias, List<String> theBranchPredicates) {
+		theSql.append(" AND EXISTS (");
+		for (int i = 0; i < theBranchPredicates.size(); i++) {
+			if (i > 0) {
+				theSql.append(" UNION ALL ");
+			}
+			theSql.append("SELECT ").append(theAlias).append(".RES_ID FROM ").append(theTable).append(' ').append(theAlias);
+			theSql.append(" WHERE ").append(theAlias).append(".RES_ID = r.RES_ID AND ").append(theBranchPredicates.get(i));
+		}
+		theSql.append(")");
+	}
+
+	private String bind(Object theValue) {
+		String name = "p" + myParameters.size();
+		myParameters.put(name, theValue);
+		return ":" + name;
+	}
+
+	private List<String> createStringPredicates(String theAlias, String theParamName, List<? extends IQueryParameterType> theOrList) {
+		List<Long> exactHashes = new ArrayList<>();
+		List<String> retVal = new ArrayList<>();
+
+		for (IQueryParameterType nextOr : theOrList) {
+			StringParam string = (StringParam) nextOr;
+			String rawSearchTerm = string.getValue();
+			if (string.isExact()) {
+				exactHashes.add(ResourceIndexedSearchParamString.calculateHashExact(myResourceName, theParamName, rawSearchTerm));
+			} else {
+				String normalizedString = StringNormalizer.normalizeString(rawSearchTerm);
+				Long hash = ResourceIndexedSearchParamString.calculateHashNormalized(myDaoConfig.getModelConfig(), myResourceName, theParamName, normalizedString);
+				String likeExpression = SearchBuilder.createLeftMatchLikeExpression(normalizedString);
+				retVal.add(theAlias + ".HASH_NORM_PREFIX = " + bind(hash) + " AND " + theAlias + ".SP_VALUE_NORMALIZED LIKE " + bind(likeExpression));
+			}
+		}
+
+		if (!exactHashes.isEmpty()) {
+			retVal.add(0, theAlias + ".HASH_EXACT IN (" + bind(SearchBuilder.padInClauseValues(exactHashes)) + ")");
+		}
+
+		return retVal;
+	}
+
+	private List<String> createTokenPredicates(String theAlias, String theParamName, List<? extends IQueryParameterType> theOrList) {
+
+		/*
+		 * Note: A null system value means "match any system", but
+		 * an empty-string system value means "match values that
+		 * explicitly have no system".
+		 */
+		Map<String, List<Long>> columnToHashes = new LinkedHashMap<>();
+		for (IQueryParameterType nextOr : theOrList) {
+			TokenParam token = (TokenParam) nextOr;
+			String system = token.getSystem();
+			String code = token.getValue();
+			boolean haveSystem = system != null;
+			boolean haveCode = isNotBlank(code);
+
+			if (haveSystem && haveCode) {
+				columnToHashes.computeIfAbsent("HASH_SYS_AND_VALUE", t -> new ArrayList<>()).add(ResourceIndexedSearchParamToken.calculateHashSystemAndValue(myResourceName, theParamName, system, code));
+			} else if (haveSystem) {
+				columnToHashes.computeIfAbsent("HASH_SYS", t -> new ArrayList<>()).add(ResourceIndexedSearchParamToken.calculateHashSystem(myResourceName, theParamName, system));
+			} else {
+				columnToHashes.computeIfAbsent("HASH_VALUE", t -> new ArrayList<>()).add(ResourceIndexedSearchParamToken.calculateHashValue(myResourceName, theParamName, code));
+			}
+		}
+
+		List<String> retVal = new ArrayList<>();
+		for (Entry<String, List<Long>> next : columnToHashes.entrySet()) {
+			retVal.add(theAlias + "." + next.getKey() + " IN (" + bind(SearchBuilder.padInClauseValues(next.getValue())) + ")");
+		}
+		return retVal;
+	}
+
+	private static boolean isWithinMaxLength(String theValue, int theMaxLength) {
+		return theValue == null || theValue.length() <= theMaxLength;
+	}
+
+}
@@ -0,0 +1,70 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.searchparam.registry.IRegistryChangeChannel;
+import ca.uhn.fhir.jpa.searchparam.registry.RegistryChangeMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Publishes a {@link RegistryChangeMessage} through the {@link IRegistryChangeChannel} when
+ * a resource which is held in a registry (a SearchParameter or a Subscription) is modified.
+ * If a transaction is active, the message is only published once it has committed, so that
+ * the nodes which receive it are able to see the change.
+ */
+@Service
+public class RegistryChangePublisher {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(RegistryChangePublisher.class);
+
+	@Autowired(required = false)
+	private IRegistryChangeChannel myRegistryChangeChannel;
+
+	public void publishAfterCommit(String theResourceType, String theResourceId, boolean theDeleted) {
+		if (myRegistryChangeChannel == null) {
+			return;
+		}
+
+		RegistryChangeMessage message = new RegistryChangeMessage(theResourceType, theResourceId, theDeleted);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					publish(message);
+				}
+			});
+		} else {
+			publish(message);
+		}
+	}
+
+	private void publish(RegistryChangeMessage theMessage) {
+		try {
+			myRegistryChangeChannel.publish(theMessage);
+		} catch (Exception e) {
+			// Other nodes will still pick the change up at their next scheduled refresh
+			ourLog.error("Failed to publish registry change " + theMessage, e);
+		}
+	}
+
+}
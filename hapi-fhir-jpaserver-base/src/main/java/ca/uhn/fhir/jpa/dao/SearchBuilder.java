@@ -147,12 +147,15 @@ public class SearchBuilder implements ISearchBuilder {
 	private ArrayList<Predicate> myPredicates;
 	private String myResourceName;
 	private AbstractQuery<Long> myResourceTableQuery;
-	private Root<ResourceTable> myResourceTableRoot;
+	private From<?, ResourceTable> myResourceTableRoot;
 	private Class<? extends IBaseResource> myResourceType;
 	private String mySearchUuid;
 	private int myFetchSize;
 	private Integer myMaxResultsToFetch;
 	private Set<Long> myPidSet;
+	private Date mySeekAfterLastUpdated;
+	private Long mySeekAfterPid;
+	private Collection<Long> myRestrictToPids;
 
 	/**
 	 * Constructor
@@ -260,7 +263,7 @@ public class SearchBuilder implements ISearchBuilder {
 
 			Join<ResourceTable, ResourceLink> join = myResourceTableRoot.join("myResourceLinksAsTarget", JoinType.LEFT);
 
-			Predicate predicate = join.get("mySourceResourcePid").in(match);
+			Predicate predicate = join.get("mySourceResourcePid").in(padInClauseValues(match));
 			myPredicates.add(predicate);
 		}
 	}
@@ -285,7 +288,7 @@ public class SearchBuilder implements ISearchBuilder {
 				continue;
 			}
 
-			Predicate predicate = myResourceTableRoot.get("myLanguage").as(String.class).in(values);
+			Predicate predicate = myResourceTableRoot.get("myLanguage").as(String.class).in(padInClauseValues(values));
 			myPredicates.add(predicate);
 		}
 
@@ -496,6 +499,14 @@ public class SearchBuilder implements ISearchBuilder {
 
 					boolean foundChainMatch = false;
 
+					/*
+					 * If the chain can only point to one type of resource, we join directly
+					 * from the link to the target resource and its indexes. Otherwise each
+					 * possible target type gets its own subquery, since joining all of them
+					 * into the outer query would multiply the rows being searched.
+					 */
+					boolean useFlatJoin = myDaoConfig.isChainedSearchFlatJoinEnabled() && theList.size() == 1 && resourceTypes.size() == 1;
+
 					String chain = ref.getChain();
 					String remainingChain = null;
 					int chainDotIndex = chain.indexOf('.');
@@ -551,42 +562,25 @@ public class SearchBuilder implements ISearchBuilder {
 
 						foundChainMatch = true;
 
-						Subquery<Long> subQ = myResourceTableQuery.subquery(Long.class);
-						Root<ResourceTable> subQfrom = subQ.from(ResourceTable.class);
-						subQ.select(subQfrom.get("myId").as(Long.class));
-
 						List<List<? extends IQueryParameterType>> andOrParams = new ArrayList<>();
 						andOrParams.add(Collections.singletonList(chainValue));
 
-						/*
-						 * We're doing a chain call, so push the current query root
-						 * and predicate list down and put new ones at the top of the
-						 * stack and run a subuery
-						 */
-						Root<ResourceTable> stackRoot = myResourceTableRoot;
-						ArrayList<Predicate> stackPredicates = myPredicates;
-						Map<JoinKey, Join<?, ?>> stackIndexJoins = myIndexJoins;
-						myResourceTableRoot = subQfrom;
-						myPredicates = Lists.newArrayList();
-						myIndexJoins = Maps.newHashMap();
-
-						// Create the subquery predicates
-						myPredicates.add(myBuilder.equal(myResourceTableRoot.get("myResourceType"), subResourceName));
-						myPredicates.add(myBuilder.isNull(myResourceTableRoot.get("myDeleted")));
-						searchForIdsWithAndOr(subResourceName, chain, andOrParams);
-
-						subQ.where(toArray(myPredicates));
-
-						/*
-						 * Pop the old query root and predicate list back
-						 */
-						myResourceTableRoot = stackRoot;
-						myPredicates = stackPredicates;
-						myIndexJoins = stackIndexJoins;
-
 						Predicate pathPredicate = createResourceLinkPathPredicate(theResourceName, theParamName, join);
-						Predicate pidPredicate = join.get("myTargetResourcePid").in(subQ);
-						codePredicates.add(myBuilder.and(pathPredicate, pidPredicate));
+
+						if (useFlatJoin) {
+							Join<ResourceLink, ResourceTable> targetJoin = join.join("myTargetResource", JoinType.LEFT);
+							List<Predicate> chainPredicates = createChainPredicates(targetJoin, subResourceName, chain, andOrParams);
+							Predicate targetTypePredicate = myBuilder.equal(join.get("myTargetResourceType"), subResourceName);
+							codePredicates.add(myBuilder.and(pathPredicate, targetTypePredicate, myBuilder.and(toArray(chainPredicates))));
+						} else {
+							Subquery<Long> subQ = myResourceTableQuery.subquery(Long.class);
+							Root<ResourceTable> subQfrom = subQ.from(ResourceTable.class);
+							subQ.select(subQfrom.get("myId").as(Long.class));
+							subQ.where(toArray(createChainPredicates(subQfrom, subResourceName, chain, andOrParams)));
+
+							Predicate pidPredicate = join.get("myTargetResourcePid").in(subQ);
+							codePredicates.add(myBuilder.and(pathPredicate, pidPredicate));
+						}
 
 					}
 
@@ -604,6 +598,40 @@ public class SearchBuilder implements ISearchBuilder {
 		myPredicates.add(myBuilder.or(toArray(codePredicates)));
 	}
 
+	/**
+	 * Creates the predicates for one link in a chain, using the given
+	 * root for the target resource
+	 */
+	private List<Predicate> createChainPredicates(From<?, ResourceTable> theTargetRoot, String theTargetResourceName, String theChain, List<List<? extends IQueryParameterType>> theAndOrParams) {
+
+		/*
+		 * We're doing a chain call, so push the current query root
+		 * and predicate list down and put new ones at the top of the
+		 * stack
+		 */
+		From<?, ResourceTable> stackRoot = myResourceTableRoot;
+		ArrayList<Predicate> stackPredicates = myPredicates;
+		Map<JoinKey, Join<?, ?>> stackIndexJoins = myIndexJoins;
+		myResourceTableRoot = theTargetRoot;
+		myPredicates = Lists.newArrayList();
+		myIndexJoins = Maps.newHashMap();
+
+		// Create the chain predicates
+		myPredicates.add(myBuilder.equal(myResourceTableRoot.get("myResourceType"), theTargetResourceName));
+		myPredicates.add(myBuilder.isNull(myResourceTableRoot.get("myDeleted")));
+		searchForIdsWithAndOr(theTargetResourceName, theChain, theAndOrParams);
+		List<Predicate> retVal = myPredicates;
+
+		/*
+		 * Pop the old query root and predicate list back
+		 */
+		myResourceTableRoot = stackRoot;
+		myPredicates = stackPredicates;
+		myIndexJoins = stackIndexJoins;
+
+		return retVal;
+	}
+
 	private void addPredicateResourceId(List<List<? extends IQueryParameterType>> theValues) {
 		for (List<? extends IQueryParameterType> nextValue : theValues) {
 			Set<Long> orPids = new HashSet<>();
@@ -634,7 +662,7 @@ public class SearchBuilder implements ISearchBuilder {
 			}
 
 			if (orPids.size() > 0) {
-				Predicate nextPredicate = myResourceTableRoot.get("myId").as(Long.class).in(orPids);
+				Predicate nextPredicate = myResourceTableRoot.get("myId").as(Long.class).in(padInClauseValues(orPids));
 				myPredicates.add(nextPredicate);
 			} else {
 				// This will never match
@@ -872,7 +900,7 @@ public class SearchBuilder implements ISearchBuilder {
 						continue;
 					}
 
-					Predicate uriPredicate = join.get("myUri").as(String.class).in(toFind);
+					Predicate uriPredicate = join.get("myUri").as(String.class).in(padInClauseValues(toFind));
 					Predicate hashAndUriPredicate = combineParamIndexPredicateWithParamNamePredicate(theResourceName, theParamName, join, uriPredicate);
 					codePredicates.add(hashAndUriPredicate);
 
@@ -931,7 +959,7 @@ public class SearchBuilder implements ISearchBuilder {
 		return myBuilder.and(hashIdentityPredicate, thePredicate);
 	}
 
-	private Predicate createCompositeParamPart(String theResourceName, Root<ResourceTable> theRoot, RuntimeSearchParam theParam, IQueryParameterType leftValue) {
+	private Predicate createCompositeParamPart(String theResourceName, From<?, ResourceTable> theRoot, RuntimeSearchParam theParam, IQueryParameterType leftValue) {
 		Predicate retVal = null;
 		switch (theParam.getParamType()) {
 			case STRING: {
@@ -1464,7 +1492,7 @@ public class SearchBuilder implements ISearchBuilder {
 			}
 		}
 
-		Predicate predicate = hashField.in(values);
+		Predicate predicate = hashField.in(padInClauseValues(values));
 		if (modifier == TokenParamModifier.NOT) {
 			Predicate identityPredicate = theBuilder.equal(theFrom.get("myHashIdentity").as(Long.class), BaseResourceIndexedSearchParam.calculateHashIdentity(theResourceName, theParamName));
 			Predicate disjunctionPredicate = theBuilder.not(predicate);
@@ -1491,6 +1519,17 @@ public class SearchBuilder implements ISearchBuilder {
 		myPidSet = new HashSet<>(thePidSet);
 	}
 
+	@Override
+	public void setSeekAfter(Date theLastUpdated, Long thePid) {
+		mySeekAfterLastUpdated = theLastUpdated;
+		mySeekAfterPid = thePid;
+	}
+
+	@Override
+	public void setRestrictToPids(@Nullable Collection<Long> thePids) {
+		myRestrictToPids = thePids;
+	}
+
 	@Override
 	public IResultIterator createQuery(SearchParameterMap theParams, String theSearchUuid) {
 		myParams = theParams;
@@ -1502,7 +1541,7 @@ public class SearchBuilder implements ISearchBuilder {
 		 * of parameters passed in
 		 */
 		ourLog.debug("Checking for unique index for query: {}", theParams.toNormalizedQueryString(myContext));
-		if (myDaoConfig.isUniqueIndexesEnabled()) {
+		if (myDaoConfig.isUniqueIndexesEnabled() && myRestrictToPids == null) {
 			if (myParams.getIncludes().isEmpty()) {
 				if (myParams.getRevIncludes().isEmpty()) {
 					if (myParams.getEverythingMode() == null) {
@@ -1558,6 +1597,28 @@ public class SearchBuilder implements ISearchBuilder {
 	private TypedQuery<Long> createQuery(SortSpec sort, Integer theMaximumResults, boolean theCount) {
 		myPredicates = new ArrayList<>();
 
+		/*
+		 * Native SQL
+		 *
+		 * If enabled, searches that only use parameters the native query builder
+		 * understands skip the Criteria API entirely
+		 */
+		if (myDaoConfig.getSearchQueryEngine() == DaoConfig.SearchQueryEngineEnum.NATIVE_SQL && !myDontUseHashesForSearch && myRestrictToPids == null) {
+			myParams.clean();
+			NativeSearchQueryBuilder nativeQueryBuilder = new NativeSearchQueryBuilder(myDaoConfig, mySearchParamRegistry, myResourceName);
+			if (nativeQueryBuilder.canHandle(myParams, sort)) {
+				if (ourTrackHandlersForUnitTest) {
+					ourLastHandlerParamsForUnitTest = myParams;
+					ourLastHandlerMechanismForUnitTest = HandlerTypeEnum.NATIVE_QUERY;
+					ourLastHandlerThreadForUnitTest = Thread.currentThread().getName();
+				}
+				if (isSeekAfter(sort)) {
+					nativeQueryBuilder.setSeekAfter(mySeekAfterLastUpdated, mySeekAfterPid);
+				}
+				return nativeQueryBuilder.createQuery(myEntityManager, myParams, sort, theMaximumResults, theCount);
+			}
+		}
+
 		CriteriaQuery<Long> outerQuery;
 		/*
 		 * Sort
@@ -1669,7 +1730,19 @@ public class SearchBuilder implements ISearchBuilder {
 				pids = Collections.singletonList(-1L);
 			}
 
-			myPredicates.add(myResourceTableRoot.get("myId").as(Long.class).in(pids));
+			myPredicates.add(myResourceTableRoot.get("myId").as(Long.class).in(padInClauseValues(pids)));
+		}
+
+		/*
+		 * Only consider the given resources
+		 */
+		if (myRestrictToPids != null) {
+			if (myRestrictToPids.isEmpty()) {
+				// Will never match
+				myPredicates.add(myBuilder.equal(myResourceTableRoot.get("myId").as(Long.class), -1L));
+			} else {
+				myPredicates.add(myResourceTableRoot.get("myId").as(Long.class).in(padInClauseValues(myRestrictToPids)));
+			}
 		}
 
 		/*
@@ -1691,6 +1764,24 @@ public class SearchBuilder implements ISearchBuilder {
 		List<Predicate> lastUpdatedPredicates = createLastUpdatedPredicates(lu, myBuilder, myResourceTableRoot);
 		myPredicates.addAll(lastUpdatedPredicates);
 
+		/*
+		 * Keyset pagination: continue after the last resource returned by a previous
+		 * pass instead of reading (and skipping) everything before it again
+		 */
+		if (isSeekAfter(sort)) {
+			Expression<Date> updated = myResourceTableRoot.get("myUpdated");
+			Expression<Long> pid = myResourceTableRoot.get("myId");
+			if (sort.getOrder() == SortOrderEnum.DESC) {
+				myPredicates.add(myBuilder.or(
+					myBuilder.lessThan(updated, mySeekAfterLastUpdated),
+					myBuilder.and(myBuilder.equal(updated, mySeekAfterLastUpdated), myBuilder.lessThan(pid, mySeekAfterPid))));
+			} else {
+				myPredicates.add(myBuilder.or(
+					myBuilder.greaterThan(updated, mySeekAfterLastUpdated),
+					myBuilder.and(myBuilder.equal(updated, mySeekAfterLastUpdated), myBuilder.greaterThan(pid, mySeekAfterPid))));
+			}
+		}
+
 		myResourceTableQuery.where(myBuilder.and(SearchBuilder.toArray(myPredicates)));
 
 		/*
@@ -1705,6 +1796,10 @@ public class SearchBuilder implements ISearchBuilder {
 		return query;
 	}
 
+	private boolean isSeekAfter(SortSpec theSort) {
+		return mySeekAfterPid != null && theSort != null && Constants.PARAM_LASTUPDATED.equals(theSort.getParamName()) && theSort.getChain() == null;
+	}
+
 	private Predicate createResourceLinkPathPredicate(String theResourceName, String theParamName, From<?, ? extends ResourceLink> from) {
 		return createResourceLinkPathPredicate(myContext, theParamName, from, theResourceName);
 	}
@@ -1713,7 +1808,7 @@ public class SearchBuilder implements ISearchBuilder {
 	 * @return Returns {@literal true} if any search parameter sorts were found, or false if
 	 * no sorts were found, or only non-search parameters ones (e.g. _id, _lastUpdated)
 	 */
-	private boolean createSort(CriteriaBuilder theBuilder, Root<ResourceTable> theFrom, SortSpec theSort, List<Order> theOrders, List<Predicate> thePredicates) {
+	private boolean createSort(CriteriaBuilder theBuilder, From<?, ResourceTable> theFrom, SortSpec theSort, List<Order> theOrders, List<Predicate> thePredicates) {
 		if (theSort == null || isBlank(theSort.getParamName())) {
 			return false;
 		}
@@ -1738,6 +1833,15 @@ public class SearchBuilder implements ISearchBuilder {
 				theOrders.add(theBuilder.desc(theFrom.get("myUpdated")));
 			}
 
+			// The PID breaks ties so that the order is stable for keyset pagination
+			if (theSort.getChain() == null) {
+				if (theSort.getOrder() == null || theSort.getOrder() == SortOrderEnum.ASC) {
+					theOrders.add(theBuilder.asc(theFrom.get("myId")));
+				} else {
+					theOrders.add(theBuilder.desc(theFrom.get("myId")));
+				}
+			}
+
 			return createSort(theBuilder, theFrom, theSort.getChain(), theOrders, thePredicates);
 		}
 
@@ -1947,6 +2051,11 @@ public class SearchBuilder implements ISearchBuilder {
 	}
 
 	private static final int maxLoad = 800;
+	/**
+	 * Larger lists are left alone, so that padding never pushes a list over the
+	 * 1000 element limit some databases have
+	 */
+	static final int MAX_PADDED_IN_CLAUSE_SIZE = 512;
 
 	@Override
 	public void loadResourcesByPid(Collection<Long> theIncludePids, List<IBaseResource> theResourceListToPopulate, Set<Long> theIncludedPids, boolean theForHistoryOperation,
@@ -1996,6 +2105,7 @@ public class SearchBuilder implements ISearchBuilder {
 			return new HashSet<>();
 		}
 		String searchFieldName = theReverseMode ? "myTargetResourcePid" : "mySourceResourcePid";
+		String resultFieldName = theReverseMode ? "mySourceResourcePid" : "myTargetResourcePid";
 
 		Collection<Long> nextRoundMatches = theMatches;
 		HashSet<Long> allAdded = new HashSet<>();
@@ -2003,6 +2113,8 @@ public class SearchBuilder implements ISearchBuilder {
 		ArrayList<Include> includes = new ArrayList<>(theRevIncludes);
 
 		int roundCounts = 0;
+		int queryCount = 0;
+		int linkCount = 0;
 		StopWatch w = new StopWatch();
 
 		boolean addedSomeThisRound;
@@ -2011,98 +2123,107 @@ public class SearchBuilder implements ISearchBuilder {
 
 			HashSet<Long> pidsToInclude = new HashSet<>();
 
+			/*
+			 * All of the includes for this round are fetched using a single query (per
+			 * partition of PIDs) against every path they cover. A null value in this
+			 * map means that links to any target type are included for that path.
+			 */
+			boolean matchAll = false;
+			Map<String, Set<String>> pathToTargetTypes = new HashMap<>();
 			for (Iterator<Include> iter = includes.iterator(); iter.hasNext(); ) {
 				Include nextInclude = iter.next();
 				if (nextInclude.isRecurse() == false) {
 					iter.remove();
 				}
 
-				boolean matchAll = "*".equals(nextInclude.getValue());
-				if (matchAll) {
-					String sql;
-					sql = "SELECT r FROM ResourceLink r WHERE r." + searchFieldName + " IN (:target_pids) ";
-					List<Collection<Long>> partitions = partition(nextRoundMatches, maxLoad);
-					for (Collection<Long> nextPartition : partitions) {
-						TypedQuery<ResourceLink> q = theEntityManager.createQuery(sql, ResourceLink.class);
-						q.setParameter("target_pids", nextPartition);
-						List<ResourceLink> results = q.getResultList();
-						for (ResourceLink resourceLink : results) {
-							if (theReverseMode) {
-								pidsToInclude.add(resourceLink.getSourceResourcePid());
-							} else {
-								pidsToInclude.add(resourceLink.getTargetResourcePid());
-							}
-						}
-					}
+				if ("*".equals(nextInclude.getValue())) {
+					matchAll = true;
+					continue;
+				}
+
+				RuntimeSearchParam param;
+				String resType = nextInclude.getParamType();
+				if (isBlank(resType)) {
+					continue;
+				}
+				RuntimeResourceDefinition def = theContext.getResourceDefinition(resType);
+				if (def == null) {
+					ourLog.warn("Unknown resource type in include/revinclude=" + nextInclude.getValue());
+					continue;
+				}
+
+				String paramName = nextInclude.getParamName();
+				if (isNotBlank(paramName)) {
+					param = mySearchParamRegistry.getSearchParamByName(def, paramName);
 				} else {
+					param = null;
+				}
+				if (param == null) {
+					ourLog.warn("Unknown param name in include/revinclude=" + nextInclude.getValue());
+					continue;
+				}
 
-					List<String> paths;
-					RuntimeSearchParam param;
-					String resType = nextInclude.getParamType();
-					if (isBlank(resType)) {
-						continue;
-					}
-					RuntimeResourceDefinition def = theContext.getResourceDefinition(resType);
-					if (def == null) {
-						ourLog.warn("Unknown resource type in include/revinclude=" + nextInclude.getValue());
-						continue;
-					}
+				String targetResourceType = defaultString(nextInclude.getParamTargetType(), null);
+				Set<String> targetResourceTypes;
+				if (targetResourceType != null) {
+					targetResourceTypes = Collections.singleton(targetResourceType);
+				} else if (param.getTargets() != null && param.getTargets().isEmpty() == false) {
+					targetResourceTypes = param.getTargets();
+				} else {
+					targetResourceTypes = null;
+				}
 
-					String paramName = nextInclude.getParamName();
-					if (isNotBlank(paramName)) {
-						param = mySearchParamRegistry.getSearchParamByName(def, paramName);
+				for (String nextPath : param.getPathsSplit()) {
+					if (pathToTargetTypes.containsKey(nextPath)) {
+						Set<String> existing = pathToTargetTypes.get(nextPath);
+						if (existing == null || targetResourceTypes == null) {
+							pathToTargetTypes.put(nextPath, null);
+						} else {
+							Set<String> merged = new HashSet<>(existing);
+							merged.addAll(targetResourceTypes);
+							pathToTargetTypes.put(nextPath, merged);
+						}
 					} else {
-						param = null;
-					}
-					if (param == null) {
-						ourLog.warn("Unknown param name in include/revinclude=" + nextInclude.getValue());
-						continue;
+						pathToTargetTypes.put(nextPath, targetResourceTypes);
 					}
+				}
+			}
 
-					paths = param.getPathsSplit();
+			if (matchAll || pathToTargetTypes.isEmpty() == false) {
+				String sql = "SELECT r.mySourcePath, r.myTargetResourceType, r." + resultFieldName + " FROM ResourceLink r WHERE r." + searchFieldName + " IN (:target_pids)";
+				if (!matchAll) {
+					sql = sql + " AND r.mySourcePath IN (:src_paths)";
+				}
 
-					String targetResourceType = defaultString(nextInclude.getParamTargetType(), null);
-					for (String nextPath : paths) {
-						String sql;
+				List<Collection<Long>> partitions = partition(nextRoundMatches, maxLoad);
+				for (Collection<Long> nextPartition : partitions) {
+					TypedQuery<Object[]> q = theEntityManager.createQuery(sql, Object[].class);
+					q.setParameter("target_pids", nextPartition);
+					if (!matchAll) {
+						q.setParameter("src_paths", pathToTargetTypes.keySet());
+					}
+					List<Object[]> results = q.getResultList();
+					queryCount++;
+					linkCount += results.size();
 
-						boolean haveTargetTypesDefinedByParam = param.getTargets() != null && param.getTargets().isEmpty() == false;
-						if (targetResourceType != null) {
-							sql = "SELECT r FROM ResourceLink r WHERE r.mySourcePath = :src_path AND r." + searchFieldName + " IN (:target_pids) AND r.myTargetResourceType = :target_resource_type";
-						} else if (haveTargetTypesDefinedByParam) {
-							sql = "SELECT r FROM ResourceLink r WHERE r.mySourcePath = :src_path AND r." + searchFieldName + " IN (:target_pids) AND r.myTargetResourceType in (:target_resource_types)";
-						} else {
-							sql = "SELECT r FROM ResourceLink r WHERE r.mySourcePath = :src_path AND r." + searchFieldName + " IN (:target_pids)";
+					for (Object[] nextRow : results) {
+						Long pid = (Long) nextRow[2];
+						if (pid == null) {
+							continue;
 						}
-
-						List<Collection<Long>> partitions = partition(nextRoundMatches, maxLoad);
-						for (Collection<Long> nextPartition : partitions) {
-							TypedQuery<ResourceLink> q = theEntityManager.createQuery(sql, ResourceLink.class);
-							q.setParameter("src_path", nextPath);
-							q.setParameter("target_pids", nextPartition);
-							if (targetResourceType != null) {
-								q.setParameter("target_resource_type", targetResourceType);
-							} else if (haveTargetTypesDefinedByParam) {
-								q.setParameter("target_resource_types", param.getTargets());
-							}
-							List<ResourceLink> results = q.getResultList();
-							for (ResourceLink resourceLink : results) {
-								if (theReverseMode) {
-									Long pid = resourceLink.getSourceResourcePid();
-									if (pid != null) {
-										pidsToInclude.add(pid);
-									}
-								} else {
-									Long pid = resourceLink.getTargetResourcePid();
-									if (pid != null) {
-										pidsToInclude.add(pid);
-									}
-								}
+						if (!matchAll) {
+							Set<String> targetResourceTypes = pathToTargetTypes.get((String) nextRow[0]);
+							if (targetResourceTypes != null && !targetResourceTypes.contains((String) nextRow[1])) {
+								continue;
 							}
 						}
+						pidsToInclude.add(pid);
 					}
 				}
 			}
 
+			ourLog.debug("Include round {} for search {} matched {} paths{} from {} resources and found {} resources", roundCounts, theSearchIdOrDescription, pathToTargetTypes.size(), matchAll ? " (and *)" : "", nextRoundMatches.size(), pidsToInclude.size());
+
 			if (theReverseMode) {
 				if (theLastUpdated != null && (theLastUpdated.getLowerBoundAsInstant() != null || theLastUpdated.getUpperBoundAsInstant() != null)) {
 					pidsToInclude = new HashSet<>(filterResourceIdsByLastUpdated(theEntityManager, theLastUpdated, pidsToInclude));
@@ -2118,7 +2239,7 @@ public class SearchBuilder implements ISearchBuilder {
 			nextRoundMatches = pidsToInclude;
 		} while (includes.size() > 0 && nextRoundMatches.size() > 0 && addedSomeThisRound);
 
-		ourLog.info("Loaded {} {} in {} rounds and {} ms for search {}", allAdded.size(), theReverseMode ? "_revincludes" : "_includes", roundCounts, w.getMillisAndRestart(), theSearchIdOrDescription);
+		ourLog.info("Loaded {} {} in {} rounds, {} queries returning {} links and {} ms for search {}", allAdded.size(), theReverseMode ? "_revincludes" : "_includes", roundCounts, queryCount, linkCount, w.getMillisAndRestart(), theSearchIdOrDescription);
 
 		return allAdded;
 	}
@@ -2300,7 +2421,7 @@ public class SearchBuilder implements ISearchBuilder {
 	}
 
 	public enum HandlerTypeEnum {
-		UNIQUE_INDEX, STANDARD_QUERY
+		UNIQUE_INDEX, STANDARD_QUERY, NATIVE_QUERY
 	}
 
 	private enum JoinEnum {
@@ -2649,7 +2770,7 @@ public class SearchBuilder implements ISearchBuilder {
 		return "%" + likeExpression.replace("%", "[%]") + "%";
 	}
 
-	private static String createLeftMatchLikeExpression(String likeExpression) {
+	static String createLeftMatchLikeExpression(String likeExpression) {
 		return likeExpression.replace("%", "[%]") + "%";
 	}
 
@@ -2676,6 +2797,33 @@ public class SearchBuilder implements ISearchBuilder {
 		return theFrom.get("mySourcePath").in(path);
 	}
 
+	/**
+	 * Criteria query literals are bound as parameters (see
+	 * {@link ca.uhn.fhir.jpa.config.HapiFhirLocalContainerEntityManagerFactoryBean}) so the SQL
+	 * for a given search shape is the same regardless of the values being searched for, and
+	 * Hibernate's query plan cache and the database's statement cache can be reused. Every
+	 * value in an IN list is a separate parameter though, so this method pads the list to the
+	 * next power of two by repeating the last value, which limits the number of distinct
+	 * statements to one per power of two.
+	 */
+	static <T> Collection<T> padInClauseValues(Collection<T> theValues) {
+		int size = theValues.size();
+		if (size <= 1) {
+			return theValues;
+		}
+		int paddedSize = Integer.highestOneBit(size - 1) << 1;
+		if (paddedSize == size || paddedSize > MAX_PADDED_IN_CLAUSE_SIZE) {
+			return theValues;
+		}
+		List<T> retVal = new ArrayList<>(paddedSize);
+		retVal.addAll(theValues);
+		T last = retVal.get(size - 1);
+		while (retVal.size() < paddedSize) {
+			retVal.add(last);
+		}
+		return retVal;
+	}
+
 	private static List<Long> filterResourceIdsByLastUpdated(EntityManager theEntityManager, final DateRangeParam theLastUpdated, Collection<Long> thePids) {
 		if (thePids.isEmpty()) {
 			return Collections.emptyList();
@@ -2686,7 +2834,7 @@ public class SearchBuilder implements ISearchBuilder {
 		cq.select(from.get("myId").as(Long.class));
 
 		List<Predicate> lastUpdatedPredicates = createLastUpdatedPredicates(theLastUpdated, builder, from);
-		lastUpdatedPredicates.add(from.get("myId").as(Long.class).in(thePids));
+		lastUpdatedPredicates.add(from.get("myId").as(Long.class).in(padInClauseValues(thePids)));
 
 		cq.where(SearchBuilder.toArray(lastUpdatedPredicates));
 		TypedQuery<Long> query = theEntityManager.createQuery(cq);
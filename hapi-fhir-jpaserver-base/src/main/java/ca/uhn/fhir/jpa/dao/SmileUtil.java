@@ -0,0 +1,81 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IJsonLikeParser;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.parser.json.SmileStructure;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Reads and writes resource bodies stored using {@link ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum#SMILE}
+ */
+public class SmileUtil {
+
+	private static final JsonFactory ourJsonFactory = new JsonFactory();
+	private static final SmileFactory ourSmileFactory = new SmileFactory();
+
+	public static byte[] encode(IParser theParser, IBaseResource theResource) {
+		try {
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			SmileStructure structure = new SmileStructure();
+			((IJsonLikeParser) theParser).encodeResourceToJsonLikeWriter(theResource, structure.getJsonLikeWriter(os));
+			return os.toByteArray();
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to encode contents", e);
+		}
+	}
+
+	public static <T extends IBaseResource> T parse(IParser theParser, Class<T> theResourceType, byte[] theResource) {
+		SmileStructure structure = new SmileStructure();
+		structure.load(new ByteArrayInputStream(theResource));
+		return ((IJsonLikeParser) theParser).parseResource(theResourceType, structure);
+	}
+
+	/**
+	 * Converts the stored Smile content to JSON text without parsing it into a resource
+	 */
+	public static String toJson(byte[] theResource) {
+		try {
+			StringWriter writer = new StringWriter();
+			try (JsonParser parser = ourSmileFactory.createParser(theResource);
+				  JsonGenerator generator = ourJsonFactory.createGenerator(writer)) {
+				while (parser.nextToken() != null) {
+					generator.copyCurrentEvent(parser);
+				}
+			}
+			return writer.toString();
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to decode contents", e);
+		}
+	}
+
+}
@@ -0,0 +1,41 @@
+package ca.uhn.fhir.jpa.dao.data;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.entity.BulkExportFileEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface IBulkExportFileDao extends JpaRepository<BulkExportFileEntity, Long> {
+
+	@Query("SELECT f FROM BulkExportFileEntity f WHERE f.myJob.myId = :jobpid ORDER BY f.myResourceType ASC, f.myFileName ASC")
+	List<BulkExportFileEntity> findByJobPid(@Param("jobpid") Long theJobPid);
+
+	@Modifying
+	@Query("DELETE FROM BulkExportFileEntity f WHERE f.myJob.myId = :jobpid")
+	void deleteByJobPid(@Param("jobpid") Long theJobPid);
+
+}
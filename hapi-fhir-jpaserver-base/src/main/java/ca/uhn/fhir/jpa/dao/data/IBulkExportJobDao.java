@@ -0,0 +1,46 @@
+package ca.uhn.fhir.jpa.dao.data;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.bulk.BulkJobStatusEnum;
+import ca.uhn.fhir.jpa.entity.BulkExportJobEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.Optional;
+
+public interface IBulkExportJobDao extends JpaRepository<BulkExportJobEntity, Long> {
+
+	@Query("SELECT j FROM BulkExportJobEntity j WHERE j.myJobId = :jobid")
+	Optional<BulkExportJobEntity> findByJobId(@Param("jobid") String theJobId);
+
+	@Query("SELECT j FROM BulkExportJobEntity j WHERE j.myStatus = :status ORDER BY j.myCreated ASC")
+	Slice<BulkExportJobEntity> findByStatus(Pageable thePage, @Param("status") BulkJobStatusEnum theStatus);
+
+	@Query("SELECT j FROM BulkExportJobEntity j WHERE j.myExpiry < :cutoff")
+	Slice<BulkExportJobEntity> findByExpiry(Pageable thePage, @Param("cutoff") Date theCutoff);
+
+}
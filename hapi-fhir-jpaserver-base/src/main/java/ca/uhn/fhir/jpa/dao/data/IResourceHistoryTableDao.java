@@ -2,6 +2,7 @@ package ca.uhn.fhir.jpa.dao.data;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 import javax.persistence.TemporalType;
 
@@ -71,6 +72,9 @@ public interface IResourceHistoryTableDao extends JpaRepository<ResourceHistoryT
 	@Query("SELECT t FROM ResourceHistoryTable t WHERE t.myResourceId = :id AND t.myResourceVersion = :version")
 	ResourceHistoryTable findForIdAndVersion(@Param("id") long theId, @Param("version") long theVersion);
 
+	@Query("SELECT t.myResourceId, COUNT(t.myId) FROM ResourceHistoryTable t WHERE t.myResourceId IN (:pids) GROUP BY t.myResourceId")
+	List<Object[]> countVersionsForResourceIds(@Param("pids") Collection<Long> thePids);
+
 	@Query("SELECT t.myId FROM ResourceHistoryTable t WHERE t.myResourceId = :resId AND t.myResourceVersion != :dontWantVersion")
 	Slice<Long> findForResourceId(Pageable thePage, @Param("resId") Long theId, @Param("dontWantVersion") Long theDontWantVersion);
 
@@ -23,9 +23,24 @@ package ca.uhn.fhir.jpa.dao.data;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import ca.uhn.fhir.jpa.model.entity.ResourceLink;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface IResourceLinkDao  extends JpaRepository<ResourceLink, Long> {
 
+	/**
+	 * Returns the subset of the given source PIDs which have a link with one of the given paths to a resource of the given type
+	 */
+	@Query("SELECT DISTINCT l.mySourceResourcePid FROM ResourceLink l WHERE l.mySourceResourcePid IN (:sourcepids) AND l.mySourcePath IN (:paths) AND l.myTargetResourceType = :targettype")
+	List<Long> findSourcePidsOfLinksToType(@Param("sourcepids") Collection<Long> theSourcePids, @Param("paths") Collection<String> theSourcePaths, @Param("targettype") String theTargetResourceType);
 
+	/**
+	 * Returns the subset of the given source PIDs which have a link with one of the given paths to one of the given target PIDs
+	 */
+	@Query("SELECT DISTINCT l.mySourceResourcePid FROM ResourceLink l WHERE l.mySourceResourcePid IN (:sourcepids) AND l.mySourcePath IN (:paths) AND l.myTargetResourcePid IN (:targetpids)")
+	List<Long> findSourcePidsOfLinksToTargets(@Param("sourcepids") Collection<Long> theSourcePids, @Param("paths") Collection<String> theSourcePaths, @Param("targetpids") Collection<Long> theTargetPids);
 
 }
@@ -57,6 +57,10 @@ public interface IResourceReindexJobDao extends JpaRepository<ResourceReindexJob
 	@Query("UPDATE ResourceReindexJobEntity j SET j.myThresholdLow = :low WHERE j.myId = :id")
 	void setThresholdLow(@Param("id") Long theId, @Param("low") Date theLow);
 
+	@Modifying
+	@Query("UPDATE ResourceReindexJobEntity j SET j.myStarted = :started, j.myReindexTotal = :total WHERE j.myId = :id")
+	void setStartedAndReindexTotal(@Param("id") Long theId, @Param("started") Date theStarted, @Param("total") int theTotal);
+
 	@Query("SELECT j.myReindexCount FROM ResourceReindexJobEntity j WHERE j.myId = :id")
 	Optional<Integer> getReindexCount(@Param("id") Long theId);
 
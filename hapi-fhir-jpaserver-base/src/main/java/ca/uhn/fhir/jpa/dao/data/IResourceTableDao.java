@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -55,6 +56,32 @@ public interface IResourceTableDao extends JpaRepository<ResourceTable, Long> {
 	@Query("SELECT t.myId FROM ResourceTable t WHERE t.myUpdated >= :low AND t.myUpdated <= :high AND t.myResourceType = :restype ORDER BY t.myUpdated ASC")
 	Slice<Long> findIdsOfResourcesWithinUpdatedRangeOrderedFromOldest(Pageable thePage, @Param("restype") String theResourceType, @Param("low") Date theLow, @Param("high") Date theHigh);
 
+	@Query("SELECT count(t.myId) FROM ResourceTable t WHERE t.myUpdated >= :low AND t.myUpdated <= :high")
+	Long countResourcesWithinUpdatedRange(@Param("low") Date theLow, @Param("high") Date theHigh);
+
+	@Query("SELECT count(t.myId) FROM ResourceTable t WHERE t.myUpdated >= :low AND t.myUpdated <= :high AND t.myResourceType = :restype")
+	Long countResourcesWithinUpdatedRange(@Param("restype") String theResourceType, @Param("low") Date theLow, @Param("high") Date theHigh);
+
+	@Query("SELECT t FROM ResourceTable t LEFT JOIN FETCH t.myForcedId WHERE t.myId IN (:pids)")
+	List<ResourceTable> findByIdsAndFetchForcedId(@Param("pids") Collection<Long> thePids);
+
+	@Query("SELECT MIN(t.myId), MAX(t.myId) FROM ResourceTable t WHERE t.myResourceType = :restype")
+	List<Object[]> findPidRangeOfResourcesOfType(@Param("restype") String theResourceType);
+
+	/**
+	 * @param theLow  Exclusive
+	 * @param theHigh Inclusive
+	 */
+	@Query("SELECT t.myId FROM ResourceTable t WHERE t.myResourceType = :restype AND t.myId > :low AND t.myId <= :high AND t.myDeleted IS NULL ORDER BY t.myId ASC")
+	Slice<Long> findIdsOfCurrentResourcesOfTypeWithinPidRange(Pageable thePage, @Param("restype") String theResourceType, @Param("low") Long theLow, @Param("high") Long theHigh);
+
+	/**
+	 * @param theLow  Exclusive
+	 * @param theHigh Inclusive
+	 */
+	@Query("SELECT t.myId FROM ResourceTable t WHERE t.myResourceType = :restype AND t.myId > :low AND t.myId <= :high AND t.myDeleted IS NULL AND t.myUpdated >= :since ORDER BY t.myId ASC")
+	Slice<Long> findIdsOfCurrentResourcesOfTypeWithinPidRange(Pageable thePage, @Param("restype") String theResourceType, @Param("low") Long theLow, @Param("high") Long theHigh, @Param("since") Date theSince);
+
 	@Modifying
 	@Query("UPDATE ResourceTable t SET t.myIndexStatus = :status WHERE t.myId = :id")
 	void updateIndexStatus(@Param("id") Long theId, @Param("status") Long theIndexStatus);
@@ -44,18 +44,21 @@ public class FhirResourceDaoSearchParameterDstu3 extends FhirResourceDaoDstu3<Se
 	protected void postPersist(ResourceTable theEntity, SearchParameter theResource) {
 		super.postPersist(theEntity, theResource);
 		markAffectedResources(theResource);
+		publishRegistryChange(theEntity, theResource, false);
 	}
 
 	@Override
 	protected void postUpdate(ResourceTable theEntity, SearchParameter theResource) {
 		super.postUpdate(theEntity, theResource);
 		markAffectedResources(theResource);
+		publishRegistryChange(theEntity, theResource, false);
 	}
 
 	@Override
 	protected void preDelete(SearchParameter theResourceToDelete, ResourceTable theEntityToDelete) {
 		super.preDelete(theResourceToDelete, theEntityToDelete);
 		markAffectedResources(theResourceToDelete);
+		publishRegistryChange(theEntityToDelete, theResourceToDelete, true);
 	}
 
 	@Override
@@ -78,6 +78,13 @@ public class FhirResourceDaoSubscriptionDstu3 extends FhirResourceDaoDstu3<Subsc
 		super.postPersist(theEntity, theSubscription);
 
 		createSubscriptionTable(theEntity, theSubscription);
+		publishRegistryChange(theEntity, theSubscription, false);
+	}
+
+	@Override
+	protected void postUpdate(ResourceTable theEntity, Subscription theSubscription) {
+		super.postUpdate(theEntity, theSubscription);
+		publishRegistryChange(theEntity, theSubscription, false);
 	}
 
 
@@ -88,6 +95,7 @@ public class FhirResourceDaoSubscriptionDstu3 extends FhirResourceDaoDstu3<Subsc
 		ResourceTable retVal = super.updateEntity(theRequest, theResource, theEntity, theDeletedTimestampOrNull, thePerformIndexing, theUpdateVersion, theUpdateTime, theForceUpdate, theCreateNewHistoryEntry);
 
 		if (theDeletedTimestampOrNull != null) {
+			publishRegistryChange(theEntity, null, true);
 			mySubscriptionTableDao.deleteAllForSubscription(theEntity);
 		}
 		return retVal;
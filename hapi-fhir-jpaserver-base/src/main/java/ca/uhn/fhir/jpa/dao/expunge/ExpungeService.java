@@ -0,0 +1,320 @@
+package ca.uhn.fhir.jpa.dao.expunge;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.IFulltextSearchSvc;
+import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
+import ca.uhn.fhir.jpa.entity.SearchResult;
+import ca.uhn.fhir.jpa.entity.SubscriptionTable;
+import ca.uhn.fhir.jpa.model.entity.*;
+import ca.uhn.fhir.jpa.util.ExpungeOptions;
+import ca.uhn.fhir.jpa.util.ExpungeOutcome;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.StopWatch;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.hibernate.search.jpa.FullTextEntityManager;
+import org.hibernate.search.jpa.Search;
+import org.hibernate.search.util.impl.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceContextType;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Physically deletes deleted resources and previous resource versions for the $expunge
+ * operation.
+ * <p>
+ * Rather than loading and deleting each version and index row individually, the PIDs to
+ * expunge are selected and split into batches (see {@link DaoConfig#setExpungeBatchSize(int)}),
+ * and each batch is removed in its own transaction using one set-based <code>DELETE</code>
+ * statement per table, in foreign key dependency order. Batches are deleted in parallel,
+ * using at most {@link DaoConfig#setExpungeThreadCount(int)} threads.
+ * </p>
+ */
+@Service
+public class ExpungeService {
+	private static final Logger ourLog = LoggerFactory.getLogger(ExpungeService.class);
+
+	@Autowired
+	private DaoConfig myDaoConfig;
+	@Autowired
+	private PlatformTransactionManager myPlatformTransactionManager;
+	@Autowired
+	private IResourceTableDao myResourceTableDao;
+	@Autowired
+	private IResourceHistoryTableDao myResourceHistoryTableDao;
+	@Autowired(required = false)
+	private IFulltextSearchSvc myFulltextSearchSvc;
+	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
+	private EntityManager myEntityManager;
+	private ThreadPoolExecutor myExecutor;
+
+	@PostConstruct
+	public void start() {
+		int threadCount = myDaoConfig.getExpungeThreadCount();
+		myExecutor = new ThreadPoolExecutor(threadCount, threadCount,
+			0L, TimeUnit.MILLISECONDS,
+			new LinkedBlockingQueue<>(threadCount),
+			new BasicThreadFactory.Builder().namingPattern("Expunge-%d").build(),
+			new Executors.BlockPolicy()
+		);
+	}
+
+	@PreDestroy
+	public void stop() {
+		myExecutor.shutdown();
+	}
+
+	/**
+	 * Expunges deleted resources and/or previous resource versions
+	 *
+	 * @param theResourceName The resource type, or <code>null</code> for all types
+	 * @param theResourceId   The resource PID, or <code>null</code> for all resources
+	 * @param theVersion      The version to expunge, or <code>null</code> for all previous versions
+	 */
+	public ExpungeOutcome expunge(String theResourceName, Long theResourceId, Long theVersion, ExpungeOptions theExpungeOptions) {
+		StopWatch sw = new StopWatch();
+		TransactionTemplate txTemplate = newTxTemplate();
+		AtomicLong deletedVersions = new AtomicLong();
+		AtomicLong deletedRows = new AtomicLong();
+
+		if (theExpungeOptions.isExpungeDeletedResources() && theVersion == null) {
+			int remaining = theExpungeOptions.getLimit();
+			Pageable page = PageRequest.of(0, remaining);
+			Slice<Long> resourceIds = txTemplate.execute(t -> {
+				if (theResourceId != null) {
+					return myResourceTableDao.findIdsOfDeletedResourcesOfType(page, theResourceId, theResourceName);
+				} else if (theResourceName != null) {
+					return myResourceTableDao.findIdsOfDeletedResourcesOfType(page, theResourceName);
+				} else {
+					return myResourceTableDao.findIdsOfDeletedResources(page);
+				}
+			});
+			assert resourceIds != null;
+			ourLog.info("Expunging {} deleted resources of type[{}] and ID[{}]", resourceIds.getNumberOfElements(), theResourceName, theResourceId);
+
+			List<List<Long>> batches = selectResourceBatchesWithinLimit(txTemplate, resourceIds.getContent(), remaining);
+			runInParallel(batches, t -> expungeDeletedResources(t, deletedVersions, deletedRows));
+		}
+
+		if (theExpungeOptions.isExpungeOldVersions()) {
+			int remaining = (int) (theExpungeOptions.getLimit() - deletedVersions.get());
+			if (remaining > 0) {
+				Pageable page = PageRequest.of(0, remaining);
+				List<Long> versionIds = txTemplate.execute(t -> {
+					if (theResourceId != null && theVersion != null) {
+						ResourceHistoryTable version = myResourceHistoryTableDao.findForIdAndVersion(theResourceId, theVersion);
+						return version != null ? Collections.singletonList(version.getId()) : Collections.emptyList();
+					} else if (theResourceName != null) {
+						return myResourceHistoryTableDao.findIdsOfPreviousVersionsOfResources(page, theResourceName).getContent();
+					} else {
+						return myResourceHistoryTableDao.findIdsOfPreviousVersionsOfResources(page).getContent();
+					}
+				});
+				assert versionIds != null;
+				ourLog.info("Expunging {} previous resource versions of type[{}]", versionIds.size(), theResourceName);
+
+				List<List<Long>> batches = Lists.partition(versionIds, myDaoConfig.getExpungeBatchSize());
+				runInParallel(batches, t -> expungeHistoricalVersions(t, deletedVersions, deletedRows));
+			}
+		}
+
+		ExpungeOutcome retVal = new ExpungeOutcome()
+			.setDeletedCount((int) deletedVersions.get())
+			.setDeletedRowCount(deletedRows.get())
+			.setMillis(sw.getMillis());
+		ourLog.info("Expunged {} resource versions ({} rows) in {} ({} rows/sec)", retVal.getDeletedCount(), retVal.getDeletedRowCount(), sw.toString(), String.format("%.1f", retVal.getRowsPerSecond()));
+		return retVal;
+	}
+
+	/**
+	 * Splits the given resource PIDs into batches, leaving out any resources which would cause
+	 * the total number of expunged versions to exceed the limit. Each resource is always
+	 * expunged together with all of its versions.
+	 */
+	private List<List<Long>> selectResourceBatchesWithinLimit(TransactionTemplate theTxTemplate, List<Long> theResourceIds, int theLimit) {
+		List<List<Long>> retVal = new ArrayList<>();
+		long versionCount = 0;
+
+		for (List<Long> nextCandidates : Lists.partition(theResourceIds, myDaoConfig.getExpungeBatchSize())) {
+			Map<Long, Long> versionCounts = new HashMap<>();
+			List<Object[]> counts = theTxTemplate.execute(t -> myResourceHistoryTableDao.countVersionsForResourceIds(nextCandidates));
+			assert counts != null;
+			for (Object[] next : counts) {
+				versionCounts.put((Long) next[0], ((Number) next[1]).longValue());
+			}
+
+			List<Long> batch = new ArrayList<>();
+			for (Long nextId : nextCandidates) {
+				long nextVersionCount = Math.max(1, versionCounts.getOrDefault(nextId, 0L));
+				if (versionCount + nextVersionCount > theLimit) {
+					ourLog.debug("Expunge limit has been hit - Stopping operation");
+					if (!batch.isEmpty()) {
+						retVal.add(batch);
+					}
+					return retVal;
+				}
+				versionCount += nextVersionCount;
+				batch.add(nextId);
+			}
+			retVal.add(batch);
+		}
+
+		return retVal;
+	}
+
+	private void runInParallel(List<List<Long>> theBatches, Callback theCallback) {
+		if (theBatches.isEmpty()) {
+			return;
+		}
+
+		List<Future<?>> futures = new ArrayList<>();
+		for (List<Long> nextBatch : theBatches) {
+			futures.add(myExecutor.submit(() -> {
+				newTxTemplate().execute(t -> {
+					theCallback.expunge(nextBatch);
+					return null;
+				});
+				return null;
+			}));
+		}
+
+		for (Future<?> next : futures) {
+			try {
+				next.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InternalErrorException(e);
+			} catch (ExecutionException e) {
+				ourLog.error("Failure during $expunge", e.getCause());
+				throw new InternalErrorException(e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Deletes deleted resources, including all of their versions, indexes, tags and links.
+	 * Must be called inside a transaction.
+	 */
+	private void expungeDeletedResources(List<Long> theResourceIds, AtomicLong theDeletedVersions, AtomicLong theDeletedRows) {
+		StopWatch sw = new StopWatch();
+		long rows = 0;
+
+		rows += deleteByIds(SearchResult.class, "myResourcePid", theResourceIds);
+
+		// Versions
+		rows += deleteByIds(ResourceHistoryTag.class, "myResourceId", theResourceIds);
+		int versions = deleteByIds(ResourceHistoryTable.class, "myResourceId", theResourceIds);
+		rows += versions;
+
+		// Indexes
+		rows += deleteByIds(ResourceIndexedSearchParamString.class, "myResourcePid", theResourceIds);
+		rows += deleteByIds(ResourceIndexedSearchParamToken.class, "myResourcePid", theResourceIds);
+		rows += deleteByIds(ResourceIndexedSearchParamNumber.class, "myResourcePid", theResourceIds);
+		rows += deleteByIds(ResourceIndexedSearchParamQuantity.class, "myResourcePid", theResourceIds);
+		rows += deleteByIds(ResourceIndexedSearchParamDate.class, "myResourcePid", theResourceIds);
+		rows += deleteByIds(ResourceIndexedSearchParamUri.class, "myResourcePid", theResourceIds);
+		rows += deleteByIds(ResourceIndexedSearchParamCoords.class, "myResourcePid", theResourceIds);
+		rows += deleteByIds(ResourceIndexedCompositeStringUnique.class, "myResourceId", theResourceIds);
+		rows += deleteByIds(SearchParamPresent.class, "myResource.myId", theResourceIds);
+		rows += deleteByIds(ResourceLink.class, "mySourceResourcePid", theResourceIds);
+		rows += deleteByIds(ResourceLink.class, "myTargetResourcePid", theResourceIds);
+		rows += deleteByIds(ResourceTag.class, "myResourceId", theResourceIds);
+		rows += deleteByIds(SubscriptionTable.class, "myResId", theResourceIds);
+
+		// The resource and its forced ID refer to each other
+		rows += executeForIds("UPDATE " + ResourceTable.class.getSimpleName() + " t SET t.myForcedId = null WHERE t.myId IN (:pids)", theResourceIds);
+		rows += deleteByIds(ForcedId.class, "myResourcePid", theResourceIds);
+		rows += deleteByIds(ResourceTable.class, "myId", theResourceIds);
+
+		if (myFulltextSearchSvc != null) {
+			FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(myEntityManager);
+			for (Long next : theResourceIds) {
+				fullTextEntityManager.purge(ResourceTable.class, next);
+			}
+		}
+
+		theDeletedVersions.addAndGet(versions);
+		theDeletedRows.addAndGet(rows);
+		ourLog.info("Expunged {} deleted resources ({} rows) in {}", theResourceIds.size(), rows, sw.toString());
+	}
+
+	/**
+	 * Deletes previous versions of resources. Must be called inside a transaction.
+	 */
+	private void expungeHistoricalVersions(List<Long> theVersionIds, AtomicLong theDeletedVersions, AtomicLong theDeletedRows) {
+		StopWatch sw = new StopWatch();
+		long rows = 0;
+
+		rows += deleteByIds(ResourceHistoryTag.class, "myResourceHistory.myId", theVersionIds);
+		int versions = deleteByIds(ResourceHistoryTable.class, "myId", theVersionIds);
+		rows += versions;
+
+		theDeletedVersions.addAndGet(versions);
+		theDeletedRows.addAndGet(rows);
+		ourLog.info("Expunged {} previous resource versions ({} rows) in {}", versions, rows, sw.toString());
+	}
+
+	private int deleteByIds(Class<?> theEntityType, String theIdPath, List<Long> theIds) {
+		return executeForIds("DELETE FROM " + theEntityType.getSimpleName() + " t WHERE t." + theIdPath + " IN (:pids)", theIds);
+	}
+
+	private int executeForIds(String theQuery, List<Long> theIds) {
+		StopWatch sw = new StopWatch();
+		int outcome = myEntityManager
+			.createQuery(theQuery)
+			.setParameter("pids", theIds)
+			.executeUpdate();
+		ourLog.debug("Query affected {} rows in {}: {}", outcome, sw.toString(), theQuery);
+		return outcome;
+	}
+
+	private TransactionTemplate newTxTemplate() {
+		TransactionTemplate retVal = new TransactionTemplate(myPlatformTransactionManager);
+		retVal.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		return retVal;
+	}
+
+	@FunctionalInterface
+	private interface Callback {
+		void expunge(List<Long> theIds);
+	}
+
+}
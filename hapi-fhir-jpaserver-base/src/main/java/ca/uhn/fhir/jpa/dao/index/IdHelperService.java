@@ -25,17 +25,27 @@ import ca.uhn.fhir.jpa.dao.data.IForcedIdDao;
 import ca.uhn.fhir.jpa.model.entity.ForcedId;
 import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class IdHelperService {
+	/**
+	 * Maximum number of forced IDs looked up in a single query, to stay under
+	 * the limit some databases place on the size of an IN clause
+	 */
+	private static final int MAX_FORCED_IDS_PER_QUERY = 800;
+
 	@Autowired
 	protected IForcedIdDao myForcedIdDao;
 	@Autowired(required = true)
@@ -78,6 +88,33 @@ public class IdHelperService {
 		}
 	}
 
+	/**
+	 * Translates a collection of resource IDs (all of the same resource type) into
+	 * their corresponding PIDs, using a single query for any forced IDs. IDs which
+	 * don't correspond to an existing resource are not included in the returned map.
+	 *
+	 * @return A map whose keys are the given resource IDs and whose values are the PIDs
+	 */
+	public Map<String, Long> translateForcedIdsToPids(String theResourceType, Collection<String> theIds) {
+		Map<String, Long> retVal = new HashMap<>();
+		List<String> forcedIds = new ArrayList<>();
+		for (String next : theIds) {
+			if (myDaoConfig.getResourceClientIdStrategy() != DaoConfig.ClientIdStrategyEnum.ANY && isValidPid(new IdDt(theResourceType, next))) {
+				retVal.put(next, Long.parseLong(next));
+			} else {
+				forcedIds.add(next);
+			}
+		}
+
+		for (List<String> nextPartition : Lists.partition(forcedIds, MAX_FORCED_IDS_PER_QUERY)) {
+			for (ForcedId next : myForcedIdDao.findByTypeAndForcedIds(theResourceType, nextPartition)) {
+				retVal.put(next.getForcedId(), next.getResourcePid());
+			}
+		}
+
+		return retVal;
+	}
+
 	public String translatePidIdToForcedId(String theResourceType, Long theId) {
 		ForcedId forcedId = myForcedIdDao.findByResourcePid(theId);
 		if (forcedId != null) {
@@ -61,18 +61,21 @@ public class FhirResourceDaoSearchParameterR4 extends FhirResourceDaoR4<SearchPa
 	protected void postPersist(ResourceTable theEntity, SearchParameter theResource) {
 		super.postPersist(theEntity, theResource);
 		markAffectedResources(theResource);
+		publishRegistryChange(theEntity, theResource, false);
 	}
 
 	@Override
 	protected void postUpdate(ResourceTable theEntity, SearchParameter theResource) {
 		super.postUpdate(theEntity, theResource);
 		markAffectedResources(theResource);
+		publishRegistryChange(theEntity, theResource, false);
 	}
 
 	@Override
 	protected void preDelete(SearchParameter theResourceToDelete, ResourceTable theEntityToDelete) {
 		super.preDelete(theResourceToDelete, theEntityToDelete);
 		markAffectedResources(theResourceToDelete);
+		publishRegistryChange(theEntityToDelete, theResourceToDelete, true);
 	}
 
 	@Override
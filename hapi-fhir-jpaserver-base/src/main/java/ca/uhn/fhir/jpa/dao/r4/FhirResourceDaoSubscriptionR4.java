@@ -71,6 +71,13 @@ public class FhirResourceDaoSubscriptionR4 extends FhirResourceDaoR4<Subscriptio
 		super.postPersist(theEntity, theSubscription);
 
 		createSubscriptionTable(theEntity, theSubscription);
+		publishRegistryChange(theEntity, theSubscription, false);
+	}
+
+	@Override
+	protected void postUpdate(ResourceTable theEntity, Subscription theSubscription) {
+		super.postUpdate(theEntity, theSubscription);
+		publishRegistryChange(theEntity, theSubscription, false);
 	}
 
 
@@ -80,6 +87,7 @@ public class FhirResourceDaoSubscriptionR4 extends FhirResourceDaoR4<Subscriptio
 		ResourceTable retVal = super.updateEntity(theRequest, theResource, theEntity, theDeletedTimestampOrNull, thePerformIndexing, theUpdateVersion, theUpdateTime, theForceUpdate, theCreateNewHistoryEntry);
 
 		if (theDeletedTimestampOrNull != null) {
+			publishRegistryChange(theEntity, null, true);
 			Long subscriptionId = getSubscriptionTablePidForSubscriptionResource(theEntity.getIdDt());
 			if (subscriptionId != null) {
 				mySubscriptionTableDao.deleteAllForSubscription(retVal);
@@ -0,0 +1,86 @@
+package ca.uhn.fhir.jpa.entity;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * A single NDJSON file generated by a bulk export job
+ */
+@Entity
+@Table(name = "HFJ_BLK_EXPORT_FILE")
+public class BulkExportFileEntity implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	@SequenceGenerator(name = "SEQ_BLKEXFILE_PID", sequenceName = "SEQ_BLKEXFILE_PID")
+	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_BLKEXFILE_PID")
+	@Column(name = "PID")
+	private Long myId;
+	@ManyToOne
+	@JoinColumn(name = "JOB_PID", referencedColumnName = "PID", nullable = false, foreignKey = @ForeignKey(name = "FK_BLKEXFILE_JOB"))
+	private BulkExportJobEntity myJob;
+	@Column(name = "RES_TYPE", length = 30, nullable = false)
+	private String myResourceType;
+	@Column(name = "FILE_NAME", length = 200, nullable = false)
+	private String myFileName;
+	@Column(name = "RES_COUNT", nullable = false)
+	private int myResourceCount;
+
+	public String getFileName() {
+		return myFileName;
+	}
+
+	public void setFileName(String theFileName) {
+		myFileName = theFileName;
+	}
+
+	public Long getId() {
+		return myId;
+	}
+
+	public BulkExportJobEntity getJob() {
+		return myJob;
+	}
+
+	public void setJob(BulkExportJobEntity theJob) {
+		myJob = theJob;
+	}
+
+	public int getResourceCount() {
+		return myResourceCount;
+	}
+
+	public void setResourceCount(int theResourceCount) {
+		myResourceCount = theResourceCount;
+	}
+
+	public String getResourceType() {
+		return myResourceType;
+	}
+
+	public void setResourceType(String theResourceType) {
+		myResourceType = theResourceType;
+	}
+}
@@ -0,0 +1,274 @@
+package ca.uhn.fhir.jpa.entity;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.bulk.BulkExportStyleEnum;
+import ca.uhn.fhir.jpa.bulk.BulkJobStatusEnum;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+@Entity
+@Table(name = "HFJ_BLK_EXPORT_JOB", uniqueConstraints = {
+	@UniqueConstraint(name = "IDX_BLKEX_JOB_ID", columnNames = "JOB_ID")
+}, indexes = {
+	@Index(name = "IDX_BLKEX_EXPTIME", columnList = "EXP_TIME")
+})
+public class BulkExportJobEntity implements Serializable {
+
+	public static final int JOB_ID_LENGTH = 36;
+	public static final int STATUS_MESSAGE_LENGTH = 500;
+	public static final int REQUEST_LENGTH = 1000;
+	public static final int RESOURCE_TYPES_LENGTH = 1000;
+	public static final int TYPE_FILTERS_LENGTH = 2000;
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	@SequenceGenerator(name = "SEQ_BLKEXJOB_PID", sequenceName = "SEQ_BLKEXJOB_PID")
+	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_BLKEXJOB_PID")
+	@Column(name = "PID")
+	private Long myId;
+	@Column(name = "JOB_ID", length = JOB_ID_LENGTH, nullable = false, updatable = false)
+	private String myJobId;
+	@Enumerated(EnumType.STRING)
+	@Column(name = "JOB_STATUS", length = 10, nullable = false)
+	private BulkJobStatusEnum myStatus;
+	@Enumerated(EnumType.STRING)
+	@Column(name = "EXPORT_STYLE", length = 10, nullable = false, updatable = false)
+	private BulkExportStyleEnum myExportStyle;
+	@Column(name = "GROUP_ID", length = 200, nullable = true, updatable = false)
+	private String myGroupId;
+	/**
+	 * Comma separated list of resource types, or <code>null</code> for all types
+	 */
+	@Column(name = "RESOURCE_TYPES", length = RESOURCE_TYPES_LENGTH, nullable = true, updatable = false)
+	private String myResourceTypes;
+	/**
+	 * Newline separated list of <code>_typeFilter</code> search URLs
+	 */
+	@Column(name = "TYPE_FILTERS", length = TYPE_FILTERS_LENGTH, nullable = true, updatable = false)
+	private String myTypeFilters;
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "EXPORT_SINCE", nullable = true, updatable = false)
+	private Date mySince;
+	@Column(name = "REQUEST", length = REQUEST_LENGTH, nullable = false, updatable = false)
+	private String myRequest;
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "CREATED_TIME", nullable = false, updatable = false)
+	private Date myCreated;
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "STATUS_TIME", nullable = false)
+	private Date myStatusTime;
+	@Column(name = "STATUS_MESSAGE", length = STATUS_MESSAGE_LENGTH, nullable = true)
+	private String myStatusMessage;
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "JOB_STARTED", nullable = true)
+	private Date myStarted;
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "EXP_TIME", nullable = true)
+	private Date myExpiry;
+	@Column(name = "RES_COUNT", nullable = true)
+	private Integer myResourceCount;
+	@Version
+	@Column(name = "OPTLOCK", nullable = false)
+	private int myVersion;
+
+	public Date getCreated() {
+		return myCreated;
+	}
+
+	public void setCreated(Date theCreated) {
+		myCreated = theCreated;
+	}
+
+	public BulkExportStyleEnum getExportStyle() {
+		return myExportStyle;
+	}
+
+	public void setExportStyle(BulkExportStyleEnum theExportStyle) {
+		myExportStyle = theExportStyle;
+	}
+
+	/**
+	 * The time after which this job and its files will be deleted, or <code>null</code>
+	 * if the job has not completed yet
+	 */
+	public Date getExpiry() {
+		return myExpiry;
+	}
+
+	/**
+	 * The time after which this job and its files will be deleted, or <code>null</code>
+	 * if the job has not completed yet
+	 */
+	public void setExpiry(Date theExpiry) {
+		myExpiry = theExpiry;
+	}
+
+	public String getGroupId() {
+		return myGroupId;
+	}
+
+	public void setGroupId(String theGroupId) {
+		myGroupId = theGroupId;
+	}
+
+	public Long getId() {
+		return myId;
+	}
+
+	public String getJobId() {
+		return myJobId;
+	}
+
+	public void setJobId(String theJobId) {
+		myJobId = theJobId;
+	}
+
+	public String getRequest() {
+		return myRequest;
+	}
+
+	public void setRequest(String theRequest) {
+		myRequest = theRequest;
+	}
+
+	/**
+	 * The total number of resources written to the files of this job, or <code>null</code>
+	 * if the job has not completed yet
+	 */
+	public Integer getResourceCount() {
+		return myResourceCount;
+	}
+
+	/**
+	 * The total number of resources written to the files of this job, or <code>null</code>
+	 * if the job has not completed yet
+	 */
+	public void setResourceCount(Integer theResourceCount) {
+		myResourceCount = theResourceCount;
+	}
+
+	public String getResourceTypes() {
+		return myResourceTypes;
+	}
+
+	public void setResourceTypes(String theResourceTypes) {
+		myResourceTypes = theResourceTypes;
+	}
+
+	public Date getSince() {
+		return mySince;
+	}
+
+	public void setSince(Date theSince) {
+		mySince = theSince;
+	}
+
+	/**
+	 * The time at which the export files started being generated
+	 */
+	public Date getStarted() {
+		return myStarted;
+	}
+
+	/**
+	 * The time at which the export files started being generated
+	 */
+	public void setStarted(Date theStarted) {
+		myStarted = theStarted;
+	}
+
+	public BulkJobStatusEnum getStatus() {
+		return myStatus;
+	}
+
+	/**
+	 * Sets the status, and updates the status time to the current time
+	 */
+	public void setStatus(BulkJobStatusEnum theStatus) {
+		if (myStatus != theStatus) {
+			myStatusTime = new Date();
+			myStatus = theStatus;
+		}
+	}
+
+	public String getStatusMessage() {
+		return myStatusMessage;
+	}
+
+	public void setStatusMessage(String theStatusMessage) {
+		myStatusMessage = theStatusMessage;
+	}
+
+	public Date getStatusTime() {
+		return myStatusTime;
+	}
+
+	public String getTypeFilters() {
+		return myTypeFilters;
+	}
+
+	public void setTypeFilters(String theTypeFilters) {
+		myTypeFilters = theTypeFilters;
+	}
+
+	/**
+	 * Returns the average number of resources written per second by this job, or
+	 * <code>null</code> if the job has not completed yet
+	 */
+	public Double getThroughputPerSecond() {
+		if (myStarted == null || myResourceCount == null || myStatus != BulkJobStatusEnum.COMPLETE) {
+			return null;
+		}
+		long millis = Math.max(1, myStatusTime.getTime() - myStarted.getTime());
+		return (1000.0 * myResourceCount) / millis;
+	}
+
+	@Override
+	public String toString() {
+		ToStringBuilder b = new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE);
+		b.append("id", myId);
+		b.append("jobId", myJobId);
+		b.append("status", myStatus);
+		b.append("style", myExportStyle);
+		if (myGroupId != null) {
+			b.append("groupId", myGroupId);
+		}
+		if (myResourceTypes != null) {
+			b.append("resourceTypes", myResourceTypes);
+		}
+		if (mySince != null) {
+			b.append("since", mySince);
+		}
+		if (myResourceCount != null) {
+			b.append("resourceCount", myResourceCount);
+		}
+		if (myStatusMessage != null) {
+			b.append("statusMessage", myStatusMessage);
+		}
+		return b.toString();
+	}
+}
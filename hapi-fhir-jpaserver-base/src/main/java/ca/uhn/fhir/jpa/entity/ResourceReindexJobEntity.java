@@ -57,6 +57,11 @@ public class ResourceReindexJobEntity implements Serializable {
 	private Date mySuspendedUntil;
 	@Column(name = "REINDEX_COUNT", nullable = true)
 	private Integer myReindexCount;
+	@Column(name = "REINDEX_TOTAL", nullable = true)
+	private Integer myReindexTotal;
+	@Column(name = "JOB_STARTED", nullable = true)
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date myStarted;
 
 	public Integer getReindexCount() {
 		return myReindexCount;
@@ -66,6 +71,76 @@ public class ResourceReindexJobEntity implements Serializable {
 		myReindexCount = theReindexCount;
 	}
 
+	/**
+	 * The estimated number of resources this job will reindex, calculated when the
+	 * first pass of the job runs
+	 */
+	public Integer getReindexTotal() {
+		return myReindexTotal;
+	}
+
+	/**
+	 * The estimated number of resources this job will reindex, calculated when the
+	 * first pass of the job runs
+	 */
+	public void setReindexTotal(Integer theReindexTotal) {
+		myReindexTotal = theReindexTotal;
+	}
+
+	/**
+	 * The time at which the first pass of this job ran
+	 */
+	public Date getStarted() {
+		return myStarted;
+	}
+
+	/**
+	 * The time at which the first pass of this job ran
+	 */
+	public void setStarted(Date theStarted) {
+		myStarted = theStarted;
+	}
+
+	/**
+	 * Returns the percentage (0-100) of the resources for this job which have been
+	 * reindexed so far, or <code>null</code> if the job has not started yet
+	 */
+	public Double getPercentComplete() {
+		if (myReindexTotal == null) {
+			return null;
+		}
+		if (myReindexTotal == 0) {
+			return 100.0;
+		}
+		int count = myReindexCount != null ? myReindexCount : 0;
+		return Math.min(100.0, (100.0 * count) / myReindexTotal);
+	}
+
+	/**
+	 * Returns the average number of resources reindexed per second since this job
+	 * started, or <code>null</code> if the job has not started yet
+	 */
+	public Double getThroughputPerSecond() {
+		if (myStarted == null || myReindexCount == null) {
+			return null;
+		}
+		long millis = Math.max(1, System.currentTimeMillis() - myStarted.getTime());
+		return (myReindexCount * 1000.0) / millis;
+	}
+
+	/**
+	 * Returns the estimated number of milliseconds until this job completes, based on the
+	 * throughput so far, or <code>null</code> if this can not be estimated yet
+	 */
+	public Long getEstimatedMillisRemaining() {
+		Double throughput = getThroughputPerSecond();
+		if (throughput == null || throughput <= 0 || myReindexTotal == null) {
+			return null;
+		}
+		long remaining = Math.max(0, myReindexTotal - myReindexCount);
+		return (long) ((remaining / throughput) * 1000.0);
+	}
+
 	public Date getSuspendedUntil() {
 		return mySuspendedUntil;
 	}
@@ -130,6 +205,9 @@ public class ResourceReindexJobEntity implements Serializable {
 			.append("resourceType", myResourceType)
 			.append("thresholdLow", myThresholdLow)
 			.append("thresholdHigh", myThresholdHigh);
+		if (myReindexTotal != null) {
+			b.append("progress", myReindexCount + "/" + myReindexTotal);
+		}
 		if (myDeleted) {
 			b.append("deleted", myDeleted);
 		}
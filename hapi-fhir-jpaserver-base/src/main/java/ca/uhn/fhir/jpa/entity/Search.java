@@ -99,6 +99,8 @@ public class Search implements Serializable {
 	private SearchStatusEnum myStatus;
 	@Column(name = "TOTAL_COUNT", nullable = true)
 	private Integer myTotalCount;
+	@Column(name = "TOTAL_COUNT_ESTIMATED", nullable = true)
+	private Boolean myTotalCountEstimated;
 	@Column(name = "SEARCH_UUID", length = UUID_COLUMN_LENGTH, nullable = false, updatable = false)
 	private String myUuid;
 	@SuppressWarnings("unused")
@@ -261,6 +263,19 @@ public class Search implements Serializable {
 		myTotalCount = theTotalCount;
 	}
 
+	/**
+	 * Returns <code>true</code> if the total count was estimated (i.e. borrowed from
+	 * the resource counts cache or from another search) instead of being calculated
+	 * for this search
+	 */
+	public boolean isTotalCountEstimated() {
+		return Boolean.TRUE.equals(myTotalCountEstimated);
+	}
+
+	public void setTotalCountEstimated(boolean theTotalCountEstimated) {
+		myTotalCountEstimated = theTotalCountEstimated;
+	}
+
 	public String getUuid() {
 		return myUuid;
 	}
@@ -27,14 +27,19 @@ import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.model.entity.BaseHasResource;
 import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.*;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.NotImplementedOperationException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import org.hl7.fhir.exceptions.FHIRException;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.DomainResource;
+import org.hl7.fhir.r4.model.IdType;
 import org.hl7.fhir.r4.model.Reference;
 import org.hl7.fhir.r4.model.Resource;
 import org.hl7.fhir.r4.utils.GraphQLEngine;
@@ -43,10 +48,24 @@ import org.hl7.fhir.utilities.graphql.Value;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.util.*;
 
-public class JpaStorageServices extends BaseHapiFhirDao<IBaseResource> implements GraphQLEngine.IGraphQLStorageServices {
+import static org.apache.commons.lang3.StringUtils.isBlank;
 
+public class JpaStorageServices extends BaseHapiFhirDao<IBaseResource> implements GraphQLEngine.IGraphQLBatchStorageServices {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(JpaStorageServices.class);
+
+	/**
+	 * Number of search results loaded at a time when building a list
+	 */
+	static final int LIST_PAGE_SIZE = 50;
+
+	/**
+	 * Maximum number of search results included in a list, used when the search
+	 * doesn't specify a smaller page size
+	 */
+	static final int MAX_LIST_SIZE = 1000;
 
 	private IFhirResourceDao<? extends IBaseResource> getDao(String theResourceType) {
 		RuntimeResourceDefinition typeDef = getContext().getResourceDefinition(theResourceType);
@@ -102,13 +121,29 @@ public class JpaStorageServices extends BaseHapiFhirDao<IBaseResource> implement
 		}
 
 		IBundleProvider response = dao.search(params);
-		int size = response.size();
-		if (response.preferredPageSize() != null && response.preferredPageSize() < size) {
-			size = response.preferredPageSize();
+
+		/*
+		 * Load the results a page at a time rather than asking for the total size
+		 * up front, since the total may not be known until the whole search has
+		 * been performed
+		 */
+		int maxSize = MAX_LIST_SIZE;
+		if (response.preferredPageSize() != null) {
+			maxSize = Math.min(maxSize, response.preferredPageSize());
 		}
+		int from = 0;
+		while (from < maxSize) {
+			int to = Math.min(from + LIST_PAGE_SIZE, maxSize);
+
+			List<IBaseResource> page = response.getResources(from, to);
+			for (IBaseResource next : page) {
+				theMatches.add((Resource) next);
+			}
 
-		for (IBaseResource next : response.getResources(0, size)) {
-			theMatches.add((Resource) next);
+			if (page.size() < to - from) {
+				break;
+			}
+			from = to;
 		}
 
 	}
@@ -124,9 +159,99 @@ public class JpaStorageServices extends BaseHapiFhirDao<IBaseResource> implement
 		return (Resource) toResource(id, false);
 	}
 
+	@Transactional(propagation = Propagation.REQUIRED)
 	@Override
-	public ReferenceResolution lookup(Object appInfo, Resource context, Reference reference) throws FHIRException {
-		return null;
+	public ReferenceResolution lookup(Object theAppInfo, Resource theContext, Reference theReference) throws FHIRException {
+		return lookup(theAppInfo, Collections.singletonList(theContext), Collections.singletonList(theReference)).get(0);
+	}
+
+	/**
+	 * Resolves a collection of references. Contained references are resolved from their
+	 * context, and the remaining (local) references are loaded using one query per
+	 * resource type.
+	 */
+	@Transactional(propagation = Propagation.REQUIRED)
+	@Override
+	public List<ReferenceResolution> lookup(Object theAppInfo, List<Resource> theContexts, List<Reference> theReferences) throws FHIRException {
+		List<ReferenceResolution> retVal = new ArrayList<>(Collections.nCopies(theReferences.size(), (ReferenceResolution) null));
+
+		// Resource type -> ID -> positions of the references to it
+		Map<String, Map<String, List<Integer>>> typeToIdToPositions = new HashMap<>();
+
+		for (int i = 0; i < theReferences.size(); i++) {
+			Resource context = theContexts.get(i);
+			String reference = theReferences.get(i).getReference();
+			if (isBlank(reference)) {
+				continue;
+			}
+
+			if (reference.startsWith("#")) {
+				if (context instanceof DomainResource) {
+					for (Resource next : ((DomainResource) context).getContained()) {
+						if (reference.substring(1).equals(next.getIdElement().getIdPart())) {
+							retVal.set(i, new ReferenceResolution(context, next));
+							break;
+						}
+					}
+				}
+				continue;
+			}
+
+			IdType refId = new IdType(reference);
+			if (refId.isAbsolute() || !refId.hasResourceType() || !refId.hasIdPart() || !getContext().getResourceNames().contains(refId.getResourceType())) {
+				continue;
+			}
+
+			if (refId.hasVersionIdPart()) {
+				try {
+					Resource target = (Resource) getDao(refId.getResourceType()).read(refId);
+					retVal.set(i, new ReferenceResolution(target, target));
+				} catch (ResourceNotFoundException | ResourceGoneException e) {
+					ourLog.debug("Unable to resolve reference {}: {}", reference, e.toString());
+				}
+				continue;
+			}
+
+			typeToIdToPositions
+				.computeIfAbsent(refId.getResourceType(), t -> new HashMap<>())
+				.computeIfAbsent(refId.getIdPart(), t -> new ArrayList<>())
+				.add(i);
+		}
+
+		for (Map.Entry<String, Map<String, List<Integer>>> nextType : typeToIdToPositions.entrySet()) {
+			String resourceType = nextType.getKey();
+			Map<String, List<Integer>> idToPositions = nextType.getValue();
+
+			Map<String, Long> idToPid = myIdHelperService.translateForcedIdsToPids(resourceType, idToPositions.keySet());
+			if (idToPid.isEmpty()) {
+				continue;
+			}
+
+			List<Long> pids = new ArrayList<>(new LinkedHashSet<>(idToPid.values()));
+			List<IBaseResource> resources = new ArrayList<>(pids.size());
+			IFhirResourceDao<? extends IBaseResource> dao = getDao(resourceType);
+			dao.newSearchBuilder().loadResourcesByPid(pids, resources, new HashSet<>(), false, myEntityManager, getContext(), dao);
+
+			Map<Long, Resource> pidToResource = new HashMap<>();
+			for (int i = 0; i < pids.size(); i++) {
+				Resource next = (Resource) resources.get(i);
+				// Deleted resources are loaded as empty placeholders, but can't be the target of a reference
+				if (next != null && next.getResourceType().name().equals(resourceType) && ResourceMetadataKeyEnum.DELETED_AT.get(next) == null) {
+					pidToResource.put(pids.get(i), next);
+				}
+			}
+
+			for (Map.Entry<String, Long> nextId : idToPid.entrySet()) {
+				Resource target = pidToResource.get(nextId.getValue());
+				if (target != null) {
+					for (Integer nextPosition : idToPositions.get(nextId.getKey())) {
+						retVal.set(nextPosition, new ReferenceResolution(target, target));
+					}
+				}
+			}
+		}
+
+		return retVal;
 	}
 
 	@Transactional(propagation = Propagation.NEVER)
@@ -26,11 +26,14 @@ import ca.uhn.fhir.jpa.dao.data.ISearchDao;
 import ca.uhn.fhir.jpa.dao.data.ISearchIncludeDao;
 import ca.uhn.fhir.jpa.dao.data.ISearchResultDao;
 import ca.uhn.fhir.jpa.entity.*;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.util.ResourceCountCache;
 import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.rest.api.CacheControlDirective;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.SummaryEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.IPagingProvider;
@@ -48,6 +51,7 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.time.DateUtils;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.AbstractPageRequest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -101,6 +105,9 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 	private DaoRegistry myDaoRegistry;
 	@Autowired
 	private IPagingProvider myPagingProvider;
+	@Autowired(required = false)
+	@Qualifier("myResourceCountsCache")
+	private ResourceCountCache myResourceCountsCache;
 
 	private int mySyncSize = DEFAULT_SYNC_SIZE;
 	/**
@@ -604,10 +611,18 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 
 						if (theResultIter.hasNext() == false) {
 							mySearch.setNumFound(myCountSaved);
-							int loadedCountThisPass = theResultIter.getSkippedCount() + myCountSaved;
+							/*
+							 * The query doesn't use DISTINCT, so a resource matched by several joined
+							 * rows comes back more than once and is dropped by the search builder. The
+							 * search is only complete if the query returned fewer rows than it was
+							 * limited to, so compare the rows read by this pass (including the dropped
+							 * ones) with the limit of this pass.
+							 */
+							int loadedCountThisPass = theResultIter.getSkippedCount() + myCountFetchedDuringThisPass;
 							if (myMaxResultsToFetch != null && loadedCountThisPass < myMaxResultsToFetch) {
 								mySearch.setStatus(SearchStatusEnum.FINISHED);
 								mySearch.setTotalCount(myCountSaved);
+								mySearch.setTotalCountEstimated(false);
 							} else if (myAdditionalPrefetchThresholdsRemaining) {
 								ourLog.trace("Setting search status to PASSCMPLET");
 								mySearch.setStatus(SearchStatusEnum.PASSCMPLET);
@@ -615,6 +630,7 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 							} else {
 								mySearch.setStatus(SearchStatusEnum.FINISHED);
 								mySearch.setTotalCount(myCountSaved);
+								mySearch.setTotalCountEstimated(false);
 							}
 						}
 					}
@@ -752,6 +768,89 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 			}
 		}
 
+		/**
+		 * Should this search be loaded one page at a time? See
+		 * {@link DaoConfig#setTopNSearchMaxCount(Integer)}
+		 */
+		private boolean isTopNSearch(boolean theWantCount) {
+			Integer maxCount = myDaoConfig.getTopNSearchMaxCount();
+			if (maxCount == null || theWantCount || myParams.getEverythingMode() != null) {
+				return false;
+			}
+			return myParams.getSort() != null && myParams.getCount() != null && myParams.getCount() > 0 && myParams.getCount() <= maxCount;
+		}
+
+		/**
+		 * If this pass continues a search sorted by <code>_lastUpdated</code>, tell the
+		 * search builder to start after the last resource loaded by the previous pass.
+		 * This is only safe if that resource hasn't been modified since the search was
+		 * created, since otherwise its current timestamp is not where it was sorted.
+		 *
+		 * @return Returns <code>true</code> if keyset pagination will be used
+		 */
+		private boolean seekAfterLastLoadedResource(ISearchBuilder theSearchBuilder) {
+			SortSpec sort = myParams.getSort();
+			if (myPreviouslyAddedResourcePids == null || myPreviouslyAddedResourcePids.isEmpty()) {
+				return false;
+			}
+			if (!Constants.PARAM_LASTUPDATED.equals(sort.getParamName()) || sort.getChain() != null) {
+				return false;
+			}
+
+			Long lastPid = myPreviouslyAddedResourcePids.get(myPreviouslyAddedResourcePids.size() - 1);
+			ResourceTable lastResource = myEntityManager.find(ResourceTable.class, lastPid);
+			if (lastResource == null || lastResource.getUpdatedDate().after(mySearch.getCreated())) {
+				return false;
+			}
+
+			ourLog.debug("Continuing search {} after resource {} updated at {}", mySearch.getUuid(), lastPid, lastResource.getUpdatedDate());
+			theSearchBuilder.setSeekAfter(lastResource.getUpdatedDate(), lastPid);
+			return true;
+		}
+
+		/**
+		 * Try to come up with a total for a search that requested an estimated
+		 * total, without performing a count query
+		 *
+		 * @return Returns <code>null</code> if no estimate is available
+		 */
+		private Integer estimateTotalCount() {
+			/*
+			 * A search with no parameters matches every resource of the given
+			 * type, and we already keep a cache of those counts
+			 */
+			if (myParams.isEmpty() && myParams.getLastUpdated() == null && myResourceCountsCache != null) {
+				Map<String, Long> resourceCounts = myResourceCountsCache.get();
+				if (resourceCounts != null && resourceCounts.containsKey(myResourceType)) {
+					return resourceCounts.get(myResourceType).intValue();
+				}
+			}
+
+			/*
+			 * Otherwise, reuse the total from a recent identical search. Only
+			 * totals that were actually calculated are candidates, so that an
+			 * estimate is never passed along from one search to the next.
+			 */
+			Long cacheMillis = myDaoConfig.getEstimatedTotalCountCacheMillis();
+			final String queryString = mySearch.getSearchQueryString();
+			if (cacheMillis == null || queryString == null) {
+				return null;
+			}
+
+			final Date createdCutoff = new Date(System.currentTimeMillis() - cacheMillis);
+			TransactionTemplate txTemplate = new TransactionTemplate(myManagedTxManager);
+			return txTemplate.execute(t -> {
+				List<Search> candidates = mySearchDao.findWithTotalCount(myResourceType, queryString.hashCode(), createdCutoff);
+				for (Search nextCandidateSearch : candidates) {
+					if (queryString.equals(nextCandidateSearch.getSearchQueryString()) && !mySearch.getUuid().equals(nextCandidateSearch.getUuid())) {
+						ourLog.debug("Reusing total of {} from search {}", nextCandidateSearch.getTotalCount(), nextCandidateSearch.getUuid());
+						return nextCandidateSearch.getTotalCount();
+					}
+				}
+				return null;
+			});
+		}
+
 		/**
 		 * This method actually creates the database query to perform the
 		 * search, and starts it.
@@ -763,25 +862,39 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 			 *
 			 * SELECT COUNT(*) ....
 			 *
-			 * before doing anything else.
+			 * before doing anything else. If the user has asked for an
+			 * estimated total, use one if it is available without a count
+			 * query, and otherwise leave the total until the results are loaded.
 			 */
 			boolean wantOnlyCount = SummaryEnum.COUNT.equals(myParams.getSummaryMode());
-			boolean wantCount =
-				wantOnlyCount ||
-					SearchTotalModeEnum.ACCURATE.equals(myParams.getSearchTotalMode()) ||
-					(myParams.getSearchTotalMode() == null && SearchTotalModeEnum.ACCURATE.equals(myDaoConfig.getDefaultTotalMode()));
-			if (wantCount) {
-				ourLog.trace("Performing count");
-				ISearchBuilder sb = newSearchBuilder();
-				Iterator<Long> countIterator = sb.createCountQuery(myParams, mySearch.getUuid());
-				Long count = countIterator.next();
-				ourLog.trace("Got count {}", count);
+			SearchTotalModeEnum totalMode = defaultIfNull(myParams.getSearchTotalMode(), myDaoConfig.getDefaultTotalMode());
+			boolean wantCount = wantOnlyCount || SearchTotalModeEnum.ACCURATE.equals(totalMode);
+			boolean wantEstimate = !wantCount && SearchTotalModeEnum.ESTIMATED.equals(totalMode) && myParams.getEverythingMode() == null;
+			StopWatch countSw = new StopWatch();
+			Integer estimate = null;
+			if (wantEstimate && mySearch.getTotalCount() == null) {
+				estimate = estimateTotalCount();
+			}
+			if (wantCount || estimate != null) {
+				final boolean estimated = estimate != null;
+				final int count;
+				if (estimate != null) {
+					count = estimate;
+					ourLog.debug("Estimated total of {} for search {} in {}ms", count, mySearch.getUuid(), countSw.getMillis());
+				} else {
+					ourLog.trace("Performing count");
+					ISearchBuilder sb = newSearchBuilder();
+					Iterator<Long> countIterator = sb.createCountQuery(myParams, mySearch.getUuid());
+					count = countIterator.next().intValue();
+					ourLog.info("Count query for search {} found {} resources in {}ms", mySearch.getUuid(), count, countSw.getMillis());
+				}
 
 				TransactionTemplate txTemplate = new TransactionTemplate(myManagedTxManager);
 				txTemplate.execute(new TransactionCallbackWithoutResult() {
 					@Override
 					protected void doInTransactionWithoutResult(TransactionStatus theArg0) {
-						mySearch.setTotalCount(count.intValue());
+						mySearch.setTotalCount(count);
+						mySearch.setTotalCountEstimated(estimated);
 						if (wantOnlyCount) {
 							mySearch.setStatus(SearchStatusEnum.FINISHED);
 						}
@@ -832,6 +945,21 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 				break;
 			}
 
+			/*
+			 * Top-N mode: Only fetch the page that was asked for so that the
+			 * database can stop sorting once it has found that many results. Every
+			 * page after that is loaded by a new pass.
+			 */
+			if (isTopNSearch(wantCount)) {
+				myAdditionalPrefetchThresholdsRemaining = true;
+				if (seekAfterLastLoadedResource(sb)) {
+					myMaxResultsToFetch = myParams.getCount();
+				} else {
+					myMaxResultsToFetch = currentlyLoaded + myParams.getCount();
+				}
+				sb.setMaxResultsToFetch(myMaxResultsToFetch);
+			}
+
 			/*
 			 * Provide any PID we loaded in previous seasrch passes to the
 			 * SearchBuilder so that we don't get duplicates coming from running
@@ -987,6 +1115,7 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 		theSearch.setCreated(new Date());
 		theSearch.setSearchLastReturned(new Date());
 		theSearch.setTotalCount(null);
+		theSearch.setTotalCountEstimated(false);
 		theSearch.setNumFound(0);
 		theSearch.setPreferredPageSize(theParams.getCount());
 		theSearch.setSearchType(theParams.getEverythingMode() != null ? SearchTypeEnum.EVERYTHING : SearchTypeEnum.SEARCH);
@@ -20,6 +20,8 @@ package ca.uhn.fhir.jpa.search.reindex;
  * #L%
  */
 
+import java.util.List;
+
 public interface IResourceReindexingSvc {
 
 	/**
@@ -53,6 +55,15 @@ public interface IResourceReindexingSvc {
 	 */
 	int forceReindexingPass();
 
+	/**
+	 * Reindexes the given resources immediately in the calling thread, loading them
+	 * in chunks in the same way as a reindexing pass. Resources which can not be indexed
+	 * are marked as having failed indexing.
+	 *
+	 * @return Returns the number of resources which were successfully reindexed
+	 */
+	int reindexResourcesNow(List<Long> theResourcePids);
+
 	/**
 	 * Cancels all running and future reindexing jobs. This is mainly intended
 	 * to be used by unit tests.
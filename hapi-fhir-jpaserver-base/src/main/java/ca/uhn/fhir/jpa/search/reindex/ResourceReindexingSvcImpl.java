@@ -29,18 +29,24 @@ import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.dao.data.IForcedIdDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceHistoryTableDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceReindexJobDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceSearchViewDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceTagDao;
 import ca.uhn.fhir.jpa.entity.ResourceReindexJobEntity;
+import ca.uhn.fhir.jpa.entity.ResourceSearchView;
 import ca.uhn.fhir.jpa.model.entity.ForcedId;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.model.entity.ResourceTag;
 import ca.uhn.fhir.jpa.searchparam.registry.ISearchParamRegistry;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceVersionConflictException;
 import ca.uhn.fhir.util.StopWatch;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.commons.lang3.time.DateUtils;
+import org.hibernate.Session;
 import org.hibernate.search.util.impl.Executors;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.slf4j.Logger;
@@ -60,12 +66,11 @@ import javax.persistence.PersistenceContext;
 import javax.persistence.PersistenceContextType;
 import javax.persistence.Query;
 import javax.transaction.Transactional;
-import java.util.Collection;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
@@ -91,6 +96,10 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 	@Autowired
 	private IResourceHistoryTableDao myResourceHistoryTableDao;
 	@Autowired
+	private IResourceSearchViewDao myResourceSearchViewDao;
+	@Autowired
+	private IResourceTagDao myResourceTagDao;
+	@Autowired
 	private DaoRegistry myDaoRegistry;
 	@Autowired
 	private IForcedIdDao myForcedIdDao;
@@ -136,6 +145,21 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 		myContext = theContext;
 	}
 
+	@VisibleForTesting
+	void setResourceSearchViewDaoForUnitTest(IResourceSearchViewDao theResourceSearchViewDao) {
+		myResourceSearchViewDao = theResourceSearchViewDao;
+	}
+
+	@VisibleForTesting
+	void setResourceTagDaoForUnitTest(IResourceTagDao theResourceTagDao) {
+		myResourceTagDao = theResourceTagDao;
+	}
+
+	@VisibleForTesting
+	void setEntityManagerForUnitTest(EntityManager theEntityManager) {
+		myEntityManager = theEntityManager;
+	}
+
 	@PostConstruct
 	public void start() {
 		myTxTemplate = new TransactionTemplate(myTxManager);
@@ -146,12 +170,20 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 		// Create the threadpool executor used for reindex jobs
 		int reindexThreadCount = myDaoConfig.getReindexThreadCount();
 		RejectedExecutionHandler rejectHandler = new Executors.BlockPolicy();
-		myTaskExecutor = new ThreadPoolExecutor(0, reindexThreadCount,
-			0L, TimeUnit.MILLISECONDS,
+		/*
+		 * Threads beyond the core size are only created once the queue is full, so
+		 * the core size needs to be the full thread count or chunks would be
+		 * processed one at a time. Idle threads are allowed to time out since
+		 * reindexing is only occasionally active.
+		 */
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(reindexThreadCount, reindexThreadCount,
+			1L, TimeUnit.MINUTES,
 			new LinkedBlockingQueue<>(100),
 			myReindexingThreadFactory,
 			rejectHandler
 		);
+		executor.allowCoreThreadTimeOut(true);
+		myTaskExecutor = executor;
 	}
 
 	@Override
@@ -219,6 +251,15 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 		}
 	}
 
+	@Override
+	public int reindexResourcesNow(List<Long> theResourcePids) {
+		AtomicInteger counter = new AtomicInteger();
+		for (List<Long> nextChunk : Lists.partition(theResourcePids, myDaoConfig.getReindexChunkSize())) {
+			new ResourceReindexingChunkTask(nextChunk, counter).call();
+		}
+		return counter.get();
+	}
+
 	@Override
 	public void cancelAndPurgeAllJobs() {
 		ourLog.info("Cancelling and purging all resource reindexing jobs");
@@ -305,6 +346,11 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 		Date low = theJob.getThresholdLow() != null ? theJob.getThresholdLow() : BEGINNING_OF_TIME;
 		Date high = theJob.getThresholdHigh();
 
+		// On the first pass, count the resources to be reindexed so that progress can be reported
+		if (theJob.getStarted() == null) {
+			startJob(theJob, low, high);
+		}
+
 		// Query for resources within threshold
 		StopWatch pageSw = new StopWatch();
 		Slice<Long> range = myTxTemplate.execute(t -> {
@@ -325,10 +371,11 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 			return 0;
 		}
 
-		// Submit each resource requiring reindexing
-		List<Future<Date>> futures = range
+		// Submit each chunk of resources requiring reindexing
+		List<Future<Date>> futures = Lists
+			.partition(range.getContent(), myDaoConfig.getReindexChunkSize())
 			.stream()
-			.map(t -> myTaskExecutor.submit(new ResourceReindexingTask(t, counter)))
+			.map(t -> myTaskExecutor.submit(new ResourceReindexingChunkTask(t, counter)))
 			.collect(Collectors.toList());
 
 		Date latestDate = null;
@@ -368,18 +415,45 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 			newLow = latestDate;
 		}
 
-		myTxTemplate.execute(t -> {
+		Integer newCount = myTxTemplate.execute(t -> {
 			myReindexJobDao.setThresholdLow(theJob.getId(), newLow);
 			Integer existingCount = myReindexJobDao.getReindexCount(theJob.getId()).orElse(0);
-			int newCount = existingCount + counter.get();
-			myReindexJobDao.setReindexCount(theJob.getId(), newCount);
-			return null;
+			int retVal = existingCount + counter.get();
+			myReindexJobDao.setReindexCount(theJob.getId(), retVal);
+			return retVal;
 		});
+		theJob.setReindexCount(newCount);
 
 		ourLog.info("Completed pass of reindex JOB[{}] - Indexed {} resources in {} ({} / sec) - Have indexed until: {}", theJob.getId(), count, sw.toString(), sw.formatThroughput(count, TimeUnit.SECONDS), newLow);
+		if (theJob.getReindexTotal() != null) {
+			Long millisRemaining = theJob.getEstimatedMillisRemaining();
+			ourLog.info("Reindex JOB[{}] has indexed {}/{} resources ({}%) - Average {} / sec - Estimated time remaining: {}",
+				theJob.getId(), newCount, theJob.getReindexTotal(), String.format("%.1f", theJob.getPercentComplete()), String.format("%.1f", theJob.getThroughputPerSecond()),
+				millisRemaining != null ? StopWatch.formatMillis(millisRemaining) : "(unknown)");
+		}
 		return counter.get();
 	}
 
+	private void startJob(ResourceReindexJobEntity theJob, Date theLow, Date theHigh) {
+		Date started = new Date();
+		Long total = myTxTemplate.execute(t -> {
+			if (isNotBlank(theJob.getResourceType())) {
+				return myResourceTableDao.countResourcesWithinUpdatedRange(theJob.getResourceType(), theLow, theHigh);
+			} else {
+				return myResourceTableDao.countResourcesWithinUpdatedRange(theLow, theHigh);
+			}
+		});
+		int reindexTotal = total != null ? (int) Math.min(total, Integer.MAX_VALUE) : 0;
+
+		myTxTemplate.execute(t -> {
+			myReindexJobDao.setStartedAndReindexTotal(theJob.getId(), started, reindexTotal);
+			return null;
+		});
+		theJob.setStarted(started);
+		theJob.setReindexTotal(reindexTotal);
+		ourLog.info("Starting reindex JOB[{}] - Found {} resources to reindex", theJob.getId(), reindexTotal);
+	}
+
 	private void expungeJobsMarkedAsDeleted() {
 		myTxTemplate.execute(t -> {
 			Collection<ResourceReindexJobEntity> toDelete = myReindexJobDao.findAll(PageRequest.of(0, 10), true);
@@ -443,6 +517,195 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 		});
 	}
 
+	/**
+	 * Reindexes a single resource. Must be called inside a transaction.
+	 *
+	 * @param theResource The current version of the resource, or <code>null</code> if it
+	 *                    should be read from the database
+	 */
+	private void reindexResource(ResourceTable theResourceTable, IBaseResource theResource) {
+		/*
+		 * This part is because from HAPI 1.5 - 1.6 we changed the format of forced ID to be "type/id" instead of just "id"
+		 */
+		ForcedId forcedId = theResourceTable.getForcedId();
+		if (forcedId != null) {
+			if (isBlank(forcedId.getResourceType())) {
+				ourLog.info("Updating resource {} forcedId type to {}", forcedId.getForcedId(), theResourceTable.getResourceType());
+				forcedId.setResourceType(theResourceTable.getResourceType());
+				myForcedIdDao.save(forcedId);
+			}
+		}
+
+		IBaseResource resource = theResource;
+		if (resource == null) {
+			IFhirResourceDao<?> dao = myDaoRegistry.getResourceDao(theResourceTable.getResourceType());
+			long expectedVersion = theResourceTable.getVersion();
+			resource = dao.read(theResourceTable.getIdDt().toVersionless(), null, true);
+			if (resource == null) {
+				throw new InternalErrorException("Could not find resource version " + theResourceTable.getIdDt().toUnqualified().getValue() + " in database");
+			}
+
+			Long actualVersion = resource.getIdElement().getVersionIdPartAsLong();
+			if (actualVersion < expectedVersion) {
+				ourLog.warn("Resource {} version {} does not exist, renumbering version {}", resource.getIdElement().toUnqualifiedVersionless().getValue(), resource.getIdElement().getVersionIdPart(), expectedVersion);
+				myResourceHistoryTableDao.updateVersion(theResourceTable.getId(), actualVersion, expectedVersion);
+			}
+		}
+
+		doReindex(theResourceTable, resource);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends IBaseResource> void doReindex(ResourceTable theResourceTable, T theResource) {
+		RuntimeResourceDefinition resourceDefinition = myContext.getResourceDefinition(theResource.getClass());
+		Class<T> resourceClass = (Class<T>) resourceDefinition.getImplementingClass();
+		final IFhirResourceDao<T> dao = myDaoRegistry.getResourceDao(resourceClass);
+		dao.reindex(theResource, theResourceTable);
+	}
+
+	/**
+	 * Reindexes a chunk of resources in a single transaction. The resources, their current
+	 * index rows and their current resource bodies are each loaded using a small number of
+	 * queries for the whole chunk, and any index rows which have changed are written using
+	 * JDBC batching when the transaction is flushed.
+	 * <p>
+	 * If anything in the chunk fails, the transaction is rolled back and each resource in
+	 * the chunk is reindexed individually instead, so that a single bad resource can be
+	 * marked as failed without affecting the others.
+	 * </p>
+	 */
+	private class ResourceReindexingChunkTask implements Callable<Date> {
+		private final List<Long> myIds;
+		private final AtomicInteger myCounter;
+
+		ResourceReindexingChunkTask(List<Long> theIds, AtomicInteger theCounter) {
+			myIds = theIds;
+			myCounter = theCounter;
+		}
+
+		@Override
+		public Date call() {
+			AtomicInteger chunkCounter = new AtomicInteger();
+			Date retVal;
+			try {
+				retVal = myTxTemplate.execute(t -> reindexChunk(chunkCounter));
+			} catch (Exception e) {
+				ourLog.warn("Failed to reindex chunk of {} resources, going to reindex them individually: {}", myIds.size(), e.toString());
+				retVal = null;
+				chunkCounter.set(0);
+				for (Long nextId : myIds) {
+					Date nextUpdated = new ResourceReindexingTask(nextId, chunkCounter).call();
+					if (nextUpdated != null && (retVal == null || nextUpdated.after(retVal))) {
+						retVal = nextUpdated;
+					}
+				}
+			}
+
+			myCounter.addAndGet(chunkCounter.get());
+			return retVal;
+		}
+
+		private Date reindexChunk(AtomicInteger theChunkCounter) {
+			myEntityManager.unwrap(Session.class).setJdbcBatchSize(myDaoConfig.getReindexChunkSize());
+
+			List<ResourceTable> resourceTables = myResourceTableDao.findByIdsAndFetchForcedId(myIds);
+			prefetchIndexes(resourceTables);
+			Map<Long, IBaseResource> resources = loadCurrentVersions(resourceTables);
+
+			Date retVal = null;
+			for (ResourceTable nextResourceTable : resourceTables) {
+				Date updated = nextResourceTable.getUpdatedDate();
+				if (retVal == null || updated.after(retVal)) {
+					retVal = updated;
+				}
+
+				// If the current version couldn't be loaded it is read (and repaired if needed) individually
+				IBaseResource resource = resources.get(nextResourceTable.getId());
+				reindexResource(nextResourceTable, resource);
+				theChunkCounter.incrementAndGet();
+			}
+
+			if (resourceTables.size() < myIds.size()) {
+				ourLog.warn("Only found {} of {} resources to reindex", resourceTables.size(), myIds.size());
+			}
+			return retVal;
+		}
+
+		/**
+		 * Initializes the index collections of every resource in the chunk, using one query
+		 * per index table instead of one query per index table per resource
+		 */
+		private void prefetchIndexes(List<ResourceTable> theResourceTables) {
+			prefetchIndexes(theResourceTables, ResourceTable::isParamsStringPopulated, "myParamsString");
+			prefetchIndexes(theResourceTables, ResourceTable::isParamsTokenPopulated, "myParamsToken");
+			prefetchIndexes(theResourceTables, ResourceTable::isParamsNumberPopulated, "myParamsNumber");
+			prefetchIndexes(theResourceTables, ResourceTable::isParamsQuantityPopulated, "myParamsQuantity");
+			prefetchIndexes(theResourceTables, ResourceTable::isParamsDatePopulated, "myParamsDate");
+			prefetchIndexes(theResourceTables, ResourceTable::isParamsUriPopulated, "myParamsUri");
+			prefetchIndexes(theResourceTables, ResourceTable::isParamsCoordsPopulated, "myParamsCoords");
+			prefetchIndexes(theResourceTables, ResourceTable::isHasLinks, "myResourceLinks");
+			prefetchIndexes(theResourceTables, ResourceTable::isParamsCompositeStringUniquePresent, "myParamsCompositeStringUnique");
+		}
+
+		private void prefetchIndexes(List<ResourceTable> theResourceTables, Predicate<ResourceTable> theIsPopulated, String theCollectionName) {
+			List<Long> ids = theResourceTables
+				.stream()
+				.filter(theIsPopulated)
+				.map(ResourceTable::getId)
+				.collect(Collectors.toList());
+			if (ids.isEmpty()) {
+				return;
+			}
+
+			myEntityManager
+				.createQuery("SELECT DISTINCT t FROM ResourceTable t LEFT JOIN FETCH t." + theCollectionName + " WHERE t.myId IN (:pids)", ResourceTable.class)
+				.setParameter("pids", ids)
+				.getResultList();
+		}
+
+		/**
+		 * Loads and parses the current version of every resource in the chunk
+		 */
+		private Map<Long, IBaseResource> loadCurrentVersions(List<ResourceTable> theResourceTables) {
+			Map<Long, IBaseResource> retVal = new HashMap<>();
+			if (theResourceTables.isEmpty()) {
+				return retVal;
+			}
+
+			Map<Long, ResourceTable> idToResourceTable = new HashMap<>();
+			List<Long> idsWithTags = new ArrayList<>();
+			for (ResourceTable next : theResourceTables) {
+				idToResourceTable.put(next.getId(), next);
+				if (next.isHasTags()) {
+					idsWithTags.add(next.getId());
+				}
+			}
+
+			Map<Long, Collection<ResourceTag>> tags = new HashMap<>();
+			if (!idsWithTags.isEmpty()) {
+				for (ResourceTag next : myResourceTagDao.findByResourceIds(idsWithTags)) {
+					tags.computeIfAbsent(next.getResourceId(), t -> new ArrayList<>()).add(next);
+				}
+			}
+
+			for (ResourceSearchView next : myResourceSearchViewDao.findByResourceIds(idToResourceTable.keySet())) {
+				ResourceTable resourceTable = idToResourceTable.get(next.getId());
+				if (resourceTable == null || next.getVersion() != resourceTable.getVersion()) {
+					continue;
+				}
+
+				IFhirResourceDao<?> dao = myDaoRegistry.getResourceDao(resourceTable.getResourceType());
+				Class<? extends IBaseResource> resourceType = myContext.getResourceDefinition(resourceTable.getResourceType()).getImplementingClass();
+				IBaseResource resource = dao.toResource(resourceType, next, tags.get(next.getId()), false);
+				if (resource != null) {
+					retVal.put(next.getId(), resource);
+				}
+			}
+
+			return retVal;
+		}
+	}
+
 	private class ResourceReindexingTask implements Callable<Date> {
 		private final Long myNextId;
 		private final AtomicInteger myCounter;
@@ -453,17 +716,6 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 			myCounter = theCounter;
 		}
 
-
-		@SuppressWarnings("unchecked")
-		private <T extends IBaseResource> void doReindex(ResourceTable theResourceTable, T theResource) {
-			RuntimeResourceDefinition resourceDefinition = myContext.getResourceDefinition(theResource.getClass());
-			Class<T> resourceClass = (Class<T>) resourceDefinition.getImplementingClass();
-			final IFhirResourceDao<T> dao = myDaoRegistry.getResourceDao(resourceClass);
-			dao.reindex(theResource, theResourceTable);
-
-			myCounter.incrementAndGet();
-		}
-
 		@Override
 		public Date call() {
 			Throwable reindexFailure;
@@ -473,32 +725,8 @@ public class ResourceReindexingSvcImpl implements IResourceReindexingSvc {
 					myUpdated = resourceTable.getUpdatedDate();
 
 					try {
-						/*
-						 * This part is because from HAPI 1.5 - 1.6 we changed the format of forced ID to be "type/id" instead of just "id"
-						 */
-						ForcedId forcedId = resourceTable.getForcedId();
-						if (forcedId != null) {
-							if (isBlank(forcedId.getResourceType())) {
-								ourLog.info("Updating resource {} forcedId type to {}", forcedId.getForcedId(), resourceTable.getResourceType());
-								forcedId.setResourceType(resourceTable.getResourceType());
-								myForcedIdDao.save(forcedId);
-							}
-						}
-
-						IFhirResourceDao<?> dao = myDaoRegistry.getResourceDao(resourceTable.getResourceType());
-						long expectedVersion = resourceTable.getVersion();
-						IBaseResource resource = dao.read(resourceTable.getIdDt().toVersionless(), null, true);
-						if (resource == null) {
-							throw new InternalErrorException("Could not find resource version " + resourceTable.getIdDt().toUnqualified().getValue() + " in database");
-						}
-
-						Long actualVersion = resource.getIdElement().getVersionIdPartAsLong();
-						if (actualVersion < expectedVersion) {
-							ourLog.warn("Resource {} version {} does not exist, renumbering version {}", resource.getIdElement().toUnqualifiedVersionless().getValue(), resource.getIdElement().getVersionIdPart(), expectedVersion);
-							myResourceHistoryTableDao.updateVersion(resourceTable.getId(), actualVersion, expectedVersion);
-						}
-
-						doReindex(resourceTable, resource);
+						reindexResource(resourceTable, null);
+						myCounter.incrementAndGet();
 						return null;
 
 					} catch (Exception e) {
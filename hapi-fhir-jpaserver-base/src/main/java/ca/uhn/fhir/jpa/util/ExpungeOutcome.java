@@ -20,15 +20,84 @@ package ca.uhn.fhir.jpa.util;
  * #L%
  */
 
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
 public class ExpungeOutcome {
 	private int myDeletedCount;
+	private long myDeletedRowCount;
+	private long myMillis;
 
+	/**
+	 * The number of resource versions which were expunged
+	 */
 	public int getDeletedCount() {
 		return myDeletedCount;
 	}
 
+	/**
+	 * The number of resource versions which were expunged
+	 */
 	public ExpungeOutcome setDeletedCount(int theDeletedCount) {
 		myDeletedCount = theDeletedCount;
 		return this;
 	}
+
+	/**
+	 * The total number of database rows (resource versions, indexes, tags, links, etc.)
+	 * which were deleted
+	 *
+	 * @since 3.7.0
+	 */
+	public long getDeletedRowCount() {
+		return myDeletedRowCount;
+	}
+
+	/**
+	 * The total number of database rows (resource versions, indexes, tags, links, etc.)
+	 * which were deleted
+	 *
+	 * @since 3.7.0
+	 */
+	public ExpungeOutcome setDeletedRowCount(long theDeletedRowCount) {
+		myDeletedRowCount = theDeletedRowCount;
+		return this;
+	}
+
+	/**
+	 * The time taken by the operation, in milliseconds
+	 *
+	 * @since 3.7.0
+	 */
+	public long getMillis() {
+		return myMillis;
+	}
+
+	/**
+	 * The time taken by the operation, in milliseconds
+	 *
+	 * @since 3.7.0
+	 */
+	public ExpungeOutcome setMillis(long theMillis) {
+		myMillis = theMillis;
+		return this;
+	}
+
+	/**
+	 * The average number of database rows deleted per second
+	 *
+	 * @since 3.7.0
+	 */
+	public double getRowsPerSecond() {
+		return (myDeletedRowCount * 1000.0) / Math.max(1, myMillis);
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+			.append("deletedCount", myDeletedCount)
+			.append("deletedRowCount", myDeletedRowCount)
+			.append("millis", myMillis)
+			.toString();
+	}
 }
@@ -132,4 +132,59 @@ public class JpaConstants {
 	 * Trigger a subscription manually for a given resource
 	 */
 	public static final String OPERATION_TRIGGER_SUBSCRIPTION = "$trigger-subscription";
+
+	/**
+	 * Bulk data export operation
+	 */
+	public static final String OPERATION_EXPORT = "$export";
+
+	/**
+	 * Poll the status of a bulk data export job
+	 */
+	public static final String OPERATION_EXPORT_POLL_STATUS = "$export-poll-status";
+
+	/**
+	 * Download a file generated by a bulk data export job
+	 */
+	public static final String OPERATION_EXPORT_DOWNLOAD = "$export-download";
+
+	/**
+	 * Parameter for the $export operation
+	 */
+	public static final String PARAM_EXPORT_OUTPUT_FORMAT = "_outputFormat";
+
+	/**
+	 * Parameter for the $export operation
+	 */
+	public static final String PARAM_EXPORT_TYPE = "_type";
+
+	/**
+	 * Parameter for the $export operation
+	 */
+	public static final String PARAM_EXPORT_SINCE = "_since";
+
+	/**
+	 * Parameter for the $export operation
+	 */
+	public static final String PARAM_EXPORT_TYPE_FILTER = "_typeFilter";
+
+	/**
+	 * Parameter for the $export-poll-status and $export-download operations
+	 */
+	public static final String PARAM_EXPORT_POLL_STATUS_JOB_ID = "_jobId";
+
+	/**
+	 * Parameter for the $export-download operation
+	 */
+	public static final String PARAM_EXPORT_DOWNLOAD_FILE = "_file";
+
+	/**
+	 * Bulk NDJSON import operation
+	 */
+	public static final String OPERATION_IMPORT = "$import";
+
+	/**
+	 * Parameter for the $import operation
+	 */
+	public static final String PARAM_IMPORT_DEFER_INDEXING = "_deferIndexing";
 }
@@ -0,0 +1,379 @@
+package ca.uhn.fhir.jpa.bulk;
+
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.r4.BaseJpaR4Test;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.util.StopWatch;
+import ca.uhn.fhir.util.TestUtil;
+import com.google.common.collect.Sets;
+import org.apache.commons.io.FileUtils;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.*;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class BulkDataExportSvcImplR4Test extends BaseJpaR4Test {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BulkDataExportSvcImplR4Test.class);
+	@Autowired
+	private IBulkDataExportSvc myBulkDataExportSvc;
+	private File myDirectory;
+
+	@Before
+	public void before() throws IOException {
+		myDirectory = Files.createTempDirectory("bulk-export").toFile();
+		myDaoConfig.setBulkExportDirectory(myDirectory.getAbsolutePath());
+		myDaoConfig.setBulkExportThreadCount(2);
+	}
+
+	@After
+	public void after() {
+		myBulkDataExportSvc.cancelAndPurgeAllJobs();
+		FileUtils.deleteQuietly(myDirectory);
+
+		myDaoConfig.setBulkExportDirectory(null);
+		myDaoConfig.setBulkExportThreadCount(Runtime.getRuntime().availableProcessors());
+		myDaoConfig.setBulkExportFileRetentionMillis(DaoConfig.DEFAULT_BULK_EXPORT_FILE_RETENTION_MILLIS);
+		myDaoConfig.setResourceClientIdStrategy(new DaoConfig().getResourceClientIdStrategy());
+	}
+
+	private List<IIdType> createPatientsWithObservations(int theCount) {
+		List<IIdType> retVal = new ArrayList<>();
+		for (int i = 0; i < theCount; i++) {
+			Patient patient = new Patient();
+			patient.setGender(i % 2 == 0 ? Enumerations.AdministrativeGender.FEMALE : Enumerations.AdministrativeGender.MALE);
+			patient.addName().setFamily("FAM" + i);
+			if (i == 0) {
+				patient.getMeta().addTag("http://tags", "tag0", null);
+			}
+			IIdType patientId = myPatientDao.create(patient).getId().toUnqualifiedVersionless();
+			retVal.add(patientId);
+
+			Observation obs = new Observation();
+			obs.setStatus(Observation.ObservationStatus.FINAL);
+			obs.getSubject().setReference(patientId.getValue());
+			myObservationDao.create(obs);
+		}
+
+		// Not in any patient compartment
+		Organization org = new Organization();
+		org.setName("ORG");
+		myOrganizationDao.create(org);
+
+		return retVal;
+	}
+
+	private IBulkDataExportSvc.JobInfo buildAndGetStatus(IBulkDataExportSvc.JobInfo theJob) {
+		assertEquals(BulkJobStatusEnum.SUBMITTED, theJob.getStatus());
+		assertEquals(1, myBulkDataExportSvc.buildExportFiles());
+		IBulkDataExportSvc.JobInfo retVal = myBulkDataExportSvc.getJobStatusOrThrowResourceNotFound(theJob.getJobId());
+		assertEquals(retVal.getStatusMessage(), BulkJobStatusEnum.COMPLETE, retVal.getStatus());
+		return retVal;
+	}
+
+	private Map<String, List<IBaseResource>> readFiles(IBulkDataExportSvc.JobInfo theJob) throws IOException {
+		Map<String, List<IBaseResource>> retVal = new TreeMap<>();
+		for (IBulkDataExportSvc.FileInfo next : theJob.getFiles()) {
+			File file = myBulkDataExportSvc.getFileOrThrowResourceNotFound(theJob.getJobId(), next.getFileName());
+			List<String> lines = FileUtils.readLines(file, StandardCharsets.UTF_8);
+			assertEquals(next.getResourceCount(), lines.size());
+			for (String nextLine : lines) {
+				IBaseResource resource = myFhirCtx.newJsonParser().parseResource(nextLine);
+				retVal.computeIfAbsent(next.getResourceType(), t -> new ArrayList<>()).add(resource);
+			}
+		}
+		return retVal;
+	}
+
+	private static List<String> toUnqualifiedVersionlessIdValues(List<IBaseResource> theResources) {
+		List<String> retVal = new ArrayList<>();
+		for (IBaseResource next : theResources) {
+			retVal.add(next.getIdElement().toUnqualifiedVersionless().getValue());
+		}
+		return retVal;
+	}
+
+	@Test
+	public void testSystemExport() throws IOException {
+		List<IIdType> patientIds = createPatientsWithObservations(10);
+
+		IBulkDataExportSvc.JobInfo job = myBulkDataExportSvc.submitJob(BulkExportStyleEnum.SYSTEM, null, Sets.newHashSet("Patient", "Observation"), null, null, "http://foo/$export");
+		job = buildAndGetStatus(job);
+
+		assertEquals(20, job.getResourceCount().intValue());
+		assertEquals("http://foo/$export", job.getRequest());
+		assertNotNull(job.getExpiry());
+
+		Map<String, List<IBaseResource>> resources = readFiles(job);
+		assertThat(resources.keySet(), contains("Observation", "Patient"));
+		assertEquals(10, resources.get("Observation").size());
+
+		List<String> ids = toUnqualifiedVersionlessIdValues(resources.get("Patient"));
+		List<String> expectedIds = new ArrayList<>();
+		patientIds.forEach(t -> expectedIds.add(t.getValue()));
+		assertThat(ids, containsInAnyOrder(expectedIds.toArray()));
+
+		for (IBaseResource next : resources.get("Patient")) {
+			Patient patient = (Patient) next;
+			assertEquals("1", patient.getMeta().getVersionId());
+			assertNotNull(patient.getMeta().getLastUpdated());
+			assertThat(patient.getNameFirstRep().getFamily(), startsWith("FAM"));
+			if (patient.getIdElement().getIdPart().equals(patientIds.get(0).getIdPart())) {
+				assertEquals("tag0", patient.getMeta().getTagFirstRep().getCode());
+			} else {
+				assertFalse(patient.getMeta().hasTag());
+			}
+		}
+	}
+
+	@Test
+	public void testSystemExportAllTypes() throws IOException {
+		createPatientsWithObservations(3);
+
+		IBulkDataExportSvc.JobInfo job = myBulkDataExportSvc.submitJob(BulkExportStyleEnum.SYSTEM, null, null, null, null, "http://foo/$export");
+		job = buildAndGetStatus(job);
+
+		Map<String, List<IBaseResource>> resources = readFiles(job);
+		assertThat(resources.keySet(), contains("Observation", "Organization", "Patient"));
+	}
+
+	@Test
+	public void testSystemExportSkipsDeletedResources() throws IOException {
+		List<IIdType> patientIds = createPatientsWithObservations(3);
+		myPatientDao.delete(patientIds.get(1));
+
+		IBulkDataExportSvc.JobInfo job = myBulkDataExportSvc.submitJob(BulkExportStyleEnum.SYSTEM, null, Sets.newHashSet("Patient"), null, null, "http://foo/$export");
+		job = buildAndGetStatus(job);
+
+		List<String> ids = toUnqualifiedVersionlessIdValues(readFiles(job).get("Patient"));
+		assertThat(ids, containsInAnyOrder(patientIds.get(0).getValue(), patientIds.get(2).getValue()));
+	}
+
+	@Test
+	public void testSystemExportWithTypeFilter() throws IOException {
+		createPatientsWithObservations(10);
+
+		IBulkDataExportSvc.JobInfo job = myBulkDataExportSvc.submitJob(BulkExportStyleEnum.SYSTEM, null, Sets.newHashSet("Patient"), null, Sets.newHashSet("Patient?gender=female"), "http://foo/$export");
+		job = buildAndGetStatus(job);
+
+		List<IBaseResource> patients = readFiles(job).get("Patient");
+		assertEquals(5, patients.size());
+		for (IBaseResource next : patients) {
+			assertEquals(Enumerations.AdministrativeGender.FEMALE, ((Patient) next).getGender());
+		}
+	}
+
+	@Test
+	public void testSystemExportWithTypeFilterAndNumericClientIds() throws IOException {
+		myDaoConfig.setResourceClientIdStrategy(DaoConfig.ClientIdStrategyEnum.ANY);
+
+		Patient female = new Patient();
+		female.setId("Patient/ABC");
+		female.setGender(Enumerations.AdministrativeGender.FEMALE);
+		Long femalePid = myPatientDao.update(female).getEntity().getId();
+
+		// The client assigned ID of this patient is the PID of the other one
+		Patient male = new Patient();
+		male.setId("Patient/" + femalePid);
+		male.setGender(Enumerations.AdministrativeGender.MALE);
+		myPatientDao.update(male);
+
+		IBulkDataExportSvc.JobInfo job = myBulkDataExportSvc.submitJob(BulkExportStyleEnum.SYSTEM, null, Sets.newHashSet("Patient"), null, Sets.newHashSet("Patient?gender=female"), "http://foo/$export");
+		job = buildAndGetStatus(job);
+
+		assertThat(toUnqualifiedVersionlessIdValues(readFiles(job).get("Patient")), contains("Patient/ABC"));
+	}
+
+	@Test
+	public void testSystemExportWithSince() throws IOException, InterruptedException {
+		createPatientsWithObservations(2);
+		Thread.sleep(10);
+		Date since = new Date();
+		Thread.sleep(10);
+
+		Patient patient = new Patient();
+		patient.addName().setFamily("LATER");
+		IIdType laterId = myPatientDao.create(patient).getId().toUnqualifiedVersionless();
+
+		IBulkDataExportSvc.JobInfo job = myBulkDataExportSvc.submitJob(BulkExportStyleEnum.SYSTEM, null, Sets.newHashSet("Patient", "Observation"), since, null, "http://foo/$export");
+		job = buildAndGetStatus(job);
+
+		Map<String, List<IBaseResource>> resources = readFiles(job);
+		assertThat(resources.keySet(), contains("Patient"));
+		assertThat(toUnqualifiedVersionlessIdValues(resources.get("Patient")), contains(laterId.getValue()));
+	}
+
+	@Test
+	public void testPatientExport() throws IOException {
+		createPatientsWithObservations(4);
+
+		IBulkDataExportSvc.JobInfo job = myBulkDataExportSvc.submitJob(BulkExportStyleEnum.PATIENT, null, null, null, null, "http://foo/Patient/$export");
+		job = buildAndGetStatus(job);
+
+		Map<String, List<IBaseResource>> resources = readFiles(job);
+		assertThat(resources.keySet(), contains("Observation", "Patient"));
+		assertEquals(4, resources.get("Observation").size());
+		assertEquals(4, resources.get("Patient").size());
+	}
+
+	@Test
+	public void testGroupExport() throws IOException {
+		List<IIdType> patientIds = createPatientsWithObservations(4);
+
+		Group group = new Group();
+		group.setType(Group.GroupType.PERSON);
+		group.setActual(true);
+		group.addMember().getEntity().setReference(patientIds.get(1).getValue());
+		group.addMember().getEntity().setReference(patientIds.get(3).getValue());
+		IIdType groupId = myGroupDao.create(group).getId().toUnqualifiedVersionless();
+
+		IBulkDataExportSvc.JobInfo job = myBulkDataExportSvc.submitJob(BulkExportStyleEnum.GROUP, groupId.getValue(), null, null, null, "http://foo/" + groupId.getValue() + "/$export");
+		job = buildAndGetStatus(job);
+
+		// The group itself is in the compartment of its members
+		Map<String, List<IBaseResource>> resources = readFiles(job);
+		assertThat(resources.keySet(), contains("Group", "Observation", "Patient"));
+		assertThat(toUnqualifiedVersionlessIdValues(resources.get("Group")), contains(groupId.getValue()));
+		assertThat(toUnqualifiedVersionlessIdValues(resources.get("Patient")), containsInAnyOrder(patientIds.get(1).getValue(), patientIds.get(3).getValue()));
+
+		List<String> subjects = new ArrayList<>();
+		for (IBaseResource next : resources.get("Observation")) {
+			subjects.add(((Observation) next).getSubject().getReference());
+		}
+		assertThat(subjects, containsInAnyOrder(patientIds.get(1).getValue(), patientIds.get(3).getValue()));
+	}
+
+	@Test
+	public void testGroupExportWithTypeFilter() throws IOException {
+		List<IIdType> patientIds = createPatientsWithObservations(4);
+
+		Group group = new Group();
+		group.setType(Group.GroupType.PERSON);
+		group.setActual(true);
+		group.addMember().getEntity().setReference(patientIds.get(1).getValue());
+		group.addMember().getEntity().setReference(patientIds.get(2).getValue());
+		IIdType groupId = myGroupDao.create(group).getId().toUnqualifiedVersionless();
+
+		// Patient 2 is female, patient 1 is male
+		IBulkDataExportSvc.JobInfo job = myBulkDataExportSvc.submitJob(BulkExportStyleEnum.GROUP, groupId.getValue(), Sets.newHashSet("Patient", "Observation"), null, Sets.newHashSet("Patient?gender=female"), "http://foo/" + groupId.getValue() + "/$export");
+		job = buildAndGetStatus(job);
+
+		Map<String, List<IBaseResource>> resources = readFiles(job);
+		assertThat(resources.keySet(), contains("Observation", "Patient"));
+		assertThat(toUnqualifiedVersionlessIdValues(resources.get("Patient")), contains(patientIds.get(2).getValue()));
+		assertEquals(2, resources.get("Observation").size());
+	}
+
+	@Test
+	public void testSubmitInvalidJob() {
+		try {
+			myBulkDataExportSvc.submitJob(BulkExportStyleEnum.SYSTEM, null, Sets.newHashSet("FooBar"), null, null, "http://foo/$export");
+			fail();
+		} catch (InvalidRequestException e) {
+			assertEquals("Unknown or unsupported resource type: FooBar", e.getMessage());
+		}
+
+		try {
+			myBulkDataExportSvc.submitJob(BulkExportStyleEnum.SYSTEM, null, null, null, Sets.newHashSet("gender=female"), "http://foo/$export");
+			fail();
+		} catch (InvalidRequestException e) {
+			assertThat(e.getMessage(), containsString("Invalid _typeFilter value"));
+		}
+
+		try {
+			myBulkDataExportSvc.submitJob(BulkExportStyleEnum.GROUP, null, null, null, null, "http://foo/$export");
+			fail();
+		} catch (InvalidRequestException e) {
+			assertEquals("A group ID is required for a group export", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testUnknownJobAndFile() {
+		try {
+			myBulkDataExportSvc.getJobStatusOrThrowResourceNotFound("FOO");
+			fail();
+		} catch (ResourceNotFoundException e) {
+			// good
+		}
+
+		IBulkDataExportSvc.JobInfo job = myBulkDataExportSvc.submitJob(BulkExportStyleEnum.SYSTEM, null, Sets.newHashSet("Patient"), null, null, "http://foo/$export");
+		try {
+			myBulkDataExportSvc.getFileOrThrowResourceNotFound(job.getJobId(), "Patient-0.ndjson");
+			fail();
+		} catch (ResourceNotFoundException e) {
+			// good, the job hasn't been built yet
+		}
+	}
+
+	@Test
+	public void testPurgeExpiredJobs() throws IOException, InterruptedException {
+		createPatientsWithObservations(2);
+		myDaoConfig.setBulkExportFileRetentionMillis(0);
+
+		IBulkDataExportSvc.JobInfo job = myBulkDataExportSvc.submitJob(BulkExportStyleEnum.SYSTEM, null, Sets.newHashSet("Patient"), null, null, "http://foo/$export");
+		job = buildAndGetStatus(job);
+		File file = myBulkDataExportSvc.getFileOrThrowResourceNotFound(job.getJobId(), job.getFiles().get(0).getFileName());
+		assertTrue(file.exists());
+
+		Thread.sleep(10);
+		myBulkDataExportSvc.purgeExpiredJobs();
+
+		assertFalse(file.exists());
+		try {
+			myBulkDataExportSvc.getJobStatusOrThrowResourceNotFound(job.getJobId());
+			fail();
+		} catch (ResourceNotFoundException e) {
+			// good
+		}
+	}
+
+	/**
+	 * Not a real benchmark, but logs the export throughput so that
+	 * regressions are visible in the build log
+	 */
+	@Test
+	public void testExportThroughput() throws IOException {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.TRANSACTION);
+		for (int i = 0; i < 2000; i++) {
+			Patient patient = new Patient();
+			patient.addName().setFamily("FAM" + i).addGiven("GIVEN" + i);
+			patient.addIdentifier().setSystem("http://foo").setValue("ID" + i);
+			bundle.addEntry().setResource(patient).getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Patient");
+		}
+		mySystemDao.transaction(mySrd, bundle);
+
+		myDaoConfig.setBulkExportThreadCount(4);
+		IBulkDataExportSvc.JobInfo job = myBulkDataExportSvc.submitJob(BulkExportStyleEnum.SYSTEM, null, Sets.newHashSet("Patient"), null, null, "http://foo/$export");
+
+		StopWatch sw = new StopWatch();
+		job = buildAndGetStatus(job);
+		ourLog.info("Exported {} resources in {} files in {} ({} resources/sec)", job.getResourceCount(), job.getFiles().size(), sw.toString(), sw.formatThroughput(job.getResourceCount(), TimeUnit.SECONDS));
+
+		assertEquals(2000, job.getResourceCount().intValue());
+		assertThat(job.getFiles().size(), greaterThan(1));
+		assertEquals(2000, readFiles(job).get("Patient").size());
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
@@ -0,0 +1,193 @@
+package ca.uhn.fhir.jpa.bulk;
+
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.r4.BaseJpaR4Test;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.util.StopWatch;
+import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.r4.model.*;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.*;
+
+public class BulkDataImportSvcImplR4Test extends BaseJpaR4Test {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BulkDataImportSvcImplR4Test.class);
+	@Autowired
+	private IBulkDataImportSvc myBulkDataImportSvc;
+
+	@After
+	public void after() {
+		myDaoConfig.setBulkImportChunkSize(DaoConfig.DEFAULT_BULK_IMPORT_CHUNK_SIZE);
+	}
+
+	private String toNdjson(Resource... theResources) {
+		IParser parser = myFhirCtx.newJsonParser();
+		StringBuilder b = new StringBuilder();
+		for (Resource next : theResources) {
+			b.append(parser.encodeResourceToString(next)).append('\n');
+		}
+		return b.toString();
+	}
+
+	@Test
+	public void testImportWithForwardReferences() {
+		Observation obs = new Observation();
+		obs.setId("OBS1");
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getSubject().setReference("Patient/PT1");
+
+		Patient patient = new Patient();
+		patient.setId("PT1");
+		patient.addName().setFamily("FAMILY1");
+
+		Patient serverAssigned = new Patient();
+		serverAssigned.addName().setFamily("FAMILY2");
+
+		IBulkDataImportSvc.ImportOutcome outcome = myBulkDataImportSvc.importNdjson(new StringReader(toNdjson(obs, patient, serverAssigned)), new IBulkDataImportSvc.ImportOptions());
+		ourLog.info(outcome.toString());
+
+		assertEquals(3, outcome.getResourceCount());
+		assertEquals(0, outcome.getFailedResourceCount());
+		assertEquals(2, outcome.getResourceCountsByType().get("Patient").intValue());
+		assertEquals(1, outcome.getResourceCountsByType().get("Observation").intValue());
+
+		SearchParameterMap map = new SearchParameterMap().setLoadSynchronous(true).add(Observation.SP_SUBJECT, new ReferenceParam("Patient/PT1"));
+		assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(map)), contains("Observation/OBS1"));
+
+		map = new SearchParameterMap().setLoadSynchronous(true).add(Patient.SP_FAMILY, new StringParam("FAMILY2"));
+		assertEquals(1, myPatientDao.search(map).size().intValue());
+	}
+
+	@Test
+	public void testImportWithForwardReferencesWithoutDeferredIndexing() {
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getSubject().setReference("Patient/PT1");
+
+		Patient patient = new Patient();
+		patient.setId("PT1");
+
+		IBulkDataImportSvc.ImportOptions options = new IBulkDataImportSvc.ImportOptions().setDeferIndexing(false);
+		IBulkDataImportSvc.ImportOutcome outcome = myBulkDataImportSvc.importNdjson(new StringReader(toNdjson(obs, patient)), options);
+		ourLog.info(outcome.toString());
+
+		// The observation is indexed before the patient exists
+		assertEquals(1, outcome.getResourceCount());
+		assertEquals(1, outcome.getFailedResourceCount());
+		assertEquals("1", myPatientDao.read(new IdType("Patient/PT1")).getIdElement().getVersionIdPart());
+	}
+
+	@Test
+	public void testImportUpdatesExistingResources() {
+		Patient patient = new Patient();
+		patient.setId("PT1");
+		patient.addName().setFamily("FAMILY1");
+		myPatientDao.update(patient);
+		Long numericId = myPatientDao.create(new Patient().setActive(false)).getId().getIdPartAsLong();
+
+		patient = new Patient();
+		patient.setId("PT1");
+		patient.addName().setFamily("FAMILY2");
+		Patient numeric = new Patient();
+		numeric.setId(numericId.toString());
+		numeric.setActive(true);
+
+		IBulkDataImportSvc.ImportOutcome outcome = myBulkDataImportSvc.importNdjson(new StringReader(toNdjson(patient, numeric)), new IBulkDataImportSvc.ImportOptions());
+		assertEquals(2, outcome.getResourceCount());
+		assertEquals(0, outcome.getFailedResourceCount());
+
+		patient = myPatientDao.read(new IdType("Patient/PT1"));
+		assertEquals("2", patient.getIdElement().getVersionIdPart());
+		assertEquals("FAMILY2", patient.getNameFirstRep().getFamily());
+		assertTrue(myPatientDao.read(new IdType("Patient/" + numericId)).getActive());
+
+		SearchParameterMap map = new SearchParameterMap().setLoadSynchronous(true).add(Patient.SP_FAMILY, new StringParam("FAMILY1"));
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(map)), empty());
+	}
+
+	@Test
+	public void testImportWithInvalidLines() {
+		myDaoConfig.setBulkImportChunkSize(2);
+
+		Patient patient = new Patient();
+		patient.setId("PT1");
+		Patient duplicate = new Patient();
+		duplicate.setId("PT1");
+		duplicate.setActive(true);
+		Observation obs = new Observation();
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getSubject().setReference("Patient/DOES_NOT_EXIST");
+
+		String input = toNdjson(patient, duplicate) +
+			"\n" +
+			"{\"resourceType\":\"Patient\",\n" +
+			"{\"resourceType\":\"FooBar\"}\n" +
+			toNdjson(obs);
+
+		IBulkDataImportSvc.ImportOutcome outcome = myBulkDataImportSvc.importNdjson(new StringReader(input), new IBulkDataImportSvc.ImportOptions());
+		ourLog.info(outcome.toString());
+
+		// The duplicate ID in the same chunk is stored as an update, the bad lines
+		// can't be parsed, and the observation can't be indexed
+		assertEquals(3, outcome.getResourceCount());
+		assertEquals(3, outcome.getFailedResourceCount());
+		assertTrue(myPatientDao.read(new IdType("Patient/PT1")).getActive());
+	}
+
+	@Test
+	public void testImportThroughput() {
+		int count = 500;
+
+		Bundle transaction = new Bundle();
+		transaction.setType(Bundle.BundleType.TRANSACTION);
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			Patient patient = new Patient();
+			patient.setId("PT" + i);
+			patient.addName().setFamily("FAM" + i);
+			Observation obs = new Observation();
+			obs.setId("OBS" + i);
+			obs.setStatus(Observation.ObservationStatus.FINAL);
+			obs.getSubject().setReference("Patient/PT" + i);
+			input.append(toNdjson(obs, patient));
+
+			Patient txPatient = patient.copy();
+			txPatient.setId("TXPT" + i);
+			Observation txObs = obs.copy();
+			txObs.setId("TXOBS" + i);
+			txObs.getSubject().setReference("Patient/TXPT" + i);
+			transaction.addEntry().setResource(txPatient).getRequest().setMethod(Bundle.HTTPVerb.PUT).setUrl("Patient/TXPT" + i);
+			transaction.addEntry().setResource(txObs).getRequest().setMethod(Bundle.HTTPVerb.PUT).setUrl("Observation/TXOBS" + i);
+		}
+
+		StopWatch sw = new StopWatch();
+		mySystemDao.transaction(mySrd, transaction);
+		ourLog.info("Stored {} resources using a transaction in {} ({}/sec)", count * 2, sw.toString(), sw.formatThroughput(count * 2, TimeUnit.SECONDS));
+
+		IBulkDataImportSvc.ImportOutcome outcome = myBulkDataImportSvc.importNdjson(new StringReader(input.toString()), new IBulkDataImportSvc.ImportOptions());
+		ourLog.info(outcome.toString());
+		assertEquals(count * 2, outcome.getResourceCount());
+		assertEquals(0, outcome.getFailedResourceCount());
+
+		SearchParameterMap map = new SearchParameterMap().setLoadSynchronous(true).add(Observation.SP_SUBJECT, new ReferenceParam("Patient/PT" + (count - 1)));
+		assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(map)), contains("Observation/OBS" + (count - 1)));
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
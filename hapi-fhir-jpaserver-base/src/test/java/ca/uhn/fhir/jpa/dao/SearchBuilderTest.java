@@ -5,6 +5,9 @@ import static org.junit.Assert.*;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.AfterClass;
 import org.junit.Test;
@@ -89,6 +92,20 @@ public class SearchBuilderTest {
 		assertThat(out.toPlainString(), startsWith("0.0000000005000000"));
 	}
 
+	@Test
+	public void testPadInClauseValues() {
+		assertEquals(Arrays.asList(1L), SearchBuilder.padInClauseValues(Arrays.asList(1L)));
+		assertEquals(Arrays.asList(1L, 2L), SearchBuilder.padInClauseValues(Arrays.asList(1L, 2L)));
+		assertEquals(Arrays.asList(1L, 2L, 3L, 3L), SearchBuilder.padInClauseValues(Arrays.asList(1L, 2L, 3L)));
+		assertEquals(8, SearchBuilder.padInClauseValues(Arrays.asList(1L, 2L, 3L, 4L, 5L)).size());
+
+		List<Long> large = new ArrayList<>();
+		for (long i = 0; i <= SearchBuilder.MAX_PADDED_IN_CLAUSE_SIZE; i++) {
+			large.add(i);
+		}
+		assertSame(large, SearchBuilder.padInClauseValues(large));
+	}
+
 	@Test
 	public void testCalculateMultiplierApprox() {
 		BigDecimal in = new BigDecimal("200");
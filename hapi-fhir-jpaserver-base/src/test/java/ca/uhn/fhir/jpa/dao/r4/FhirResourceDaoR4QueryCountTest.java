@@ -14,6 +14,7 @@ import org.hl7.fhir.r4.model.DateTimeType;
 import org.hl7.fhir.r4.model.Enumerations;
 import org.hl7.fhir.r4.model.Organization;
 import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Practitioner;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Test;
@@ -97,6 +98,40 @@ public class FhirResourceDaoR4QueryCountTest extends BaseJpaR4Test {
 
 	}
 
+	@Test
+	public void testSearchWithMultipleIncludesUsesOneQueryPerRound() {
+		for (int i = 0; i < 5; i++) {
+			Organization org = new Organization();
+			org.setName("org" + i);
+			IIdType orgId = myOrganizationDao.create(org).getId().toUnqualifiedVersionless();
+			Practitioner practitioner = new Practitioner();
+			practitioner.addName().setFamily("practitioner" + i);
+			IIdType practitionerId = myPractitionerDao.create(practitioner).getId().toUnqualifiedVersionless();
+
+			Patient p = new Patient();
+			p.addIdentifier().setSystem("sys1").setValue("val" + i);
+			p.getManagingOrganization().setReference(orgId.getValue());
+			p.addGeneralPractitioner().setReference(orgId.getValue());
+			p.addGeneralPractitioner().setReference(practitionerId.getValue());
+			myPatientDao.create(p);
+		}
+
+		SearchParameterMap map = new SearchParameterMap().setLoadSynchronous(true);
+		map.addInclude(Patient.INCLUDE_ORGANIZATION);
+		myCountHolder.clear();
+		assertEquals(10, myPatientDao.search(map).size().intValue());
+		long selectsWithOneInclude = getQueryCount().getSelect();
+
+		map = new SearchParameterMap().setLoadSynchronous(true);
+		map.addInclude(Patient.INCLUDE_ORGANIZATION);
+		map.addInclude(Patient.INCLUDE_GENERAL_PRACTITIONER.asNonRecursive().withType("Practitioner"));
+		map.addInclude(Patient.INCLUDE_LINK);
+		myCountHolder.clear();
+		IBundleProvider outcome = myPatientDao.search(map);
+		assertEquals(15, outcome.size().intValue());
+		assertEquals(selectsWithOneInclude, getQueryCount().getSelect());
+	}
+
 	private QueryCount getQueryCount() {
 		return myCountHolder.getQueryCountMap().get("");
 	}
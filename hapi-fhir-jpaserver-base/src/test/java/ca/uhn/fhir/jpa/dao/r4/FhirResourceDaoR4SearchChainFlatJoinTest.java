@@ -0,0 +1,165 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.util.TestUtil;
+import ca.uhn.fhir.rest.api.SummaryEnum;
+import ca.uhn.fhir.rest.param.ReferenceOrListParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.*;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class FhirResourceDaoR4SearchChainFlatJoinTest extends BaseJpaR4Test {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(FhirResourceDaoR4SearchChainFlatJoinTest.class);
+
+	@After
+	public void after() {
+		myDaoConfig.setChainedSearchFlatJoinEnabled(new DaoConfig().isChainedSearchFlatJoinEnabled());
+		myDaoConfig.setReuseCachedSearchResultsForMillis(new DaoConfig().getReuseCachedSearchResultsForMillis());
+		myDaoConfig.setEnforceReferentialIntegrityOnDelete(new DaoConfig().isEnforceReferentialIntegrityOnDelete());
+	}
+
+	@Before
+	public void before() {
+		myDaoConfig.setReuseCachedSearchResultsForMillis(null);
+		myDaoConfig.setEnforceReferentialIntegrityOnDelete(false);
+
+		IIdType acmeId = myOrganizationDao.create(new Organization().setName("Acme")).getId().toUnqualifiedVersionless();
+		IIdType otherId = myOrganizationDao.create(new Organization().setName("Other")).getId().toUnqualifiedVersionless();
+
+		for (int i = 0; i < 10; i++) {
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("http://foo").setValue("P" + (i % 3));
+			if (i == 0) {
+				// Two matching index rows for the same resource
+				patient.addIdentifier().setSystem("http://bar").setValue("P0");
+			}
+			patient.addName().setFamily("Fam" + (i % 2));
+			patient.getManagingOrganization().setReferenceElement(i % 2 == 0 ? acmeId : otherId);
+			IIdType patientId = myPatientDao.create(patient).getId().toUnqualifiedVersionless();
+
+			Encounter encounter = new Encounter();
+			encounter.getSubject().setReferenceElement(patientId);
+			IIdType encounterId = myEncounterDao.create(encounter).getId().toUnqualifiedVersionless();
+
+			for (int j = 0; j < 2; j++) {
+				Observation obs = new Observation();
+				obs.getSubject().setReferenceElement(patientId);
+				obs.getEncounter().setReferenceElement(encounterId);
+				myObservationDao.create(obs);
+			}
+
+			if (i == 9) {
+				myPatientDao.delete(patientId);
+			}
+		}
+	}
+
+	private List<String> search(SearchParameterMap theMap, boolean theFlatJoin) {
+		myDaoConfig.setChainedSearchFlatJoinEnabled(theFlatJoin);
+		theMap.setLoadSynchronous(true);
+		theMap.setSummaryMode(null);
+		List<String> retVal = toUnqualifiedVersionlessIdValues(myObservationDao.search(theMap));
+		assertEquals("Duplicate results: " + retVal, new HashSet<>(retVal).size(), retVal.size());
+		return retVal;
+	}
+
+	private int count(SearchParameterMap theMap, boolean theFlatJoin) {
+		myDaoConfig.setChainedSearchFlatJoinEnabled(theFlatJoin);
+		theMap.setLoadSynchronous(false);
+		theMap.setSummaryMode(SummaryEnum.COUNT);
+		return myObservationDao.search(theMap).size();
+	}
+
+	private List<String> assertSameResults(SearchParameterMap theMap) {
+		List<String> subquery = search(theMap, false);
+		List<String> flat = search(theMap, true);
+		ourLog.info("Search {} found {}", theMap, flat);
+
+		assertThat(flat, containsInAnyOrder(subquery.toArray()));
+		assertEquals(subquery.size(), flat.size());
+		assertEquals(count(theMap, false), count(theMap, true));
+		assertEquals(flat.size(), count(theMap, true));
+		return flat;
+	}
+
+	@Test
+	public void testChainToToken() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.add(Observation.SP_SUBJECT, new ReferenceParam("Patient", "identifier", "P0"));
+		assertThat(assertSameResults(map), hasSize(6));
+
+		map = new SearchParameterMap();
+		map.add(Observation.SP_SUBJECT, new ReferenceParam("Patient", "identifier", "P2"));
+		assertThat(assertSameResults(map), hasSize(6));
+	}
+
+	@Test
+	public void testChainToString() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.add(Observation.SP_SUBJECT, new ReferenceParam("Patient", "family", "Fam0"));
+		assertThat(assertSameResults(map), hasSize(10));
+
+		map = new SearchParameterMap();
+		map.add(Observation.SP_SUBJECT, new ReferenceParam("Patient", "family", "Nobody"));
+		assertThat(assertSameResults(map), hasSize(0));
+	}
+
+	@Test
+	public void testChainMultipleLevels() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.add(Observation.SP_SUBJECT, new ReferenceParam("Patient", "organization.name", "Acme"));
+		assertThat(assertSameResults(map), hasSize(10));
+
+		map = new SearchParameterMap();
+		map.add(Observation.SP_ENCOUNTER, new ReferenceParam("Encounter", "subject:Patient.identifier", "P1"));
+		assertThat(assertSameResults(map), hasSize(6));
+
+		map = new SearchParameterMap();
+		map.add(Observation.SP_ENCOUNTER, new ReferenceParam("Encounter", "subject:Patient.organization.name", "Other"));
+		assertThat(assertSameResults(map), hasSize(8));
+	}
+
+	@Test
+	public void testChainAndChain() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.add(Observation.SP_SUBJECT, new ReferenceParam("Patient", "identifier", "P0"));
+		map.add(Observation.SP_SUBJECT, new ReferenceParam("Patient", "family", "Fam0"));
+		assertThat(assertSameResults(map), hasSize(4));
+	}
+
+	@Test
+	public void testChainOrChainUsesSubqueries() {
+		ReferenceOrListParam orList = new ReferenceOrListParam();
+		orList.add(new ReferenceParam("Patient", "identifier", "P0"));
+		orList.add(new ReferenceParam("Patient", "identifier", "P1"));
+		SearchParameterMap map = new SearchParameterMap();
+		map.add(Observation.SP_SUBJECT, orList);
+		assertThat(assertSameResults(map), hasSize(12));
+	}
+
+	@Test
+	public void testChainWithMultipleTargetTypes() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.add(Observation.SP_SUBJECT, new ReferenceParam("family", "Fam1"));
+		assertThat(assertSameResults(map), hasSize(8));
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
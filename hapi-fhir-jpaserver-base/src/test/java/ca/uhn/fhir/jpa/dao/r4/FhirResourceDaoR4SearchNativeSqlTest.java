@@ -0,0 +1,228 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.DaoConfig.SearchQueryEngineEnum;
+import ca.uhn.fhir.jpa.dao.SearchBuilder;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.util.TestUtil;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.SummaryEnum;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.*;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Enumerations.AdministrativeGender;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@TestPropertySource(properties = {
+	// Since scheduled tasks can cause searches, which messes up the
+	// value returned by SearchBuilder.getLastHandlerMechanismForUnitTest()
+	"scheduling_disabled=true"
+})
+public class FhirResourceDaoR4SearchNativeSqlTest extends BaseJpaR4Test {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(FhirResourceDaoR4SearchNativeSqlTest.class);
+	private Date myMidpoint;
+
+	@After
+	public void after() {
+		myDaoConfig.setSearchQueryEngine(new DaoConfig().getSearchQueryEngine());
+		myDaoConfig.setReuseCachedSearchResultsForMillis(new DaoConfig().getReuseCachedSearchResultsForMillis());
+		myDaoConfig.setAllowContainsSearches(new DaoConfig().isAllowContainsSearches());
+	}
+
+	@Before
+	public void before() throws InterruptedException {
+		myDaoConfig.setReuseCachedSearchResultsForMillis(null);
+
+		for (int i = 0; i < 20; i++) {
+			// Keep the update timestamps distinct so that sorted results are deterministic
+			Thread.sleep(2);
+			if (i == 10) {
+				Thread.sleep(10);
+				myMidpoint = new Date();
+				Thread.sleep(10);
+			}
+
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("http://foo").setValue("ID" + (i % 5));
+			if (i % 2 == 0) {
+				patient.addIdentifier().setSystem("http://bar").setValue("ID" + i);
+			}
+			patient.setGender(i % 3 == 0 ? AdministrativeGender.MALE : AdministrativeGender.FEMALE);
+			patient.addName().setFamily(i % 4 == 0 ? "Smith" : "Smithson" + i).addGiven("Given" + (i % 3));
+			IIdType id = myPatientDao.create(patient).getId();
+			if (i == 12) {
+				myPatientDao.delete(id.toUnqualifiedVersionless());
+			}
+		}
+
+		// Same hashes on a different resource type must not match
+		Observation obs = new Observation();
+		obs.addIdentifier().setSystem("http://foo").setValue("ID1");
+		myObservationDao.create(obs);
+	}
+
+	private List<String> search(SearchParameterMap theMap, SearchQueryEngineEnum theEngine, SearchBuilder.HandlerTypeEnum theExpectedHandler) {
+		myDaoConfig.setSearchQueryEngine(theEngine);
+		SearchBuilder.resetLastHandlerMechanismForUnitTest();
+		theMap.setLoadSynchronous(true);
+		theMap.setSummaryMode(null);
+		List<String> retVal = toUnqualifiedVersionlessIdValues(myPatientDao.search(theMap));
+		assertEquals(theExpectedHandler, SearchBuilder.getLastHandlerMechanismForUnitTest());
+		return retVal;
+	}
+
+	private int count(SearchParameterMap theMap, SearchQueryEngineEnum theEngine) {
+		myDaoConfig.setSearchQueryEngine(theEngine);
+		theMap.setLoadSynchronous(false);
+		theMap.setSummaryMode(SummaryEnum.COUNT);
+		IBundleProvider results = myPatientDao.search(theMap);
+		return results.size();
+	}
+
+	private List<String> assertSameResults(SearchParameterMap theMap, boolean theOrdered) {
+		List<String> criteria = search(theMap, SearchQueryEngineEnum.CRITERIA, SearchBuilder.HandlerTypeEnum.STANDARD_QUERY);
+		List<String> nativeSql = search(theMap, SearchQueryEngineEnum.NATIVE_SQL, SearchBuilder.HandlerTypeEnum.NATIVE_QUERY);
+		ourLog.info("Search {} found {}", theMap, nativeSql);
+
+		if (theOrdered) {
+			assertEquals(criteria, nativeSql);
+		} else {
+			assertThat(nativeSql, containsInAnyOrder(criteria.toArray()));
+		}
+		assertEquals(criteria.size(), nativeSql.size());
+
+		assertEquals(count(theMap, SearchQueryEngineEnum.CRITERIA), count(theMap, SearchQueryEngineEnum.NATIVE_SQL));
+		assertEquals(criteria.size(), count(theMap, SearchQueryEngineEnum.NATIVE_SQL));
+		return nativeSql;
+	}
+
+	@Test
+	public void testNoParameters() {
+		assertThat(assertSameResults(new SearchParameterMap(), false), hasSize(19));
+	}
+
+	@Test
+	public void testTokenSystemAndValue() {
+		SearchParameterMap map = new SearchParameterMap().add(Patient.SP_IDENTIFIER, new TokenParam("http://foo", "ID1"));
+		assertThat(assertSameResults(map, false), hasSize(4));
+	}
+
+	@Test
+	public void testTokenValueOnly() {
+		SearchParameterMap map = new SearchParameterMap().add(Patient.SP_IDENTIFIER, new TokenParam(null, "ID2"));
+		assertThat(assertSameResults(map, false), hasSize(3));
+	}
+
+	@Test
+	public void testTokenSystemOnly() {
+		SearchParameterMap map = new SearchParameterMap().add(Patient.SP_IDENTIFIER, new TokenParam("http://bar", null));
+		assertThat(assertSameResults(map, false), hasSize(9));
+	}
+
+	@Test
+	public void testTokenOrAcrossHashColumns() {
+		TokenOrListParam orList = new TokenOrListParam();
+		orList.add(new TokenParam("http://foo", "ID1"));
+		orList.add(new TokenParam("http://foo", "ID3"));
+		orList.add(new TokenParam(null, "ID4"));
+		orList.add(new TokenParam("http://bar", null));
+		SearchParameterMap map = new SearchParameterMap();
+		map.add(Patient.SP_IDENTIFIER, orList);
+		assertThat(assertSameResults(map, false), hasSize(15));
+	}
+
+	@Test
+	public void testTokenAndToken() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.add(Patient.SP_IDENTIFIER, new TokenParam("http://foo", "ID0"));
+		map.add(Patient.SP_GENDER, new TokenParam(null, "male"));
+		assertThat(assertSameResults(map, false), hasSize(2));
+
+		// Each call to add() creates a separate AND clause
+		map = new SearchParameterMap();
+		map.add(Patient.SP_IDENTIFIER, new TokenParam("http://foo", "ID0"));
+		map.add(Patient.SP_IDENTIFIER, new TokenParam("http://bar", "ID10"));
+		assertThat(assertSameResults(map, false), hasSize(1));
+	}
+
+	@Test
+	public void testString() {
+		SearchParameterMap map = new SearchParameterMap().add(Patient.SP_FAMILY, new StringParam("smith"));
+		assertThat(assertSameResults(map, false), hasSize(19));
+
+		map = new SearchParameterMap().add(Patient.SP_FAMILY, new StringParam("Smith", true));
+		assertThat(assertSameResults(map, false), hasSize(4));
+
+		StringOrListParam orList = new StringOrListParam();
+		orList.add(new StringParam("Smith", true));
+		orList.add(new StringParam("smithson1"));
+		orList.add(new StringParam("SMITHSON9"));
+		map = new SearchParameterMap();
+		map.add(Patient.SP_FAMILY, orList);
+		assertThat(assertSameResults(map, false), hasSize(14));
+
+		map = new SearchParameterMap();
+		map.add(Patient.SP_FAMILY, new StringParam("smith"));
+		map.add(Patient.SP_FAMILY, new StringParam("smithson"));
+		map.add(Patient.SP_GIVEN, new StringParam("given1"));
+		assertThat(assertSameResults(map, false), hasSize(5));
+	}
+
+	@Test
+	public void testLastUpdatedAndSort() {
+		SearchParameterMap map = new SearchParameterMap().add(Patient.SP_GENDER, new TokenParam(null, "female"));
+		map.setLastUpdated(new DateRangeParam(myMidpoint, null));
+		map.setSort(new SortSpec(Constants.PARAM_LASTUPDATED, SortOrderEnum.DESC));
+		assertThat(assertSameResults(map, true), hasSize(7));
+
+		map = new SearchParameterMap();
+		map.setLastUpdated(new DateRangeParam(null, myMidpoint));
+		map.setSort(new SortSpec(Constants.PARAM_LASTUPDATED));
+		assertThat(assertSameResults(map, true), hasSize(10));
+	}
+
+	@Test
+	public void testUnsupportedParametersUseCriteria() {
+		myDaoConfig.setSearchQueryEngine(SearchQueryEngineEnum.NATIVE_SQL);
+		myDaoConfig.setAllowContainsSearches(true);
+
+		SearchParameterMap map = new SearchParameterMap().setLoadSynchronous(true);
+		map.add(Patient.SP_FAMILY, new StringParam("smith").setContains(true));
+		SearchBuilder.resetLastHandlerMechanismForUnitTest();
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(map)), hasSize(19));
+		assertEquals(SearchBuilder.HandlerTypeEnum.STANDARD_QUERY, SearchBuilder.getLastHandlerMechanismForUnitTest());
+
+		map = new SearchParameterMap().setLoadSynchronous(true);
+		map.add(Patient.SP_IDENTIFIER, new TokenParam("http://foo", "ID1").setModifier(TokenParamModifier.NOT));
+		SearchBuilder.resetLastHandlerMechanismForUnitTest();
+		myPatientDao.search(map);
+		assertEquals(SearchBuilder.HandlerTypeEnum.STANDARD_QUERY, SearchBuilder.getLastHandlerMechanismForUnitTest());
+
+		map = new SearchParameterMap().setLoadSynchronous(true);
+		map.add(Patient.SP_FAMILY, new StringParam("smith"));
+		map.setSort(new SortSpec(Patient.SP_FAMILY));
+		SearchBuilder.resetLastHandlerMechanismForUnitTest();
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(map)), hasSize(19));
+		assertEquals(SearchBuilder.HandlerTypeEnum.STANDARD_QUERY, SearchBuilder.getLastHandlerMechanismForUnitTest());
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
@@ -5,7 +5,9 @@ import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.entity.Search;
 import ca.uhn.fhir.jpa.entity.SearchStatusEnum;
 import ca.uhn.fhir.jpa.search.SearchCoordinatorSvcImpl;
+import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
 import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.SummaryEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
@@ -48,6 +50,9 @@ public class FhirResourceDaoR4SearchOptimizedTest extends BaseJpaR4Test {
 		mySearchCoordinatorSvcImpl.setLoadingThrottleForUnitTests(null);
 		mySearchCoordinatorSvcImpl.setSyncSizeForUnitTests(SearchCoordinatorSvcImpl.DEFAULT_SYNC_SIZE);
 		myDaoConfig.setSearchPreFetchThresholds(new DaoConfig().getSearchPreFetchThresholds());
+		myDaoConfig.setTopNSearchMaxCount(new DaoConfig().getTopNSearchMaxCount());
+		myDaoConfig.setEstimatedTotalCountCacheMillis(new DaoConfig().getEstimatedTotalCountCacheMillis());
+		myDaoConfig.setReuseCachedSearchResultsForMillis(new DaoConfig().getReuseCachedSearchResultsForMillis());
 	}
 
 	@Before
@@ -80,6 +85,82 @@ public class FhirResourceDaoR4SearchOptimizedTest extends BaseJpaR4Test {
 		assertEquals(200, myDatabaseBackedPagingProvider.retrieveResultList(uuid).size().intValue());
 	}
 
+	@Test
+	public void testFetchEstimatedTotal() {
+		myDaoConfig.setSearchPreFetchThresholds(Arrays.asList(20, 50, -1));
+		myDaoConfig.setReuseCachedSearchResultsForMillis(null);
+		myResourceCountsCache.clear();
+		myResourceCountsCache.update();
+
+		// Search with an accurate total
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Patient.SP_NAME, new StringParam("FAM"));
+		params.setSearchTotalMode(SearchTotalModeEnum.ACCURATE);
+		IBundleProvider results = myPatientDao.search(params);
+		String accurateUuid = results.getUuid();
+		assertEquals(200, results.size().intValue());
+
+		Patient p = new Patient();
+		p.setId("PT" + leftPad(Integer.toString(201), 5, '0'));
+		p.addName().setFamily("FAM" + leftPad(Integer.toString(201), 5, '0'));
+		myPatientDao.update(p);
+
+		// The estimate reuses the total from the previous identical search
+		params = new SearchParameterMap();
+		params.add(Patient.SP_NAME, new StringParam("FAM"));
+		params.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+		results = myPatientDao.search(params);
+		String uuid = results.getUuid();
+		assertEquals(200, results.size().intValue());
+		assertThat(toUnqualifiedVersionlessIdValues(results, 0, 10, true), hasSize(10));
+		assertEquals(200, myDatabaseBackedPagingProvider.retrieveResultList(uuid).size().intValue());
+		assertTrue(runInTransaction(() -> mySearchEntityDao.findByUuid(uuid).isTotalCountEstimated()));
+
+		// A search with no parameters is estimated using the resource counts
+		params = new SearchParameterMap();
+		params.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+		results = myPatientDao.search(params);
+		assertEquals(200, results.size().intValue());
+
+		// Estimated totals and deleted searches are never reused, and no count is performed instead
+		runInTransaction(() -> {
+			Search search = mySearchEntityDao.findByUuid(accurateUuid);
+			search.setDeleted(true);
+			mySearchEntityDao.save(search);
+		});
+		params = new SearchParameterMap();
+		params.add(Patient.SP_NAME, new StringParam("FAM"));
+		params.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+		results = myPatientDao.search(params);
+		assertNull(results.size());
+
+		// A new accurate total is reused
+		params = new SearchParameterMap();
+		params.add(Patient.SP_NAME, new StringParam("FAM"));
+		params.setSearchTotalMode(SearchTotalModeEnum.ACCURATE);
+		results = myPatientDao.search(params);
+		assertEquals(201, results.size().intValue());
+		params = new SearchParameterMap();
+		params.add(Patient.SP_NAME, new StringParam("FAM"));
+		params.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+		results = myPatientDao.search(params);
+		assertEquals(201, results.size().intValue());
+
+		// Without a cached total, no count is performed
+		myDaoConfig.setEstimatedTotalCountCacheMillis(null);
+		params = new SearchParameterMap();
+		params.add(Patient.SP_NAME, new StringParam("FAM"));
+		params.setSearchTotalMode(SearchTotalModeEnum.ESTIMATED);
+		results = myPatientDao.search(params);
+		assertNull(results.size());
+
+		// No total is calculated unless one is requested
+		params = new SearchParameterMap();
+		params.add(Patient.SP_NAME, new StringParam("FAM"));
+		results = myPatientDao.search(params);
+		assertNull(results.size());
+	}
+
 	@Test
 	public void testFetchCountWithMultipleIndexesOnOneResource() {
 
@@ -567,6 +648,128 @@ public class FhirResourceDaoR4SearchOptimizedTest extends BaseJpaR4Test {
 
 	}
 
+	@Test
+	public void testTopNSearchLoadsOnePageAtATime() {
+		myDaoConfig.setTopNSearchMaxCount(20);
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.setLoadSynchronous(true);
+		params.setSort(new SortSpec(Constants.PARAM_LASTUPDATED, SortOrderEnum.DESC));
+		List<String> expected = toUnqualifiedVersionlessIdValues(myPatientDao.search(params));
+		assertEquals(200, expected.size());
+
+		params = new SearchParameterMap();
+		params.setSort(new SortSpec(Constants.PARAM_LASTUPDATED, SortOrderEnum.DESC));
+		params.setCount(10);
+		IBundleProvider results = myPatientDao.search(params);
+		String uuid = results.getUuid();
+		ourLog.info("** Search returned UUID: {}", uuid);
+		List<String> ids = toUnqualifiedVersionlessIdValues(results, 0, 10, true);
+		assertEquals(expected.subList(0, 10), ids);
+
+		/*
+		 * Only the first page should have been loaded
+		 */
+		runInTransaction(() -> {
+			Search search = mySearchEntityDao.findByUuid(uuid);
+			assertEquals(SearchStatusEnum.PASSCMPLET, search.getStatus());
+			assertEquals(10, search.getNumFound());
+			assertEquals(search.getNumFound(), mySearchResultDao.count());
+			assertNull(search.getTotalCount());
+		});
+
+		/*
+		 * Each later page continues after the last resource that was loaded
+		 */
+		ids = toUnqualifiedVersionlessIdValues(results, 10, 20, false);
+		assertEquals(expected.subList(10, 20), ids);
+		ids = toUnqualifiedVersionlessIdValues(results, 20, 30, false);
+		assertEquals(expected.subList(20, 30), ids);
+
+		runInTransaction(() -> {
+			Search search = mySearchEntityDao.findByUuid(uuid);
+			assertEquals(SearchStatusEnum.PASSCMPLET, search.getStatus());
+			assertEquals(30, search.getNumFound());
+			assertEquals(search.getNumFound(), mySearchResultDao.count());
+		});
+
+		/*
+		 * A larger _count uses the normal pre-fetch thresholds
+		 */
+		params = new SearchParameterMap();
+		params.setSort(new SortSpec(Constants.PARAM_LASTUPDATED, SortOrderEnum.DESC));
+		params.setCount(21);
+		results = myPatientDao.search(params);
+		String uuid2 = results.getUuid();
+		ids = toUnqualifiedVersionlessIdValues(results, 0, 21, true);
+		assertEquals(expected.subList(0, 21), ids);
+		runInTransaction(() -> {
+			Search search = mySearchEntityDao.findByUuid(uuid2);
+			assertEquals(SearchStatusEnum.FINISHED, search.getStatus());
+			assertEquals(200, search.getNumFound());
+		});
+	}
+
+	/**
+	 * The search query isn't DISTINCT, so a resource matching several joined index rows
+	 * comes back more than once. Those duplicates must not make a Top-N pass look like
+	 * it reached the end of the results.
+	 */
+	@Test
+	public void testTopNSearchWithDuplicateRowsFromJoins() {
+		runInTransaction(() -> {
+			for (int i = 0; i < 30; i++) {
+				Patient p = new Patient();
+				p.setId("DUP" + leftPad(Integer.toString(i), 5, '0'));
+				p.setActive(true);
+				p.addName().setFamily("DUPFAM" + leftPad(Integer.toString(i), 5, '0'));
+				p.addName().setFamily("DUPFAM" + leftPad(Integer.toString(i), 5, '0') + "A");
+				myPatientDao.update(p);
+			}
+		});
+
+		myDaoConfig.setTopNSearchMaxCount(20);
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.setLoadSynchronous(true);
+		params.add(Patient.SP_NAME, new StringParam("DUPFAM"));
+		params.add(Patient.SP_ACTIVE, new TokenParam("true"));
+		params.setSort(new SortSpec(Constants.PARAM_LASTUPDATED, SortOrderEnum.DESC));
+		List<String> expected = toUnqualifiedVersionlessIdValues(myPatientDao.search(params));
+		assertEquals(30, expected.size());
+
+		params = new SearchParameterMap();
+		params.add(Patient.SP_NAME, new StringParam("DUPFAM"));
+		params.add(Patient.SP_ACTIVE, new TokenParam("true"));
+		params.setSort(new SortSpec(Constants.PARAM_LASTUPDATED, SortOrderEnum.DESC));
+		params.setCount(10);
+		IBundleProvider results = myPatientDao.search(params);
+		String uuid = results.getUuid();
+		ourLog.info("** Search returned UUID: {}", uuid);
+		List<String> ids = toUnqualifiedVersionlessIdValues(results, 0, 10, true);
+		assertEquals(expected.subList(0, 10), ids);
+
+		runInTransaction(() -> {
+			Search search = mySearchEntityDao.findByUuid(uuid);
+			assertEquals(SearchStatusEnum.PASSCMPLET, search.getStatus());
+			assertNull(search.getTotalCount());
+		});
+
+		ids = toUnqualifiedVersionlessIdValues(results, 10, 20, false);
+		assertEquals(expected.subList(10, 20), ids);
+		ids = toUnqualifiedVersionlessIdValues(results, 20, 30, false);
+		assertEquals(expected.subList(20, 30), ids);
+		ids = toUnqualifiedVersionlessIdValues(results, 30, 40, false);
+		assertThat(ids, empty());
+
+		runInTransaction(() -> {
+			Search search = mySearchEntityDao.findByUuid(uuid);
+			assertEquals(SearchStatusEnum.FINISHED, search.getStatus());
+			assertEquals(30, search.getNumFound());
+			assertEquals(30, search.getTotalCount().intValue());
+		});
+	}
+
 
 	@AfterClass
 	public static void afterClassClearContext() {
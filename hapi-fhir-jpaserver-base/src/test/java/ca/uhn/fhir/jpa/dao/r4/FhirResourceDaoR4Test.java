@@ -73,6 +73,7 @@ public class FhirResourceDaoR4Test extends BaseJpaR4Test {
 		myDaoConfig.setAllowExternalReferences(new DaoConfig().isAllowExternalReferences());
 		myDaoConfig.setTreatReferencesAsLogical(new DaoConfig().getTreatReferencesAsLogical());
 		myDaoConfig.setEnforceReferentialIntegrityOnDelete(new DaoConfig().isEnforceReferentialIntegrityOnDelete());
+		myDaoConfig.setResourceEncoding(new DaoConfig().getResourceEncoding());
 	}
 
 	private void assertGone(IIdType theId) {
@@ -2753,6 +2754,44 @@ public class FhirResourceDaoR4Test extends BaseJpaR4Test {
 		assertThat(string, containsString("value=\"foo\""));
 	}
 
+	@Test
+	public void testResourceStoredAsSmile() {
+		Patient p = new Patient();
+		p.addIdentifier().setSystem("urn:system").setValue("testResourceStoredAsSmile");
+		p.addName().setFamily("Tester").addGiven("Joe");
+		p.setBirthDateElement(new DateType("2011-01-02"));
+		IIdType jsoncId = myPatientDao.create(p).getId().toUnqualifiedVersionless();
+
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.SMILE);
+		p.getText().setDivAsString("<div>A narrative</div>");
+		IIdType id = myPatientDao.create(p).getId().toUnqualifiedVersionless();
+		p.setId(id);
+		p.setActive(true);
+		myPatientDao.update(p);
+
+		runInTransaction(() -> {
+			ResourceHistoryTable table = myResourceHistoryTableDao.findForIdAndVersion(id.getIdPartAsLong(), 1L);
+			assertEquals(ResourceEncodingEnum.SMILE, table.getEncoding());
+			String json = BaseHapiFhirDao.decodeResource(table.getResource(), table.getEncoding());
+			ourLog.info("Decoded: {}", json);
+			assertThat(json, containsString("\"family\":\"Tester\""));
+		});
+
+		Patient read = myPatientDao.read(id);
+		assertEquals("2", read.getIdElement().getVersionIdPart());
+		assertTrue(read.getActive());
+		assertEquals("Joe", read.getNameFirstRep().getGivenAsSingleString());
+		assertEquals("2011-01-02", read.getBirthDateElement().getValueAsString());
+		assertThat(read.getText().getDivAsString(), containsString("A narrative"));
+		assertFalse(myPatientDao.read(id.withVersion("1")).hasActive());
+
+		// Resources stored using a different encoding can still be read
+		assertEquals("Tester", myPatientDao.read(jsoncId).getNameFirstRep().getFamily());
+
+		SearchParameterMap map = new SearchParameterMap().setLoadSynchronous(true).add(Patient.SP_IDENTIFIER, new TokenParam("urn:system", "testResourceStoredAsSmile"));
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(map)), containsInAnyOrder(jsoncId.getValue(), id.getValue()));
+	}
+
 	@Test
 	public void testResourceInstanceMetaOperation() {
 
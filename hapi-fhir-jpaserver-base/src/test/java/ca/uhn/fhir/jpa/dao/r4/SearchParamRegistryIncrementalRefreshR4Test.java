@@ -0,0 +1,119 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.jpa.model.entity.ModelConfig;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.searchparam.registry.BaseSearchParamRegistry;
+import ca.uhn.fhir.jpa.searchparam.registry.IRegistryChangeChannel;
+import ca.uhn.fhir.jpa.searchparam.registry.ISearchParamProvider;
+import ca.uhn.fhir.jpa.searchparam.registry.RegistryChangeMessage;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.SearchParameter;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SearchParamRegistryIncrementalRefreshR4Test extends BaseJpaR4Test {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchParamRegistryIncrementalRefreshR4Test.class);
+	@Autowired
+	private ISearchParamProvider mySearchParamProvider;
+	@Autowired
+	private IRegistryChangeChannel myRegistryChangeChannel;
+	private List<SearchParameterMap> mySearches;
+
+	@Before
+	public void before() {
+		myModelConfig.setIncrementalRegistryRefreshEnabled(true);
+
+		mySearches = new ArrayList<>();
+		mySearchParamRegistry.setSearchParamProviderForUnitTest(new ISearchParamProvider() {
+			@Override
+			public IBundleProvider search(SearchParameterMap theParams) {
+				ourLog.info("Searching for search parameters: {}", theParams);
+				mySearches.add(theParams);
+				return mySearchParamProvider.search(theParams);
+			}
+
+			@Override
+			public <SP extends IBaseResource> int refreshCache(BaseSearchParamRegistry<SP> theSearchParamRegistry, long theRefreshInterval) {
+				return mySearchParamProvider.refreshCache(theSearchParamRegistry, theRefreshInterval);
+			}
+		});
+	}
+
+	@After
+	public void after() {
+		myModelConfig.setIncrementalRegistryRefreshEnabled(new ModelConfig().isIncrementalRegistryRefreshEnabled());
+		mySearchParamRegistry.setIncrementalRefreshIntervalForUnitTest(BaseSearchParamRegistry.DEFAULT_INCREMENTAL_REFRESH_INTERVAL);
+		mySearchParamRegistry.setSearchParamProviderForUnitTest(mySearchParamProvider);
+		mySearchParamRegistry.forceRefresh();
+	}
+
+	private IIdType createEyeColourSearchParameter() {
+		SearchParameter sp = new SearchParameter();
+		sp.addBase("Patient");
+		sp.setCode("eyecolour");
+		sp.setType(Enumerations.SearchParamType.TOKEN);
+		sp.setExpression("Patient.extension('http://example.com/eyecolour')");
+		sp.setXpathUsage(SearchParameter.XPathUsageType.NORMAL);
+		sp.setStatus(Enumerations.PublicationStatus.ACTIVE);
+		return mySearchParameterDao.create(sp).getId().toUnqualifiedVersionless();
+	}
+
+	@Test
+	public void testScheduledRefreshOnlyLoadsModifiedSearchParameters() {
+		createEyeColourSearchParameter();
+		int searchCount = mySearches.size();
+		mySearchParamRegistry.forceRefresh();
+		assertNotNull(mySearchParamRegistry.getActiveSearchParam("Patient", "eyecolour"));
+		assertEquals(searchCount + 1, mySearches.size());
+		assertNull(mySearches.get(searchCount).getLastUpdated());
+
+		// Not due yet
+		mySearchParamRegistry.refreshCacheIfNecessary();
+		assertEquals(searchCount + 1, mySearches.size());
+
+		mySearchParamRegistry.setIncrementalRefreshIntervalForUnitTest(0);
+		mySearchParamRegistry.refreshCacheIfNecessary();
+		assertEquals(searchCount + 2, mySearches.size());
+		assertNotNull(mySearches.get(searchCount + 1).getLastUpdated());
+		assertNotNull(mySearches.get(searchCount + 1).getLastUpdated().getLowerBoundAsInstant());
+		assertNotNull(mySearchParamRegistry.getActiveSearchParam("Patient", "eyecolour"));
+	}
+
+	@Test
+	public void testChangesFromOtherNodesAreAppliedImmediately() {
+		IIdType id = createEyeColourSearchParameter();
+		mySearchParamRegistry.forceRefresh();
+		assertNotNull(mySearchParamRegistry.getActiveSearchParam("Patient", "eyecolour"));
+
+		// Messages published by this node have already been applied, so are ignored
+		myRegistryChangeChannel.publish(new RegistryChangeMessage("SearchParameter", id.getIdPart(), true));
+		assertNotNull(mySearchParamRegistry.getActiveSearchParam("Patient", "eyecolour"));
+
+		myRegistryChangeChannel.publish(new RegistryChangeMessage("SearchParameter", id.getIdPart(), true, "OTHER-NODE"));
+		assertNull(mySearchParamRegistry.getActiveSearchParam("Patient", "eyecolour"));
+
+		int searchCount = mySearches.size();
+		myRegistryChangeChannel.publish(new RegistryChangeMessage("SearchParameter", id.getIdPart(), false, "OTHER-NODE"));
+		assertEquals(searchCount + 1, mySearches.size());
+		assertNotNull(mySearches.get(searchCount).getLastUpdated());
+		assertNotNull(mySearchParamRegistry.getActiveSearchParam("Patient", "eyecolour"));
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
@@ -0,0 +1,147 @@
+package ca.uhn.fhir.jpa.provider.r4;
+
+import ca.uhn.fhir.jpa.bulk.BulkDataExportProvider;
+import ca.uhn.fhir.jpa.bulk.IBulkDataExportSvc;
+import ca.uhn.fhir.jpa.util.JpaConstants;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.util.TestUtil;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class BulkDataExportProviderR4Test extends BaseResourceProviderR4Test {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BulkDataExportProviderR4Test.class);
+	@Autowired
+	private IBulkDataExportSvc myBulkDataExportSvc;
+	private BulkDataExportProvider myProvider;
+	private File myDirectory;
+
+	@Override
+	@Before
+	public void before() throws Exception {
+		super.before();
+		myDirectory = Files.createTempDirectory("bulk-export").toFile();
+		myDaoConfig.setBulkExportDirectory(myDirectory.getAbsolutePath());
+
+		myProvider = myAppCtx.getBean(BulkDataExportProvider.class);
+		ourRestServer.registerProvider(myProvider);
+	}
+
+	@Override
+	@After
+	public void after() throws Exception {
+		super.after();
+		ourRestServer.unregisterProvider(myProvider);
+		myBulkDataExportSvc.cancelAndPurgeAllJobs();
+		FileUtils.deleteQuietly(myDirectory);
+		myDaoConfig.setBulkExportDirectory(null);
+	}
+
+	@Test
+	public void testExportPollAndDownload() throws IOException {
+		for (int i = 0; i < 3; i++) {
+			Patient patient = new Patient();
+			patient.setGender(Enumerations.AdministrativeGender.FEMALE);
+			myPatientDao.create(patient);
+		}
+
+		// Kick off the export
+		HttpGet get = new HttpGet(ourServerBase + "/" + JpaConstants.OPERATION_EXPORT + "?" + JpaConstants.PARAM_EXPORT_TYPE + "=Patient");
+		get.addHeader(Constants.HEADER_PREFER, Constants.HEADER_PREFER_RESPOND_ASYNC);
+		String pollUrl;
+		try (CloseableHttpResponse response = ourHttpClient.execute(get)) {
+			assertEquals(202, response.getStatusLine().getStatusCode());
+			pollUrl = response.getFirstHeader(Constants.HEADER_CONTENT_LOCATION).getValue();
+		}
+		ourLog.info("Poll URL: {}", pollUrl);
+		assertThat(pollUrl, startsWith(ourServerBase + "/" + JpaConstants.OPERATION_EXPORT_POLL_STATUS + "?" + JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID + "="));
+
+		// Job hasn't been built yet
+		try (CloseableHttpResponse response = ourHttpClient.execute(new HttpGet(pollUrl))) {
+			assertEquals(202, response.getStatusLine().getStatusCode());
+			assertThat(response.getFirstHeader(Constants.HEADER_X_PROGRESS).getValue(), containsString("SUBMITTED"));
+			assertNotNull(response.getFirstHeader(Constants.HEADER_RETRY_AFTER));
+		}
+
+		assertEquals(1, myBulkDataExportSvc.buildExportFiles());
+
+		// Job is complete, so the manifest is returned
+		String fileUrl;
+		try (CloseableHttpResponse response = ourHttpClient.execute(new HttpGet(pollUrl))) {
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			assertThat(response.getEntity().getContentType().getValue(), startsWith(Constants.CT_JSON));
+			assertNotNull(response.getFirstHeader(Constants.HEADER_EXPIRES));
+			String body = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+			ourLog.info("Manifest: {}", body);
+
+			JsonObject manifest = new JsonParser().parse(body).getAsJsonObject();
+			assertThat(manifest.get("request").getAsString(), containsString(JpaConstants.OPERATION_EXPORT));
+			JsonArray output = manifest.getAsJsonArray("output");
+			assertEquals(1, output.size());
+			assertEquals("Patient", output.get(0).getAsJsonObject().get("type").getAsString());
+			assertEquals(3, output.get(0).getAsJsonObject().get("count").getAsInt());
+			fileUrl = output.get(0).getAsJsonObject().get("url").getAsString();
+		}
+		assertThat(fileUrl, startsWith(ourServerBase + "/" + JpaConstants.OPERATION_EXPORT_DOWNLOAD + "?"));
+
+		// Download the file
+		try (CloseableHttpResponse response = ourHttpClient.execute(new HttpGet(fileUrl))) {
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			assertThat(response.getEntity().getContentType().getValue(), startsWith(Constants.CT_FHIR_NDJSON));
+			String body = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+			String[] lines = body.trim().split("\n");
+			assertEquals(3, lines.length);
+			for (String next : lines) {
+				Patient patient = myFhirCtx.newJsonParser().parseResource(Patient.class, next);
+				assertEquals(Enumerations.AdministrativeGender.FEMALE, patient.getGender());
+			}
+		}
+	}
+
+	@Test
+	public void testPollAndDownloadUnknownJob() throws IOException {
+		HttpGet get = new HttpGet(ourServerBase + "/" + JpaConstants.OPERATION_EXPORT_POLL_STATUS + "?" + JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID + "=FOO");
+		try (CloseableHttpResponse response = ourHttpClient.execute(get)) {
+			assertEquals(404, response.getStatusLine().getStatusCode());
+		}
+
+		get = new HttpGet(ourServerBase + "/" + JpaConstants.OPERATION_EXPORT_DOWNLOAD + "?" + JpaConstants.PARAM_EXPORT_POLL_STATUS_JOB_ID + "=FOO&" + JpaConstants.PARAM_EXPORT_DOWNLOAD_FILE + "=Patient-0.ndjson");
+		try (CloseableHttpResponse response = ourHttpClient.execute(get)) {
+			assertEquals(404, response.getStatusLine().getStatusCode());
+		}
+	}
+
+	@Test
+	public void testExportWithoutRespondAsync() throws IOException {
+		HttpGet get = new HttpGet(ourServerBase + "/" + JpaConstants.OPERATION_EXPORT);
+		try (CloseableHttpResponse response = ourHttpClient.execute(get)) {
+			assertEquals(400, response.getStatusLine().getStatusCode());
+		}
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
@@ -0,0 +1,145 @@
+package ca.uhn.fhir.jpa.provider.r4;
+
+import ca.uhn.fhir.jpa.bulk.BulkDataImportProvider;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.util.JpaConstants;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.util.TestUtil;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.hl7.fhir.r4.model.*;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.*;
+
+public class BulkDataImportProviderR4Test extends BaseResourceProviderR4Test {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BulkDataImportProviderR4Test.class);
+	private BulkDataImportProvider myProvider;
+
+	@Override
+	@Before
+	public void before() throws Exception {
+		super.before();
+		myProvider = myAppCtx.getBean(BulkDataImportProvider.class);
+		ourRestServer.registerProvider(myProvider);
+	}
+
+	@Override
+	@After
+	public void after() throws Exception {
+		super.after();
+		ourRestServer.unregisterProvider(myProvider);
+	}
+
+	private String toNdjson(Resource... theResources) {
+		IParser parser = myFhirCtx.newJsonParser();
+		StringBuilder b = new StringBuilder();
+		for (Resource next : theResources) {
+			b.append(parser.encodeResourceToString(next)).append('\n');
+		}
+		return b.toString();
+	}
+
+	private String createNdjson() {
+		Observation obs = new Observation();
+		obs.setId("OBS1");
+		obs.setStatus(Observation.ObservationStatus.FINAL);
+		obs.getSubject().setReference("Patient/PT1");
+
+		Patient patient = new Patient();
+		patient.setId("PT1");
+		patient.addName().setFamily("FAMILY1");
+
+		return toNdjson(obs, patient);
+	}
+
+	private Parameters executeImport(HttpPost thePost) throws IOException {
+		thePost.addHeader(Constants.HEADER_ACCEPT, Constants.CT_FHIR_JSON_NEW);
+		try (CloseableHttpResponse response = ourHttpClient.execute(thePost)) {
+			String responseBody = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+			ourLog.info(responseBody);
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			return myFhirCtx.newJsonParser().parseResource(Parameters.class, responseBody);
+		}
+	}
+
+	private void assertImported(Parameters theOutcome) {
+		assertEquals(2, ((IntegerType) theOutcome.getParameter().get(0).getValue()).getValue().intValue());
+		assertEquals(0, ((IntegerType) theOutcome.getParameter().get(1).getValue()).getValue().intValue());
+
+		SearchParameterMap map = new SearchParameterMap().setLoadSynchronous(true).add(Observation.SP_SUBJECT, new ReferenceParam("Patient/PT1"));
+		assertThat(toUnqualifiedVersionlessIdValues(myObservationDao.search(map)), contains("Observation/OBS1"));
+	}
+
+	@Test
+	public void testImport() throws IOException {
+		HttpPost post = new HttpPost(ourServerBase + "/" + JpaConstants.OPERATION_IMPORT);
+		post.setEntity(new StringEntity(createNdjson(), ContentType.create(Constants.CT_FHIR_NDJSON, StandardCharsets.UTF_8)));
+
+		assertImported(executeImport(post));
+	}
+
+	@Test
+	public void testImportGzipCompressed() throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(bos)) {
+			gzipOutputStream.write(createNdjson().getBytes(StandardCharsets.UTF_8));
+		}
+
+		// This is the request sent by the CLI bulk-import command
+		ByteArrayEntity entity = new ByteArrayEntity(bos.toByteArray());
+		entity.setChunked(true);
+		entity.setContentType(Constants.CT_FHIR_NDJSON);
+		entity.setContentEncoding(Constants.ENCODING_GZIP);
+		HttpPost post = new HttpPost(ourServerBase + "/" + JpaConstants.OPERATION_IMPORT);
+		post.setEntity(entity);
+
+		assertImported(executeImport(post));
+	}
+
+	@Test
+	public void testImportWithoutDeferredIndexing() throws IOException {
+		HttpPost post = new HttpPost(ourServerBase + "/" + JpaConstants.OPERATION_IMPORT + "?" + JpaConstants.PARAM_IMPORT_DEFER_INDEXING + "=false");
+		post.setEntity(new StringEntity(createNdjson(), ContentType.create(Constants.CT_FHIR_NDJSON, StandardCharsets.UTF_8)));
+
+		// The observation is indexed before the patient exists
+		Parameters outcome = executeImport(post);
+		assertEquals(1, ((IntegerType) outcome.getParameter().get(0).getValue()).getValue().intValue());
+		assertEquals(1, ((IntegerType) outcome.getParameter().get(1).getValue()).getValue().intValue());
+	}
+
+	@Test
+	public void testImportInvalidContentType() throws IOException {
+		HttpPost post = new HttpPost(ourServerBase + "/" + JpaConstants.OPERATION_IMPORT);
+		post.setEntity(new StringEntity(createNdjson(), ContentType.create(Constants.CT_FHIR_JSON_NEW, StandardCharsets.UTF_8)));
+		try (CloseableHttpResponse response = ourHttpClient.execute(post)) {
+			String responseBody = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+			ourLog.info(responseBody);
+			assertEquals(400, response.getStatusLine().getStatusCode());
+			assertThat(responseBody, containsString("Invalid content type"));
+		}
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
@@ -5,6 +5,7 @@ import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.provider.r4.BaseResourceProviderR4Test;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.util.ExpungeOptions;
+import ca.uhn.fhir.jpa.util.ExpungeOutcome;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
@@ -20,13 +21,16 @@ import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.*;
 
 public class ExpungeR4Test extends BaseResourceProviderR4Test {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ExpungeR4Test.class);
 
 	private IIdType myOneVersionPatientId;
 	private IIdType myTwoVersionPatientId;
@@ -38,6 +42,7 @@ public class ExpungeR4Test extends BaseResourceProviderR4Test {
 	@After
 	public void afterDisableExpunge() {
 		myDaoConfig.setExpungeEnabled(new DaoConfig().isExpungeEnabled());
+		myDaoConfig.setExpungeBatchSize(new DaoConfig().getExpungeBatchSize());
 	}
 
 	@Before
@@ -388,6 +393,55 @@ public class ExpungeR4Test extends BaseResourceProviderR4Test {
 
 	}
 
+	@Test
+	public void testExpungeDeletedResourcesInBatches() {
+		myDaoConfig.setExpungeBatchSize(2);
+
+		List<IIdType> ids = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			Patient p = new Patient();
+			p.setId("PT-BATCH" + i);
+			p.getMeta().addTag().setSystem("http://foo").setCode("bar");
+			p.addName().setFamily("FAM" + i);
+			IIdType id = myPatientDao.update(p).getId();
+			ids.add(myPatientDao.delete(id).getId());
+		}
+
+		ExpungeOutcome outcome = myPatientDao.expunge(new ExpungeOptions()
+			.setExpungeDeletedResources(true));
+		ourLog.info("Outcome: {}", outcome);
+
+		for (IIdType next : ids) {
+			assertExpunged(next.withVersion("1"));
+			assertExpunged(next);
+		}
+		assertEquals(10, outcome.getDeletedCount());
+		assertThat(outcome.getDeletedRowCount(), greaterThan(10L));
+	}
+
+	@Test
+	public void testExpungeDeletedResourcesRespectsLimit() {
+		myDaoConfig.setExpungeBatchSize(2);
+
+		for (int i = 0; i < 5; i++) {
+			Patient p = new Patient();
+			p.setId("PT-LIMIT" + i);
+			p.setActive(true);
+			IIdType id = myPatientDao.update(p).getId();
+			myPatientDao.delete(id);
+		}
+
+		// Each deleted resource has 2 versions, and a resource is only ever expunged as a whole
+		ExpungeOutcome outcome = myPatientDao.expunge(new ExpungeOptions()
+			.setExpungeDeletedResources(true)
+			.setLimit(5));
+		assertEquals(4, outcome.getDeletedCount());
+
+		runInTransaction(() -> {
+			assertEquals(3, myResourceTableDao.count());
+		});
+	}
+
 	@AfterClass
 	public static void afterClassClearContext() {
 		TestUtil.clearAllStaticFieldsForUnitTest();
@@ -1,12 +1,16 @@
 package ca.uhn.fhir.jpa.provider.r4;
 
+import ca.uhn.fhir.util.StopWatch;
 import ca.uhn.fhir.util.TestUtil;
 import ca.uhn.fhir.util.UrlUtil;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Organization;
 import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,7 +18,11 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 
+import static org.apache.commons.lang3.StringUtils.countMatches;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
 
 public class GraphQLProviderR4Test extends BaseResourceProviderR4Test {
 	private Logger ourLog = LoggerFactory.getLogger(GraphQLProviderR4Test.class);
@@ -76,6 +84,92 @@ public class GraphQLProviderR4Test extends BaseResourceProviderR4Test {
 
 	}
 
+	@Test
+	public void testSystemSearchWithNestedReferences() throws IOException {
+		initTestObservations(20, 5);
+
+		String query = "{ObservationList{status,subject{resource{name{family},managingOrganization{resource{name}}}}}}";
+		String resp = executeSystemQuery(query);
+		ourLog.info(resp);
+
+		assertEquals(20, countMatches(resp, "\"status\":\"final\""));
+		assertEquals(20, countMatches(resp, "\"name\":\"ORGNAME\""));
+		assertThat(resp, containsString("\"family\":\"FAM4\""));
+	}
+
+	@Test
+	public void testSystemSearchWithReferenceToDeletedResource() throws IOException {
+		myDaoConfig.setEnforceReferentialIntegrityOnDelete(false);
+
+		Organization org = new Organization();
+		org.setName("ORGNAME");
+		IIdType orgId = myOrganizationDao.create(org).getId().toUnqualifiedVersionless();
+
+		Patient p = new Patient();
+		p.addName().setFamily("FAM");
+		p.setManagingOrganization(new Reference(orgId));
+		myPatientDao.create(p);
+
+		myOrganizationDao.delete(orgId);
+
+		String query = "{PatientList{name{family},managingOrganization{resource{id}}}}";
+		String resp = executeSystemQuery(query);
+		ourLog.info(resp);
+
+		// A deleted target is not resolved, just as reading it directly would fail
+		assertThat(resp, containsString("\"family\":\"FAM\""));
+		assertThat(resp, not(containsString("\"id\"")));
+	}
+
+	/**
+	 * Not a functional test, but logs the time taken to execute a query which
+	 * resolves two levels of references for each resource in a list
+	 */
+	@Test
+	public void testSystemSearchWithNestedReferencesPerformance() throws IOException {
+		initTestObservations(200, 50);
+
+		String query = "{ObservationList{subject{resource{name{family},managingOrganization{resource{name}}}}}}";
+		executeSystemQuery(query);
+
+		int iterations = 10;
+		StopWatch sw = new StopWatch();
+		for (int i = 0; i < iterations; i++) {
+			String resp = executeSystemQuery(query);
+			assertEquals(200, countMatches(resp, "\"name\":\"ORGNAME\""));
+		}
+		ourLog.info("Executed nested GraphQL query {} times in {} ({}ms per query)", iterations, sw.toString(), sw.getMillisPerOperation(iterations));
+	}
+
+	private String executeSystemQuery(String theQuery) throws IOException {
+		HttpGet httpGet = new HttpGet(ourServerBase + "/$graphql?query=" + UrlUtil.escapeUrlParam(theQuery));
+		try (CloseableHttpResponse response = ourHttpClient.execute(httpGet)) {
+			assertEquals(200, response.getStatusLine().getStatusCode());
+			return IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private void initTestObservations(int theObservationCount, int thePatientCount) {
+		Organization org = new Organization();
+		org.setName("ORGNAME");
+		IIdType orgId = myOrganizationDao.create(org).getId().toUnqualifiedVersionless();
+
+		IIdType[] patientIds = new IIdType[thePatientCount];
+		for (int i = 0; i < thePatientCount; i++) {
+			Patient p = new Patient();
+			p.addName().setFamily("FAM" + i);
+			p.setManagingOrganization(new Reference(orgId));
+			patientIds[i] = myPatientDao.create(p).getId().toUnqualifiedVersionless();
+		}
+
+		for (int i = 0; i < theObservationCount; i++) {
+			Observation obs = new Observation();
+			obs.setStatus(Observation.ObservationStatus.FINAL);
+			obs.setSubject(new Reference(patientIds[i % thePatientCount]));
+			myObservationDao.create(obs);
+		}
+	}
+
 	private void initTestPatients() {
 		Patient p = new Patient();
 		p.addName()
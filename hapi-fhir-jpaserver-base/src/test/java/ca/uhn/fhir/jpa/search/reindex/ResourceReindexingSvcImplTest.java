@@ -7,11 +7,15 @@ import ca.uhn.fhir.jpa.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.dao.data.IForcedIdDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceReindexJobDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceSearchViewDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
+import ca.uhn.fhir.jpa.dao.data.IResourceTagDao;
 import ca.uhn.fhir.jpa.entity.ResourceReindexJobEntity;
+import ca.uhn.fhir.jpa.entity.ResourceSearchView;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.searchparam.registry.ISearchParamRegistry;
 import org.apache.commons.lang3.time.DateUtils;
+import org.hibernate.Session;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r4.model.Observation;
@@ -25,9 +29,12 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.SliceImpl;
 import org.springframework.transaction.PlatformTransactionManager;
 
+import javax.persistence.EntityManager;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -53,6 +60,14 @@ public class ResourceReindexingSvcImplTest extends BaseJpaTest {
 	private IResourceTableDao myResourceTableDao;
 	@Mock
 	private IFhirResourceDao myResourceDao;
+	@Mock
+	private IResourceSearchViewDao myResourceSearchViewDao;
+	@Mock
+	private IResourceTagDao myResourceTagDao;
+	@Mock
+	private EntityManager myEntityManager;
+	@Mock
+	private Session mySession;
 	@Captor
 	private ArgumentCaptor<Long> myIdCaptor;
 	@Captor
@@ -91,7 +106,12 @@ public class ResourceReindexingSvcImplTest extends BaseJpaTest {
 		mySvc.setResourceTableDaoForUnitTest(myResourceTableDao);
 		mySvc.setTxManagerForUnitTest(myTxManager);
 		mySvc.setSearchParamRegistryForUnitTest(mySearchParamRegistry);
+		mySvc.setResourceSearchViewDaoForUnitTest(myResourceSearchViewDao);
+		mySvc.setResourceTagDaoForUnitTest(myResourceTagDao);
+		mySvc.setEntityManagerForUnitTest(myEntityManager);
 		mySvc.start();
+
+		when(myEntityManager.unwrap(eq(Session.class))).thenReturn(mySession);
 	}
 
 	@Test
@@ -178,11 +198,102 @@ public class ResourceReindexingSvcImplTest extends BaseJpaTest {
 		verify(myReindexJobDao, times(1)).findAll(any(), eq(true));
 		verify(myReindexJobDao, times(1)).getReindexCount(any());
 		verify(myReindexJobDao, times(1)).setReindexCount(any(), anyInt());
+		verify(myReindexJobDao, times(1)).setStartedAndReindexTotal(eq(123L), any(), eq(4));
 		verifyNoMoreInteractions(myReindexJobDao);
 
 		verify(mySearchParamRegistry, times(1)).forceRefresh();
 	}
 
+	@Test
+	public void testReindexPassInChunks() {
+		myDaoConfig.setReindexChunkSize(3);
+
+		mockNothingToExpunge();
+		mockSingleReindexingJob(null);
+		mockFourResourcesNeedReindexing();
+		mockFetchFourResources();
+
+		// The current versions of resources 0 and 2 are loaded in bulk
+		when(myResourceSearchViewDao.findByResourceIds(any())).thenAnswer(t -> {
+			Collection<Long> ids = t.getArgument(0);
+			List<ResourceSearchView> retVal = new ArrayList<>();
+			for (Long next : ids) {
+				if (next == 0L || next == 2L) {
+					ResourceSearchView view = mock(ResourceSearchView.class);
+					when(view.getId()).thenReturn(next);
+					retVal.add(view);
+				}
+			}
+			return retVal;
+		});
+		when(myResourceDao.toResource(any(), any(ResourceSearchView.class), any(), anyBoolean())).thenAnswer(t -> {
+			ResourceSearchView view = t.getArgument(1);
+			return new Patient().setId("Patient/" + view.getId() + "/_history/1");
+		});
+
+		int count = mySvc.forceReindexingPass();
+		assertEquals(4, count);
+
+		// Two chunks, each loaded in one go
+		verify(myResourceTableDao, times(2)).findByIdsAndFetchForcedId(any());
+		verify(myResourceTableDao, never()).findById(any());
+		verify(myResourceSearchViewDao, times(2)).findByResourceIds(any());
+		verify(mySession, times(2)).setJdbcBatchSize(eq(3));
+
+		// Only the resources which weren't loaded in bulk are read individually
+		verify(myResourceDao, times(2)).toResource(any(), any(ResourceSearchView.class), any(), anyBoolean());
+		verify(myResourceDao, times(2)).read(any(), any(), anyBoolean());
+		verify(myResourceDao, times(4)).reindex(any(), any());
+
+		verify(myReindexJobDao, times(1)).setThresholdLow(eq(123L), eq(new Date(40 * DateUtils.MILLIS_PER_DAY)));
+		verify(myReindexJobDao, times(1)).setReindexCount(eq(123L), eq(4));
+	}
+
+	@Test
+	public void testReindexFailedChunkIsRetriedIndividually() {
+		mockNothingToExpunge();
+		mockSingleReindexingJob(null);
+		mockFourResourcesNeedReindexing();
+		mockFetchFourResources();
+
+		// Fail the first time resource 1 is indexed
+		Set<Object> failed = new HashSet<>();
+		doAnswer(t -> {
+			IBaseResource resource = t.getArgument(0);
+			if (resource.getIdElement().getIdPart().equals("1") && failed.add(resource)) {
+				throw new IllegalStateException("Failed");
+			}
+			return null;
+		}).when(myResourceDao).reindex(any(), any());
+
+		int count = mySvc.forceReindexingPass();
+		assertEquals(4, count);
+
+		// The chunk was attempted once, then each resource was retried on its own
+		verify(myResourceTableDao, times(1)).findByIdsAndFetchForcedId(any());
+		verify(myResourceTableDao, times(4)).findById(any());
+		verify(myResourceDao, times(2 + 4)).reindex(any(), any());
+		verify(myReindexJobDao, times(1)).setReindexCount(eq(123L), eq(4));
+	}
+
+	@Test
+	public void testJobProgress() {
+		ResourceReindexJobEntity job = new ResourceReindexJobEntity();
+		assertNull(job.getPercentComplete());
+		assertNull(job.getThroughputPerSecond());
+		assertNull(job.getEstimatedMillisRemaining());
+
+		job.setStarted(new Date(System.currentTimeMillis() - 10 * DateUtils.MILLIS_PER_SECOND));
+		job.setReindexTotal(1000);
+		job.setReindexCount(250);
+		assertEquals(25.0, job.getPercentComplete(), 0.001);
+		assertEquals(25.0, job.getThroughputPerSecond(), 1.0);
+		assertEquals(30 * DateUtils.MILLIS_PER_SECOND, job.getEstimatedMillisRemaining(), 2 * DateUtils.MILLIS_PER_SECOND);
+
+		job.setReindexTotal(0);
+		assertEquals(100.0, job.getPercentComplete(), 0.001);
+	}
+
 	@Test
 	public void testReindexPassPatients() {
 		mockNothingToExpunge();
@@ -236,18 +347,32 @@ public class ResourceReindexingSvcImplTest extends BaseJpaTest {
 		verify(myReindexJobDao, times(1)).findAll(any(), eq(true));
 		verify(myReindexJobDao, times(1)).getReindexCount(any());
 		verify(myReindexJobDao, times(1)).setReindexCount(any(), anyInt());
+		verify(myReindexJobDao, times(1)).setStartedAndReindexTotal(eq(123L), any(), anyInt());
 		verifyNoMoreInteractions(myReindexJobDao);
 	}
 
 	private void mockWhenResourceTableFindById(long[] theUpdatedTimes, String[] theResourceTypes) {
 		when(myResourceTableDao.findById(any())).thenAnswer(t -> {
-			ResourceTable retVal = new ResourceTable();
 			Long id = (Long) t.getArguments()[0];
-			retVal.setId(id);
-			retVal.setResourceType(theResourceTypes[id.intValue()]);
-			retVal.setUpdated(new Date(theUpdatedTimes[id.intValue()]));
-			return Optional.of(retVal);
+			return Optional.of(newResourceTable(id, theUpdatedTimes, theResourceTypes));
+		});
+		when(myResourceTableDao.findByIdsAndFetchForcedId(any())).thenAnswer(t -> {
+			Collection<Long> ids = t.getArgument(0);
+			return ids
+				.stream()
+				.map(id -> newResourceTable(id, theUpdatedTimes, theResourceTypes))
+				.collect(Collectors.toList());
 		});
+		when(myResourceTableDao.countResourcesWithinUpdatedRange(any(), any())).thenReturn((long) theUpdatedTimes.length);
+		when(myResourceTableDao.countResourcesWithinUpdatedRange(any(), any(), any())).thenReturn((long) theUpdatedTimes.length);
+	}
+
+	private ResourceTable newResourceTable(Long theId, long[] theUpdatedTimes, String[] theResourceTypes) {
+		ResourceTable retVal = new ResourceTable();
+		retVal.setId(theId);
+		retVal.setResourceType(theResourceTypes[theId.intValue()]);
+		retVal.setUpdated(new Date(theUpdatedTimes[theId.intValue()]));
+		return retVal;
 	}
 
 	private void mockFetchFourResources() {
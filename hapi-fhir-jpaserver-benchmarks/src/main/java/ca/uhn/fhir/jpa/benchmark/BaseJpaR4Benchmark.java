@@ -0,0 +1,131 @@
+package ca.uhn.fhir.jpa.benchmark;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.IFhirResourceDaoPatient;
+import ca.uhn.fhir.jpa.dao.IFhirSystemDao;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.*;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Superclass for the JPA server benchmarks. Each trial starts a new JPA server
+ * against an empty in-memory database and populates it with
+ * {@link #myPatientCount} synthetic patients, each of which has an encounter and
+ * {@link #myObservationsPerPatient} observations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public abstract class BaseJpaR4Benchmark {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BaseJpaR4Benchmark.class);
+
+	@Param({"DERBY", "H2"})
+	public BenchmarkDatabaseEnum myDatabase;
+	@Param({"200"})
+	public int myPatientCount;
+	@Param({"10"})
+	public int myObservationsPerPatient;
+
+	protected AnnotationConfigApplicationContext myAppCtx;
+	protected FhirContext myFhirCtx;
+	protected DaoConfig myDaoConfig;
+	protected IFhirSystemDao<Bundle, Meta> mySystemDao;
+	protected IFhirResourceDaoPatient<Patient> myPatientDao;
+	protected IFhirResourceDao<Observation> myObservationDao;
+	protected IFhirResourceDao<Encounter> myEncounterDao;
+	protected SyntheticDataGenerator myDataGenerator;
+	protected List<IIdType> myPatientIds;
+	protected ServletRequestDetails mySrd;
+
+	@SuppressWarnings("unchecked")
+	@Setup(Level.Trial)
+	public void startServer() {
+		myAppCtx = new AnnotationConfigApplicationContext();
+		myAppCtx.getBeanFactory().registerSingleton("benchmarkDatabase", myDatabase);
+		myAppCtx.register(BenchmarkR4Config.class);
+		myAppCtx.refresh();
+
+		myFhirCtx = myAppCtx.getBean(FhirContext.class);
+		myDaoConfig = myAppCtx.getBean(DaoConfig.class);
+		mySystemDao = myAppCtx.getBean("mySystemDaoR4", IFhirSystemDao.class);
+		myPatientDao = myAppCtx.getBean("myPatientDaoR4", IFhirResourceDaoPatient.class);
+		myObservationDao = myAppCtx.getBean("myObservationDaoR4", IFhirResourceDao.class);
+		myEncounterDao = myAppCtx.getBean("myEncounterDaoR4", IFhirResourceDao.class);
+		myDataGenerator = new SyntheticDataGenerator();
+		mySrd = new ServletRequestDetails();
+		mySrd.setServletRequest(new MockHttpServletRequest());
+
+		populate();
+	}
+
+	/**
+	 * Stores the synthetic data set. Subclasses may override this to store
+	 * additional data.
+	 */
+	protected void populate() {
+		long start = System.currentTimeMillis();
+		myPatientIds = new ArrayList<>(myPatientCount);
+		for (int i = 0; i < myPatientCount; i++) {
+			Bundle response = mySystemDao.transaction(null, myDataGenerator.newPatientTransaction(myObservationsPerPatient));
+			myPatientIds.add(new IdType(response.getEntry().get(0).getResponse().getLocation()).toUnqualifiedVersionless());
+		}
+		ourLog.info("Stored {} patients with {} observations each in {}ms", myPatientCount, myObservationsPerPatient, System.currentTimeMillis() - start);
+	}
+
+	@TearDown(Level.Trial)
+	public void stopServer() {
+		myAppCtx.close();
+	}
+
+	protected IIdType randomPatientId() {
+		return myPatientIds.get(ThreadLocalRandom.current().nextInt(myPatientIds.size()));
+	}
+
+	/**
+	 * Loads the first page of results from a search, which forces the search
+	 * to actually be performed
+	 */
+	protected static List<IBaseResource> firstPage(IBundleProvider theResults) {
+		Integer size = theResults.size();
+		int toIndex = size != null ? Math.min(size, 50) : 50;
+		return theResults.getResources(0, toIndex);
+	}
+
+}
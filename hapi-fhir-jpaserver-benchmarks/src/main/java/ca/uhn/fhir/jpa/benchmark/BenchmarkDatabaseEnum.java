@@ -0,0 +1,57 @@
+package ca.uhn.fhir.jpa.benchmark;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.util.DerbyTenSevenHapiFhirDialect;
+import org.hibernate.dialect.H2Dialect;
+
+/**
+ * The embedded databases which the benchmarks can be run against
+ */
+public enum BenchmarkDatabaseEnum {
+
+	DERBY("org.apache.derby.jdbc.EmbeddedDriver", "jdbc:derby:memory:hapi_benchmark;create=true", DerbyTenSevenHapiFhirDialect.class.getName()),
+
+	H2("org.h2.Driver", "jdbc:h2:mem:hapi_benchmark;DB_CLOSE_DELAY=-1", H2Dialect.class.getName());
+
+	private final String myDriverClassName;
+	private final String myUrl;
+	private final String myDialect;
+
+	BenchmarkDatabaseEnum(String theDriverClassName, String theUrl, String theDialect) {
+		myDriverClassName = theDriverClassName;
+		myUrl = theUrl;
+		myDialect = theDialect;
+	}
+
+	public String getDialect() {
+		return myDialect;
+	}
+
+	public String getDriverClassName() {
+		return myDriverClassName;
+	}
+
+	public String getUrl() {
+		return myUrl;
+	}
+}
@@ -0,0 +1,55 @@
+package ca.uhn.fhir.jpa.benchmark;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.util.VersionUtil;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results in JMH's JSON format, so that
+ * they can be compared across releases.
+ * <p>
+ * Usage: <code>BenchmarkRunner [regex of benchmarks to include] [result file]</code>.
+ * By default all benchmarks are run, and the results are written to
+ * <code>target/jmh-result-[HAPI FHIR version].json</code>. The full set of
+ * JMH command line options is available by running the shaded JAR instead.
+ * </p>
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] theArgs) throws RunnerException {
+		String include = theArgs.length > 0 ? theArgs[0] : BenchmarkRunner.class.getPackage().getName() + ".*";
+		String resultFile = theArgs.length > 1 ? theArgs[1] : "target/jmh-result-" + VersionUtil.getVersion() + ".json";
+
+		Options options = new OptionsBuilder()
+			.include(include)
+			.resultFormat(ResultFormatType.JSON)
+			.result(resultFile)
+			.build();
+		new Runner(options).run();
+	}
+
+}
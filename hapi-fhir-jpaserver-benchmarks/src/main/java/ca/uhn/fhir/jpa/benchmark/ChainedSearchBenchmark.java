@@ -0,0 +1,90 @@
+package ca.uhn.fhir.jpa.benchmark;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Observation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares chained reference searches performed as a flat join against
+ * searches using a nested subquery for each link in the chain. Use a larger
+ * data set (e.g. <code>-p myPatientCount=5000</code>) to see how the plans
+ * behave once the inner set becomes large.
+ */
+public class ChainedSearchBenchmark extends BaseJpaR4Benchmark {
+
+	@Param({"true", "false"})
+	public boolean myChainedSearchFlatJoinEnabled;
+
+	@Override
+	protected void populate() {
+		myDaoConfig.setReuseCachedSearchResultsForMillis(null);
+		myDaoConfig.setChainedSearchFlatJoinEnabled(myChainedSearchFlatJoinEnabled);
+		super.populate();
+	}
+
+	private String randomMrn() {
+		return "MRN" + ThreadLocalRandom.current().nextInt(myPatientCount);
+	}
+
+	/**
+	 * <code>Observation?subject:Patient.identifier=[mrn]</code>
+	 */
+	@Benchmark
+	public List<IBaseResource> searchChainedToken() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add(Observation.SP_SUBJECT, new ReferenceParam("Patient", "identifier", randomMrn()));
+		return firstPage(myObservationDao.search(map));
+	}
+
+	/**
+	 * <code>Observation?subject:Patient.family=SMITH</code>, which matches many
+	 * patients
+	 */
+	@Benchmark
+	public List<IBaseResource> searchChainedString() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add(Observation.SP_SUBJECT, new ReferenceParam("Patient", "family", "SMITH"));
+		return firstPage(myObservationDao.search(map));
+	}
+
+	/**
+	 * <code>Observation?encounter.subject:Patient.identifier=[mrn]</code>
+	 */
+	@Benchmark
+	public List<IBaseResource> searchChainedTwoLevels() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add(Observation.SP_ENCOUNTER, new ReferenceParam("Encounter", "subject:Patient.identifier", randomMrn()));
+		return firstPage(myObservationDao.search(map));
+	}
+
+}
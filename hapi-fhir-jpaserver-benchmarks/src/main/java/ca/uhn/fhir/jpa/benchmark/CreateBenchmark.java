@@ -0,0 +1,57 @@
+package ca.uhn.fhir.jpa.benchmark;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.dao.DaoMethodOutcome;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Reference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Benchmarks for storing new resources, both individually (which exercises
+ * <code>BaseHapiFhirDao#updateEntity</code>) and as a FHIR transaction (which
+ * also exercises <code>TransactionProcessor</code>)
+ */
+public class CreateBenchmark extends BaseJpaR4Benchmark {
+
+	@Param({"10"})
+	public int myTransactionObservationCount;
+
+	@Benchmark
+	public DaoMethodOutcome createPatient() {
+		return myPatientDao.create(myDataGenerator.newPatient());
+	}
+
+	@Benchmark
+	public DaoMethodOutcome createObservation() {
+		Observation obs = myDataGenerator.newObservation(new Reference(randomPatientId()), null);
+		return myObservationDao.create(obs);
+	}
+
+	@Benchmark
+	public Bundle transaction() {
+		return mySystemDao.transaction(null, myDataGenerator.newPatientTransaction(myTransactionObservationCount));
+	}
+
+}
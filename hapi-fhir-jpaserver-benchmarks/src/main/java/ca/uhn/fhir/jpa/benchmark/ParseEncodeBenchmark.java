@@ -0,0 +1,96 @@
+package ca.uhn.fhir.jpa.benchmark;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.PerformanceOptionsEnum;
+import ca.uhn.fhir.parser.IParser;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for parsing a large bundle and encoding it again, which is what
+ * the server does with resources it doesn't need to look inside of. This
+ * benchmark doesn't use a database, so it doesn't extend {@link BaseJpaR4Benchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ParseEncodeBenchmark {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ParseEncodeBenchmark.class);
+
+	@Param({"false", "true"})
+	public boolean myDeferPrimitiveCoercion;
+	@Param({"10000"})
+	public int myEntryCount;
+
+	private String myJson;
+	private IParser myJsonParser;
+	private String myXml;
+	private IParser myXmlParser;
+
+	@Setup(Level.Trial)
+	public void createBundle() {
+		FhirContext ctx = FhirContext.forR4();
+		if (myDeferPrimitiveCoercion) {
+			ctx.setPerformanceOptions(PerformanceOptionsEnum.DEFERRED_PRIMITIVE_COERCION);
+		}
+		myJsonParser = ctx.newJsonParser();
+		myXmlParser = ctx.newXmlParser();
+
+		// Each patient transaction has a patient, an encounter and 8 observations
+		SyntheticDataGenerator dataGenerator = new SyntheticDataGenerator();
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.SEARCHSET);
+		while (bundle.getEntry().size() < myEntryCount) {
+			for (Bundle.BundleEntryComponent next : dataGenerator.newPatientTransaction(8).getEntry()) {
+				if (bundle.getEntry().size() < myEntryCount) {
+					bundle.addEntry().setFullUrl(next.getFullUrl()).setResource(next.getResource());
+				}
+			}
+		}
+		bundle.setTotal(myEntryCount);
+
+		myJson = myJsonParser.encodeResourceToString(bundle);
+		myXml = myXmlParser.encodeResourceToString(bundle);
+		ourLog.info("Bundle with {} entries is {} chars as JSON and {} chars as XML", myEntryCount, myJson.length(), myXml.length());
+	}
+
+	@Benchmark
+	public String parseThenEncodeJson() {
+		Bundle bundle = myJsonParser.parseResource(Bundle.class, myJson);
+		return myJsonParser.encodeResourceToString(bundle);
+	}
+
+	@Benchmark
+	public String parseThenEncodeXml() {
+		Bundle bundle = myXmlParser.parseResource(Bundle.class, myXml);
+		return myXmlParser.encodeResourceToString(bundle);
+	}
+
+}
@@ -0,0 +1,42 @@
+package ca.uhn.fhir.jpa.benchmark;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.hl7.fhir.r4.model.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Benchmarks for reading individual resources
+ */
+public class ReadBenchmark extends BaseJpaR4Benchmark {
+
+	@Benchmark
+	public Patient read() {
+		return myPatientDao.read(randomPatientId());
+	}
+
+	@Benchmark
+	public Patient vread() {
+		return myPatientDao.read(randomPatientId().withVersion("1"));
+	}
+
+}
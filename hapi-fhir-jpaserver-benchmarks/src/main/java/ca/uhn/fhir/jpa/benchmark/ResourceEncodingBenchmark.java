@@ -0,0 +1,110 @@
+package ca.uhn.fhir.jpa.benchmark;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.dao.BaseHapiFhirDao;
+import ca.uhn.fhir.jpa.dao.SmileUtil;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.parser.IParser;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Resource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for converting resources to and from the bytes which are stored in
+ * the resource history table using each {@link ResourceEncodingEnum}. This
+ * benchmark doesn't use a database, so it doesn't extend {@link BaseJpaR4Benchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ResourceEncodingBenchmark {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ResourceEncodingBenchmark.class);
+
+	@Param({"JSONC", "SMILE"})
+	public ResourceEncodingEnum myEncoding;
+	@Param({"1000"})
+	public int myResourceCount;
+
+	private FhirContext myCtx;
+	private List<Resource> myResources;
+	private List<byte[]> myEncoded;
+
+	@Setup(Level.Trial)
+	public void createResources() {
+		myCtx = FhirContext.forR4();
+
+		// Each patient transaction has a patient, an encounter and 8 observations
+		SyntheticDataGenerator dataGenerator = new SyntheticDataGenerator();
+		myResources = new ArrayList<>();
+		while (myResources.size() < myResourceCount) {
+			for (Bundle.BundleEntryComponent next : dataGenerator.newPatientTransaction(8).getEntry()) {
+				if (myResources.size() < myResourceCount) {
+					myResources.add(next.getResource());
+				}
+			}
+		}
+
+		myEncoded = encode();
+		long bytes = 0;
+		for (byte[] next : myEncoded) {
+			bytes += next.length;
+		}
+		ourLog.info("{} resources are {} bytes stored as {}", myResourceCount, bytes, myEncoding);
+	}
+
+	@Benchmark
+	public List<byte[]> encode() {
+		List<byte[]> retVal = new ArrayList<>(myResources.size());
+		for (Resource next : myResources) {
+			retVal.add(BaseHapiFhirDao.encodeResource(next, myEncoding, Collections.emptySet(), myCtx));
+		}
+		return retVal;
+	}
+
+	@Benchmark
+	public List<Resource> decode() {
+		List<Resource> retVal = new ArrayList<>(myEncoded.size());
+		for (int i = 0; i < myEncoded.size(); i++) {
+			Class<? extends Resource> type = myResources.get(i).getClass();
+			IParser parser = myEncoding.newParser(myCtx);
+			byte[] bytes = myEncoded.get(i);
+			if (myEncoding == ResourceEncodingEnum.SMILE) {
+				retVal.add(SmileUtil.parse(parser, type, bytes));
+			} else {
+				retVal.add(parser.parseResource(type, BaseHapiFhirDao.decodeResource(bytes, myEncoding)));
+			}
+		}
+		return retVal;
+	}
+
+}
@@ -0,0 +1,187 @@
+package ca.uhn.fhir.jpa.benchmark;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.param.*;
+import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmarks for searches. Most searches are performed synchronously, which
+ * exercises <code>SearchBuilder</code> directly. The <code>Async</code> variants
+ * go through <code>SearchCoordinatorSvcImpl</code> (with the search cache
+ * disabled so that every invocation performs a new search).
+ * <p>
+ * Each benchmark is run with both search query engines. Searches which the
+ * native SQL engine can not handle fall back to the Criteria API, so for those
+ * the two results should be the same.
+ * </p>
+ */
+public class SearchBenchmark extends BaseJpaR4Benchmark {
+
+	@Param({"CRITERIA", "NATIVE_SQL"})
+	public DaoConfig.SearchQueryEngineEnum mySearchQueryEngine;
+
+	@Override
+	protected void populate() {
+		myDaoConfig.setReuseCachedSearchResultsForMillis(null);
+		myDaoConfig.setSearchQueryEngine(mySearchQueryEngine);
+		super.populate();
+	}
+
+	private static String randomCode() {
+		String[] codes = SyntheticDataGenerator.OBSERVATION_CODES;
+		return codes[ThreadLocalRandom.current().nextInt(codes.length)];
+	}
+
+	private static TokenParam randomCodeParam() {
+		return new TokenParam(SyntheticDataGenerator.LOINC_SYSTEM, randomCode());
+	}
+
+	@Benchmark
+	public List<IBaseResource> searchToken() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add(Observation.SP_CODE, randomCodeParam());
+		return firstPage(myObservationDao.search(map));
+	}
+
+	@Benchmark
+	public List<IBaseResource> searchTokenOrList() {
+		TokenOrListParam codes = new TokenOrListParam();
+		codes.addOr(randomCodeParam());
+		codes.addOr(randomCodeParam());
+		codes.addOr(new TokenParam(null, randomCode()));
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add(Observation.SP_CODE, codes);
+		return firstPage(myObservationDao.search(map));
+	}
+
+	@Benchmark
+	public List<IBaseResource> searchTokenAsync() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.add(Observation.SP_CODE, randomCodeParam());
+		return firstPage(myObservationDao.search(map));
+	}
+
+	@Benchmark
+	public List<IBaseResource> searchDateRange() {
+		int startDay = ThreadLocalRandom.current().nextInt(358);
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add(Observation.SP_DATE, new DateRangeParam(SyntheticDataGenerator.day(startDay), SyntheticDataGenerator.day(startDay + 7)));
+		return firstPage(myObservationDao.search(map));
+	}
+
+	@Benchmark
+	public List<IBaseResource> searchReference() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add(Observation.SP_SUBJECT, new ReferenceParam(randomPatientId().getValue()));
+		return firstPage(myObservationDao.search(map));
+	}
+
+	@Benchmark
+	public List<IBaseResource> searchTokenAndDateRange() {
+		int startDay = ThreadLocalRandom.current().nextInt(335);
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add(Observation.SP_CODE, randomCodeParam());
+		map.add(Observation.SP_DATE, new DateRangeParam(SyntheticDataGenerator.day(startDay), SyntheticDataGenerator.day(startDay + 30)));
+		return firstPage(myObservationDao.search(map));
+	}
+
+	@Benchmark
+	public List<IBaseResource> searchInclude() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add(Observation.SP_CODE, randomCodeParam());
+		map.addInclude(new Include("Observation:subject"));
+		map.addInclude(new Include("Observation:encounter"));
+		return firstPage(myObservationDao.search(map));
+	}
+
+	/**
+	 * Six _includes and two _revincludes, most of which match nothing
+	 */
+	@Benchmark
+	public List<IBaseResource> searchManyIncludes() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add(Observation.SP_CODE, randomCodeParam());
+		map.addInclude(new Include("Observation:subject"));
+		map.addInclude(new Include("Observation:encounter"));
+		map.addInclude(new Include("Observation:performer"));
+		map.addInclude(new Include("Observation:based-on"));
+		map.addInclude(new Include("Observation:part-of"));
+		map.addInclude(new Include("Observation:has-member"));
+		map.addRevInclude(new Include("Observation:has-member"));
+		map.addRevInclude(new Include("Observation:derived-from"));
+		return firstPage(myObservationDao.search(map));
+	}
+
+	/**
+	 * Searches for a random number of IDs, so the IN list is a different
+	 * length for most invocations
+	 */
+	@Benchmark
+	public List<IBaseResource> searchIdList() {
+		TokenOrListParam ids = new TokenOrListParam();
+		int count = 1 + ThreadLocalRandom.current().nextInt(50);
+		for (int i = 0; i < count; i++) {
+			ids.addOr(new TokenParam(randomPatientId().getIdPart()));
+		}
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add(IAnyResource.SP_RES_ID, ids);
+		return firstPage(myPatientDao.search(map));
+	}
+
+	@Benchmark
+	public List<IBaseResource> searchHas() {
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add(Patient.SP_FAMILY, new StringParam("SMITH"));
+		map.add("_has", new HasParam("Observation", Observation.SP_SUBJECT, Observation.SP_CODE, SyntheticDataGenerator.LOINC_SYSTEM + "|" + randomCode()));
+		return firstPage(myPatientDao.search(map));
+	}
+
+	/**
+	 * Patient instance <code>$everything</code>
+	 */
+	@Benchmark
+	public List<IBaseResource> everything() {
+		return firstPage(myPatientDao.patientInstanceEverything(null, randomPatientId(), null, null, null, null, null, mySrd));
+	}
+
+}
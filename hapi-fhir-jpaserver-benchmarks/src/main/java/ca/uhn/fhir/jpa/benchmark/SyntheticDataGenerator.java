@@ -0,0 +1,152 @@
+package ca.uhn.fhir.jpa.benchmark;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.hl7.fhir.r4.model.*;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.UUID;
+
+/**
+ * Generates synthetic (but realistically shaped) resources for the benchmarks. A
+ * fixed seed is used so that every run stores the same data.
+ */
+public class SyntheticDataGenerator {
+
+	public static final String IDENTIFIER_SYSTEM = "http://example.com/benchmark/mrn";
+	public static final String LOINC_SYSTEM = "http://loinc.org";
+	/**
+	 * Observation codes, from most to least common
+	 */
+	public static final String[] OBSERVATION_CODES = {"8867-4", "8480-6", "8462-4", "29463-7", "8302-2", "2339-0", "2093-3", "718-7", "4548-4", "39156-5"};
+	private static final String[] FAMILY_NAMES = {"SMITH", "JONES", "WILLIAMS", "BROWN", "TAYLOR", "DAVIES", "EVANS", "WILSON", "THOMAS", "JOHNSON"};
+	private static final String[] GIVEN_NAMES = {"OLIVIA", "AMELIA", "ISLA", "AVA", "NOAH", "OLIVER", "GEORGE", "HARRY", "LEO", "ARTHUR"};
+	private static final long BASE_TIME;
+
+	static {
+		Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		cal.clear();
+		cal.set(2018, Calendar.JANUARY, 1);
+		BASE_TIME = cal.getTimeInMillis();
+	}
+
+	private final Random myRandom;
+	private int myCounter;
+
+	public SyntheticDataGenerator() {
+		this(0L);
+	}
+
+	public SyntheticDataGenerator(long theSeed) {
+		myRandom = new Random(theSeed);
+	}
+
+	/**
+	 * Returns the date of the given day, where day 0 is 2018-01-01 (UTC). Observations
+	 * are spread over the 365 days starting at day 0.
+	 */
+	public static Date day(int theDay) {
+		return new Date(BASE_TIME + theDay * 24L * 60L * 60L * 1000L);
+	}
+
+	public Patient newPatient() {
+		int index = myCounter++;
+
+		Patient retVal = new Patient();
+		retVal.addIdentifier().setSystem(IDENTIFIER_SYSTEM).setValue("MRN" + index);
+		retVal.addName()
+			.setFamily(FAMILY_NAMES[myRandom.nextInt(FAMILY_NAMES.length)])
+			.addGiven(GIVEN_NAMES[myRandom.nextInt(GIVEN_NAMES.length)]);
+		retVal.setGender(myRandom.nextBoolean() ? Enumerations.AdministrativeGender.MALE : Enumerations.AdministrativeGender.FEMALE);
+		retVal.setBirthDate(new Date(BASE_TIME - (long) (myRandom.nextDouble() * 80 * 365.25 * 24 * 60 * 60 * 1000)));
+		retVal.addAddress().setCity("Toronto").setState("ON").setPostalCode("M5G " + myRandom.nextInt(10) + "A" + myRandom.nextInt(10));
+		retVal.setActive(true);
+		return retVal;
+	}
+
+	public Encounter newEncounter(Reference thePatient) {
+		Encounter retVal = new Encounter();
+		retVal.setStatus(Encounter.EncounterStatus.FINISHED);
+		retVal.getClass_().setSystem("http://terminology.hl7.org/CodeSystem/v3-ActCode").setCode("AMB");
+		retVal.setSubject(thePatient);
+		Date start = day(myRandom.nextInt(365));
+		retVal.getPeriod().setStart(start).setEnd(new Date(start.getTime() + 30L * 60L * 1000L));
+		return retVal;
+	}
+
+	/**
+	 * Creates an observation with a skewed distribution of codes (lower indexes
+	 * of {@link #OBSERVATION_CODES} are more common) and an effective date within
+	 * 2018
+	 */
+	public Observation newObservation(Reference thePatient, Reference theEncounter) {
+		int codeIndex = (int) Math.min(OBSERVATION_CODES.length - 1, Math.abs(myRandom.nextGaussian()) * 3);
+
+		Observation retVal = new Observation();
+		retVal.setStatus(Observation.ObservationStatus.FINAL);
+		retVal.addCategory().addCoding().setSystem("http://terminology.hl7.org/CodeSystem/observation-category").setCode("vital-signs");
+		retVal.getCode().addCoding().setSystem(LOINC_SYSTEM).setCode(OBSERVATION_CODES[codeIndex]);
+		retVal.setSubject(thePatient);
+		if (theEncounter != null) {
+			retVal.setEncounter(theEncounter);
+		}
+		retVal.setEffective(new DateTimeType(new Date(day(myRandom.nextInt(365)).getTime() + myRandom.nextInt(24 * 60 * 60 * 1000))));
+		retVal.setValue(new Quantity().setValue(myRandom.nextInt(20000) / 100.0).setSystem("http://unitsofmeasure.org").setCode("mm[Hg]").setUnit("mmHg"));
+		return retVal;
+	}
+
+	/**
+	 * Creates a transaction bundle containing a patient and an encounter, along with
+	 * the given number of observations which reference them. The references between
+	 * the entries use placeholder (<code>urn:uuid:</code>) IDs.
+	 */
+	public Bundle newPatientTransaction(int theObservationCount) {
+		Bundle retVal = new Bundle();
+		retVal.setType(Bundle.BundleType.TRANSACTION);
+
+		String patientFullUrl = "urn:uuid:" + UUID.randomUUID().toString();
+		retVal.addEntry()
+			.setFullUrl(patientFullUrl)
+			.setResource(newPatient())
+			.getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Patient");
+		Reference patientRef = new Reference(patientFullUrl);
+
+		String encounterFullUrl = "urn:uuid:" + UUID.randomUUID().toString();
+		retVal.addEntry()
+			.setFullUrl(encounterFullUrl)
+			.setResource(newEncounter(patientRef))
+			.getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Encounter");
+		Reference encounterRef = new Reference(encounterFullUrl);
+
+		for (int i = 0; i < theObservationCount; i++) {
+			retVal.addEntry()
+				.setResource(newObservation(patientRef, encounterRef))
+				.getRequest().setMethod(Bundle.HTTPVerb.POST).setUrl("Observation");
+		}
+
+		return retVal;
+	}
+
+}
@@ -0,0 +1,52 @@
+package ca.uhn.fhir.jpa.benchmark;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.dao.DaoMethodOutcome;
+import org.hl7.fhir.r4.model.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Benchmarks for updating existing patients
+ */
+public class UpdateBenchmark extends BaseJpaR4Benchmark {
+
+	/**
+	 * Updates a patient with its current contents, which should be detected as a
+	 * no-op and not create a new version
+	 */
+	@Benchmark
+	public DaoMethodOutcome updateWithNoChange() {
+		Patient patient = myPatientDao.read(randomPatientId());
+		patient.setId(patient.getIdElement().toUnqualifiedVersionless());
+		return myPatientDao.update(patient);
+	}
+
+	@Benchmark
+	public DaoMethodOutcome updateWithChange() {
+		Patient patient = myPatientDao.read(randomPatientId());
+		patient.setId(patient.getIdElement().toUnqualifiedVersionless());
+		patient.setActive(!patient.getActive());
+		return myPatientDao.update(patient);
+	}
+
+}
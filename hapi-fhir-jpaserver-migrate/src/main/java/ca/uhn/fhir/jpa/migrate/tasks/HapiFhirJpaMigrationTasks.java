@@ -52,6 +52,70 @@ public class HapiFhirJpaMigrationTasks extends BaseMigrationTasks<VersionEnum> {
 		init340();
 		init350();
 		init360();
+		init370();
+	}
+
+	private void init370() {
+		Builder version = forVersion(VersionEnum.V3_7_0);
+
+		// Reindex Job
+		Builder.BuilderWithTableName reindexJob = version.onTable("HFJ_RES_REINDEX_JOB");
+		version.startSectionWithMessage("Starting work on table: " + reindexJob.getTableName());
+		reindexJob
+			.addColumn("REINDEX_TOTAL")
+			.nullable()
+			.type(BaseTableColumnTypeTask.ColumnTypeEnum.INT);
+		reindexJob
+			.addColumn("JOB_STARTED")
+			.nullable()
+			.type(BaseTableColumnTypeTask.ColumnTypeEnum.DATE_TIMESTAMP);
+
+		// Search
+		Builder.BuilderWithTableName search = version.onTable("HFJ_SEARCH");
+		version.startSectionWithMessage("Starting work on table: " + search.getTableName());
+		search
+			.addColumn("TOTAL_COUNT_ESTIMATED")
+			.nullable()
+			.type(BaseTableColumnTypeTask.ColumnTypeEnum.BOOLEAN);
+
+		// Bulk Export
+		version.startSectionWithMessage("Starting work on table: HFJ_BLK_EXPORT_JOB");
+		version
+			.addTableRawSql("HFJ_BLK_EXPORT_JOB")
+			.addSql(DriverTypeEnum.MSSQL_2012, "create table HFJ_BLK_EXPORT_JOB (PID bigint not null, JOB_ID varchar(36) not null, JOB_STATUS varchar(10) not null, EXPORT_STYLE varchar(10) not null, GROUP_ID varchar(200), RESOURCE_TYPES varchar(1000), TYPE_FILTERS varchar(2000), EXPORT_SINCE datetime2, REQUEST varchar(1000) not null, CREATED_TIME datetime2 not null, STATUS_TIME datetime2 not null, STATUS_MESSAGE varchar(500), JOB_STARTED datetime2, EXP_TIME datetime2, RES_COUNT int, OPTLOCK int not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MSSQL_2012, "create unique index IDX_BLKEX_JOB_ID on HFJ_BLK_EXPORT_JOB (JOB_ID)")
+			.addSql(DriverTypeEnum.MSSQL_2012, "create index IDX_BLKEX_EXPTIME on HFJ_BLK_EXPORT_JOB (EXP_TIME)")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "create table HFJ_BLK_EXPORT_JOB (PID bigint not null, JOB_ID varchar(36) not null, JOB_STATUS varchar(10) not null, EXPORT_STYLE varchar(10) not null, GROUP_ID varchar(200), RESOURCE_TYPES varchar(1000), TYPE_FILTERS varchar(2000), EXPORT_SINCE timestamp, REQUEST varchar(1000) not null, CREATED_TIME timestamp not null, STATUS_TIME timestamp not null, STATUS_MESSAGE varchar(500), JOB_STARTED timestamp, EXP_TIME timestamp, RES_COUNT integer, OPTLOCK integer not null, primary key (PID))")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "create unique index IDX_BLKEX_JOB_ID on HFJ_BLK_EXPORT_JOB (JOB_ID)")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "create index IDX_BLKEX_EXPTIME on HFJ_BLK_EXPORT_JOB (EXP_TIME)")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "create table HFJ_BLK_EXPORT_JOB (PID bigint not null, JOB_ID varchar(36) not null, JOB_STATUS varchar(10) not null, EXPORT_STYLE varchar(10) not null, GROUP_ID varchar(200), RESOURCE_TYPES varchar(1000), TYPE_FILTERS varchar(2000), EXPORT_SINCE datetime(6), REQUEST varchar(1000) not null, CREATED_TIME datetime(6) not null, STATUS_TIME datetime(6) not null, STATUS_MESSAGE varchar(500), JOB_STARTED datetime(6), EXP_TIME datetime(6), RES_COUNT integer, OPTLOCK integer not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "create unique index IDX_BLKEX_JOB_ID on HFJ_BLK_EXPORT_JOB (JOB_ID)")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "create index IDX_BLKEX_EXPTIME on HFJ_BLK_EXPORT_JOB (EXP_TIME)")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "create table HFJ_BLK_EXPORT_JOB (PID int8 not null, JOB_ID varchar(36) not null, JOB_STATUS varchar(10) not null, EXPORT_STYLE varchar(10) not null, GROUP_ID varchar(200), RESOURCE_TYPES varchar(1000), TYPE_FILTERS varchar(2000), EXPORT_SINCE timestamp, REQUEST varchar(1000) not null, CREATED_TIME timestamp not null, STATUS_TIME timestamp not null, STATUS_MESSAGE varchar(500), JOB_STARTED timestamp, EXP_TIME timestamp, RES_COUNT int4, OPTLOCK int4 not null, primary key (PID))")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "create unique index IDX_BLKEX_JOB_ID on HFJ_BLK_EXPORT_JOB (JOB_ID)")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "create index IDX_BLKEX_EXPTIME on HFJ_BLK_EXPORT_JOB (EXP_TIME)")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "create table HFJ_BLK_EXPORT_JOB (PID bigint not null, JOB_ID varchar(36) not null, JOB_STATUS varchar(10) not null, EXPORT_STYLE varchar(10) not null, GROUP_ID varchar(200), RESOURCE_TYPES varchar(1000), TYPE_FILTERS varchar(2000), EXPORT_SINCE datetime(6), REQUEST varchar(1000) not null, CREATED_TIME datetime(6) not null, STATUS_TIME datetime(6) not null, STATUS_MESSAGE varchar(500), JOB_STARTED datetime(6), EXP_TIME datetime(6), RES_COUNT integer, OPTLOCK integer not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "create unique index IDX_BLKEX_JOB_ID on HFJ_BLK_EXPORT_JOB (JOB_ID)")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "create index IDX_BLKEX_EXPTIME on HFJ_BLK_EXPORT_JOB (EXP_TIME)")
+			.addSql(DriverTypeEnum.ORACLE_12C, "create table HFJ_BLK_EXPORT_JOB (PID number(19,0) not null, JOB_ID varchar2(36 char) not null, JOB_STATUS varchar2(10 char) not null, EXPORT_STYLE varchar2(10 char) not null, GROUP_ID varchar2(200 char), RESOURCE_TYPES varchar2(1000 char), TYPE_FILTERS varchar2(2000 char), EXPORT_SINCE timestamp, REQUEST varchar2(1000 char) not null, CREATED_TIME timestamp not null, STATUS_TIME timestamp not null, STATUS_MESSAGE varchar2(500 char), JOB_STARTED timestamp, EXP_TIME timestamp, RES_COUNT number(10,0), OPTLOCK number(10,0) not null, primary key (PID))")
+			.addSql(DriverTypeEnum.ORACLE_12C, "create unique index IDX_BLKEX_JOB_ID on HFJ_BLK_EXPORT_JOB (JOB_ID)")
+			.addSql(DriverTypeEnum.ORACLE_12C, "create index IDX_BLKEX_EXPTIME on HFJ_BLK_EXPORT_JOB (EXP_TIME)");
+
+		version.startSectionWithMessage("Starting work on table: HFJ_BLK_EXPORT_FILE");
+		version
+			.addTableRawSql("HFJ_BLK_EXPORT_FILE")
+			.addSql(DriverTypeEnum.MSSQL_2012, "create table HFJ_BLK_EXPORT_FILE (PID bigint not null, JOB_PID bigint not null, RES_TYPE varchar(30) not null, FILE_NAME varchar(200) not null, RES_COUNT int not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MSSQL_2012, "alter table HFJ_BLK_EXPORT_FILE add constraint FK_BLKEXFILE_JOB foreign key (JOB_PID) references HFJ_BLK_EXPORT_JOB")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "create table HFJ_BLK_EXPORT_FILE (PID bigint not null, JOB_PID bigint not null, RES_TYPE varchar(30) not null, FILE_NAME varchar(200) not null, RES_COUNT integer not null, primary key (PID))")
+			.addSql(DriverTypeEnum.DERBY_EMBEDDED, "alter table HFJ_BLK_EXPORT_FILE add constraint FK_BLKEXFILE_JOB foreign key (JOB_PID) references HFJ_BLK_EXPORT_JOB")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "create table HFJ_BLK_EXPORT_FILE (PID bigint not null, JOB_PID bigint not null, RES_TYPE varchar(30) not null, FILE_NAME varchar(200) not null, RES_COUNT integer not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MARIADB_10_1, "alter table HFJ_BLK_EXPORT_FILE add constraint FK_BLKEXFILE_JOB foreign key (JOB_PID) references HFJ_BLK_EXPORT_JOB (PID)")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "create table HFJ_BLK_EXPORT_FILE (PID int8 not null, JOB_PID int8 not null, RES_TYPE varchar(30) not null, FILE_NAME varchar(200) not null, RES_COUNT int4 not null, primary key (PID))")
+			.addSql(DriverTypeEnum.POSTGRES_9_4, "alter table HFJ_BLK_EXPORT_FILE add constraint FK_BLKEXFILE_JOB foreign key (JOB_PID) references HFJ_BLK_EXPORT_JOB")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "create table HFJ_BLK_EXPORT_FILE (PID bigint not null, JOB_PID bigint not null, RES_TYPE varchar(30) not null, FILE_NAME varchar(200) not null, RES_COUNT integer not null, primary key (PID))")
+			.addSql(DriverTypeEnum.MYSQL_5_7, "alter table HFJ_BLK_EXPORT_FILE add constraint FK_BLKEXFILE_JOB foreign key (JOB_PID) references HFJ_BLK_EXPORT_JOB (PID)")
+			.addSql(DriverTypeEnum.ORACLE_12C, "create table HFJ_BLK_EXPORT_FILE (PID number(19,0) not null, JOB_PID number(19,0) not null, RES_TYPE varchar2(30 char) not null, FILE_NAME varchar2(200 char) not null, RES_COUNT number(10,0) not null, primary key (PID))")
+			.addSql(DriverTypeEnum.ORACLE_12C, "alter table HFJ_BLK_EXPORT_FILE add constraint FK_BLKEXFILE_JOB foreign key (JOB_PID) references HFJ_BLK_EXPORT_JOB");
 	}
 
 	private void init360() {
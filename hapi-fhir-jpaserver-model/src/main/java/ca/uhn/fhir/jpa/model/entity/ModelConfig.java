@@ -58,6 +58,7 @@ public class ModelConfig {
 	private Set<Subscription.SubscriptionChannelType> mySupportedSubscriptionTypes = new HashSet<>();
 	private String myEmailFromAddress = "noreply@unknown.com";
 	private boolean mySubscriptionMatchingEnabled = true;
+	private boolean myIncrementalRegistryRefreshEnabled = false;
 
 	/**
 	 * If set to {@code true} the default search params (i.e. the search parameters that are
@@ -342,6 +343,32 @@ public class ModelConfig {
 		mySubscriptionMatchingEnabled = theSubscriptionMatchingEnabled;
 	}
 
+	/**
+	 * If set to <code>true</code> (default is false) the subscription registry and the search parameter
+	 * registry are refreshed incrementally. Instead of reloading every Subscription and SearchParameter
+	 * resource on each scheduled refresh, only the resources which have been modified since the previous
+	 * refresh (according to <code>_lastUpdated</code>) are loaded, and a full reload is only performed
+	 * occasionally in order to catch deletions which were not broadcast to this server.
+	 *
+	 * @since 3.7.0
+	 */
+	public boolean isIncrementalRegistryRefreshEnabled() {
+		return myIncrementalRegistryRefreshEnabled;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is false) the subscription registry and the search parameter
+	 * registry are refreshed incrementally. Instead of reloading every Subscription and SearchParameter
+	 * resource on each scheduled refresh, only the resources which have been modified since the previous
+	 * refresh (according to <code>_lastUpdated</code>) are loaded, and a full reload is only performed
+	 * occasionally in order to catch deletions which were not broadcast to this server.
+	 *
+	 * @since 3.7.0
+	 */
+	public void setIncrementalRegistryRefreshEnabled(boolean theIncrementalRegistryRefreshEnabled) {
+		myIncrementalRegistryRefreshEnabled = theIncrementalRegistryRefreshEnabled;
+	}
+
 	@VisibleForTesting
 	public void clearSupportedSubscriptionTypesForUnitTest() {
 		mySupportedSubscriptionTypes.clear();
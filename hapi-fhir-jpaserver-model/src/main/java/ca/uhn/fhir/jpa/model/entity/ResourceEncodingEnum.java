@@ -44,6 +44,11 @@ public enum ResourceEncodingEnum {
 	 */
 	JSONC,
 
+	/**
+	 * Smile (binary JSON) - Requires jackson-dataformat-smile on the classpath
+	 */
+	SMILE,
+
 	/**
 	 * Resource was deleted - No contents expected
 	 */
@@ -28,6 +28,9 @@ import ca.uhn.fhir.jpa.searchparam.JpaRuntimeSearchParam;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.searchparam.retry.Retrier;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.ParamPrefixEnum;
 import ca.uhn.fhir.util.SearchParameterUtil;
 import ca.uhn.fhir.util.StopWatch;
 import com.google.common.annotations.VisibleForTesting;
@@ -40,17 +43,28 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
-public abstract class BaseSearchParamRegistry<SP extends IBaseResource> implements ISearchParamRegistry {
+public abstract class BaseSearchParamRegistry<SP extends IBaseResource> implements ISearchParamRegistry, IRegistryChangeListener {
 
-	private static final int MAX_MANAGED_PARAM_COUNT = 10000;
+	/**
+	 * When refreshing incrementally, resources modified up to this long before the most
+	 * recent modification we have seen are loaded again, in case a transaction which
+	 * started earlier committed after the previous refresh
+	 */
+	static final long INCREMENTAL_REFRESH_OVERLAP_MILLIS = DateUtils.MILLIS_PER_MINUTE;
 	private static final Logger ourLog = LoggerFactory.getLogger(BaseSearchParamRegistry.class);
 	@VisibleForTesting
 	public static final int INITIAL_SECONDS_BETWEEN_RETRIES = 5;
 	private static long REFRESH_INTERVAL = 60 * DateUtils.MILLIS_PER_MINUTE;
+	/**
+	 * When refreshing incrementally, {@link #refreshCacheIfNecessary()} checks for modified
+	 * search parameters at most this often
+	 */
+	public static final long DEFAULT_INCREMENTAL_REFRESH_INTERVAL = 10 * DateUtils.MILLIS_PER_SECOND;
 	private static final int MAX_RETRIES = 60; // 5 minutes
 
 	@Autowired
@@ -59,6 +73,8 @@ public abstract class BaseSearchParamRegistry<SP extends IBaseResource> implemen
 	private ISearchParamProvider mySearchParamProvider;
 	@Autowired
 	private FhirContext myFhirContext;
+	@Autowired(required = false)
+	private IRegistryChangeChannel myRegistryChangeChannel;
 
 	private volatile int mySecondsBetweenRetries = INITIAL_SECONDS_BETWEEN_RETRIES;
 	private Map<String, Map<String, RuntimeSearchParam>> myBuiltInSearchParams;
@@ -66,6 +82,10 @@ public abstract class BaseSearchParamRegistry<SP extends IBaseResource> implemen
 	private volatile Map<String, Map<Set<String>, List<JpaRuntimeSearchParam>>> myActiveParamNamesToUniqueSearchParams = Collections.emptyMap();
 	private volatile Map<String, Map<String, RuntimeSearchParam>> myActiveSearchParams;
 	private volatile long myLastRefresh;
+	private volatile long myLastIncrementalRefresh;
+	private volatile long myIncrementalRefreshInterval = DEFAULT_INCREMENTAL_REFRESH_INTERVAL;
+	private final Map<String, SP> myStoredSearchParams = new HashMap<>();
+	private Date myLastUpdatedHighWaterMark;
 
 	@Override
 	public RuntimeSearchParam getActiveSearchParam(String theResourceName, String theParamName) {
@@ -221,90 +241,177 @@ public abstract class BaseSearchParamRegistry<SP extends IBaseResource> implemen
 		}
 
 		myBuiltInSearchParams = Collections.unmodifiableMap(resourceNameToSearchParams);
+
+		if (myRegistryChangeChannel != null) {
+			myRegistryChangeChannel.subscribe(this);
+		}
 	}
 
+	@PreDestroy
+	public void preDestroy() {
+		if (myRegistryChangeChannel != null) {
+			myRegistryChangeChannel.unsubscribe(this);
+		}
+	}
 
-	public int doRefresh(long theRefreshInterval) {
+	/**
+	 * Applies a change to a SearchParameter which was made by another node
+	 */
+	@Override
+	public void handleRegistryChange(RegistryChangeMessage theMessage) {
+		if (!"SearchParameter".equals(theMessage.getResourceType()) || !theMessage.isFromOtherNode()) {
+			return;
+		}
+		ourLog.debug("Received search parameter change: {}", theMessage);
+
+		if (!myModelConfig.isIncrementalRegistryRefreshEnabled()) {
+			forceRefresh();
+		} else if (theMessage.isDeleted()) {
+			removeStoredSearchParam(theMessage.getResourceId());
+		} else {
+			refreshCacheWithRetry();
+		}
+	}
+
+	private synchronized void removeStoredSearchParam(String theResourceId) {
+		if (myStoredSearchParams.remove(theResourceId) != null && myActiveSearchParams != null) {
+			rebuildActiveSearchParams();
+		}
+	}
+
+
+	/**
+	 * Reloads all of the stored search parameters if the refresh interval has elapsed since the
+	 * last full reload. Otherwise, if {@link ModelConfig#isIncrementalRegistryRefreshEnabled() incremental refresh}
+	 * is enabled, loads only the search parameters which have been modified since the last refresh.
+	 */
+	public synchronized int doRefresh(long theRefreshInterval) {
 		if (System.currentTimeMillis() - theRefreshInterval > myLastRefresh) {
 			StopWatch sw = new StopWatch();
 
-			Map<String, Map<String, RuntimeSearchParam>> searchParams = new HashMap<>();
-			for (Map.Entry<String, Map<String, RuntimeSearchParam>> nextBuiltInEntry : getBuiltInSearchParams().entrySet()) {
-				for (RuntimeSearchParam nextParam : nextBuiltInEntry.getValue().values()) {
-					String nextResourceName = nextBuiltInEntry.getKey();
-					getSearchParamMap(searchParams, nextResourceName).put(nextParam.getName(), nextParam);
-				}
-			}
+			SearchParameterMap params = new SearchParameterMap();
+			params.setLoadSynchronous(true);
+
+			myStoredSearchParams.clear();
+			myLastUpdatedHighWaterMark = null;
+			int count = loadStoredSearchParams(params);
+			rebuildActiveSearchParams();
+
+			myLastRefresh = System.currentTimeMillis();
+			myLastIncrementalRefresh = myLastRefresh;
+			ourLog.info("Refreshed search parameter cache with {} stored search parameters in {}ms", count, sw.getMillis());
+		} else if (myModelConfig.isIncrementalRegistryRefreshEnabled() && myActiveSearchParams != null) {
+			StopWatch sw = new StopWatch();
 
 			SearchParameterMap params = new SearchParameterMap();
-			params.setLoadSynchronousUpTo(MAX_MANAGED_PARAM_COUNT);
+			params.setLoadSynchronous(true);
+			if (myLastUpdatedHighWaterMark != null) {
+				Date since = new Date(myLastUpdatedHighWaterMark.getTime() - INCREMENTAL_REFRESH_OVERLAP_MILLIS);
+				params.setLastUpdated(new DateRangeParam(new DateParam(ParamPrefixEnum.GREATERTHAN_OR_EQUALS, since), null));
+			}
 
-			IBundleProvider allSearchParamsBp = mySearchParamProvider.search(params);
-			int size = allSearchParamsBp.size();
+			int count = loadStoredSearchParams(params);
+			myLastIncrementalRefresh = System.currentTimeMillis();
+			if (count > 0) {
+				rebuildActiveSearchParams();
+				ourLog.info("Applied {} modified search parameters in {}ms", count, sw.getMillis());
+			}
+		}
+		return myActiveSearchParams.size();
+	}
 
-			// Just in case..
-			if (size >= MAX_MANAGED_PARAM_COUNT) {
-				ourLog.warn("Unable to support >" + MAX_MANAGED_PARAM_COUNT + " search params!");
-				size = MAX_MANAGED_PARAM_COUNT;
+	/**
+	 * Loads the search parameters matching the given params into the stored search parameters
+	 *
+	 * @return The number of search parameters which were added or changed
+	 */
+	private int loadStoredSearchParams(SearchParameterMap theParams) {
+		IBundleProvider searchParamsBp = mySearchParamProvider.search(theParams);
+		Integer size = searchParamsBp.size();
+		List<IBaseResource> searchParams = size != null ? searchParamsBp.getResources(0, size) : Collections.emptyList();
+
+		int retVal = 0;
+		for (IBaseResource nextResource : searchParams) {
+			@SuppressWarnings("unchecked")
+			SP nextSp = (SP) nextResource;
+			if (nextSp == null) {
+				continue;
 			}
 
-			List<IBaseResource> allSearchParams = allSearchParamsBp.getResources(0, size);
-			for (IBaseResource nextResource : allSearchParams) {
-				SP nextSp = (SP) nextResource;
-				if (nextSp == null) {
-					continue;
-				}
+			Date lastUpdated = nextSp.getMeta().getLastUpdated();
+			if (lastUpdated != null && (myLastUpdatedHighWaterMark == null || lastUpdated.after(myLastUpdatedHighWaterMark))) {
+				myLastUpdatedHighWaterMark = lastUpdated;
+			}
 
-				RuntimeSearchParam runtimeSp = toRuntimeSp(nextSp);
-				if (runtimeSp == null) {
-					continue;
-				}
+			String key = nextSp.getIdElement().getIdPart();
+			if (isBlank(key)) {
+				key = "#" + myStoredSearchParams.size();
+			}
 
-				for (String nextBaseName : SearchParameterUtil.getBaseAsStrings(myFhirContext, nextSp)) {
-					if (isBlank(nextBaseName)) {
-						continue;
-					}
+			SP existing = myStoredSearchParams.put(key, nextSp);
+			if (existing == null || !Objects.equals(existing.getMeta().getVersionId(), nextSp.getMeta().getVersionId()) || isBlank(nextSp.getMeta().getVersionId())) {
+				retVal++;
+			}
+		}
 
-					Map<String, RuntimeSearchParam> searchParamMap = getSearchParamMap(searchParams, nextBaseName);
-					String name = runtimeSp.getName();
-					if (myModelConfig.isDefaultSearchParamsCanBeOverridden() || !searchParamMap.containsKey(name)) {
-						searchParamMap.put(name, runtimeSp);
-					}
+		return retVal;
+	}
 
-				}
+	private void rebuildActiveSearchParams() {
+		Map<String, Map<String, RuntimeSearchParam>> searchParams = new HashMap<>();
+		for (Map.Entry<String, Map<String, RuntimeSearchParam>> nextBuiltInEntry : getBuiltInSearchParams().entrySet()) {
+			for (RuntimeSearchParam nextParam : nextBuiltInEntry.getValue().values()) {
+				String nextResourceName = nextBuiltInEntry.getKey();
+				getSearchParamMap(searchParams, nextResourceName).put(nextParam.getName(), nextParam);
 			}
+		}
 
-			Map<String, Map<String, RuntimeSearchParam>> activeSearchParams = new HashMap<>();
-			for (Map.Entry<String, Map<String, RuntimeSearchParam>> nextEntry : searchParams.entrySet()) {
-				for (RuntimeSearchParam nextSp : nextEntry.getValue().values()) {
-					String nextName = nextSp.getName();
-					if (nextSp.getStatus() != RuntimeSearchParam.RuntimeSearchParamStatusEnum.ACTIVE) {
-						nextSp = null;
-					}
+		for (SP nextSp : myStoredSearchParams.values()) {
+			RuntimeSearchParam runtimeSp = toRuntimeSp(nextSp);
+			if (runtimeSp == null) {
+				continue;
+			}
 
-					if (!activeSearchParams.containsKey(nextEntry.getKey())) {
-						activeSearchParams.put(nextEntry.getKey(), new HashMap<>());
-					}
-					if (activeSearchParams.containsKey(nextEntry.getKey())) {
-						ourLog.debug("Replacing existing/built in search param {}:{} with new one", nextEntry.getKey(), nextName);
-					}
+			for (String nextBaseName : SearchParameterUtil.getBaseAsStrings(myFhirContext, nextSp)) {
+				if (isBlank(nextBaseName)) {
+					continue;
+				}
 
-					if (nextSp != null) {
-						activeSearchParams.get(nextEntry.getKey()).put(nextName, nextSp);
-					} else {
-						activeSearchParams.get(nextEntry.getKey()).remove(nextName);
-					}
+				Map<String, RuntimeSearchParam> searchParamMap = getSearchParamMap(searchParams, nextBaseName);
+				String name = runtimeSp.getName();
+				if (myModelConfig.isDefaultSearchParamsCanBeOverridden() || !searchParamMap.containsKey(name)) {
+					searchParamMap.put(name, runtimeSp);
 				}
+
 			}
+		}
 
-			myActiveSearchParams = activeSearchParams;
+		Map<String, Map<String, RuntimeSearchParam>> activeSearchParams = new HashMap<>();
+		for (Map.Entry<String, Map<String, RuntimeSearchParam>> nextEntry : searchParams.entrySet()) {
+			for (RuntimeSearchParam nextSp : nextEntry.getValue().values()) {
+				String nextName = nextSp.getName();
+				if (nextSp.getStatus() != RuntimeSearchParam.RuntimeSearchParamStatusEnum.ACTIVE) {
+					nextSp = null;
+				}
 
-			populateActiveSearchParams(activeSearchParams);
+				if (!activeSearchParams.containsKey(nextEntry.getKey())) {
+					activeSearchParams.put(nextEntry.getKey(), new HashMap<>());
+				}
+				if (activeSearchParams.containsKey(nextEntry.getKey())) {
+					ourLog.debug("Replacing existing/built in search param {}:{} with new one", nextEntry.getKey(), nextName);
+				}
 
-			myLastRefresh = System.currentTimeMillis();
-			ourLog.info("Refreshed search parameter cache in {}ms", sw.getMillis());
+				if (nextSp != null) {
+					activeSearchParams.get(nextEntry.getKey()).put(nextName, nextSp);
+				} else {
+					activeSearchParams.get(nextEntry.getKey()).remove(nextName);
+				}
+			}
 		}
-		return myActiveSearchParams.size();
+
+		myActiveSearchParams = activeSearchParams;
+
+		populateActiveSearchParams(activeSearchParams);
 	}
 
 	protected abstract RuntimeSearchParam toRuntimeSp(SP theNextSp);
@@ -349,12 +456,19 @@ public abstract class BaseSearchParamRegistry<SP extends IBaseResource> implemen
 	}
 
 	public void refreshCacheIfNecessary() {
+		long now = System.currentTimeMillis();
 		if (myActiveSearchParams == null ||
-			System.currentTimeMillis() - REFRESH_INTERVAL > myLastRefresh) {
+			now - REFRESH_INTERVAL > myLastRefresh ||
+			(myModelConfig.isIncrementalRegistryRefreshEnabled() && now - myLastIncrementalRefresh >= myIncrementalRefreshInterval)) {
 			refreshCacheWithRetry();
 		}
 	}
 
+	@VisibleForTesting
+	public void setIncrementalRefreshIntervalForUnitTest(long theIncrementalRefreshInterval) {
+		myIncrementalRefreshInterval = theIncrementalRefreshInterval;
+	}
+
 	@VisibleForTesting
 	public void setSecondsBetweenRetriesForTesting(int theSecondsBetweenRetries) {
 		mySecondsBetweenRetries = theSecondsBetweenRetries;
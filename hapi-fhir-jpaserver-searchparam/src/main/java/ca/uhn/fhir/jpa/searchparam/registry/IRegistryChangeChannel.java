@@ -0,0 +1,44 @@
+package ca.uhn.fhir.jpa.searchparam.registry;
+
+/*-
+ * #%L
+ * HAPI FHIR Search Parameters
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Channel used to tell the registries on every node in a cluster that a resource they
+ * hold (e.g. a SearchParameter or a Subscription) has changed, so that the change
+ * takes effect immediately instead of at the next scheduled refresh.
+ * <p>
+ * The default implementation ({@link LocalRegistryChangeChannel}) only delivers
+ * messages within the current JVM. Clustered deployments should provide an
+ * implementation backed by a message broker.
+ * </p>
+ */
+public interface IRegistryChangeChannel {
+
+	/**
+	 * Publish a message to all subscribed listeners (including those on other nodes)
+	 */
+	void publish(RegistryChangeMessage theMessage);
+
+	void subscribe(IRegistryChangeListener theListener);
+
+	void unsubscribe(IRegistryChangeListener theListener);
+
+}
@@ -0,0 +1,59 @@
+package ca.uhn.fhir.jpa.searchparam.registry;
+
+/*-
+ * #%L
+ * HAPI FHIR Search Parameters
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@link IRegistryChangeChannel} which delivers messages synchronously to the
+ * listeners in the current JVM only
+ */
+public class LocalRegistryChangeChannel implements IRegistryChangeChannel {
+	private static final Logger ourLog = LoggerFactory.getLogger(LocalRegistryChangeChannel.class);
+	private final List<IRegistryChangeListener> myListeners = new CopyOnWriteArrayList<>();
+
+	@Override
+	public void publish(RegistryChangeMessage theMessage) {
+		ourLog.debug("Publishing registry change: {}", theMessage);
+		for (IRegistryChangeListener next : myListeners) {
+			try {
+				next.handleRegistryChange(theMessage);
+			} catch (Exception e) {
+				ourLog.error("Failure handling registry change " + theMessage, e);
+			}
+		}
+	}
+
+	@Override
+	public void subscribe(IRegistryChangeListener theListener) {
+		myListeners.add(theListener);
+	}
+
+	@Override
+	public void unsubscribe(IRegistryChangeListener theListener) {
+		myListeners.remove(theListener);
+	}
+
+}
@@ -0,0 +1,110 @@
+package ca.uhn.fhir.jpa.searchparam.registry;
+
+/*-
+ * #%L
+ * HAPI FHIR Search Parameters
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Message broadcast through an {@link IRegistryChangeChannel} when a resource which is
+ * held in a registry (e.g. a SearchParameter or a Subscription) is created, updated
+ * or deleted.
+ */
+public class RegistryChangeMessage implements Serializable {
+
+	/**
+	 * Identifies the messages which were published by this JVM
+	 */
+	public static final String LOCAL_NODE_ID = UUID.randomUUID().toString();
+	private static final long serialVersionUID = 1L;
+
+	private final String myResourceType;
+	private final String myResourceId;
+	private final boolean myDeleted;
+	private final String myNodeId;
+
+	/**
+	 * Constructor for a change made by this JVM
+	 *
+	 * @param theResourceType The resource type, e.g. "SearchParameter"
+	 * @param theResourceId   The ID part of the resource ID (without a resource type or version)
+	 * @param theDeleted      Was the resource deleted?
+	 */
+	public RegistryChangeMessage(String theResourceType, String theResourceId, boolean theDeleted) {
+		this(theResourceType, theResourceId, theDeleted, LOCAL_NODE_ID);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theResourceType The resource type, e.g. "SearchParameter"
+	 * @param theResourceId   The ID part of the resource ID (without a resource type or version)
+	 * @param theDeleted      Was the resource deleted?
+	 * @param theNodeId       Identifies the node which made the change
+	 */
+	public RegistryChangeMessage(String theResourceType, String theResourceId, boolean theDeleted, String theNodeId) {
+		Validate.notBlank(theResourceType, "theResourceType must not be blank");
+		Validate.notBlank(theResourceId, "theResourceId must not be blank");
+		Validate.notBlank(theNodeId, "theNodeId must not be blank");
+		myResourceType = theResourceType;
+		myResourceId = theResourceId;
+		myDeleted = theDeleted;
+		myNodeId = theNodeId;
+	}
+
+	public String getResourceType() {
+		return myResourceType;
+	}
+
+	public String getResourceId() {
+		return myResourceId;
+	}
+
+	public boolean isDeleted() {
+		return myDeleted;
+	}
+
+	public String getNodeId() {
+		return myNodeId;
+	}
+
+	/**
+	 * Was this change made by another node? Changes made by this JVM have already
+	 * been applied to its registries by the time the message is published.
+	 */
+	public boolean isFromOtherNode() {
+		return !LOCAL_NODE_ID.equals(myNodeId);
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+			.append("resourceType", myResourceType)
+			.append("resourceId", myResourceId)
+			.append("deleted", myDeleted)
+			.append("nodeId", myNodeId)
+			.toString();
+	}
+}
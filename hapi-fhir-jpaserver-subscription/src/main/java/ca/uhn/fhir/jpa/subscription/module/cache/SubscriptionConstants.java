@@ -81,8 +81,10 @@ public class SubscriptionConstants {
 
 	/**
 	 * The maximum number of subscriptions that can be active at once
+	 *
+	 * @deprecated The number of subscriptions which are loaded is no longer limited. This constant is not used.
 	 */
-
+	@Deprecated
 	public static final int MAX_SUBSCRIPTION_RESULTS = 1000;
 
 	/**
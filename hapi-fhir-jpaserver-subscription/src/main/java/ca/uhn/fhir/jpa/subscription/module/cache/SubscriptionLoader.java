@@ -20,9 +20,17 @@ package ca.uhn.fhir.jpa.subscription.module.cache;
  * #L%
  */
 
+import ca.uhn.fhir.jpa.model.entity.ModelConfig;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.searchparam.registry.IRegistryChangeChannel;
+import ca.uhn.fhir.jpa.searchparam.registry.IRegistryChangeListener;
+import ca.uhn.fhir.jpa.searchparam.registry.RegistryChangeMessage;
 import ca.uhn.fhir.jpa.searchparam.retry.Retrier;
+import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.ParamPrefixEnum;
 import ca.uhn.fhir.rest.param.TokenOrListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
 import com.google.common.annotations.VisibleForTesting;
@@ -36,6 +44,10 @@ import org.springframework.context.annotation.Lazy;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -44,21 +56,70 @@ import java.util.concurrent.Semaphore;
 
 @Service
 @Lazy
-public class SubscriptionLoader {
+public class SubscriptionLoader implements IRegistryChangeListener {
 	private static final Logger ourLog = LoggerFactory.getLogger(SubscriptionLoader.class);
 	@VisibleForTesting
 	public static final int INITIAL_SECONDS_BETWEEN_RETRIES = 5;
 	private static final int MAX_RETRIES = 60; // 60 * 5 seconds = 5 minutes
+	/**
+	 * When syncing incrementally, all subscriptions are still reloaded this often in order
+	 * to catch deletions which weren't broadcast to this server
+	 */
+	private static final long FULL_SYNC_INTERVAL = DateUtils.MILLIS_PER_HOUR;
+	/**
+	 * When syncing incrementally, subscriptions modified up to this long before the most
+	 * recent modification we have seen are loaded again, in case a transaction which
+	 * started earlier committed after the previous sync
+	 */
+	@VisibleForTesting
+	public static final long INCREMENTAL_SYNC_OVERLAP_MILLIS = DateUtils.MILLIS_PER_MINUTE;
 
 	@Autowired
 	private ISubscriptionProvider mySubscriptionProvidor;
 	@Autowired
 	private SubscriptionRegistry mySubscriptionRegistry;
+	@Autowired
+	private ModelConfig myModelConfig;
+	@Autowired(required = false)
+	private IRegistryChangeChannel myRegistryChangeChannel;
 
 	private final Object mySyncSubscriptionsLock = new Object();
 	private Semaphore mySyncSubscriptionsSemaphore = new Semaphore(1);
 
 	private volatile int mySecondsBetweenRetries = INITIAL_SECONDS_BETWEEN_RETRIES;
+	private long myLastFullSync;
+	private Date myLastUpdatedHighWaterMark;
+
+	@PostConstruct
+	public void start() {
+		if (myRegistryChangeChannel != null) {
+			myRegistryChangeChannel.subscribe(this);
+		}
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (myRegistryChangeChannel != null) {
+			myRegistryChangeChannel.unsubscribe(this);
+		}
+	}
+
+	/**
+	 * Applies a change to a Subscription which was made by another node
+	 */
+	@Override
+	public void handleRegistryChange(RegistryChangeMessage theMessage) {
+		if (!"Subscription".equals(theMessage.getResourceType()) || !theMessage.isFromOtherNode()) {
+			return;
+		}
+		ourLog.debug("Received subscription change: {}", theMessage);
+
+		if (theMessage.isDeleted()) {
+			mySubscriptionRegistry.unregisterSubscription(new IdDt("Subscription", theMessage.getResourceId()));
+		} else {
+			doSyncSubscriptionsWithRetry();
+		}
+	}
 
 	/**
 	 * Read the existing subscriptions from the database
@@ -76,6 +137,16 @@ public class SubscriptionLoader {
 		}
 	}
 
+	/**
+	 * Causes the next sync to reload all subscriptions, even if
+	 * {@link ModelConfig#isIncrementalRegistryRefreshEnabled() incremental refresh} is enabled
+	 */
+	public void requestFullSync() {
+		synchronized (mySyncSubscriptionsLock) {
+			myLastFullSync = 0;
+		}
+	}
+
 	@VisibleForTesting
 	public int doSyncSubscriptionsForUnitTest() {
 		return doSyncSubscriptionsWithRetry();
@@ -88,38 +159,85 @@ public class SubscriptionLoader {
 
 	private int doSyncSubscriptions() {
 		synchronized (mySyncSubscriptionsLock) {
-			ourLog.debug("Starting sync subscriptions");
-			SearchParameterMap map = new SearchParameterMap();
-			map.add(Subscription.SP_STATUS, new TokenOrListParam()
-				// TODO KHS perhaps we should only be requesting ACTIVE subscriptions here?...
-				.addOr(new TokenParam(null, Subscription.SubscriptionStatus.REQUESTED.toCode()))
-				.addOr(new TokenParam(null, Subscription.SubscriptionStatus.ACTIVE.toCode())));
-			map.setLoadSynchronousUpTo(SubscriptionConstants.MAX_SUBSCRIPTION_RESULTS);
-
-			IBundleProvider subscriptionBundleList = mySubscriptionProvidor.search(map);
-
-			if (subscriptionBundleList.size() >= SubscriptionConstants.MAX_SUBSCRIPTION_RESULTS) {
-				ourLog.error("Currently over " + SubscriptionConstants.MAX_SUBSCRIPTION_RESULTS + " subscriptions.  Some subscriptions have not been loaded.");
+			boolean fullSyncDue = System.currentTimeMillis() - FULL_SYNC_INTERVAL > myLastFullSync;
+			if (myModelConfig.isIncrementalRegistryRefreshEnabled() && !fullSyncDue) {
+				return doSyncModifiedSubscriptions();
 			}
+			return doSyncAllSubscriptions();
+		}
+	}
+
+	private int doSyncAllSubscriptions() {
+		ourLog.debug("Starting sync subscriptions");
+		SearchParameterMap map = new SearchParameterMap();
+		map.add(Subscription.SP_STATUS, new TokenOrListParam()
+			// TODO KHS perhaps we should only be requesting ACTIVE subscriptions here?...
+			.addOr(new TokenParam(null, Subscription.SubscriptionStatus.REQUESTED.toCode()))
+			.addOr(new TokenParam(null, Subscription.SubscriptionStatus.ACTIVE.toCode())));
+		map.setLoadSynchronous(true);
+
+		myLastUpdatedHighWaterMark = null;
+		List<IBaseResource> resourceList = loadSubscriptions(map);
+
+		Set<String> allIds = new HashSet<>();
+		int changesCount = 0;
+		for (IBaseResource resource : resourceList) {
+			String nextId = resource.getIdElement().getIdPart();
+			allIds.add(nextId);
+			boolean changed = mySubscriptionProvidor.loadSubscription(resource);
+			if (changed) {
+				changesCount++;
+			}
+		}
+
+		mySubscriptionRegistry.unregisterAllSubscriptionsNotInCollection(allIds);
+		myLastFullSync = System.currentTimeMillis();
+		ourLog.debug("Finished sync subscriptions - found {}", resourceList.size());
+
+		return changesCount;
+	}
+
+	/**
+	 * Loads only the subscriptions which have been modified since the last sync. Subscriptions
+	 * of any status are loaded, so that ones which are no longer active are unregistered.
+	 */
+	private int doSyncModifiedSubscriptions() {
+		SearchParameterMap map = new SearchParameterMap();
+		if (myLastUpdatedHighWaterMark != null) {
+			Date since = new Date(myLastUpdatedHighWaterMark.getTime() - INCREMENTAL_SYNC_OVERLAP_MILLIS);
+			map.setLastUpdated(new DateRangeParam(new DateParam(ParamPrefixEnum.GREATERTHAN_OR_EQUALS, since), null));
+		}
+		map.setLoadSynchronous(true);
+
+		List<IBaseResource> resourceList = loadSubscriptions(map);
 
-			List<IBaseResource> resourceList = subscriptionBundleList.getResources(0, subscriptionBundleList.size());
-
-			Set<String> allIds = new HashSet<>();
-			int changesCount = 0;
-			for (IBaseResource resource : resourceList) {
-				String nextId = resource.getIdElement().getIdPart();
-				allIds.add(nextId);
-				boolean changed = mySubscriptionProvidor.loadSubscription(resource);
-				if (changed) {
-					changesCount++;
-				}
+		int changesCount = 0;
+		for (IBaseResource resource : resourceList) {
+			boolean changed = mySubscriptionProvidor.loadSubscription(resource);
+			if (changed) {
+				changesCount++;
 			}
+		}
 
-			mySubscriptionRegistry.unregisterAllSubscriptionsNotInCollection(allIds);
-			ourLog.debug("Finished sync subscriptions - found {}", resourceList.size());
+		ourLog.debug("Finished incremental sync subscriptions - found {} modified", resourceList.size());
+		return changesCount;
+	}
 
-			return changesCount;
+	private List<IBaseResource> loadSubscriptions(SearchParameterMap theMap) {
+		IBundleProvider subscriptionBundleList = mySubscriptionProvidor.search(theMap);
+		Integer size = subscriptionBundleList.size();
+		if (size == null || size == 0) {
+			return Collections.emptyList();
+		}
+
+		List<IBaseResource> retVal = subscriptionBundleList.getResources(0, size);
+		for (IBaseResource next : retVal) {
+			Date lastUpdated = next.getMeta().getLastUpdated();
+			if (lastUpdated != null && (myLastUpdatedHighWaterMark == null || lastUpdated.after(myLastUpdatedHighWaterMark))) {
+				myLastUpdatedHighWaterMark = lastUpdated;
+			}
 		}
+		return retVal;
 	}
 
 	@VisibleForTesting
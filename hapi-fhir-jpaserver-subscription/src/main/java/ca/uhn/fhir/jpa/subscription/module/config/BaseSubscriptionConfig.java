@@ -21,6 +21,8 @@ package ca.uhn.fhir.jpa.subscription.module.config;
  */
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.searchparam.registry.IRegistryChangeChannel;
+import ca.uhn.fhir.jpa.searchparam.registry.LocalRegistryChangeChannel;
 import ca.uhn.fhir.jpa.subscription.module.cache.ISubscribableChannelFactory;
 import ca.uhn.fhir.jpa.subscription.module.cache.LinkedBlockingQueueSubscribableChannelFactory;
 import org.springframework.context.annotation.Bean;
@@ -38,4 +40,13 @@ public abstract class BaseSubscriptionConfig {
 	public ISubscribableChannelFactory blockingQueueSubscriptionDeliveryChannelFactory() {
 		return new LinkedBlockingQueueSubscribableChannelFactory();
 	}
+
+	/**
+	 * Create a @Primary @Bean if you need a different implementation (e.g. one which
+	 * receives changes from the other nodes in a cluster)
+	 */
+	@Bean
+	public IRegistryChangeChannel localRegistryChangeChannel() {
+		return new LocalRegistryChangeChannel();
+	}
 }
@@ -37,6 +37,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Service
 public class FhirClientSearchParamProvider implements ISearchParamProvider {
 	private static final Logger ourLog = LoggerFactory.getLogger(FhirClientSearchParamProvider.class);
@@ -52,13 +55,22 @@ public class FhirClientSearchParamProvider implements ISearchParamProvider {
 	public IBundleProvider search(SearchParameterMap theParams) {
 		FhirContext fhirContext = myClient.getFhirContext();
 
+		String searchURL = ResourceTypeEnum.SEARCHPARAMETER.getCode() + theParams.toNormalizedQueryString(fhirContext);
+
 		IBaseBundle bundle = myClient
 			.search()
-			.forResource(ResourceTypeEnum.SEARCHPARAMETER.getCode())
+			.byUrl(searchURL)
 			.cacheControl(new CacheControlDirective().setNoCache(true))
 			.execute();
 
-		return new SimpleBundleProvider(BundleUtil.toListOfResources(fhirContext, bundle));
+		// Follow the paging links so that all of the search parameters are loaded
+		List<IBaseResource> resources = new ArrayList<>(BundleUtil.toListOfResources(fhirContext, bundle));
+		while (BundleUtil.getLinkUrlOfType(fhirContext, bundle, IBaseBundle.LINK_NEXT) != null) {
+			bundle = myClient.loadPage().next(bundle).execute();
+			resources.addAll(BundleUtil.toListOfResources(fhirContext, bundle));
+		}
+
+		return new SimpleBundleProvider(resources);
 	}
 
 	@Override
@@ -35,6 +35,9 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Service
 public class FhirClientSubscriptionProvider implements ISubscriptionProvider {
 	@Autowired
@@ -61,7 +64,14 @@ public class FhirClientSubscriptionProvider implements ISubscriptionProvider {
 			.cacheControl(new CacheControlDirective().setNoCache(true))
 			.execute();
 
-		return new SimpleBundleProvider(BundleUtil.toListOfResources(fhirContext, bundle));
+		// Follow the paging links so that all of the matching subscriptions are loaded
+		List<IBaseResource> resources = new ArrayList<>(BundleUtil.toListOfResources(fhirContext, bundle));
+		while (BundleUtil.getLinkUrlOfType(fhirContext, bundle, IBaseBundle.LINK_NEXT) != null) {
+			bundle = myClient.loadPage().next(bundle).execute();
+			resources.addAll(BundleUtil.toListOfResources(fhirContext, bundle));
+		}
+
+		return new SimpleBundleProvider(resources);
 	}
 
 	@Override
@@ -4,6 +4,8 @@ import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.subscription.module.standalone.FhirClientSubscriptionProvider;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 
+import java.util.List;
+
 public class MockFhirClientSubscriptionProvider extends FhirClientSubscriptionProvider {
 	private final MockProvider myMockProvider = new MockProvider();
 
@@ -14,6 +16,7 @@ public class MockFhirClientSubscriptionProvider extends FhirClientSubscriptionPr
 	public void setBundleProvider(IBundleProvider theBundleProvider) { myMockProvider.setBundleProvider(theBundleProvider); }
 	public void setFailCount(int theFailCount) { myMockProvider.setFailCount(theFailCount); }
 	public int getFailCount() { return myMockProvider.getFailCount(); }
+	public List<SearchParameterMap> getSearches() { return myMockProvider.getSearches(); }
 
 	@Override
 	public IBundleProvider search(SearchParameterMap theParams) { return myMockProvider.search(theParams); }
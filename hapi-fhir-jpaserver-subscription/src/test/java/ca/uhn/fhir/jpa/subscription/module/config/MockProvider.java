@@ -4,15 +4,20 @@ import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.SimpleBundleProvider;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class MockProvider {
 	private IBundleProvider myBundleProvider = new SimpleBundleProvider();
 	private int myFailCount = 0;
+	private final List<SearchParameterMap> mySearches = new ArrayList<>();
 
 	public void setBundleProvider(IBundleProvider theBundleProvider) {
 		myBundleProvider = theBundleProvider;
 	}
 
 	public IBundleProvider search(SearchParameterMap theParams) {
+		mySearches.add(theParams);
 		if (myFailCount > 0) {
 			--myFailCount;
 			throw new RuntimeException("Mock Search Failed");
@@ -28,4 +33,8 @@ public class MockProvider {
 		return myFailCount;
 	}
 
+	public List<SearchParameterMap> getSearches() {
+		return mySearches;
+	}
+
 }
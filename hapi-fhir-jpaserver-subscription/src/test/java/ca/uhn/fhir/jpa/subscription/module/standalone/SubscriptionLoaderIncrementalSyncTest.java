@@ -0,0 +1,137 @@
+package ca.uhn.fhir.jpa.subscription.module.standalone;
+
+import ca.uhn.fhir.jpa.model.entity.ModelConfig;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.searchparam.registry.BaseSearchParamRegistry;
+import ca.uhn.fhir.jpa.searchparam.registry.IRegistryChangeChannel;
+import ca.uhn.fhir.jpa.searchparam.registry.RegistryChangeMessage;
+import ca.uhn.fhir.jpa.subscription.module.cache.SubscriptionLoader;
+import ca.uhn.fhir.jpa.subscription.module.config.MockFhirClientSubscriptionProvider;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import org.hl7.fhir.dstu3.model.Subscription;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SubscriptionLoaderIncrementalSyncTest extends BaseBlockingQueueSubscribableChannelDstu3Test {
+	@Autowired
+	private MockFhirClientSubscriptionProvider myMockFhirClientSubscriptionProvider;
+	@Autowired
+	private SubscriptionLoader mySubscriptionLoader;
+	@Autowired
+	private ModelConfig myModelConfig;
+	@Autowired
+	private IRegistryChangeChannel myRegistryChangeChannel;
+
+	private final String myPayload = "application/fhir+json";
+
+	@Before
+	public void before() {
+		myModelConfig.setIncrementalRegistryRefreshEnabled(true);
+		mySubscriptionLoader.setSecondsBetweenRetriesForTesting(0);
+		mySubscriptionLoader.requestFullSync();
+		myMockFhirClientSubscriptionProvider.getSearches().clear();
+	}
+
+	@After
+	public void after() {
+		myModelConfig.setIncrementalRegistryRefreshEnabled(new ModelConfig().isIncrementalRegistryRefreshEnabled());
+		mySubscriptionLoader.setSecondsBetweenRetriesForTesting(BaseSearchParamRegistry.INITIAL_SECONDS_BETWEEN_RETRIES);
+		mySubscriptionLoader.requestFullSync();
+		myMockFhirClientSubscriptionProvider.setBundleProvider(new SimpleBundleProvider());
+	}
+
+	private Subscription createSubscription(String theCodeSuffix, Date theLastUpdated) {
+		String criteria = "Observation?code=SNOMED-CT|" + myCode + theCodeSuffix + "&_format=xml";
+		Subscription retVal = returnedActiveSubscription(criteria, myPayload, ourListenerServerBase);
+		retVal.getMeta().setLastUpdated(theLastUpdated);
+		return retVal;
+	}
+
+	private void sync(int theExpectedRegistrations, Subscription... theSubscriptions) throws InterruptedException {
+		myMockFhirClientSubscriptionProvider.setBundleProvider(new SimpleBundleProvider(new ArrayList<>(Arrays.asList(theSubscriptions)), "uuid"));
+		if (theExpectedRegistrations > 0) {
+			mySubscriptionActivatedPost.setExpectedCount(theExpectedRegistrations);
+		}
+		mySubscriptionLoader.doSyncSubscriptionsForUnitTest();
+		if (theExpectedRegistrations > 0) {
+			mySubscriptionActivatedPost.awaitExpected();
+		}
+	}
+
+	private SearchParameterMap getLastSearch() {
+		List<SearchParameterMap> searches = myMockFhirClientSubscriptionProvider.getSearches();
+		return searches.get(searches.size() - 1);
+	}
+
+	@Test
+	public void testIncrementalSyncOnlyLoadsModifiedSubscriptions() throws Exception {
+		Date lastUpdated = new Date(System.currentTimeMillis() - 10000);
+		Subscription subscription1 = createSubscription("1", lastUpdated);
+		Subscription subscription2 = createSubscription("2", new Date());
+
+		// The first sync is a full one
+		sync(1, subscription1);
+		assertNull(getLastSearch().getLastUpdated());
+		assertEquals(1, mySubscriptionRegistry.size());
+
+		// Subsequent ones only ask for recently modified subscriptions, and don't unregister the ones not returned
+		sync(1, subscription2);
+		assertNotNull(getLastSearch().getLastUpdated());
+		Date expectedLowerBound = new Date(lastUpdated.getTime() - SubscriptionLoader.INCREMENTAL_SYNC_OVERLAP_MILLIS);
+		assertEquals(expectedLowerBound, getLastSearch().getLastUpdated().getLowerBoundAsInstant());
+		assertEquals(2, mySubscriptionRegistry.size());
+
+		// A full sync removes the subscriptions which no longer exist
+		mySubscriptionLoader.requestFullSync();
+		sync(0, subscription2);
+		assertNull(getLastSearch().getLastUpdated());
+		assertEquals(1, mySubscriptionRegistry.size());
+		assertNull(mySubscriptionRegistry.get(subscription1.getIdElement().getIdPart()));
+		assertNotNull(mySubscriptionRegistry.get(subscription2.getIdElement().getIdPart()));
+	}
+
+	@Test
+	public void testChangesFromOtherNodesAreAppliedImmediately() throws Exception {
+		Subscription subscription1 = createSubscription("1", new Date());
+		Subscription subscription2 = createSubscription("2", new Date());
+		sync(2, subscription1, subscription2);
+		assertEquals(2, mySubscriptionRegistry.size());
+		int searchCount = myMockFhirClientSubscriptionProvider.getSearches().size();
+
+		// Messages published by this node have already been applied, so are ignored
+		myRegistryChangeChannel.publish(new RegistryChangeMessage("Subscription", subscription1.getIdElement().getIdPart(), true));
+		assertEquals(2, mySubscriptionRegistry.size());
+
+		// Messages about other resource types are ignored
+		myRegistryChangeChannel.publish(new RegistryChangeMessage("SearchParameter", subscription1.getIdElement().getIdPart(), true, "OTHER-NODE"));
+		assertEquals(2, mySubscriptionRegistry.size());
+
+		// A deletion is applied without searching
+		myRegistryChangeChannel.publish(new RegistryChangeMessage("Subscription", subscription1.getIdElement().getIdPart(), true, "OTHER-NODE"));
+		assertEquals(1, mySubscriptionRegistry.size());
+		assertNull(mySubscriptionRegistry.get(subscription1.getIdElement().getIdPart()));
+		assertEquals(searchCount, myMockFhirClientSubscriptionProvider.getSearches().size());
+
+		// A modification triggers an incremental sync
+		Subscription subscription3 = createSubscription("3", new Date());
+		myMockFhirClientSubscriptionProvider.setBundleProvider(new SimpleBundleProvider(new ArrayList<>(Collections.singletonList(subscription3)), "uuid"));
+		mySubscriptionActivatedPost.setExpectedCount(1);
+		myRegistryChangeChannel.publish(new RegistryChangeMessage("Subscription", subscription3.getIdElement().getIdPart(), false, "OTHER-NODE"));
+		mySubscriptionActivatedPost.awaitExpected();
+		assertEquals(searchCount + 1, myMockFhirClientSubscriptionProvider.getSearches().size());
+		assertNotNull(getLastSearch().getLastUpdated());
+		assertEquals(2, mySubscriptionRegistry.size());
+		assertNotNull(mySubscriptionRegistry.get(subscription3.getIdElement().getIdPart()));
+	}
+
+}
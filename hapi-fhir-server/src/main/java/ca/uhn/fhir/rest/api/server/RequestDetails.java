@@ -4,6 +4,7 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.RequestTypeEnum;
 import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.server.CompressionEncodingEnum;
 import ca.uhn.fhir.rest.server.IRestfulServerDefaults;
 import ca.uhn.fhir.rest.server.interceptor.IServerInterceptor;
 import ca.uhn.fhir.rest.server.interceptor.IServerOperationInterceptor;
@@ -59,6 +60,7 @@ public abstract class RequestDetails {
 	private RequestTypeEnum myRequestType;
 	private String myResourceName;
 	private boolean myRespondGzip;
+	private CompressionEncodingEnum myResponseCompressionEncoding;
 	private IRestfulResponse myResponse;
 	private RestOperationTypeEnum myRestOperationType;
 	private String mySecondaryOperation;
@@ -350,6 +352,30 @@ public abstract class RequestDetails {
 		return myUserData;
 	}
 
+	/**
+	 * Returns the content encoding which was negotiated for compressing the response to this
+	 * request, or <code>null</code> if the response will not be compressed
+	 *
+	 * @since 3.7.0
+	 */
+	public CompressionEncodingEnum getResponseCompressionEncoding() {
+		return myResponseCompressionEncoding;
+	}
+
+	/**
+	 * Sets the content encoding which will be used to compress the response to this request
+	 *
+	 * @since 3.7.0
+	 */
+	public void setResponseCompressionEncoding(CompressionEncodingEnum theResponseCompressionEncoding) {
+		myResponseCompressionEncoding = theResponseCompressionEncoding;
+	}
+
+	/**
+	 * Should the response be compressed? Despite the name, this flag applies to any of the
+	 * encodings in {@link CompressionEncodingEnum}; see {@link #getResponseCompressionEncoding()}
+	 * for the encoding which will be used.
+	 */
 	public boolean isRespondGzip() {
 		return myRespondGzip;
 	}
@@ -0,0 +1,106 @@
+package ca.uhn.fhir.rest.server;
+
+/*
+ * #%L
+ * HAPI FHIR - Server Framework
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content encodings which the server is able to use when compressing responses
+ *
+ * @see ResponseCompressionSettings#setEncodings(java.util.List)
+ * @since 3.7.0
+ */
+public enum CompressionEncodingEnum {
+
+	/**
+	 * <code>Content-Encoding: gzip</code>
+	 */
+	GZIP("gzip") {
+		@Override
+		public OutputStream newOutputStream(OutputStream theOutputStream, int theLevel, int theBufferSize) throws IOException {
+			return new GZIPOutputStream(theOutputStream, theBufferSize) {
+				{
+					def.setLevel(theLevel);
+				}
+			};
+		}
+	},
+
+	/**
+	 * <code>Content-Encoding: deflate</code> (zlib format, as specified by RFC 7230)
+	 */
+	DEFLATE("deflate") {
+		@Override
+		public OutputStream newOutputStream(OutputStream theOutputStream, int theLevel, int theBufferSize) {
+			Deflater deflater = new Deflater(theLevel);
+			return new DeflaterOutputStream(theOutputStream, deflater, theBufferSize) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						deflater.end();
+					}
+				}
+			};
+		}
+	};
+
+	private final String myHeaderValue;
+
+	CompressionEncodingEnum(String theHeaderValue) {
+		myHeaderValue = theHeaderValue;
+	}
+
+	/**
+	 * Returns the value used for this encoding in the <code>Accept-Encoding</code> and
+	 * <code>Content-Encoding</code> headers
+	 */
+	public String getHeaderValue() {
+		return myHeaderValue;
+	}
+
+	/**
+	 * Wraps the given stream in a stream which compresses everything written to it using this encoding
+	 *
+	 * @param theOutputStream The stream to write compressed data to
+	 * @param theLevel        The compression level (0-9, or {@link Deflater#DEFAULT_COMPRESSION})
+	 * @param theBufferSize   The size of the compressor output buffer
+	 */
+	public abstract OutputStream newOutputStream(OutputStream theOutputStream, int theLevel, int theBufferSize) throws IOException;
+
+	/**
+	 * Returns the encoding with the given header value, or <code>null</code> if none matches
+	 */
+	public static CompressionEncodingEnum forHeaderValue(String theHeaderValue) {
+		for (CompressionEncodingEnum next : values()) {
+			if (next.getHeaderValue().equalsIgnoreCase(theHeaderValue)) {
+				return next;
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,296 @@
+package ca.uhn.fhir.rest.server;
+
+/*
+ * #%L
+ * HAPI FHIR - Server Framework
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Settings controlling how {@link RestfulServer} compresses responses, along with
+ * counters describing the compression which has been performed.
+ * <p>
+ * The content encoding is negotiated using the <code>Accept-Encoding</code> header sent
+ * by the client. Where the client accepts several of the enabled encodings with the same
+ * quality value, the one listed first in {@link #getEncodings()} is used. By default only
+ * gzip is enabled, and a wildcard (<code>*</code>) in the header is ignored, so a response
+ * is only compressed if the client explicitly asks for gzip.
+ * </p>
+ * <p>
+ * Responses are streamed through the compressor as they are generated. If a
+ * {@link #setMinimumResponseSizeBytes(int) minimum response size} is set, up to that many
+ * bytes are held in memory until it is known whether the response is large enough to
+ * be worth compressing.
+ * </p>
+ *
+ * @see RestfulServer#setResponseCompressionSettings(ResponseCompressionSettings)
+ * @since 3.7.0
+ */
+public class ResponseCompressionSettings {
+
+	/**
+	 * Default value for {@link #getBufferSize()}
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private final AtomicLong myCompressedBytes = new AtomicLong();
+	private final AtomicLong myCompressedResponseCount = new AtomicLong();
+	private final AtomicLong myUncompressedBytes = new AtomicLong();
+	private final AtomicLong myUncompressedResponseCount = new AtomicLong();
+	private int myBufferSize = DEFAULT_BUFFER_SIZE;
+	private int myCompressionLevel = Deflater.DEFAULT_COMPRESSION;
+	private List<CompressionEncodingEnum> myEncodings = Collections.singletonList(CompressionEncodingEnum.GZIP);
+	private int myMinimumResponseSizeBytes = 0;
+	private boolean myWildcardAccepted = false;
+
+	/**
+	 * Returns the size of the buffer used by the compressor, and by the writer which encodes
+	 * the response characters. Default is {@link #DEFAULT_BUFFER_SIZE}.
+	 */
+	public int getBufferSize() {
+		return myBufferSize;
+	}
+
+	/**
+	 * Sets the size of the buffer used by the compressor, and by the writer which encodes
+	 * the response characters. Default is {@link #DEFAULT_BUFFER_SIZE}.
+	 */
+	public ResponseCompressionSettings setBufferSize(int theBufferSize) {
+		Validate.isTrue(theBufferSize > 0, "theBufferSize must be positive");
+		myBufferSize = theBufferSize;
+		return this;
+	}
+
+	/**
+	 * Returns the total number of bytes sent in compressed responses (after compression)
+	 */
+	public long getCompressedBytes() {
+		return myCompressedBytes.get();
+	}
+
+	/**
+	 * Returns the number of responses which have been compressed
+	 */
+	public long getCompressedResponseCount() {
+		return myCompressedResponseCount.get();
+	}
+
+	/**
+	 * Returns the compression level, from 0 (no compression) to 9 (best compression), or
+	 * {@link Deflater#DEFAULT_COMPRESSION} (which is the default)
+	 */
+	public int getCompressionLevel() {
+		return myCompressionLevel;
+	}
+
+	/**
+	 * Sets the compression level, from 0 (no compression) to 9 (best compression), or
+	 * {@link Deflater#DEFAULT_COMPRESSION} (which is the default). Lower levels use less
+	 * CPU time per response at the expense of larger responses.
+	 */
+	public ResponseCompressionSettings setCompressionLevel(int theCompressionLevel) {
+		Validate.isTrue(theCompressionLevel == Deflater.DEFAULT_COMPRESSION || (theCompressionLevel >= Deflater.NO_COMPRESSION && theCompressionLevel <= Deflater.BEST_COMPRESSION), "Invalid compression level: %d", theCompressionLevel);
+		myCompressionLevel = theCompressionLevel;
+		return this;
+	}
+
+	/**
+	 * Returns the ratio between the size of compressed responses after compression and their
+	 * size before compression (e.g. 0.2 means that compressed responses were one fifth of their
+	 * original size), or 1.0 if no responses have been compressed
+	 */
+	public double getCompressionRatio() {
+		long uncompressed = myUncompressedBytes.get();
+		if (uncompressed == 0) {
+			return 1.0;
+		}
+		return (double) myCompressedBytes.get() / uncompressed;
+	}
+
+	/**
+	 * Returns the encodings which the server may use to compress responses, in order of
+	 * preference. Default is gzip only.
+	 */
+	public List<CompressionEncodingEnum> getEncodings() {
+		return myEncodings;
+	}
+
+	/**
+	 * Sets the encodings which the server may use to compress responses, in order of
+	 * preference. Default is gzip only. An empty list disables response compression.
+	 */
+	public ResponseCompressionSettings setEncodings(List<CompressionEncodingEnum> theEncodings) {
+		Validate.notNull(theEncodings, "theEncodings must not be null");
+		myEncodings = Collections.unmodifiableList(new ArrayList<>(theEncodings));
+		return this;
+	}
+
+	/**
+	 * Returns the minimum size (in bytes, before compression) which a response must reach before
+	 * it will be compressed. Default is 0, meaning that all responses are compressed if the client
+	 * accepts a compressed response.
+	 */
+	public int getMinimumResponseSizeBytes() {
+		return myMinimumResponseSizeBytes;
+	}
+
+	/**
+	 * Sets the minimum size (in bytes, before compression) which a response must reach before
+	 * it will be compressed. Smaller responses are sent uncompressed, since the compression
+	 * overhead outweighs the savings for very small payloads. Up to this many bytes of each
+	 * response are held in memory until the decision can be made. Default is 0.
+	 */
+	public ResponseCompressionSettings setMinimumResponseSizeBytes(int theMinimumResponseSizeBytes) {
+		Validate.isTrue(theMinimumResponseSizeBytes >= 0, "theMinimumResponseSizeBytes must not be negative");
+		myMinimumResponseSizeBytes = theMinimumResponseSizeBytes;
+		return this;
+	}
+
+	/**
+	 * Returns the total number of bytes in compressed responses, before compression
+	 */
+	public long getUncompressedBytes() {
+		return myUncompressedBytes.get();
+	}
+
+	/**
+	 * Returns the number of responses which the client would have accepted in compressed form,
+	 * but which were sent uncompressed because they were smaller than the
+	 * {@link #getMinimumResponseSizeBytes() minimum response size}
+	 */
+	public long getUncompressedResponseCount() {
+		return myUncompressedResponseCount.get();
+	}
+
+	/**
+	 * Should a wildcard (<code>*</code>) in the client's <code>Accept-Encoding</code> header
+	 * be treated as accepting any of the enabled encodings which the client does not list
+	 * explicitly? Default is <code>false</code>, meaning that the wildcard is ignored and
+	 * responses are only compressed using encodings the client names.
+	 */
+	public boolean isWildcardAccepted() {
+		return myWildcardAccepted;
+	}
+
+	/**
+	 * Should a wildcard (<code>*</code>) in the client's <code>Accept-Encoding</code> header
+	 * be treated as accepting any of the enabled encodings which the client does not list
+	 * explicitly? Default is <code>false</code>, meaning that the wildcard is ignored and
+	 * responses are only compressed using encodings the client names.
+	 */
+	public ResponseCompressionSettings setWildcardAccepted(boolean theWildcardAccepted) {
+		myWildcardAccepted = theWildcardAccepted;
+		return this;
+	}
+
+	/**
+	 * Selects the encoding to use for a response, given the value of the <code>Accept-Encoding</code>
+	 * header sent by the client.
+	 *
+	 * @return The encoding to use, or <code>null</code> if the response should not be compressed
+	 */
+	public CompressionEncodingEnum negotiateEncoding(String theAcceptEncoding) {
+		if (isBlank(theAcceptEncoding) || myEncodings.isEmpty()) {
+			return null;
+		}
+
+		CompressionEncodingEnum retVal = null;
+		double retValQuality = 0;
+		double wildcardQuality = -1;
+		List<CompressionEncodingEnum> explicitlyListed = new ArrayList<>();
+		for (String nextPart : theAcceptEncoding.trim().split("\\s*,\\s*")) {
+			String[] tokens = nextPart.split("\\s*;\\s*");
+			String coding = tokens[0].trim();
+			double quality = 1.0;
+			for (int i = 1; i < tokens.length; i++) {
+				if (tokens[i].startsWith("q=")) {
+					try {
+						quality = Double.parseDouble(tokens[i].substring(2));
+					} catch (NumberFormatException e) {
+						quality = 0;
+					}
+				}
+			}
+
+			if ("*".equals(coding)) {
+				wildcardQuality = quality;
+				continue;
+			}
+
+			CompressionEncodingEnum encoding = CompressionEncodingEnum.forHeaderValue(coding);
+			if (encoding == null || !myEncodings.contains(encoding)) {
+				continue;
+			}
+			explicitlyListed.add(encoding);
+			if (isPreferred(encoding, quality, retVal, retValQuality)) {
+				retVal = encoding;
+				retValQuality = quality;
+			}
+		}
+
+		if (myWildcardAccepted && wildcardQuality > 0) {
+			for (CompressionEncodingEnum next : myEncodings) {
+				if (!explicitlyListed.contains(next) && isPreferred(next, wildcardQuality, retVal, retValQuality)) {
+					retVal = next;
+					retValQuality = wildcardQuality;
+				}
+			}
+		}
+
+		return retVal;
+	}
+
+	private boolean isPreferred(CompressionEncodingEnum theCandidate, double theCandidateQuality, CompressionEncodingEnum theCurrent, double theCurrentQuality) {
+		if (theCandidateQuality <= 0) {
+			return false;
+		}
+		if (theCurrent == null || theCandidateQuality > theCurrentQuality) {
+			return true;
+		}
+		return theCandidateQuality == theCurrentQuality && myEncodings.indexOf(theCandidate) < myEncodings.indexOf(theCurrent);
+	}
+
+	/**
+	 * Records that a response has been compressed. This method is called by the server
+	 * and should not normally be called by user code.
+	 */
+	public void recordCompressedResponse(long theUncompressedBytes, long theCompressedBytes) {
+		myCompressedResponseCount.incrementAndGet();
+		myUncompressedBytes.addAndGet(theUncompressedBytes);
+		myCompressedBytes.addAndGet(theCompressedBytes);
+	}
+
+	/**
+	 * Records that a response has been sent uncompressed because it was below the minimum
+	 * response size. This method is called by the server and should not normally be called
+	 * by user code.
+	 */
+	public void recordUncompressedResponse() {
+		myUncompressedResponseCount.incrementAndGet();
+	}
+
+}
@@ -108,6 +108,7 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 	private boolean myDefaultPrettyPrint = false;
 	private EncodingEnum myDefaultResponseEncoding = EncodingEnum.XML;
 	private ETagSupportEnum myETagSupport = DEFAULT_ETAG_SUPPORT;
+	private ResponseCompressionSettings myResponseCompressionSettings = new ResponseCompressionSettings();
 	private FhirContext myFhirContext;
 	private boolean myIgnoreServerParsedRequestParameters = true;
 	private String myImplementationDescription;
@@ -513,6 +514,28 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 		myETagSupport = theETagSupport;
 	}
 
+	/**
+	 * Returns the settings which control how responses are compressed, and which collect
+	 * statistics about the compression performed
+	 *
+	 * @since 3.7.0
+	 */
+	public ResponseCompressionSettings getResponseCompressionSettings() {
+		return myResponseCompressionSettings;
+	}
+
+	/**
+	 * Sets the settings which control how responses are compressed (the encodings which may
+	 * be negotiated, compression level, buffer size and minimum response size). Must not be
+	 * <code>null</code>.
+	 *
+	 * @since 3.7.0
+	 */
+	public void setResponseCompressionSettings(ResponseCompressionSettings theResponseCompressionSettings) {
+		Validate.notNull(theResponseCompressionSettings, "theResponseCompressionSettings must not be null");
+		myResponseCompressionSettings = theResponseCompressionSettings;
+	}
+
 	/**
 	 * Gets the {@link FhirContext} associated with this server. For efficient processing, resource providers and plain
 	 * providers should generally use this context if one is needed, as opposed to
@@ -905,16 +928,9 @@ public class RestfulServer extends HttpServlet implements IRestfulServer<Servlet
 			}
 
 			String acceptEncoding = theRequest.getHeader(Constants.HEADER_ACCEPT_ENCODING);
-			boolean respondGzip = false;
-			if (acceptEncoding != null) {
-				String[] parts = acceptEncoding.trim().split("\\s*,\\s*");
-				for (String string : parts) {
-					if (string.equals("gzip")) {
-						respondGzip = true;
-					}
-				}
-			}
-			requestDetails.setRespondGzip(respondGzip);
+			CompressionEncodingEnum responseCompressionEncoding = myResponseCompressionSettings.negotiateEncoding(acceptEncoding);
+			requestDetails.setResponseCompressionEncoding(responseCompressionEncoding);
+			requestDetails.setRespondGzip(responseCompressionEncoding != null);
 			requestDetails.setRequestPath(requestPath);
 			requestDetails.setFhirServerBase(fhirServerBase);
 			requestDetails.setCompleteUrl(completeUrl);
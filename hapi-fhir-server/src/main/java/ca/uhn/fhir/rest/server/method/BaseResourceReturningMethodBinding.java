@@ -6,6 +6,7 @@ import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.model.base.resource.BaseOperationOutcome;
 import ca.uhn.fhir.model.valueset.BundleTypeEnum;
+import ca.uhn.fhir.rest.annotation.Operation;
 import ca.uhn.fhir.rest.api.*;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.IRestfulServer;
@@ -87,6 +88,8 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 			myMethodReturnType = MethodReturnTypeEnum.BUNDLE_PROVIDER;
 		} else if (MethodOutcome.class.isAssignableFrom(methodReturnType)) {
 			myMethodReturnType = MethodReturnTypeEnum.METHOD_OUTCOME;
+		} else if (void.class.equals(methodReturnType) && theMethod.getAnnotation(Operation.class) != null && theMethod.getAnnotation(Operation.class).manualResponse()) {
+			myMethodReturnType = MethodReturnTypeEnum.VOID;
 		} else {
 			throw new ConfigurationException(
 				"Invalid return type '" + methodReturnType.getCanonicalName() + "' on method '" + theMethod.getName() + "' on type: " + theMethod.getDeclaringClass().getCanonicalName());
@@ -359,6 +362,12 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 	@Override
 	public Object invokeServer(IRestfulServer<?> theServer, RequestDetails theRequest) throws BaseServerResponseException, IOException {
 
+		if (myMethodReturnType == MethodReturnTypeEnum.VOID) {
+			// The method has written the response itself
+			invokeServer(theServer, theRequest, createMethodParams(theRequest));
+			return null;
+		}
+
 		IBaseResource response = doInvokeServer(theServer, theRequest);
 
 		Set<SummaryEnum> summaryMode = RestfulServerUtils.determineSummaryMode(theRequest);
@@ -408,7 +417,8 @@ public abstract class BaseResourceReturningMethodBinding extends BaseMethodBindi
 		BUNDLE_RESOURCE,
 		LIST_OF_RESOURCES,
 		METHOD_OUTCOME,
-		RESOURCE
+		RESOURCE,
+		VOID
 	}
 
 	public enum ReturnTypeEnum {
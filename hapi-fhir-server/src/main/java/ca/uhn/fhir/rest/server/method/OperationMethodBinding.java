@@ -67,6 +67,7 @@ public class OperationMethodBinding extends BaseResourceReturningMethodBinding {
 	private boolean myCanOperateAtTypeLevel;
 	private String myDescription;
 	private List<ReturnType> myReturnParams;
+	private boolean myManualRequest;
 
 	protected OperationMethodBinding(Class<?> theReturnResourceType, Class<? extends IBaseResource> theReturnTypeFromRp, Method theMethod, FhirContext theContext, Object theProvider,
 			boolean theIdempotent, String theOperationName, Class<? extends IBaseResource> theOperationType,
@@ -155,6 +156,7 @@ public class OperationMethodBinding extends BaseResourceReturningMethodBinding {
 			Operation theAnnotation) {
 		this(theReturnResourceType, theReturnTypeFromRp, theMethod, theContext, theProvider, theAnnotation.idempotent(), theAnnotation.name(), theAnnotation.type(), theAnnotation.returnParameters(),
 				theAnnotation.bundleType());
+		myManualRequest = theAnnotation.manualRequest();
 	}
 
 	public String getDescription() {
@@ -256,7 +258,7 @@ public class OperationMethodBinding extends BaseResourceReturningMethodBinding {
 
 	@Override
 	public Object invokeServer(IRestfulServer<?> theServer, RequestDetails theRequest) throws BaseServerResponseException, IOException {
-		if (theRequest.getRequestType() == RequestTypeEnum.POST) {
+		if (theRequest.getRequestType() == RequestTypeEnum.POST && !myManualRequest) {
 			IBaseResource requestContents = ResourceParameter.loadResourceFromRequest(theRequest, this, null);
 			theRequest.getUserData().put(OperationParameter.REQUEST_CONTENTS_USERDATA_KEY, requestContents);
 		}
@@ -306,6 +308,15 @@ public class OperationMethodBinding extends BaseResourceReturningMethodBinding {
 		return myIdempotent;
 	}
 
+	/**
+	 * Returns <code>true</code> if the method reads the request body itself
+	 *
+	 * @see Operation#manualRequest()
+	 */
+	public boolean isManualRequest() {
+		return myManualRequest;
+	}
+
 	@Override
 	protected void populateActionRequestDetailsForInterceptor(RequestDetails theRequestDetails, ActionRequestDetails theDetails, Object[] theMethodParams) {
 		super.populateActionRequestDetailsForInterceptor(theRequestDetails, theDetails, theMethodParams);
@@ -210,7 +210,9 @@ public class OperationParameter implements IParameter {
 	public Object translateQueryParametersIntoServerArgument(RequestDetails theRequest, BaseMethodBinding<?> theMethodBinding) throws InternalErrorException, InvalidRequestException {
 		List<Object> matchingParamValues = new ArrayList<Object>();
 
-		if (theRequest.getRequestType() == RequestTypeEnum.GET) {
+		boolean manualRequest = theMethodBinding instanceof OperationMethodBinding && ((OperationMethodBinding) theMethodBinding).isManualRequest();
+		if (theRequest.getRequestType() == RequestTypeEnum.GET || manualRequest) {
+			// If the method reads the request body itself, parameters can only come from the URL
 			translateQueryParametersIntoServerArgumentForGet(theRequest, matchingParamValues);
 		} else {
 			translateQueryParametersIntoServerArgumentForPost(theRequest, matchingParamValues);
@@ -0,0 +1,150 @@
+package ca.uhn.fhir.rest.server.servlet;
+
+/*
+ * #%L
+ * HAPI FHIR - Server Framework
+ * %%
+ * Copyright (C) 2014 - 2019 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.server.CompressionEncodingEnum;
+import ca.uhn.fhir.rest.server.ResponseCompressionSettings;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stream which compresses the response body as it is written. The first
+ * {@link ResponseCompressionSettings#getMinimumResponseSizeBytes()} bytes are held in memory, and
+ * if the response is closed before reaching that size it is sent uncompressed. Otherwise the
+ * <code>Content-Encoding</code> header is set and the buffered bytes, along with everything
+ * written afterwards, are streamed through the compressor.
+ */
+class CompressingResponseOutputStream extends OutputStream {
+
+	private final HttpServletResponse myResponse;
+	private final ResponseCompressionSettings mySettings;
+	private final CompressionEncodingEnum myEncoding;
+	private byte[] myPending;
+	private int myPendingCount;
+	private OutputStream myTarget;
+	private CountingOutputStream myCountingStream;
+	private long myUncompressedCount;
+	private boolean myClosed;
+
+	CompressingResponseOutputStream(HttpServletResponse theResponse, ResponseCompressionSettings theSettings, CompressionEncodingEnum theEncoding) {
+		myResponse = theResponse;
+		mySettings = theSettings;
+		myEncoding = theEncoding;
+		myPending = new byte[theSettings.getMinimumResponseSizeBytes()];
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (myClosed) {
+			return;
+		}
+		myClosed = true;
+
+		if (myTarget == null) {
+			// Response never reached the minimum size, so send it as-is
+			mySettings.recordUncompressedResponse();
+			myResponse.setContentLength(myPendingCount);
+			OutputStream outputStream = myResponse.getOutputStream();
+			outputStream.write(myPending, 0, myPendingCount);
+			outputStream.close();
+			myPending = null;
+			return;
+		}
+
+		myTarget.close();
+		mySettings.recordCompressedResponse(myUncompressedCount, myCountingStream.myCount);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// Flushing before the compression decision has been made would commit the headers
+		if (myTarget != null) {
+			myTarget.flush();
+		}
+	}
+
+	private void startCompressing() throws IOException {
+		myResponse.addHeader(Constants.HEADER_CONTENT_ENCODING, myEncoding.getHeaderValue());
+		myCountingStream = new CountingOutputStream(myResponse.getOutputStream());
+		myTarget = myEncoding.newOutputStream(myCountingStream, mySettings.getCompressionLevel(), mySettings.getBufferSize());
+		if (myPendingCount > 0) {
+			myTarget.write(myPending, 0, myPendingCount);
+		}
+		myPending = null;
+	}
+
+	@Override
+	public void write(int theByte) throws IOException {
+		write(new byte[]{(byte) theByte}, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] theBytes, int theOffset, int theLength) throws IOException {
+		if (myClosed) {
+			throw new IOException("Stream is closed");
+		}
+		myUncompressedCount += theLength;
+		if (myTarget == null) {
+			if (myPendingCount + theLength <= myPending.length && myPending.length > 0) {
+				System.arraycopy(theBytes, theOffset, myPending, myPendingCount, theLength);
+				myPendingCount += theLength;
+				return;
+			}
+			startCompressing();
+		}
+		myTarget.write(theBytes, theOffset, theLength);
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+		private final OutputStream myWrap;
+		private long myCount;
+
+		CountingOutputStream(OutputStream theWrap) {
+			myWrap = theWrap;
+		}
+
+		@Override
+		public void close() throws IOException {
+			myWrap.close();
+		}
+
+		@Override
+		public void flush() throws IOException {
+			myWrap.flush();
+		}
+
+		@Override
+		public void write(int theByte) throws IOException {
+			myWrap.write(theByte);
+			myCount++;
+		}
+
+		@Override
+		public void write(byte[] theBytes, int theOffset, int theLength) throws IOException {
+			myWrap.write(theBytes, theOffset, theLength);
+			myCount += theLength;
+		}
+	}
+
+}
@@ -20,13 +20,13 @@ package ca.uhn.fhir.rest.server.servlet;
  * #L%
  */
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.util.List;
 import java.util.Map.Entry;
-import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
@@ -36,6 +36,8 @@ import org.hl7.fhir.instance.model.api.IBaseBinary;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.api.server.ParseAction;
+import ca.uhn.fhir.rest.server.CompressionEncodingEnum;
+import ca.uhn.fhir.rest.server.ResponseCompressionSettings;
 import ca.uhn.fhir.rest.server.RestfulResponse;
 
 public class ServletRestfulResponse extends RestfulResponse<ServletRequestDetails> {
@@ -68,8 +70,13 @@ public class ServletRestfulResponse extends RestfulResponse<ServletRequestDetail
 		theHttpResponse.setStatus(theStatusCode);
 		theHttpResponse.setContentType(theContentType);
 		if (theRespondGzip) {
-			theHttpResponse.addHeader(Constants.HEADER_CONTENT_ENCODING, Constants.ENCODING_GZIP);
-			return new OutputStreamWriter(new GZIPOutputStream(theHttpResponse.getOutputStream()), Constants.CHARSET_NAME_UTF8);
+			ResponseCompressionSettings settings = getRequestDetails().getServer().getResponseCompressionSettings();
+			CompressionEncodingEnum encoding = getRequestDetails().getResponseCompressionEncoding();
+			if (encoding == null) {
+				encoding = CompressionEncodingEnum.GZIP;
+			}
+			CompressingResponseOutputStream outputStream = new CompressingResponseOutputStream(theHttpResponse, settings, encoding);
+			return new BufferedWriter(new OutputStreamWriter(outputStream, Constants.CHARSET_NAME_UTF8), settings.getBufferSize());
 		}
 		return theHttpResponse.getWriter();
 	}
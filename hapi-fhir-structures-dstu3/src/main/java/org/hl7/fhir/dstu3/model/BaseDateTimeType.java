@@ -258,6 +258,7 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 	 * </p>
 	 */
 	public Long getNanos() {
+		ensureCoerced();
 		if (isBlank(myFractionalSeconds)) {
 			return null;
 		}
@@ -286,6 +287,7 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 	 * @see #setPrecision(TemporalPrecisionEnum)
 	 */
 	public TemporalPrecisionEnum getPrecision() {
+		ensureCoerced();
 		if (myPrecision == null) {
 			return getDefaultPrecisionForDatatype();
 		}
@@ -304,6 +306,7 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 	 * supplied.
 	 */
 	public TimeZone getTimeZone() {
+		ensureCoerced();
 		if (myTimeZoneZulu) {
 			return TimeZone.getTimeZone("GMT");
 		}
@@ -343,6 +346,7 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 	 * Returns true if the timezone is set to GMT-0:00 (Z)
 	 */
 	public boolean isTimeZoneZulu() {
+		ensureCoerced();
 		return myTimeZoneZulu;
 	}
 
@@ -588,6 +592,7 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 		if (thePrecision == null) {
 			throw new NullPointerException("Precision may not be null");
 		}
+		ensureCoerced();
 		myPrecision = thePrecision;
 		updateStringValue();
 	}
@@ -622,6 +627,7 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 	}
 
 	public BaseDateTimeType setTimeZone(TimeZone theTimeZone) {
+		ensureCoerced();
 		myTimeZone = theTimeZone;
 		myTimeZoneZulu = false;
 		updateStringValue();
@@ -629,6 +635,7 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 	}
 
 	public BaseDateTimeType setTimeZoneZulu(boolean theTimeZoneZulu) {
+		ensureCoerced();
 		myTimeZoneZulu = theTimeZoneZulu;
 		myTimeZone = null;
 		updateStringValue();
@@ -642,6 +649,8 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 	 */
 	@Override
 	public BaseDateTimeType setValue(Date theValue) {
+		// An invalid deferred value is being replaced, so it must not prevent reading the current precision
+		discardInvalidDeferredValue();
 		setValue(theValue, getPrecision());
 		return this;
 	}
@@ -658,6 +667,7 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 	 * @throws DataFormatException
 	 */
 	public void setValue(Date theValue, TemporalPrecisionEnum thePrecision) throws DataFormatException {
+		discardInvalidDeferredValue();
 		if (getTimeZone() == null) {
 			setTimeZone(TimeZone.getDefault());
 		}
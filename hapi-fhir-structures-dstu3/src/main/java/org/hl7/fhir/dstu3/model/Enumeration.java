@@ -114,7 +114,16 @@ public class Enumeration<T extends Enum<?>> extends PrimitiveType<T> implements
 		}
 		return null;
 	}
-	
+
+	/**
+	 * Codes are always parsed immediately, since parsing them is cheap and an
+	 * unknown code should be reported to the parser error handler
+	 */
+	@Override
+	public void setValueAsStringDeferred(String theValue) {
+		setValueAsString(theValue);
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public void readExternal(ObjectInput theIn) throws IOException, ClassNotFoundException {
@@ -601,6 +601,15 @@ public final class IdType extends UriType implements IPrimitiveType<String>, IId
     setValue(theValue);
   }
 
+  /**
+   * IDs are always parsed immediately, since the ID parts are needed
+   * to resolve references while parsing
+   */
+  @Override
+  public void setValueAsStringDeferred(String theValue) {
+    setValueAsString(theValue);
+  }
+
   @Override
   public String toString() {
     return getValue();
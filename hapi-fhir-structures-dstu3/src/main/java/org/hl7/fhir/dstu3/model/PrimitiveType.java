@@ -19,6 +19,15 @@ public abstract class PrimitiveType<T> extends Type implements IPrimitiveType<T>
 	private static final long serialVersionUID = 3L;
 
 	private T myCoercedValue;
+	/**
+	 * Only cleared once a deferred value has been coerced, so that a thread which
+	 * reads <code>false</code> also sees the coerced value
+	 */
+	private volatile boolean myCoercionDeferred;
+	/**
+	 * Only accessed while holding the lock on this object
+	 */
+	private boolean myCoercing;
 	private String myStringValue;
 
 	public String asStringValue() {
@@ -70,7 +79,57 @@ public abstract class PrimitiveType<T> extends Type implements IPrimitiveType<T>
 		return b.isEquals();
 	}
 
+	/**
+	 * If the value of this datatype was set using {@link #setValueAsStringDeferred(String)}
+	 * and has not yet been converted into its typed value, converts it now. Subclasses which
+	 * store additional state derived from the string value (e.g. a timezone) must call this
+	 * method before reading or modifying that state.
+	 * <p>
+	 * Parsed models are often shared between threads, so the conversion is synchronized
+	 * and happens only once. If the value is invalid, it stays deferred so that every
+	 * access reports the problem.
+	 * </p>
+	 */
+	protected void ensureCoerced() {
+		if (myCoercionDeferred) {
+			coerceDeferredValue();
+		}
+	}
+
+	private synchronized void coerceDeferredValue() {
+		// Another thread may have coerced the value while this one was waiting for the lock, and
+		// subclasses call back into ensureCoerced() when parsing reads their derived state
+		if (!myCoercionDeferred || myCoercing) {
+			return;
+		}
+		myCoercing = true;
+		try {
+			setValueAsString(myStringValue);
+		} finally {
+			myCoercing = false;
+		}
+	}
+
+	/**
+	 * Like {@link #ensureCoerced()}, but clears the value instead of throwing an exception if
+	 * a deferred value is invalid. Setters which replace the value, but keep some state derived
+	 * from the current one (e.g. the precision of a date), call this before reading that state.
+	 */
+	protected void discardInvalidDeferredValue() {
+		if (myCoercionDeferred) {
+			try {
+				coerceDeferredValue();
+			} catch (RuntimeException e) {
+				setValueAsString(null);
+			}
+		}
+	}
+
 	public void fromStringValue(String theValue) {
+		if (!myCoercing) {
+			// Setting a new value replaces a deferred one
+			myCoercionDeferred = false;
+		}
 		myStringValue = theValue;
 		if (theValue == null) {
 			myCoercedValue = null;
@@ -78,9 +137,11 @@ public abstract class PrimitiveType<T> extends Type implements IPrimitiveType<T>
 			// NB this might be null
 			myCoercedValue = parse(theValue);
 		}
+		myCoercionDeferred = false;
 	}
 
 	public T getValue() {
+		ensureCoerced();
 		return myCoercedValue;
 	}
 
@@ -126,6 +187,7 @@ public abstract class PrimitiveType<T> extends Type implements IPrimitiveType<T>
 	}
 
 	public PrimitiveType<T> setValue(T theValue) {
+		myCoercionDeferred = false;
 		myCoercedValue = theValue;
 		updateStringValue();
 		return this;
@@ -135,6 +197,22 @@ public abstract class PrimitiveType<T> extends Type implements IPrimitiveType<T>
 		fromStringValue(theValue);
 	}
 
+	/**
+	 * Stores the given string value, but does not convert it into the typed value
+	 * until {@link #getValue()} (or another method which needs the typed value) is
+	 * first called. Any exception caused by an invalid value is thrown at that point.
+	 */
+	@Override
+	public void setValueAsStringDeferred(String theValue) {
+		if (StringUtils.isBlank(theValue)) {
+			setValueAsString(theValue);
+			return;
+		}
+		myStringValue = theValue;
+		myCoercedValue = null;
+		myCoercionDeferred = true;
+	}
+
 	@Override
 	public String toString() {
 		return getClass().getSimpleName() + "[" + asStringValue() + "]";
@@ -80,25 +80,39 @@ public abstract class ParserBase {
       logError(line, col, name, IssueType.STRUCTURE, "This cannot be parsed as a FHIR object (no name)", IssueSeverity.FATAL);
       return null;
   	}
+    // try the base definition by URL first, so that the context doesn't need to load every structure
+    StructureDefinition base = context.fetchTypeDefinition(name);
+    if (base != null && isDefinitionFor(base, ns, name))
+      return base;
 	  for (StructureDefinition sd : context.allStructures()) {
-	    if (name.equals(sd.getType()) && sd.getDerivation() == TypeDerivationRule.SPECIALIZATION && !sd.getUrl().startsWith("http://hl7.org/fhir/StructureDefinition/de-")) {
-	      if((ns == null || ns.equals(FormatUtilities.FHIR_NS)) && !ToolingExtensions.hasExtension(sd, "http://hl7.org/fhir/StructureDefinition/elementdefinition-namespace"))
-	        return sd;
-	      String sns = ToolingExtensions.readStringExtension(sd, "http://hl7.org/fhir/StructureDefinition/elementdefinition-namespace");
-	      if (ns != null && ns.equals(sns))
-	        return sd;
-	    }
+	    if (isDefinitionFor(sd, ns, name))
+	      return sd;
 	  }
 	  logError(line, col, name, IssueType.STRUCTURE, "This does not appear to be a FHIR resource (unknown namespace/name '"+ns+"::"+name+"')", IssueSeverity.FATAL);
 	  return null;
   }
 
+  private boolean isDefinitionFor(StructureDefinition sd, String ns, String name) {
+    if (name.equals(sd.getType()) && sd.getDerivation() == TypeDerivationRule.SPECIALIZATION && !sd.getUrl().startsWith("http://hl7.org/fhir/StructureDefinition/de-")) {
+      if((ns == null || ns.equals(FormatUtilities.FHIR_NS)) && !ToolingExtensions.hasExtension(sd, "http://hl7.org/fhir/StructureDefinition/elementdefinition-namespace"))
+        return true;
+      String sns = ToolingExtensions.readStringExtension(sd, "http://hl7.org/fhir/StructureDefinition/elementdefinition-namespace");
+      if (ns != null && ns.equals(sns))
+        return true;
+    }
+    return false;
+  }
+
 	protected StructureDefinition getDefinition(int line, int col, String name) throws FHIRFormatError {
     if (name == null) {
       logError(line, col, name, IssueType.STRUCTURE, "This cannot be parsed as a FHIR object (no name)", IssueSeverity.FATAL);
       return null;
   	}
     // first pass: only look at base definitions
+    StructureDefinition base = context.fetchTypeDefinition(name);
+    if (base != null && base.getUrl().equals("http://hl7.org/fhir/StructureDefinition/"+name)) {
+      return base;
+    }
 	  for (StructureDefinition sd : context.allStructures()) {
 	    if (sd.getUrl().equals("http://hl7.org/fhir/StructureDefinition/"+name)) {
 	      return sd;
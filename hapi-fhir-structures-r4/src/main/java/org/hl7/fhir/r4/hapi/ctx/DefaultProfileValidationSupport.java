@@ -1,6 +1,7 @@
 package org.hl7.fhir.r4.hapi.ctx;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.support.ConformancePackage;
 import ca.uhn.fhir.rest.api.Constants;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -19,12 +20,24 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.apache.commons.lang3.StringUtils.defaultString;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+/**
+ * Validation support for the conformance resources (StructureDefinitions, ValueSets and
+ * CodeSystems) which are distributed with the FHIR specification, found on the classpath in
+ * <code>hapi-fhir-validation-resources-r4</code>.
+ * <p>
+ * If the indexed {@link ConformancePackage} built with that module is available, individual
+ * resources are parsed from it when they are first requested. Otherwise the bundles distributed
+ * with the specification are parsed in full on first use.
+ * </p>
+ */
 public class DefaultProfileValidationSupport implements IValidationSupport {
 
+  private static final String PACKAGE_CLASSPATH = "/org/hl7/fhir/r4/model/package/conformance-package.bin";
   private static final String URL_PREFIX_VALUE_SET = "http://hl7.org/fhir/ValueSet/";
   private static final String URL_PREFIX_STRUCTURE_DEFINITION = "http://hl7.org/fhir/StructureDefinition/";
   private static final String URL_PREFIX_STRUCTURE_DEFINITION_BASE = "http://hl7.org/fhir/";
@@ -34,6 +47,9 @@ public class DefaultProfileValidationSupport implements IValidationSupport {
   private Map<String, CodeSystem> myCodeSystems;
   private Map<String, StructureDefinition> myStructureDefinitions;
   private Map<String, ValueSet> myValueSets;
+  private volatile ConformancePackage myPackage;
+  private volatile boolean myPackageLoaded;
+  private final ConcurrentHashMap<String, IBaseResource> myPackageResources = new ConcurrentHashMap<>();
 
   private void addConcepts(ConceptSetComponent theInclude, ValueSetExpansionComponent theRetVal, Set<String> theWantCodes, List<ConceptDefinitionComponent> theConcepts) {
     for (ConceptDefinitionComponent next : theConcepts) {
@@ -64,7 +80,7 @@ public class DefaultProfileValidationSupport implements IValidationSupport {
     }
 
     for (UriType next : theInclude.getValueSet()) {
-      ValueSet vs = myValueSets.get(defaultString(next.getValueAsString()));
+      ValueSet vs = fetchValueSet(theContext, defaultString(next.getValueAsString()));
       if (vs != null) {
         for (ConceptSetComponent nextInclude : vs.getCompose().getInclude()) {
           ValueSetExpander.ValueSetExpansionOutcome contents = expandValueSet(theContext, nextInclude);
@@ -79,6 +95,14 @@ public class DefaultProfileValidationSupport implements IValidationSupport {
   @Override
   public List<IBaseResource> fetchAllConformanceResources(FhirContext theContext) {
     ArrayList<IBaseResource> retVal = new ArrayList<>();
+    ConformancePackage conformancePackage = getPackage();
+    if (conformancePackage != null) {
+      retVal.addAll(fetchAllFromPackage(theContext, conformancePackage, CodeSystem.class));
+      retVal.addAll(fetchAllFromPackage(theContext, conformancePackage, StructureDefinition.class));
+      retVal.addAll(fetchAllFromPackage(theContext, conformancePackage, ValueSet.class));
+      return retVal;
+    }
+
     retVal.addAll(myCodeSystems.values());
     retVal.addAll(myStructureDefinitions.values());
     retVal.addAll(myValueSets.values());
@@ -87,9 +111,22 @@ public class DefaultProfileValidationSupport implements IValidationSupport {
 
   @Override
   public List<StructureDefinition> fetchAllStructureDefinitions(FhirContext theContext) {
+    ConformancePackage conformancePackage = getPackage();
+    if (conformancePackage != null) {
+      return fetchAllFromPackage(theContext, conformancePackage, StructureDefinition.class);
+    }
     return new ArrayList<>(provideStructureDefinitionMap(theContext).values());
   }
 
+  private <T extends IBaseResource> List<T> fetchAllFromPackage(FhirContext theContext, ConformancePackage thePackage, Class<T> theType) {
+    String resourceType = theContext.getResourceDefinition(theType).getName();
+    List<T> retVal = new ArrayList<>();
+    for (String next : thePackage.getUrls(resourceType)) {
+      retVal.add(fetchFromPackage(theContext, thePackage, theType, next));
+    }
+    return retVal;
+  }
+
 
   @Override
   public CodeSystem fetchCodeSystem(FhirContext theContext, String theSystem) {
@@ -97,6 +134,16 @@ public class DefaultProfileValidationSupport implements IValidationSupport {
   }
 
   private DomainResource fetchCodeSystemOrValueSet(FhirContext theContext, String theSystem, boolean codeSystem) {
+    ConformancePackage conformancePackage = getPackage();
+    if (conformancePackage != null) {
+      String system = stripNumericVersion(theSystem);
+      if (codeSystem) {
+        return fetchFromPackage(theContext, conformancePackage, CodeSystem.class, system);
+      } else {
+        return fetchFromPackage(theContext, conformancePackage, ValueSet.class, system);
+      }
+    }
+
     synchronized (this) {
       Map<String, CodeSystem> codeSystems = myCodeSystems;
       Map<String, ValueSet> valueSets = myValueSets;
@@ -112,15 +159,7 @@ public class DefaultProfileValidationSupport implements IValidationSupport {
         myValueSets = valueSets;
       }
 
-      // System can take the form "http://url|version"
-      String system = theSystem;
-      if (system.contains("|")) {
-        String version = system.substring(system.indexOf('|') + 1);
-        if (version.matches("^[0-9.]+$")) {
-          system = system.substring(0, system.indexOf('|'));
-        }
-      }
-
+      String system = stripNumericVersion(theSystem);
       if (codeSystem) {
         return codeSystems.get(system);
       } else {
@@ -129,6 +168,28 @@ public class DefaultProfileValidationSupport implements IValidationSupport {
     }
   }
 
+  /**
+   * Parses a resource from the package, or returns the previously parsed instance
+   */
+  @SuppressWarnings("unchecked")
+  private <T extends IBaseResource> T fetchFromPackage(FhirContext theContext, ConformancePackage thePackage, Class<T> theType, String theUrl) {
+    String resourceType = theContext.getResourceDefinition(theType).getName();
+    String key = resourceType + "|" + theUrl;
+    IBaseResource retVal = myPackageResources.get(key);
+    if (retVal == null) {
+      String text = thePackage.getResourceText(resourceType, theUrl);
+      if (text == null) {
+        return null;
+      }
+      retVal = theContext.newXmlParser().parseResource(theType, text);
+      IBaseResource existing = myPackageResources.putIfAbsent(key, retVal);
+      if (existing != null) {
+        retVal = existing;
+      }
+    }
+    return (T) retVal;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public <T extends IBaseResource> T fetchResource(FhirContext theContext, Class<T> theClass, String theUri) {
@@ -155,6 +216,10 @@ public class DefaultProfileValidationSupport implements IValidationSupport {
     } else if (StringUtils.countMatches(url, '/') == 1) {
       url = URL_PREFIX_STRUCTURE_DEFINITION_BASE + url;
     }
+    ConformancePackage conformancePackage = getPackage();
+    if (conformancePackage != null) {
+      return fetchFromPackage(theContext, conformancePackage, StructureDefinition.class, url);
+    }
     return provideStructureDefinitionMap(theContext).get(url);
   }
 
@@ -165,6 +230,22 @@ public class DefaultProfileValidationSupport implements IValidationSupport {
   public void flush() {
     myCodeSystems = null;
     myStructureDefinitions = null;
+    myPackageResources.clear();
+  }
+
+  private ConformancePackage getPackage() {
+    if (!myPackageLoaded) {
+      synchronized (this) {
+        if (!myPackageLoaded) {
+          myPackage = ConformancePackage.loadFromClasspath(DefaultProfileValidationSupport.class, PACKAGE_CLASSPATH);
+          if (myPackage == null) {
+            ourLog.info("Conformance package {} not found, will load conformance resources from bundles", PACKAGE_CLASSPATH);
+          }
+          myPackageLoaded = true;
+        }
+      }
+    }
+    return myPackage;
   }
 
   @Override
@@ -251,6 +332,20 @@ public class DefaultProfileValidationSupport implements IValidationSupport {
     return structureDefinitions;
   }
 
+  /**
+   * System can take the form "http://url|version"
+   */
+  private static String stripNumericVersion(String theSystem) {
+    String system = theSystem;
+    if (system.contains("|")) {
+      String version = system.substring(system.indexOf('|') + 1);
+      if (version.matches("^[0-9.]+$")) {
+        system = system.substring(0, system.indexOf('|'));
+      }
+    }
+    return system;
+  }
+
   private CodeValidationResult testIfConceptIsInList(String theCode, List<ConceptDefinitionComponent> conceptList, boolean theCaseSensitive) {
     String code = theCode;
     if (theCaseSensitive == false) {
@@ -32,15 +32,27 @@ import org.hl7.fhir.utilities.validation.ValidationMessage.IssueSeverity;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
+import static org.apache.commons.lang3.StringUtils.defaultString;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+/**
+ * Worker context backed by an {@link IValidationSupport}. Instances are thread safe and are
+ * intended to be long-lived: resources fetched from the validation support, the list of all
+ * structures, and ValueSet expansions are cached (for a short period, so that changes made in
+ * the validation support are eventually picked up). Call {@link #flushCaches()} to discard
+ * everything cached immediately.
+ */
 public final class HapiWorkerContext implements IWorkerContext, ValueSetExpander, ValueSetExpanderFactory {
   private final FhirContext myCtx;
   private final Cache<String, Resource> myFetchedResourceCache;
+  private final Cache<String, ValueSetExpansionOutcome> myExpansionCache;
+  private final long myCacheTimeoutMillis;
   private IValidationSupport myValidationSupport;
-  private Parameters myExpansionProfile;
-  private String myOverrideVersionNs;
+  private volatile Parameters myExpansionProfile;
+  private volatile String myOverrideVersionNs;
+  private volatile List<StructureDefinition> myAllStructures;
+  private volatile long myAllStructuresExpiry;
 
   public HapiWorkerContext(FhirContext theCtx, IValidationSupport theValidationSupport) {
     Validate.notNull(theCtx, "theCtx must not be null");
@@ -53,12 +65,30 @@ public final class HapiWorkerContext implements IWorkerContext, ValueSetExpander
       timeoutMillis = Long.parseLong(System.getProperty(Constants.TEST_SYSTEM_PROP_VALIDATION_RESOURCE_CACHES_MS));
     }
 
+    myCacheTimeoutMillis = timeoutMillis;
     myFetchedResourceCache = Caffeine.newBuilder().expireAfterWrite(timeoutMillis, TimeUnit.MILLISECONDS).build();
+    myExpansionCache = Caffeine.newBuilder().expireAfterWrite(timeoutMillis, TimeUnit.MILLISECONDS).maximumSize(1000).build();
   }
 
   @Override
   public List<StructureDefinition> allStructures() {
-    return myValidationSupport.fetchAllStructureDefinitions(myCtx);
+    List<StructureDefinition> retVal = myAllStructures;
+    if (retVal == null || System.currentTimeMillis() > myAllStructuresExpiry) {
+      retVal = Collections.unmodifiableList(new ArrayList<>(myValidationSupport.fetchAllStructureDefinitions(myCtx)));
+      myAllStructures = retVal;
+      myAllStructuresExpiry = System.currentTimeMillis() + myCacheTimeoutMillis;
+    }
+    return retVal;
+  }
+
+  /**
+   * Discards all cached resources, structure definitions and ValueSet expansions, so that
+   * they will be fetched from the validation support again on next use
+   */
+  public void flushCaches() {
+    myFetchedResourceCache.invalidateAll();
+    myExpansionCache.invalidateAll();
+    myAllStructures = null;
   }
 
   @Override
@@ -292,6 +322,28 @@ public final class HapiWorkerContext implements IWorkerContext, ValueSetExpander
 
   @Override
   public ValueSetExpansionOutcome expand(ValueSet theSource, Parameters theProfile) {
+    Parameters profile = theProfile != null ? theProfile : myExpansionProfile;
+    if (theSource == null || !theSource.hasUrl()) {
+      return doExpand(theSource, profile);
+    }
+
+    // Expansions of canonical ValueSets are cached, since the same bindings are checked repeatedly
+    String key = theSource.getUrl() + "|" + defaultString(theSource.getVersion()) + "|" + defaultString(theSource.getMeta().getVersionId());
+    if (profile != null) {
+      key = key + "|" + myCtx.newJsonParser().encodeResourceToString(profile);
+    }
+    ValueSetExpansionOutcome retVal = myExpansionCache.getIfPresent(key);
+    if (retVal == null) {
+      retVal = doExpand(theSource, profile);
+      // Only successful expansions are kept, so that a failure is retried next time
+      if (retVal.getValueset() != null && retVal.getError() == null) {
+        myExpansionCache.put(key, retVal);
+      }
+    }
+    return retVal;
+  }
+
+  private ValueSetExpansionOutcome doExpand(ValueSet theSource, Parameters theProfile) {
     ValueSetExpansionOutcome vso;
     try {
       vso = getExpander().expand(theSource, theProfile);
@@ -387,10 +439,19 @@ public final class HapiWorkerContext implements IWorkerContext, ValueSetExpander
     if (myValidationSupport == null) {
       return null;
     } else {
+      /*
+       * The validation support may fetch other resources through this context while
+       * loading one (e.g. to generate the snapshot of a profile), so this doesn't use a
+       * computing get, which can't be nested
+       */
       @SuppressWarnings("unchecked")
-      T retVal = (T) myFetchedResourceCache.get(theUri, t -> {
-        return myValidationSupport.fetchResource(myCtx, theClass, theUri);
-      });
+      T retVal = (T) myFetchedResourceCache.getIfPresent(theUri);
+      if (retVal == null) {
+        retVal = myValidationSupport.fetchResource(myCtx, theClass, theUri);
+        if (retVal != null) {
+          myFetchedResourceCache.put(theUri, retVal);
+        }
+      }
       return retVal;
     }
   }
@@ -260,6 +260,7 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 	 * </p>
 	 */
 	public Long getNanos() {
+		ensureCoerced();
 		if (isBlank(myFractionalSeconds)) {
 			return null;
 		}
@@ -288,6 +289,7 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 	 * @see #setPrecision(TemporalPrecisionEnum)
 	 */
 	public TemporalPrecisionEnum getPrecision() {
+		ensureCoerced();
 		if (myPrecision == null) {
 			return getDefaultPrecisionForDatatype();
 		}
@@ -306,6 +308,7 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 	 * supplied.
 	 */
 	public TimeZone getTimeZone() {
+		ensureCoerced();
 		if (myTimeZoneZulu) {
 			return TimeZone.getTimeZone("GMT");
 		}
@@ -345,6 +348,7 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 	 * Returns true if the timezone is set to GMT-0:00 (Z)
 	 */
 	public boolean isTimeZoneZulu() {
+		ensureCoerced();
 		return myTimeZoneZulu;
 	}
 
@@ -586,6 +590,7 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 		if (thePrecision == null) {
 			throw new NullPointerException("Precision may not be null");
 		}
+		ensureCoerced();
 		myPrecision = thePrecision;
 		updateStringValue();
 	}
@@ -620,6 +625,7 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 	}
 
 	public BaseDateTimeType setTimeZone(TimeZone theTimeZone) {
+		ensureCoerced();
 		myTimeZone = theTimeZone;
 		myTimeZoneZulu = false;
 		updateStringValue();
@@ -627,6 +633,7 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 	}
 
 	public BaseDateTimeType setTimeZoneZulu(boolean theTimeZoneZulu) {
+		ensureCoerced();
 		myTimeZoneZulu = theTimeZoneZulu;
 		myTimeZone = null;
 		updateStringValue();
@@ -640,6 +647,8 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 	 */
 	@Override
 	public BaseDateTimeType setValue(Date theValue) {
+		// An invalid deferred value is being replaced, so it must not prevent reading the current precision
+		discardInvalidDeferredValue();
 		setValue(theValue, getPrecision());
 		return this;
 	}
@@ -656,6 +665,7 @@ public abstract class BaseDateTimeType extends PrimitiveType<Date> {
 	 * @throws DataFormatException
 	 */
 	public void setValue(Date theValue, TemporalPrecisionEnum thePrecision) throws DataFormatException {
+		discardInvalidDeferredValue();
 		if (getTimeZone() == null) {
 			setTimeZone(TimeZone.getDefault());
 		}
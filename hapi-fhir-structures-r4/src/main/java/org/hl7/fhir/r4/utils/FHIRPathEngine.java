@@ -121,8 +121,8 @@ public class FHIRPathEngine {
   private IWorkerContext worker;
   private IEvaluationContext hostServices;
   private StringBuilder log = new StringBuilder();
-  private Set<String> primitiveTypes = new HashSet<String>();
-  private Map<String, StructureDefinition> allTypes = new HashMap<String, StructureDefinition>();
+  private volatile Set<String> primitiveTypes;
+  private volatile Map<String, StructureDefinition> allTypes;
 
   // if the fhir path expressions are allowed to use constants beyond those defined in the specification
   // the application can implement them by providing a constant resolver 
@@ -214,13 +214,42 @@ public class FHIRPathEngine {
   public FHIRPathEngine(IWorkerContext worker) {
     super();
     this.worker = worker;
+  }
+
+  /**
+   * The type lists are only needed when type checking expressions, so they are built on first
+   * use rather than in the constructor (which would mean loading every structure definition
+   * each time an engine is created)
+   */
+  private Set<String> getPrimitiveTypes() {
+    if (primitiveTypes == null) {
+      loadTypes();
+    }
+    return primitiveTypes;
+  }
+
+  private Map<String, StructureDefinition> getAllTypes() {
+    if (allTypes == null) {
+      loadTypes();
+    }
+    return allTypes;
+  }
+
+  private synchronized void loadTypes() {
+    if (allTypes != null) {
+      return;
+    }
+    Set<String> primitives = new HashSet<String>();
+    Map<String, StructureDefinition> types = new HashMap<String, StructureDefinition>();
     for (StructureDefinition sd : worker.allStructures()) {
       if (sd.getDerivation() == TypeDerivationRule.SPECIALIZATION && sd.getKind() != StructureDefinitionKind.LOGICAL)
-        allTypes.put(sd.getName(), sd);
+        types.put(sd.getName(), sd);
       if (sd.getDerivation() == TypeDerivationRule.SPECIALIZATION && sd.getKind() == StructureDefinitionKind.PRIMITIVETYPE) {
-        primitiveTypes.add(sd.getName());
+        primitives.add(sd.getName());
       }
     }
+    primitiveTypes = primitives;
+    allTypes = types;
   }
 
 
@@ -2450,10 +2479,10 @@ public class FHIRPathEngine {
 
   private void checkContextPrimitive(TypeDetails focus, String name, boolean canQty) throws PathEngineException {
     if (canQty) {
-       if (!focus.hasType(primitiveTypes) && !focus.hasType("Quantity"))
-        throw new PathEngineException("The function '"+name+"'() can only be used on a Quantity or on "+primitiveTypes.toString()); 
-    } else if (!focus.hasType(primitiveTypes))
-      throw new PathEngineException("The function '"+name+"'() can only be used on "+primitiveTypes.toString()); 
+       if (!focus.hasType(getPrimitiveTypes()) && !focus.hasType("Quantity"))
+        throw new PathEngineException("The function '"+name+"'() can only be used on a Quantity or on "+getPrimitiveTypes().toString()); 
+    } else if (!focus.hasType(getPrimitiveTypes()))
+      throw new PathEngineException("The function '"+name+"'() can only be used on "+getPrimitiveTypes().toString()); 
   }
 
 
@@ -2465,7 +2494,7 @@ public class FHIRPathEngine {
   }
 
   private TypeDetails anything(CollectionStatus status) {
-    return new TypeDetails(status, allTypes.keySet());
+    return new TypeDetails(status, getAllTypes().keySet());
   }
 
   //	private boolean isPrimitiveType(String s) {
@@ -3650,7 +3679,7 @@ public class FHIRPathEngine {
         return new ElementDefinitionMatch(ed, null);
       if (allowTypedName && ed.getPath().endsWith("[x]") && path.startsWith(ed.getPath().substring(0, ed.getPath().length()-3)) && path.length() > ed.getPath().length()-3) {
     	String s = Utilities.uncapitalize(path.substring(ed.getPath().length()-3));
-    	if (primitiveTypes.contains(s))
+    	if (getPrimitiveTypes().contains(s))
           return new ElementDefinitionMatch(ed, s);
     	else
         return new ElementDefinitionMatch(ed, path.substring(ed.getPath().length()-3));
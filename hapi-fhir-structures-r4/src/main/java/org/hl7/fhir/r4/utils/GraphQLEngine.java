@@ -3,7 +3,9 @@ package org.hl7.fhir.r4.utils;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -206,6 +208,30 @@ public class GraphQLEngine {
     // just perform a standard search, and return the bundle as you return to the client  
     public Bundle search(Object appInfo, String type, List<Argument> searchParams) throws FHIRException;
   }
+
+  /**
+   * Storage services which are able to resolve many references at once. When the services implement
+   * this interface, the engine collects the references that the query will resolve for all of the
+   * resources at a given level (e.g. the subject of every Observation in a list), resolves them with
+   * a single call, and then does the same for the next level of the query.
+   */
+  public interface IGraphQLBatchStorageServices extends IGraphQLStorageServices {
+    // given a list of references, each inside the corresponding context, return what they reference. The 
+    // returned list must have the same size and order as the references, with null for any which can't be resolved
+    public List<ReferenceResolution> lookup(Object appInfo, List<Resource> contexts, List<Reference> references) throws FHIRException;
+  }
+
+  private static class PendingReference {
+    private Resource context;
+    private Reference reference;
+    private List<Selection> selection;
+    public PendingReference(Resource context, Reference reference, List<Selection> selection) {
+      super();
+      this.context = context;
+      this.reference = reference;
+      this.selection = selection;
+    }
+  }
   
   private IWorkerContext context;
   
@@ -245,6 +271,11 @@ public class GraphQLEngine {
   private FHIRPathEngine fpe;
 
   private ExpressionNode magicExpression;
+
+  /**
+   * references which have already been resolved in bulk (see IGraphQLBatchStorageServices)
+   */
+  private Map<Reference, ReferenceResolution> prefetchedReferences = new IdentityHashMap<Reference, ReferenceResolution>();
   
   public void execute() throws EGraphEngine, EGraphQLException, FHIRException {
     if (graphQL == null)
@@ -272,8 +303,78 @@ public class GraphQLEngine {
     processVariables(op);
     if (focus == null)
       processSearch(output, op.getSelectionSet(), false, "");
-    else
+    else {
+      prefetchReferences(Collections.singletonList(focus), op.getSelectionSet());
       processObject(focus, focus, output, op.getSelectionSet(), false, "");
+    }
+  }
+
+  /**
+   * if the services can resolve references in bulk, resolve all of the references which will be
+   * needed when processing the selection on each of the given resources, one level at a time
+   */
+  private void prefetchReferences(List<Resource> resources, List<Selection> selection) throws FHIRException {
+    if (!(services instanceof IGraphQLBatchStorageServices))
+      return;
+
+    List<PendingReference> level = new ArrayList<PendingReference>();
+    for (Resource r : resources)
+      collectReferences(r, r, selection, level);
+
+    while (!level.isEmpty()) {
+      List<Resource> contexts = new ArrayList<Resource>();
+      List<Reference> references = new ArrayList<Reference>();
+      Map<Reference, Boolean> seen = new IdentityHashMap<Reference, Boolean>();
+      for (PendingReference p : level) {
+        if (!prefetchedReferences.containsKey(p.reference) && seen.put(p.reference, Boolean.TRUE) == null) {
+          contexts.add(p.context);
+          references.add(p.reference);
+        }
+      }
+
+      if (!references.isEmpty()) {
+        List<ReferenceResolution> resolved = ((IGraphQLBatchStorageServices) services).lookup(appInfo, contexts, references);
+        for (int i = 0; i < references.size(); i++)
+          prefetchedReferences.put(references.get(i), resolved.get(i));
+      }
+
+      List<PendingReference> next = new ArrayList<PendingReference>();
+      for (PendingReference p : level) {
+        ReferenceResolution res = prefetchedReferences.get(p.reference);
+        if (res != null && res.target != null)
+          collectReferences(res.targetContext, res.target, p.selection, next);
+      }
+      level = next;
+    }
+  }
+
+  /**
+   * find the references which will be resolved (by a "resource" field) when processing the selection on the source
+   */
+  private void collectReferences(Resource context, Base source, List<Selection> selection, List<PendingReference> references) throws FHIRException {
+    for (Selection sel : selection) {
+      if (sel.getField() != null) {
+        Field field = sel.getField();
+        Property prop = source.getNamedProperty(field.getName());
+        if ((prop == null) && field.getName().startsWith("_"))
+          prop = source.getNamedProperty(field.getName().substring(1));
+        if (prop == null) {
+          if (field.getName().equals("resource") && source instanceof Reference && ((Reference) source).hasReference())
+            references.add(new PendingReference(context, (Reference) source, field.getSelectionSet()));
+        } else if (!field.getSelectionSet().isEmpty()) {
+          for (Base value : prop.getValues())
+            if (value != null && !value.isPrimitive())
+              collectReferences(context, value, field.getSelectionSet(), references);
+        }
+      } else if (sel.getInlineFragment() != null) {
+        if (source.fhirType().equals(sel.getInlineFragment().getTypeCondition()))
+          collectReferences(context, source, sel.getInlineFragment().getSelectionSet(), references);
+      } else if (sel.getFragmentSpread() != null) {
+        Fragment fragment = graphQL.getDocument().fragment(sel.getFragmentSpread().getName());
+        if (fragment != null && source.fhirType().equals(fragment.getTypeCondition()))
+          collectReferences(context, source, fragment.getSelectionSet(), references);
+      }
+    }
   }
 
   private boolean checkBooleanDirective(Directive dir) throws EGraphQLException {
@@ -592,7 +693,11 @@ public class GraphQLEngine {
       throw new EGraphQLException("Resource Referencing services not provided");
 
     Reference ref = (Reference) source;
-    ReferenceResolution res = services.lookup(appInfo, context, ref);
+    ReferenceResolution res;
+    if (prefetchedReferences.containsKey(ref))
+      res = prefetchedReferences.get(ref);
+    else
+      res = services.lookup(appInfo, context, ref);
     if (res != null) {
       if (targetTypeOk(field.getArguments(), res.target)) {
         Argument arg = target.addField(field.getAlias() + suffix, listStatus(field, inheritedList));
@@ -659,6 +764,7 @@ public class GraphQLEngine {
 
     List<Resource> vl = filterResources(field.argument("fhirpath"), list);
     if (!vl.isEmpty()) {
+      prefetchReferences(vl, field.getSelectionSet());
       arg = target.addField(field.getAlias()+suffix, listStatus(field, true));
       for (Resource v : vl) {
         obj = new ObjectValue();
@@ -723,6 +829,7 @@ public class GraphQLEngine {
     Resource res = services.lookup(appInfo, field.getName(), id);
     if (res == null)
       throw new EGraphQLException("Resource "+field.getName()+"/"+id+" not found");
+    prefetchReferences(Collections.singletonList(res), field.getSelectionSet());
     Argument arg = target.addField(field.getAlias()+suffix, listStatus(field, false));
     ObjectValue obj = new ObjectValue();
     arg.addValue(obj);
@@ -739,6 +846,7 @@ public class GraphQLEngine {
 
     List<Resource> vl = filterResources(field.argument("fhirpath"), list);
     if (!vl.isEmpty()) {
+      prefetchReferences(vl, field.getSelectionSet());
       arg = target.addField(field.getAlias()+suffix, listStatus(field, true));
       for (Resource v : vl) {
         obj = new ObjectValue();
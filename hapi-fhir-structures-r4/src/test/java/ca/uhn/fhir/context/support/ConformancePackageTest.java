@@ -0,0 +1,49 @@
+package ca.uhn.fhir.context.support;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.r4.hapi.ctx.DefaultProfileValidationSupport;
+import org.hl7.fhir.r4.model.StructureDefinition;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.Assert.*;
+
+public class ConformancePackageTest {
+	private static FhirContext ourCtx = FhirContext.forR4();
+
+	@Test
+	public void testInvalidPackage() {
+		try {
+			ConformancePackage.read(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+			fail();
+		} catch (Exception e) {
+			assertEquals("Not a conformance package", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testMissingPackageOnClasspath() {
+		assertNull(ConformancePackage.loadFromClasspath(ConformancePackageTest.class, "/does/not/exist.bin"));
+	}
+
+	@Test
+	public void testDefaultProfileValidationSupport() {
+		DefaultProfileValidationSupport validationSupport = new DefaultProfileValidationSupport();
+		StructureDefinition sd = validationSupport.fetchStructureDefinition(ourCtx, "http://hl7.org/fhir/StructureDefinition/string");
+		assertNotNull(sd);
+		assertSame(sd, validationSupport.fetchStructureDefinition(ourCtx, "string"));
+		assertTrue(validationSupport.fetchAllStructureDefinitions(ourCtx).contains(sd));
+
+		validationSupport.flush();
+		assertEquals("string", validationSupport.fetchStructureDefinition(ourCtx, "string").getName());
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
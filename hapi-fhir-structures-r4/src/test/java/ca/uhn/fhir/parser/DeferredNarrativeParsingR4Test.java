@@ -0,0 +1,144 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.PerformanceOptionsEnum;
+import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Composition;
+import org.hl7.fhir.utilities.xhtml.NodeType;
+import org.hl7.fhir.utilities.xhtml.XhtmlNode;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.*;
+
+public class DeferredNarrativeParsingR4Test {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(DeferredNarrativeParsingR4Test.class);
+	private static final String DIV = "<div xmlns=\"http://www.w3.org/1999/xhtml\"><p>Hello <b>world</b></p><table><tr><td>A &amp; B</td><td>Cell</td></tr></table></div>";
+	private static FhirContext ourCtx = FhirContext.forR4();
+	private static FhirContext ourDeferredCtx;
+
+	static {
+		ourDeferredCtx = FhirContext.forR4();
+		ourDeferredCtx.setPerformanceOptions(PerformanceOptionsEnum.DEFERRED_NARRATIVE_PARSING);
+	}
+
+	private String createComposition() {
+		return "{" +
+			"\"resourceType\":\"Composition\"," +
+			"\"id\":\"123\"," +
+			"\"text\":{\"status\":\"generated\",\"div\":\"" + DIV.replace("\"", "\\\"") + "\"}," +
+			"\"status\":\"final\"," +
+			"\"section\":[{\"title\":\"Section\",\"text\":{\"status\":\"generated\",\"div\":\"<div>Section text</div>\"}}]" +
+			"}";
+	}
+
+	@Test
+	public void testEncodePassesNarrativeThrough() {
+		String input = createComposition();
+		ourLog.info("Input: {}", input);
+
+		for (boolean json : new boolean[]{true, false}) {
+			IParser parser = json ? ourCtx.newJsonParser() : ourCtx.newXmlParser();
+			IParser deferredParser = json ? ourDeferredCtx.newJsonParser() : ourDeferredCtx.newXmlParser();
+
+			String source = parser.encodeResourceToString(ourCtx.newJsonParser().parseResource(Composition.class, input));
+			String expected = parser.encodeResourceToString(parser.parseResource(Composition.class, source));
+			String actual = deferredParser.encodeResourceToString(deferredParser.parseResource(Composition.class, source));
+			ourLog.info("Encoded: {}", actual);
+
+			assertEquals(expected, actual);
+			assertThat(actual, containsString("Section text"));
+		}
+	}
+
+	@Test
+	public void testDivStoredAsString() {
+		Composition composition = ourDeferredCtx.newJsonParser().parseResource(Composition.class, createComposition());
+
+		XhtmlNode div = composition.getText().getDiv();
+		assertFalse(div.isEmpty());
+		assertEquals(DIV, div.getValueAsString());
+		assertEquals(DIV, composition.getText().getDivAsString());
+
+		// Copies don't need to parse the value
+		XhtmlNode copy = composition.copy().getText().getDiv();
+		assertEquals(DIV, copy.getValueAsString());
+		assertTrue(copy.equalsDeep(div));
+	}
+
+	@Test
+	public void testTreeBuiltOnAccess() {
+		Composition eager = ourCtx.newJsonParser().parseResource(Composition.class, createComposition());
+		Composition deferred = ourDeferredCtx.newJsonParser().parseResource(Composition.class, createComposition());
+
+		XhtmlNode div = deferred.getText().getDiv();
+		assertEquals(NodeType.Element, div.getNodeType());
+		assertEquals("div", div.getName());
+		assertEquals("p", div.getFirstElement().getName());
+		assertThat(div.allText(), startsWith("Hello world"));
+		assertThat(div.allText(), endsWith("Cell"));
+		assertTrue(div.equalsDeep(eager.getText().getDiv()));
+		assertEquals(eager.getText().getDiv().getValueAsString(), div.getValueAsString());
+		assertEquals("Section text", deferred.getSectionFirstRep().getText().getDiv().allText());
+	}
+
+	@Test
+	public void testModifyDeferredDiv() {
+		Composition deferred = ourDeferredCtx.newJsonParser().parseResource(Composition.class, createComposition());
+
+		deferred.getText().getDiv().para().tx("Added");
+		String encoded = ourDeferredCtx.newJsonParser().encodeResourceToString(deferred);
+		ourLog.info("Encoded: {}", encoded);
+		assertThat(encoded, containsString("<b>world</b>"));
+		assertThat(encoded, containsString("<p>Added</p>"));
+
+		deferred.getText().getDiv().setValueAsStringDeferred("Plain text");
+		assertEquals("<div xmlns=\"http://www.w3.org/1999/xhtml\">Plain text</div>", deferred.getText().getDivAsString());
+		assertEquals("Plain text", deferred.getText().getDiv().allText());
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception {
+		Bundle bundle = new Bundle();
+		for (int i = 0; i < 1000; i++) {
+			bundle.addEntry().setResource(ourCtx.newJsonParser().parseResource(Composition.class, createComposition()));
+		}
+		String input = ourCtx.newJsonParser().encodeResourceToString(bundle);
+		Bundle deferred = ourDeferredCtx.newJsonParser().parseResource(Bundle.class, input);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(() -> {
+					for (Bundle.BundleEntryComponent next : deferred.getEntry()) {
+						XhtmlNode div = ((Composition) next.getResource()).getText().getDiv();
+						assertEquals("p", div.getFirstElement().getName());
+						assertThat(div.allText(), endsWith("Cell"));
+					}
+				}));
+			}
+			for (Future<?> next : futures) {
+				next.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
@@ -0,0 +1,213 @@
+package ca.uhn.fhir.parser;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.PerformanceOptionsEnum;
+import ca.uhn.fhir.model.api.TemporalPrecisionEnum;
+import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.r4.model.*;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.*;
+
+public class DeferredPrimitiveCoercionR4Test {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(DeferredPrimitiveCoercionR4Test.class);
+	private static FhirContext ourCtx = FhirContext.forR4();
+	private static FhirContext ourDeferredCtx;
+
+	static {
+		ourDeferredCtx = FhirContext.forR4();
+		ourDeferredCtx.setPerformanceOptions(PerformanceOptionsEnum.DEFERRED_PRIMITIVE_COERCION);
+	}
+
+	private String createObservation() {
+		return "{" +
+			"\"resourceType\":\"Observation\"," +
+			"\"id\":\"123\"," +
+			"\"meta\":{\"versionId\":\"2\",\"lastUpdated\":\"2018-05-01T10:11:12.123456+05:00\"}," +
+			"\"status\":\"final\"," +
+			"\"effectiveDateTime\":\"2011-01-02T11:22:33.1234-05:00\"," +
+			"\"issued\":\"2011-01-02T11:22:33Z\"," +
+			"\"valueQuantity\":{\"value\":1.000,\"unit\":\"mg\"}," +
+			"\"component\":[{\"valueInteger\":12},{\"valueBoolean\":true}]" +
+			"}";
+	}
+
+	@Test
+	public void testEncodedOutputIsIdentical() {
+		String input = createObservation();
+
+		for (boolean json : new boolean[]{true, false}) {
+			IParser parser = json ? ourCtx.newJsonParser() : ourCtx.newXmlParser();
+			IParser deferredParser = json ? ourDeferredCtx.newJsonParser() : ourDeferredCtx.newXmlParser();
+
+			String source = parser.encodeResourceToString(ourCtx.newJsonParser().parseResource(Observation.class, input));
+			String expected = parser.encodeResourceToString(parser.parseResource(Observation.class, source));
+			String actual = deferredParser.encodeResourceToString(deferredParser.parseResource(Observation.class, source));
+			ourLog.info("Encoded: {}", actual);
+
+			assertEquals(expected, actual);
+			assertThat(actual, containsString("2011-01-02T11:22:33.1234-05:00"));
+			assertThat(actual, containsString("1.000"));
+		}
+	}
+
+	@Test
+	public void testTypedAccess() {
+		Observation eager = ourCtx.newJsonParser().parseResource(Observation.class, createObservation());
+		Observation deferred = ourDeferredCtx.newJsonParser().parseResource(Observation.class, createObservation());
+
+		assertEquals("123", deferred.getIdElement().getIdPart());
+		assertEquals(Observation.ObservationStatus.FINAL, deferred.getStatus());
+
+		DateTimeType effective = deferred.getEffectiveDateTimeType();
+		assertEquals("2011-01-02T11:22:33.1234-05:00", effective.getValueAsString());
+		assertEquals(TemporalPrecisionEnum.MILLI, effective.getPrecision());
+		assertEquals(Long.valueOf(123400000L), effective.getNanos());
+		assertEquals(eager.getEffectiveDateTimeType().getTimeZone(), effective.getTimeZone());
+		assertEquals(eager.getEffectiveDateTimeType().getValue(), effective.getValue());
+
+		assertTrue(deferred.getIssuedElement().isTimeZoneZulu());
+		assertEquals(eager.getIssued(), deferred.getIssued());
+		assertEquals(eager.getMeta().getLastUpdated(), deferred.getMeta().getLastUpdated());
+		assertEquals(new BigDecimal("1.000"), deferred.getValueQuantity().getValue());
+		assertEquals(12, deferred.getComponent().get(0).getValueIntegerType().getValue().intValue());
+		assertTrue(deferred.getComponent().get(1).getValueBooleanType().booleanValue());
+		assertTrue(eager.equalsDeep(deferred));
+	}
+
+	@Test
+	public void testModifyDeferredValue() {
+		Observation deferred = ourDeferredCtx.newJsonParser().parseResource(Observation.class, createObservation());
+
+		DateTimeType effective = deferred.getEffectiveDateTimeType();
+		effective.setTimeZoneZulu(true);
+		assertEquals("2011-01-02T16:22:33.1234Z", effective.getValueAsString());
+
+		deferred = ourDeferredCtx.newJsonParser().parseResource(Observation.class, createObservation());
+		effective = deferred.getEffectiveDateTimeType();
+		effective.setPrecision(TemporalPrecisionEnum.DAY);
+		assertEquals("2011-01-02", effective.getValueAsString());
+
+		deferred = ourDeferredCtx.newJsonParser().parseResource(Observation.class, createObservation());
+		InstantType issued = deferred.getIssuedElement();
+		issued.setTimeZone(TimeZone.getTimeZone("GMT+01:00"));
+		assertEquals("2011-01-02T12:22:33+01:00", issued.getValueAsString());
+
+		deferred.getValueQuantity().setValue(2);
+		assertEquals("2", deferred.getValueQuantity().getValueElement().getValueAsString());
+	}
+
+	@Test
+	public void testInvalidValueReportedOnAccess() {
+		FhirContext ctx = FhirContext.forR4();
+		ctx.setPerformanceOptions(PerformanceOptionsEnum.DEFERRED_PRIMITIVE_COERCION);
+		ctx.setParserErrorHandler(new StrictErrorHandler());
+
+		String input = "{\"resourceType\":\"Patient\",\"birthDate\":\"2011-99\"}";
+		Patient patient = ctx.newJsonParser().parseResource(Patient.class, input);
+		assertEquals("2011-99", patient.getBirthDateElement().getValueAsString());
+		assertThat(ctx.newJsonParser().encodeResourceToString(patient), containsString("\"2011-99\""));
+
+		try {
+			patient.getBirthDate();
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("2011-99"));
+		}
+
+		// The value is still invalid the next time it is accessed
+		try {
+			patient.getBirthDate();
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("2011-99"));
+		}
+
+		// Without the option, the error handler is notified during parsing
+		try {
+			ourCtx.newJsonParser().setParserErrorHandler(new StrictErrorHandler()).parseResource(Patient.class, input);
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("2011-99"));
+		}
+	}
+
+	@Test
+	public void testSetValueReplacesInvalidDeferredValue() {
+		String input = "{\"resourceType\":\"Patient\",\"birthDate\":\"2011-99\"}";
+		Patient patient = ourDeferredCtx.newJsonParser().parseResource(Patient.class, input);
+
+		Date date = new DateType("2012-03-04").getValue();
+		patient.getBirthDateElement().setValue(date);
+		assertEquals("2012-03-04", patient.getBirthDateElement().getValueAsString());
+		assertEquals(date, patient.getBirthDate());
+
+		// A valid deferred value keeps its precision
+		Observation deferred = ourDeferredCtx.newJsonParser().parseResource(Observation.class, createObservation());
+		DateTimeType effective = deferred.getEffectiveDateTimeType();
+		effective.setValue(date);
+		assertEquals(TemporalPrecisionEnum.MILLI, effective.getPrecision());
+		assertEquals(date, effective.getValue());
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception {
+		Bundle bundle = new Bundle();
+		for (int i = 0; i < 1000; i++) {
+			bundle.addEntry().setResource(ourCtx.newJsonParser().parseResource(Observation.class, createObservation()));
+		}
+		String input = ourCtx.newJsonParser().encodeResourceToString(bundle);
+		Bundle deferred = ourDeferredCtx.newJsonParser().parseResource(Bundle.class, input);
+		Date expected = ((Observation) bundle.getEntry().get(0).getResource()).getEffectiveDateTimeType().getValue();
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(() -> {
+					for (Bundle.BundleEntryComponent next : deferred.getEntry()) {
+						DateTimeType effective = ((Observation) next.getResource()).getEffectiveDateTimeType();
+						assertEquals(expected, effective.getValue());
+						assertEquals(TemporalPrecisionEnum.MILLI, effective.getPrecision());
+					}
+				}));
+			}
+			for (Future<?> next : futures) {
+				next.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testEncodeInvalidDecimal() {
+		String input = "{\"resourceType\":\"Observation\",\"status\":\"final\",\"valueQuantity\":{\"value\":\"ABC\"}}";
+		Observation obs = ourDeferredCtx.newJsonParser().parseResource(Observation.class, input);
+		assertEquals("ABC", obs.getValueQuantity().getValueElement().getValueAsString());
+
+		try {
+			ourDeferredCtx.newJsonParser().encodeResourceToString(obs);
+			fail();
+		} catch (DataFormatException e) {
+			assertEquals("Invalid decimal value: ABC", e.getMessage());
+		}
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
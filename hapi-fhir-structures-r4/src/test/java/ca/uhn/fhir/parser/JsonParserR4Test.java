@@ -303,6 +303,48 @@ public class JsonParserR4Test {
 		assertEquals("GIVEN", ((Patient) b.getEntry().get(0).getResource()).getNameFirstRep().getGivenAsSingleString());
 	}
 
+	@Test
+	public void testEncodeElementsWithReusedParser() {
+		Bundle b = new Bundle();
+		b.setType(Bundle.BundleType.SEARCHSET);
+		for (int i = 0; i < 3; i++) {
+			Patient p = new Patient();
+			p.setId("PATIENT" + i);
+			p.addName().setFamily("FAMILY" + i);
+			p.setGender(Enumerations.AdministrativeGender.FEMALE);
+			b.addEntry().setResource(p);
+		}
+
+		IParser parser = ourCtx.newJsonParser();
+		parser.setEncodeElementsAppliesToChildResourcesOnly(true);
+		parser.setEncodeElements(Sets.newHashSet("Patient.name"));
+		String encoded = parser.encodeResourceToString(b);
+		ourLog.info(encoded);
+		assertThat(encoded, containsString("searchset"));
+		assertThat(encoded, containsString("FAMILY0"));
+		assertThat(encoded, containsString("FAMILY2"));
+		assertThat(encoded, not(containsString("female")));
+
+		// Changing the filter must not reuse the results of the previous one
+		parser.setEncodeElements(Sets.newHashSet("Patient.gender"));
+		encoded = parser.encodeResourceToString(b);
+		ourLog.info(encoded);
+		assertThat(encoded, not(containsString("FAMILY0")));
+		assertThat(encoded, containsString("female"));
+
+		parser.setEncodeElements(null);
+		parser.setDontEncodeElements(Sets.newHashSet("Patient.gender"));
+		encoded = parser.encodeResourceToString(b);
+		ourLog.info(encoded);
+		assertThat(encoded, containsString("FAMILY1"));
+		assertThat(encoded, not(containsString("female")));
+
+		parser.setDontEncodeElements(null);
+		encoded = parser.encodeResourceToString(b);
+		assertThat(encoded, containsString("FAMILY1"));
+		assertThat(encoded, containsString("female"));
+	}
+
 	/**
 	 * Test that long JSON strings don't get broken up
 	 */
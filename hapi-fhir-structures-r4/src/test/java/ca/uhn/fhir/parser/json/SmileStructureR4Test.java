@@ -0,0 +1,104 @@
+package ca.uhn.fhir.parser.json;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IJsonLikeParser;
+import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.r4.model.*;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.*;
+
+public class SmileStructureR4Test {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SmileStructureR4Test.class);
+	private static FhirContext ourCtx = FhirContext.forR4();
+
+	private Bundle createBundle() {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.SEARCHSET);
+		for (int i = 0; i < 20; i++) {
+			Observation obs = new Observation();
+			obs.setId("Observation/" + i);
+			obs.getText().setStatus(Narrative.NarrativeStatus.GENERATED).setDivAsString("<div>Observation <b>" + i + "</b></div>");
+			obs.setStatus(Observation.ObservationStatus.FINAL);
+			obs.getCode().addCoding().setSystem("http://loinc.org").setCode("1234-5").setDisplay("A code");
+			obs.setValue(new Quantity().setValue(new BigDecimal("1.000")).setUnit("mg"));
+			obs.setEffective(new DateTimeType("2011-01-02T11:22:33.1234-05:00"));
+			obs.addComponent().setValue(new IntegerType(i));
+			obs.addComponent().setValue(new BooleanType(i % 2 == 0));
+			obs.addExtension().setUrl("http://example.com/ext").setValue(new StringType("Ext " + i));
+			bundle.addEntry().setResource(obs);
+		}
+		return bundle;
+	}
+
+	private byte[] encode(Bundle theBundle) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		IJsonLikeParser parser = (IJsonLikeParser) ourCtx.newJsonParser();
+		parser.encodeResourceToJsonLikeWriter(theBundle, new SmileStructure().getJsonLikeWriter(os));
+		return os.toByteArray();
+	}
+
+	@Test
+	public void testEncodeAndParse() throws IOException {
+		Bundle input = createBundle();
+		byte[] smile = encode(input);
+		String json = ourCtx.newJsonParser().encodeResourceToString(input);
+		ourLog.info("Smile is {} bytes, JSON is {} chars", smile.length, json.length());
+		assertThat(smile.length, lessThan(json.length()));
+
+		SmileStructure structure = new SmileStructure();
+		structure.load(new ByteArrayInputStream(smile));
+		IJsonLikeParser parser = (IJsonLikeParser) ourCtx.newJsonParser();
+		Bundle output = parser.parseResource(Bundle.class, structure);
+
+		assertEquals(json, ourCtx.newJsonParser().encodeResourceToString(output));
+		Observation obs = (Observation) output.getEntry().get(3).getResource();
+		assertEquals("1.000", obs.getValueQuantity().getValueElement().getValueAsString());
+		assertEquals(3, obs.getComponent().get(0).getValueIntegerType().getValue().intValue());
+		assertFalse(obs.getComponent().get(1).getValueBooleanType().booleanValue());
+		assertThat(obs.getText().getDivAsString(), containsString("<b>3</b>"));
+	}
+
+	@Test
+	public void testParseInvalidContent() {
+		try {
+			new SmileStructure().load(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("Failed to parse Smile"));
+		}
+
+		try {
+			new SmileStructure().load(new ByteArrayInputStream(new byte[0]));
+			fail();
+		} catch (DataFormatException e) {
+			// good
+		}
+	}
+
+	@Test
+	public void testTextMethodsNotSupported() {
+		try {
+			new SmileStructure().load(new StringReader("{}"));
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// good
+		}
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
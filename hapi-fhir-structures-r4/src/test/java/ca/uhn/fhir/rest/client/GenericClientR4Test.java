@@ -18,6 +18,7 @@ import ca.uhn.fhir.rest.client.exceptions.NonFhirResponseException;
 import ca.uhn.fhir.rest.client.impl.BaseClient;
 import ca.uhn.fhir.rest.client.interceptor.CookieInterceptor;
 import ca.uhn.fhir.rest.client.interceptor.UserInfoInterceptor;
+import ca.uhn.fhir.rest.gclient.ISearchResultIterator;
 import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.ParamPrefixEnum;
@@ -59,10 +60,16 @@ import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -637,6 +644,46 @@ public class GenericClientR4Test {
 		assertEquals("http://testForceConformance.com/fhir/metadata", capt.getAllValues().get(3).getURI().toASCIIString());
 	}
 
+	@Test
+	public void testReadAsyncValidatesConformanceOnce() throws Exception {
+		final IParser p = ourCtx.newXmlParser();
+
+		final CapabilityStatement conf = new CapabilityStatement();
+		conf.setCopyright("COPY");
+
+		final Patient patient = new Patient();
+		patient.addName().setFamily("FAM");
+
+		final List<String> uris = Collections.synchronizedList(new ArrayList<>());
+		when(myHttpClient.execute(any(HttpUriRequest.class))).thenAnswer(t -> {
+			uris.add(((HttpUriRequest) t.getArgument(0)).getURI().toASCIIString());
+			return myHttpResponse;
+		});
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", Constants.CT_FHIR_XML + "; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).thenAnswer(t -> {
+			String lastUri = uris.get(uris.size() - 1);
+			String respString = lastUri.endsWith("/metadata") ? p.encodeResourceToString(conf) : p.encodeResourceToString(patient);
+			return new ReaderInputStream(new StringReader(respString), Charset.forName("UTF-8"));
+		});
+
+		ourCtx.getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.ONCE);
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://testReadAsyncValidatesConformanceOnce.com/fhir");
+
+		List<CompletableFuture<Patient>> futures = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			futures.add(client.read().resource(Patient.class).withId("1").executeAsync());
+		}
+		for (CompletableFuture<Patient> next : futures) {
+			assertEquals("FAM", next.get(10, TimeUnit.SECONDS).getNameFirstRep().getFamily());
+		}
+
+		// The conformance statement is fetched before any of the reads, and only once
+		assertEquals(6, uris.size());
+		assertEquals("http://testReadAsyncValidatesConformanceOnce.com/fhir/metadata", uris.get(0));
+		assertEquals(1, uris.stream().filter(t -> t.endsWith("/metadata")).count());
+	}
+
 	@Test
 	public void testHistoryTypeWithAt() throws Exception {
 
@@ -1373,6 +1420,112 @@ public class GenericClientR4Test {
 		}
 	}
 
+	@Test
+	public void testReadAsyncWithUnparseableResponse() throws Exception {
+		String msg = "{\"resourceTypeeeee\":\"Patient\"}";
+
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", Constants.CT_FHIR_JSON + "; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).thenReturn(new ReaderInputStream(new StringReader(msg), Charset.forName("UTF-8")));
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+
+		CompletableFuture<IBaseResource> future = client.read().resource("Patient").withId("123").elementsSubset("name", "identifier").executeAsync();
+		try {
+			future.join();
+			fail();
+		} catch (CompletionException e) {
+			assertEquals(FhirClientConnectionException.class, e.getCause().getClass());
+			assertEquals(
+				"Failed to parse response from server when performing GET to URL http://example.com/fhir/Patient/123?_elements=identifier%2Cname - ca.uhn.fhir.parser.DataFormatException: Invalid JSON content detected, missing required element: 'resourceType'",
+				e.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void testSearchIterateAllPages() throws Exception {
+		final List<String> pages = new ArrayList<>();
+		for (int page = 0; page < 3; page++) {
+			Bundle bundle = new Bundle();
+			bundle.setType(BundleType.SEARCHSET);
+			if (page < 2) {
+				bundle.addLink().setRelation("next").setUrl("http://example.com/fhir?_getpages=abc&_getpagesoffset=" + ((page + 1) * 2));
+			}
+			for (int i = 0; i < 2; i++) {
+				Patient pt = new Patient();
+				pt.setId("Patient/" + ((page * 2) + i));
+				bundle.addEntry().setResource(pt).getSearch().setMode(Bundle.SearchEntryMode.MATCH);
+			}
+			Organization org = new Organization();
+			org.setId("Organization/" + page);
+			bundle.addEntry().setResource(org).getSearch().setMode(Bundle.SearchEntryMode.INCLUDE);
+			pages.add(ourCtx.newJsonParser().encodeResourceToString(bundle));
+		}
+
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", Constants.CT_FHIR_JSON + "; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).then(new Answer<InputStream>() {
+			@Override
+			public InputStream answer(InvocationOnMock theInvocation) {
+				return new ReaderInputStream(new StringReader(pages.get(myAnswerCount++)), Charset.forName("UTF-8"));
+			}
+		});
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+
+		List<String> ids = new ArrayList<>();
+		try (ISearchResultIterator<Patient> iter = client
+			.search()
+			.forResource("Patient")
+			.include(Patient.INCLUDE_ORGANIZATION)
+			.returnBundle(Bundle.class)
+			.iterate(Patient.class)) {
+			while (iter.hasNext()) {
+				ids.add(iter.next().getIdElement().toUnqualifiedVersionless().getValue());
+			}
+			assertEquals(3, iter.getPagesLoaded());
+		}
+
+		assertThat(ids, contains("Patient/0", "Patient/1", "Patient/2", "Patient/3", "Patient/4", "Patient/5"));
+		assertEquals(3, capt.getAllValues().size());
+		assertEquals("http://example.com/fhir/Patient?_include=Patient%3Aorganization", capt.getAllValues().get(0).getURI().toASCIIString());
+		assertEquals("http://example.com/fhir?_getpages=abc&_getpagesoffset=2", capt.getAllValues().get(1).getURI().toASCIIString());
+		assertEquals("http://example.com/fhir?_getpages=abc&_getpagesoffset=4", capt.getAllValues().get(2).getURI().toASCIIString());
+	}
+
+	@Test
+	public void testSearchAsync() throws Exception {
+		ArgumentCaptor<HttpUriRequest> capt = prepareClientForSearchResponse();
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+
+		List<CompletableFuture<Bundle>> futures = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			futures.add(client
+				.search()
+				.forResource("Patient")
+				.where(Patient.NAME.matches().value("NAME" + i))
+				.returnBundle(Bundle.class)
+				.executeAsync());
+		}
+
+		for (CompletableFuture<Bundle> next : futures) {
+			Bundle response = next.get(10, TimeUnit.SECONDS);
+			assertEquals("Patient/1", response.getEntryFirstRep().getResource().getIdElement().toUnqualifiedVersionless().getValue());
+		}
+
+		assertEquals(5, capt.getAllValues().size());
+		Set<String> uris = new TreeSet<>();
+		for (HttpUriRequest next : capt.getAllValues()) {
+			uris.add(next.getURI().toASCIIString());
+		}
+		assertThat(uris, hasItem("http://example.com/fhir/Patient?name=NAME3"));
+	}
+
 	@Test
 	public void testResponseHasContentTypeMissing() throws Exception {
 		IParser p = ourCtx.newXmlParser();
@@ -0,0 +1,293 @@
+package ca.uhn.fhir.rest.client;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.CacheControlDirective;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.client.api.IClientInterceptor;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.api.ServerValidationModeEnum;
+import ca.uhn.fhir.rest.client.interceptor.AdditionalRequestHeadersInterceptor;
+import ca.uhn.fhir.rest.client.interceptor.BearerTokenAuthInterceptor;
+import ca.uhn.fhir.rest.client.interceptor.ResponseCachingInterceptor;
+import ca.uhn.fhir.util.RandomServerPortProvider;
+import ca.uhn.fhir.util.TestUtil;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResponseCachingInterceptorTest {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ResponseCachingInterceptorTest.class);
+	private static FhirContext ourCtx;
+	private static Server ourServer;
+	private static String ourServerBase;
+	private static List<String> ourIfNoneMatchHeaders;
+	private static String ourCacheControl;
+	private static String ourFamily;
+	private static String ourVary;
+	private IGenericClient myClient;
+	private ResponseCachingInterceptor myInterceptor;
+
+	@Before
+	public void before() {
+		ourIfNoneMatchHeaders = new ArrayList<>();
+		ourCacheControl = null;
+		ourFamily = "FAMILY";
+		ourVary = null;
+
+		myInterceptor = new ResponseCachingInterceptor();
+		myClient = ourCtx.newRestfulGenericClient(ourServerBase);
+		myClient.registerInterceptor(myInterceptor);
+	}
+
+	@Test
+	public void testReadRevalidatesUsingETag() {
+		Patient patient = myClient.read().resource(Patient.class).withId("123").execute();
+		assertEquals("FAMILY", patient.getNameFirstRep().getFamily());
+		patient.getNameFirstRep().setFamily("MODIFIED");
+
+		patient = myClient.read().resource(Patient.class).withId("123").execute();
+		assertEquals("FAMILY", patient.getNameFirstRep().getFamily());
+		assertEquals("1", patient.getIdElement().getVersionIdPart());
+
+		assertEquals(2, ourIfNoneMatchHeaders.size());
+		assertNull(ourIfNoneMatchHeaders.get(0));
+		assertEquals("W/\"1\"", ourIfNoneMatchHeaders.get(1));
+		assertEquals(0, myInterceptor.getHitCount());
+		assertEquals(1, myInterceptor.getRevalidatedCount());
+		assertEquals(1, myInterceptor.getMissCount());
+		assertEquals(0.5, myInterceptor.getHitRatio(), 0.001);
+		assertEquals(1, myInterceptor.size());
+	}
+
+	@Test
+	public void testReadChangedResourceReplacesCachedResponse() {
+		myClient.read().resource(Patient.class).withId("123").execute();
+
+		ourFamily = "FAMILY2";
+		Patient patient = myClient.read().resource(Patient.class).withId("123").execute();
+		assertEquals("FAMILY2", patient.getNameFirstRep().getFamily());
+		assertEquals(2, myInterceptor.getMissCount());
+
+		patient = myClient.read().resource(Patient.class).withId("123").execute();
+		assertEquals("FAMILY2", patient.getNameFirstRep().getFamily());
+		assertEquals(1, myInterceptor.getRevalidatedCount());
+	}
+
+	@Test
+	public void testReadWithMaxAgeIsServedFromCache() {
+		ourCacheControl = "max-age=60";
+
+		myClient.read().resource(Patient.class).withId("123").execute();
+		Patient patient = myClient.read().resource(Patient.class).withId("123").execute();
+
+		assertEquals("FAMILY", patient.getNameFirstRep().getFamily());
+		assertEquals(1, ourIfNoneMatchHeaders.size());
+		assertEquals(1, myInterceptor.getHitCount());
+	}
+
+	@Test
+	public void testReadWithNoCacheDirectiveBypassesCache() {
+		ourCacheControl = "max-age=60";
+
+		myClient.read().resource(Patient.class).withId("123").execute();
+		myClient.read().resource(Patient.class).withId("123").cacheControl(new CacheControlDirective().setNoCache(true)).execute();
+
+		assertEquals(2, ourIfNoneMatchHeaders.size());
+		assertNull(ourIfNoneMatchHeaders.get(1));
+	}
+
+	@Test
+	public void testResponseWithNoStoreIsNotCached() {
+		ourCacheControl = Constants.CACHE_CONTROL_NO_STORE;
+
+		myClient.read().resource(Patient.class).withId("123").execute();
+		myClient.read().resource(Patient.class).withId("123").execute();
+
+		assertEquals(0, myInterceptor.size());
+		assertNull(ourIfNoneMatchHeaders.get(1));
+	}
+
+	@Test
+	public void testUpdateInvalidatesCachedResponse() {
+		myClient.read().resource(Patient.class).withId("123").execute();
+		assertEquals(1, myInterceptor.size());
+
+		Patient patient = new Patient();
+		patient.setId("Patient/123");
+		myClient.update().resource(patient).execute();
+
+		assertEquals(0, myInterceptor.size());
+	}
+
+	@Test
+	public void testExplicitConditionalReadIsNotAffected() {
+		myClient.read().resource(Patient.class).withId("123").execute();
+
+		Patient patient = myClient.read().resource(Patient.class).withId("123").ifVersionMatches("1").returnNull().execute();
+		assertNull(patient);
+		assertEquals(0, myInterceptor.getRevalidatedCount());
+	}
+
+	@Test
+	public void testFactoryInterceptorIsRegisteredWithNewClients() {
+		FhirContext ctx = FhirContext.forR4();
+		ctx.getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.NEVER);
+		ctx.getRestfulClientFactory().registerInterceptor(myInterceptor);
+
+		ctx.newRestfulGenericClient(ourServerBase).read().resource(Patient.class).withId("123").execute();
+		ctx.newRestfulGenericClient(ourServerBase).read().resource(Patient.class).withId("123").execute();
+
+		assertEquals(1, myInterceptor.getRevalidatedCount());
+		assertTrue(ctx.newRestfulGenericClient(ourServerBase).getInterceptors().contains(myInterceptor));
+	}
+
+	@Test
+	public void testEvictsWhenMaximumSizeExceeded() {
+		myClient.read().resource(Patient.class).withId("123").execute();
+		assertEquals(1, myInterceptor.size());
+
+		myInterceptor.setMaxCacheSizeBytes(1);
+		assertEquals(0, myInterceptor.size());
+		assertEquals(0, myInterceptor.getCacheSizeBytes());
+	}
+
+	private IGenericClient newClient(IClientInterceptor theHeaderInterceptor) {
+		IGenericClient client = ourCtx.newRestfulGenericClient(ourServerBase);
+		// Registered first so that the cache sees the headers it adds
+		client.registerInterceptor(theHeaderInterceptor);
+		client.registerInterceptor(myInterceptor);
+		return client;
+	}
+
+	private IGenericClient newClientWithTenant(String theTenant) {
+		AdditionalRequestHeadersInterceptor headers = new AdditionalRequestHeadersInterceptor();
+		headers.addHeaderValue("X-Tenant", theTenant);
+		return newClient(headers);
+	}
+
+	@Test
+	public void testResponsesAreNotSharedBetweenCredentials() {
+		ourCacheControl = "max-age=60";
+
+		newClient(new BearerTokenAuthInterceptor("TOKEN1")).read().resource(Patient.class).withId("123").execute();
+		newClient(new BearerTokenAuthInterceptor("TOKEN2")).read().resource(Patient.class).withId("123").execute();
+		assertEquals(0, myInterceptor.getHitCount());
+		assertEquals(2, myInterceptor.size());
+
+		newClient(new BearerTokenAuthInterceptor("TOKEN1")).read().resource(Patient.class).withId("123").execute();
+		assertEquals(1, myInterceptor.getHitCount());
+		assertEquals(2, ourIfNoneMatchHeaders.size());
+	}
+
+	@Test
+	public void testResponseWithVaryIsOnlyUsedForMatchingRequests() {
+		ourCacheControl = "max-age=60";
+		ourVary = "X-Tenant";
+
+		newClientWithTenant("A").read().resource(Patient.class).withId("123").execute();
+		newClientWithTenant("A").read().resource(Patient.class).withId("123").execute();
+		assertEquals(1, myInterceptor.getHitCount());
+		assertEquals(1, ourIfNoneMatchHeaders.size());
+
+		// A different tenant must not be given the cached response, or revalidate it
+		newClientWithTenant("B").read().resource(Patient.class).withId("123").execute();
+		assertEquals(1, myInterceptor.getHitCount());
+		assertEquals(2, ourIfNoneMatchHeaders.size());
+		assertNull(ourIfNoneMatchHeaders.get(1));
+		assertEquals(1, myInterceptor.size());
+	}
+
+	@Test
+	public void testResponseWithVaryStarIsNotCached() {
+		ourCacheControl = "max-age=60";
+		ourVary = "*";
+
+		myClient.read().resource(Patient.class).withId("123").execute();
+		myClient.read().resource(Patient.class).withId("123").execute();
+
+		assertEquals(0, myInterceptor.getHitCount());
+		assertEquals(0, myInterceptor.size());
+		assertNull(ourIfNoneMatchHeaders.get(1));
+	}
+
+	private static class TestServlet extends HttpServlet {
+
+		@Override
+		protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+			if (!req.getMethod().equals("GET")) {
+				resp.setStatus(200);
+				return;
+			}
+
+			String ifNoneMatch = req.getHeader(Constants.HEADER_IF_NONE_MATCH);
+			ourIfNoneMatchHeaders.add(ifNoneMatch);
+
+			String version = ourFamily.equals("FAMILY") ? "1" : "2";
+			String etag = "W/\"" + version + "\"";
+			if (ourCacheControl != null) {
+				resp.addHeader(Constants.HEADER_CACHE_CONTROL, ourCacheControl);
+			}
+			resp.addHeader(Constants.HEADER_ETAG, etag);
+			if (ourVary != null) {
+				resp.addHeader(Constants.HEADER_VARY, ourVary);
+			}
+
+			if (ifNoneMatch != null && ifNoneMatch.endsWith("\"" + version + "\"")) {
+				resp.setStatus(304);
+				return;
+			}
+
+			Patient patient = new Patient();
+			patient.setId("Patient/123/_history/" + version);
+			patient.addName().setFamily(ourFamily);
+
+			resp.setStatus(200);
+			resp.setContentType("application/fhir+json; charset=UTF-8");
+			resp.getWriter().append(ourCtx.newJsonParser().encodeResourceToString(patient));
+			resp.getWriter().close();
+		}
+
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() throws Exception {
+		ourServer.stop();
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		ourCtx = FhirContext.forR4();
+
+		int port = RandomServerPortProvider.findFreePort();
+		ourServer = new Server(port);
+
+		ServletContextHandler proxyHandler = new ServletContextHandler();
+		proxyHandler.setContextPath("/");
+
+		ourServerBase = "http://localhost:" + port + "/fhir/context";
+		ourCtx.getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.NEVER);
+
+		ServletHolder servletHolder = new ServletHolder();
+		servletHolder.setServlet(new TestServlet());
+		proxyHandler.addServlet(servletHolder, "/fhir/context/*");
+
+		ourServer.setHandler(proxyHandler);
+		ourServer.start();
+	}
+
+}
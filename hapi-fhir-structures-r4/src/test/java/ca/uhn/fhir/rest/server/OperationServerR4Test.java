@@ -33,6 +33,9 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
@@ -47,6 +50,7 @@ public class OperationServerR4Test {
 	private static CloseableHttpClient ourClient;
 	private static FhirContext ourCtx;
 	private static IdType ourLastId;
+	private static String ourLastBody;
 	private static String ourLastMethod;
 	private static StringType ourLastParam1;
 	private static Patient ourLastParam2;
@@ -59,6 +63,7 @@ public class OperationServerR4Test {
 
 	@Before
 	public void before() {
+		ourLastBody = null;
 		ourLastParam1 = null;
 		ourLastParam2 = null;
 		ourLastParam3 = null;
@@ -589,6 +594,38 @@ public class OperationServerR4Test {
 		}
 	}
 
+	@Test
+	public void testOperationWithManualResponse() throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/$manualResponse?PARAM1=PARAM1val");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			assertEquals(202, status.getStatusLine().getStatusCode());
+			assertEquals("$manualResponse", ourLastMethod);
+			assertEquals("PARAM1val", ourLastParam1.getValue());
+
+			assertEquals("http://foo/status", status.getFirstHeader(Constants.HEADER_CONTENT_LOCATION).getValue());
+			assertThat(status.getEntity().getContentType().getValue(), startsWith(Constants.CT_FHIR_NDJSON));
+			assertEquals("{\"resourceType\":\"Patient\"}\n", IOUtils.toString(status.getEntity().getContent(), Charsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void testOperationWithManualRequest() throws Exception {
+		String body = "{\"resourceType\":\"Patient\"}\n{\"resourceType\":\"Patient\"}\n";
+		HttpPost httpPost = new HttpPost("http://localhost:" + ourPort + "/$manualRequest?PARAM1=PARAM1val");
+		httpPost.setEntity(new StringEntity(body, ContentType.create(Constants.CT_FHIR_NDJSON, StandardCharsets.UTF_8)));
+		try (CloseableHttpResponse status = ourClient.execute(httpPost)) {
+			String response = IOUtils.toString(status.getEntity().getContent(), Charsets.UTF_8);
+			ourLog.info(response);
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			assertEquals("$manualRequest", ourLastMethod);
+			assertEquals("PARAM1val", ourLastParam1.getValue());
+			assertEquals(body, ourLastBody);
+
+			Parameters resp = ourCtx.newXmlParser().parseResource(Parameters.class, response);
+			assertEquals(body.length(), ((IntegerType) resp.getParameterFirstRep().getValue()).getValue().intValue());
+		}
+	}
+
 	public static class PatientProvider implements IResourceProvider {
 
 		@Override
@@ -803,6 +840,38 @@ public class OperationServerR4Test {
 			return retVal;
 		}
 
+		@Operation(name = "$manualResponse", idempotent = true, manualResponse = true)
+		public void manualResponse(
+			@OperationParam(name = "PARAM1", min = 0, max = 1) StringType theParam1,
+			HttpServletResponse theServletResponse
+		) throws IOException {
+
+			ourLastMethod = "$manualResponse";
+			ourLastParam1 = theParam1;
+
+			theServletResponse.setStatus(202);
+			theServletResponse.addHeader(Constants.HEADER_CONTENT_LOCATION, "http://foo/status");
+			theServletResponse.setContentType(Constants.CT_FHIR_NDJSON);
+			theServletResponse.setCharacterEncoding(Constants.CHARSET_NAME_UTF8);
+			theServletResponse.getWriter().append("{\"resourceType\":\"Patient\"}\n");
+			theServletResponse.getWriter().close();
+		}
+
+		@Operation(name = "$manualRequest", manualRequest = true)
+		public Parameters manualRequest(
+			@OperationParam(name = "PARAM1", min = 0, max = 1) StringType theParam1,
+			HttpServletRequest theServletRequest
+		) throws IOException {
+
+			ourLastMethod = "$manualRequest";
+			ourLastParam1 = theParam1;
+			ourLastBody = IOUtils.toString(theServletRequest.getInputStream(), StandardCharsets.UTF_8);
+
+			Parameters retVal = new Parameters();
+			retVal.addParameter().setName("length").setValue(new IntegerType(ourLastBody.length()));
+			return retVal;
+		}
+
 		@Operation(name = "$binaryop", idempotent = true)
 		public Binary binaryOp(
 			@OperationParam(name = "PARAM3", min = 0, max = 1) List<StringType> theParam3
@@ -0,0 +1,217 @@
+package ca.uhn.fhir.rest.server;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Read;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.util.PortUtil;
+import ca.uhn.fhir.util.TestUtil;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.*;
+
+public class ResponseCompressionR4Test {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ResponseCompressionR4Test.class);
+	private static CloseableHttpClient ourClient;
+	private static FhirContext ourCtx = FhirContext.forR4();
+	private static int ourPort;
+	private static Server ourServer;
+	private static RestfulServer ourServlet;
+
+	@Before
+	public void before() {
+		ourServlet.setResponseCompressionSettings(new ResponseCompressionSettings());
+	}
+
+	@Test
+	public void testGzip() throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient/1");
+		httpGet.addHeader(Constants.HEADER_ACCEPT_ENCODING, "gzip");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			assertEquals("gzip", status.getFirstHeader(Constants.HEADER_CONTENT_ENCODING).getValue());
+			String responseContent = IOUtils.toString(new GZIPInputStream(status.getEntity().getContent()), StandardCharsets.UTF_8);
+			assertThat(responseContent, containsString("<family value=\"FAMILY1\"/>"));
+		}
+
+		assertEquals(1, ourServlet.getResponseCompressionSettings().getCompressedResponseCount());
+	}
+
+	@Test
+	public void testDeflatePreferredByQuality() throws Exception {
+		ourServlet.getResponseCompressionSettings().setEncodings(Arrays.asList(CompressionEncodingEnum.GZIP, CompressionEncodingEnum.DEFLATE));
+
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient/1");
+		httpGet.addHeader(Constants.HEADER_ACCEPT_ENCODING, "gzip;q=0.5, deflate");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			assertEquals("deflate", status.getFirstHeader(Constants.HEADER_CONTENT_ENCODING).getValue());
+			String responseContent = IOUtils.toString(new InflaterInputStream(status.getEntity().getContent()), StandardCharsets.UTF_8);
+			assertThat(responseContent, containsString("<family value=\"FAMILY1\"/>"));
+		}
+	}
+
+	@Test
+	public void testDefaultSettingsOnlyCompressUsingExplicitGzip() throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient/1");
+		httpGet.addHeader(Constants.HEADER_ACCEPT_ENCODING, "deflate, *");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			assertNull(status.getFirstHeader(Constants.HEADER_CONTENT_ENCODING));
+			String responseContent = IOUtils.toString(status.getEntity().getContent(), StandardCharsets.UTF_8);
+			assertThat(responseContent, containsString("<family value=\"FAMILY1\"/>"));
+		}
+
+		assertEquals(0, ourServlet.getResponseCompressionSettings().getCompressedResponseCount());
+	}
+
+	@Test
+	public void testNoCompressionWhenNotAccepted() throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient/1");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			assertNull(status.getFirstHeader(Constants.HEADER_CONTENT_ENCODING));
+			String responseContent = IOUtils.toString(status.getEntity().getContent(), StandardCharsets.UTF_8);
+			assertThat(responseContent, containsString("<family value=\"FAMILY1\"/>"));
+		}
+
+		assertEquals(0, ourServlet.getResponseCompressionSettings().getCompressedResponseCount());
+	}
+
+	@Test
+	public void testMinimumResponseSize() throws Exception {
+		ourServlet.getResponseCompressionSettings()
+			.setMinimumResponseSizeBytes(2000)
+			.setCompressionLevel(9)
+			.setBufferSize(512);
+
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient/1");
+		httpGet.addHeader(Constants.HEADER_ACCEPT_ENCODING, "gzip");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			assertNull(status.getFirstHeader(Constants.HEADER_CONTENT_ENCODING));
+			String responseContent = IOUtils.toString(status.getEntity().getContent(), StandardCharsets.UTF_8);
+			assertThat(responseContent, containsString("<family value=\"FAMILY1\"/>"));
+		}
+
+		httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient/500");
+		httpGet.addHeader(Constants.HEADER_ACCEPT_ENCODING, "gzip");
+		try (CloseableHttpResponse status = ourClient.execute(httpGet)) {
+			assertEquals("gzip", status.getFirstHeader(Constants.HEADER_CONTENT_ENCODING).getValue());
+			try (InputStream inputStream = new GZIPInputStream(status.getEntity().getContent())) {
+				String responseContent = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+				Patient patient = ourCtx.newXmlParser().parseResource(Patient.class, responseContent);
+				assertEquals(500, patient.getName().size());
+			}
+		}
+
+		ResponseCompressionSettings settings = ourServlet.getResponseCompressionSettings();
+		ourLog.info("Compressed {} bytes to {} bytes", settings.getUncompressedBytes(), settings.getCompressedBytes());
+		assertEquals(1, settings.getUncompressedResponseCount());
+		assertEquals(1, settings.getCompressedResponseCount());
+		assertThat(settings.getCompressedBytes(), lessThan(settings.getUncompressedBytes()));
+		assertThat(settings.getCompressionRatio(), lessThan(0.5));
+	}
+
+	@Test
+	public void testNegotiateEncodingDefaults() {
+		ResponseCompressionSettings settings = new ResponseCompressionSettings();
+		assertEquals(Collections.singletonList(CompressionEncodingEnum.GZIP), settings.getEncodings());
+		assertFalse(settings.isWildcardAccepted());
+		assertEquals(null, settings.negotiateEncoding(null));
+		assertEquals(CompressionEncodingEnum.GZIP, settings.negotiateEncoding("gzip"));
+		assertEquals(CompressionEncodingEnum.GZIP, settings.negotiateEncoding("deflate, gzip"));
+		assertEquals(null, settings.negotiateEncoding("deflate"));
+		assertEquals(null, settings.negotiateEncoding("*"));
+		assertEquals(null, settings.negotiateEncoding("gzip;q=0, *"));
+	}
+
+	@Test
+	public void testNegotiateEncoding() {
+		ResponseCompressionSettings settings = new ResponseCompressionSettings()
+			.setEncodings(Arrays.asList(CompressionEncodingEnum.GZIP, CompressionEncodingEnum.DEFLATE))
+			.setWildcardAccepted(true);
+		assertEquals(null, settings.negotiateEncoding(null));
+		assertEquals(null, settings.negotiateEncoding("identity"));
+		assertEquals(null, settings.negotiateEncoding("br"));
+		assertEquals(CompressionEncodingEnum.GZIP, settings.negotiateEncoding("gzip"));
+		assertEquals(CompressionEncodingEnum.GZIP, settings.negotiateEncoding("deflate, gzip"));
+		assertEquals(CompressionEncodingEnum.GZIP, settings.negotiateEncoding("br;q=1.0, gzip;q=0.8, *;q=0.1"));
+		assertEquals(CompressionEncodingEnum.DEFLATE, settings.negotiateEncoding("gzip;q=0, *"));
+		assertEquals(CompressionEncodingEnum.GZIP, settings.negotiateEncoding("*"));
+		assertEquals(null, settings.negotiateEncoding("gzip;q=0, deflate;q=0"));
+
+		settings.setEncodings(Arrays.asList(CompressionEncodingEnum.DEFLATE, CompressionEncodingEnum.GZIP));
+		assertEquals(CompressionEncodingEnum.DEFLATE, settings.negotiateEncoding("gzip, deflate"));
+
+		settings.setEncodings(Collections.emptyList());
+		assertEquals(null, settings.negotiateEncoding("gzip"));
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() throws Exception {
+		ourServer.stop();
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		ourPort = PortUtil.findFreePort();
+		ourServer = new Server(ourPort);
+
+		ServletHandler proxyHandler = new ServletHandler();
+		ourServlet = new RestfulServer(ourCtx);
+		ourServlet.setResourceProviders(new PatientProvider());
+		ServletHolder servletHolder = new ServletHolder(ourServlet);
+		proxyHandler.addServletWithMapping(servletHolder, "/*");
+		ourServer.setHandler(proxyHandler);
+		ourServer.start();
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(5000, TimeUnit.MILLISECONDS);
+		HttpClientBuilder builder = HttpClientBuilder.create();
+		builder.setConnectionManager(connectionManager);
+		builder.disableContentCompression();
+		ourClient = builder.build();
+	}
+
+	public static class PatientProvider implements IResourceProvider {
+
+		@Override
+		public Class<Patient> getResourceType() {
+			return Patient.class;
+		}
+
+		@Read
+		public Patient read(@IdParam IdType theId) {
+			Patient patient = new Patient();
+			patient.setId(theId);
+			for (int i = 1; i <= theId.getIdPartAsLong(); i++) {
+				patient.addName().setFamily("FAMILY" + i).addGiven("GIVEN" + i);
+			}
+			return patient;
+		}
+
+	}
+
+}
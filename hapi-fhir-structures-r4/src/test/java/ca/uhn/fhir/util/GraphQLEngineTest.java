@@ -13,11 +13,16 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class GraphQLEngineTest {
@@ -118,6 +123,60 @@ public class GraphQLEngineTest {
 
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testReferencesResolvedInBatchesPerLevel() throws EGraphQLException, EGraphEngine, IOException, FHIRException {
+		GraphQLEngine.IGraphQLBatchStorageServices services = mock(GraphQLEngine.IGraphQLBatchStorageServices.class);
+		List<Integer> batchSizes = new ArrayList<>();
+		when(services.lookup(nullable(Object.class), any(List.class), any(List.class))).thenAnswer(t -> {
+			List<Resource> contexts = t.getArgument(1);
+			List<Reference> references = t.getArgument(2);
+			batchSizes.add(references.size());
+
+			List<GraphQLEngine.IGraphQLStorageServices.ReferenceResolution> retVal = new ArrayList<>();
+			for (int i = 0; i < references.size(); i++) {
+				String reference = references.get(i).getReference();
+				Resource target = null;
+				if (reference.startsWith("Patient/")) {
+					Patient p = new Patient();
+					p.setId(reference);
+					p.setManagingOrganization(new Reference("Organization/ORG"));
+					target = p;
+				} else if (reference.equals("Organization/ORG")) {
+					target = new Organization().setName("ORGNAME");
+				}
+				retVal.add(target != null ? new GraphQLEngine.IGraphQLStorageServices.ReferenceResolution(target, target) : null);
+			}
+			return retVal;
+		});
+
+		Bundle bundle = new Bundle();
+		for (int i = 0; i < 3; i++) {
+			Observation obs = createObservation();
+			obs.setSubject(new Reference("Patient/" + i));
+			bundle.addEntry().setResource(obs);
+		}
+
+		GraphQLEngine engine = new GraphQLEngine(ourWorkerCtx);
+		engine.setFocus(bundle);
+		engine.setGraphQL(Parser.parse("{entry{resource{...on Observation{subject{resource{id,managingOrganization{resource{name}}}}}}}}"));
+		engine.setServices(services);
+		engine.execute();
+
+		StringBuilder outputBuilder = new StringBuilder();
+		engine.getOutput().write(outputBuilder, 0, "\n");
+		ourLog.info(outputBuilder.toString());
+
+		String output = outputBuilder.toString();
+		assertEquals(3, output.split("ORGNAME", -1).length - 1);
+
+		// One lookup for the three subjects, and one for the organization reference of each of them
+		verify(services, times(2)).lookup(nullable(Object.class), any(List.class), any(List.class));
+		verify(services, never()).lookup(nullable(Object.class), nullable(Resource.class), nullable(Reference.class));
+		assertEquals(3, batchSizes.get(0).intValue());
+		assertEquals(3, batchSizes.get(1).intValue());
+	}
+
 	@BeforeClass
 	public static void beforeClass() {
 		ourCtx = FhirContext.forR4();
@@ -0,0 +1,97 @@
+package org.hl7.fhir.r4.hapi.ctx;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.ValueSet;
+import org.hl7.fhir.r4.terminologies.ValueSetExpander.TerminologyServiceErrorClass;
+import org.hl7.fhir.r4.terminologies.ValueSetExpander.ValueSetExpansionOutcome;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HapiWorkerContextTest {
+
+	private static FhirContext ourCtx = FhirContext.forR4();
+	private IValidationSupport myValidationSupport;
+	private HapiWorkerContext myWorkerContext;
+	private ValueSet myValueSet;
+
+	@Before
+	public void before() {
+		myValidationSupport = mock(IValidationSupport.class);
+		myWorkerContext = new HapiWorkerContext(ourCtx, myValidationSupport);
+
+		myValueSet = new ValueSet();
+		myValueSet.setUrl("http://example.com/fhir/ValueSet/colours");
+		myValueSet.getCompose().addInclude().setSystem("http://example.com/fhir/CodeSystem/colours");
+	}
+
+	private ValueSetExpansionOutcome newExpansion(String... theCodes) {
+		ValueSet expansion = new ValueSet();
+		for (String next : theCodes) {
+			expansion.getExpansion().addContains().setSystem("http://example.com/fhir/CodeSystem/colours").setCode(next);
+		}
+		return new ValueSetExpansionOutcome(expansion);
+	}
+
+	@Test
+	public void testExpandCachesOnlySuccessfulExpansions() {
+		when(myValidationSupport.expandValueSet(any(), any())).thenReturn(
+			new ValueSetExpansionOutcome("Terminology server unavailable", TerminologyServiceErrorClass.NOSERVICE),
+			newExpansion("red", "blue"));
+
+		try {
+			myWorkerContext.expand(myValueSet, null);
+			fail();
+		} catch (InternalErrorException e) {
+			// good
+		}
+
+		assertEquals(2, myWorkerContext.expand(myValueSet, null).getValueset().getExpansion().getContains().size());
+		assertEquals(2, myWorkerContext.expand(myValueSet, null).getValueset().getExpansion().getContains().size());
+		verify(myValidationSupport, times(2)).expandValueSet(any(), any());
+	}
+
+	@Test
+	public void testExpandCachesByExpansionProfile() {
+		when(myValidationSupport.expandValueSet(any(), any())).thenReturn(newExpansion("red", "blue"));
+
+		Parameters profile = new Parameters();
+		profile.addParameter("includeDesignations", true);
+
+		myWorkerContext.expand(myValueSet, null);
+		myWorkerContext.expand(myValueSet, null);
+		verify(myValidationSupport, times(1)).expandValueSet(any(), any());
+
+		myWorkerContext.expand(myValueSet, profile);
+		myWorkerContext.expand(myValueSet, profile.copy());
+		verify(myValidationSupport, times(2)).expandValueSet(any(), any());
+
+		// The expansion profile of the context applies when none is given
+		myWorkerContext.setExpansionProfile(profile);
+		myWorkerContext.expand(myValueSet, null);
+		verify(myValidationSupport, times(2)).expandValueSet(any(), any());
+
+		profile = new Parameters();
+		profile.addParameter("includeDesignations", false);
+		myWorkerContext.setExpansionProfile(profile);
+		myWorkerContext.expand(myValueSet, null);
+		verify(myValidationSupport, times(3)).expandValueSet(any(), any());
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
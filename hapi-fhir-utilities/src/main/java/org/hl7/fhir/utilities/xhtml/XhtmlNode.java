@@ -75,6 +75,11 @@ public class XhtmlNode implements IBaseXhtml {
   private List<XhtmlNode> childNodes = new ArrayList<XhtmlNode>();
   private String content;
   private boolean notPretty;
+  /**
+   * Only cleared once the deferred value has been parsed, so that a thread which
+   * reads <code>null</code> also sees the node tree
+   */
+  private volatile String unparsedValue;
 
   public XhtmlNode() {
     super();
@@ -93,36 +98,44 @@ public class XhtmlNode implements IBaseXhtml {
   }
 
   public NodeType getNodeType() {
+    parseDeferredValue();
     return nodeType;
   }
 
   public void setNodeType(NodeType nodeType) {
+    parseDeferredValue();
     this.nodeType = nodeType;
   }
 
   public String getName() {
+    parseDeferredValue();
     return name;
   }
 
   public XhtmlNode setName(String name) {
+    parseDeferredValue();
     assert name.contains(":") == false : "Name should not contain any : but was " + name;
     this.name = name;
     return this;
   }
 
   public Map<String, String> getAttributes() {
+    parseDeferredValue();
     return attributes;
   }
 
   public List<XhtmlNode> getChildNodes() {
+    parseDeferredValue();
     return childNodes;
   }
 
   public String getContent() {
+    parseDeferredValue();
     return content;
   }
 
   public XhtmlNode setContent(String content) {
+    parseDeferredValue();
     if (!(nodeType != NodeType.Text || nodeType != NodeType.Comment)) 
       throw new Error("Wrong node type");
     this.content = content;
@@ -131,6 +144,7 @@ public class XhtmlNode implements IBaseXhtml {
 
   public XhtmlNode addTag(String name)
   {
+    parseDeferredValue();
 
     if (!(nodeType == NodeType.Element || nodeType == NodeType.Document)) 
       throw new Error("Wrong node type. is "+nodeType.toString());
@@ -142,6 +156,7 @@ public class XhtmlNode implements IBaseXhtml {
 
   public XhtmlNode addTag(int index, String name)
   {
+    parseDeferredValue();
 
     if (!(nodeType == NodeType.Element || nodeType == NodeType.Document)) 
       throw new Error("Wrong node type. is "+nodeType.toString());
@@ -153,6 +168,7 @@ public class XhtmlNode implements IBaseXhtml {
 
   public XhtmlNode addComment(String content)
   {
+    parseDeferredValue();
     if (!(nodeType == NodeType.Element || nodeType == NodeType.Document)) 
       throw new Error("Wrong node type");
     XhtmlNode node = new XhtmlNode(NodeType.Comment);
@@ -163,6 +179,7 @@ public class XhtmlNode implements IBaseXhtml {
 
   public XhtmlNode addDocType(String content)
   {
+    parseDeferredValue();
     if (!(nodeType == NodeType.Document)) 
       throw new Error("Wrong node type");
     XhtmlNode node = new XhtmlNode(NodeType.DocType);
@@ -173,6 +190,7 @@ public class XhtmlNode implements IBaseXhtml {
 
   public XhtmlNode addInstruction(String content)
   {
+    parseDeferredValue();
     if (!(nodeType == NodeType.Document)) 
       throw new Error("Wrong node type");
     XhtmlNode node = new XhtmlNode(NodeType.Instruction);
@@ -186,6 +204,7 @@ public class XhtmlNode implements IBaseXhtml {
 
   public XhtmlNode addText(String content)
   {
+    parseDeferredValue();
     if (!(nodeType == NodeType.Element || nodeType == NodeType.Document)) 
       throw new Error("Wrong node type");
     if (content != null) {
@@ -199,6 +218,7 @@ public class XhtmlNode implements IBaseXhtml {
 
   public XhtmlNode addText(int index, String content)
   {
+    parseDeferredValue();
     if (!(nodeType == NodeType.Element || nodeType == NodeType.Document)) 
       throw new Error("Wrong node type");
     if (content == null)
@@ -212,6 +232,7 @@ public class XhtmlNode implements IBaseXhtml {
 
   public boolean allChildrenAreText()
   {
+    parseDeferredValue();
     boolean res = true;
     for (XhtmlNode n : childNodes)
       res = res && n.getNodeType() == NodeType.Text;
@@ -219,6 +240,7 @@ public class XhtmlNode implements IBaseXhtml {
   }
 
   public XhtmlNode getElement(String name) {
+    parseDeferredValue();
     for (XhtmlNode n : childNodes)
       if (n.getNodeType() == NodeType.Element && name.equals(n.getName())) 
         return n;
@@ -226,6 +248,7 @@ public class XhtmlNode implements IBaseXhtml {
   }
 
   public XhtmlNode getFirstElement() {
+    parseDeferredValue();
     for (XhtmlNode n : childNodes)
       if (n.getNodeType() == NodeType.Element) 
         return n;
@@ -233,6 +256,7 @@ public class XhtmlNode implements IBaseXhtml {
   }
 
   public String allText() {
+    parseDeferredValue();
     if (childNodes == null || childNodes.isEmpty())
       return getContent();
     
@@ -246,6 +270,7 @@ public class XhtmlNode implements IBaseXhtml {
   }
 
   public XhtmlNode attribute(String name, String value) {
+    parseDeferredValue();
     if (!(nodeType == NodeType.Element || nodeType == NodeType.Document)) 
       throw new Error("Wrong node type");
     if (name == null)
@@ -270,6 +295,13 @@ public class XhtmlNode implements IBaseXhtml {
   }
 
   public XhtmlNode copy() {
+    String unparsed = unparsedValue;
+    if (unparsed != null) {
+      // No need to parse the value just to copy it
+      XhtmlNode dst = new XhtmlNode();
+      dst.unparsedValue = unparsed;
+      return dst;
+    }
     XhtmlNode dst = new XhtmlNode(nodeType);
     dst.name = name;
     for (String n : attributes.keySet()) {
@@ -283,6 +315,9 @@ public class XhtmlNode implements IBaseXhtml {
 
   @Override
   public boolean isEmpty() {
+    if (unparsedValue != null) {
+      return false;
+    }
     return (childNodes == null || childNodes.isEmpty()) && content == null;
   }
 
@@ -290,6 +325,8 @@ public class XhtmlNode implements IBaseXhtml {
     if (other == null) {
       return false;
     }
+    parseDeferredValue();
+    other.parseDeferredValue();
 
     if (!(nodeType == other.nodeType) || !compare(name, other.name) || !compare(content, other.content))
       return false;
@@ -324,6 +361,7 @@ public class XhtmlNode implements IBaseXhtml {
   }
 
   public String getNsDecl() {
+    parseDeferredValue();
     for (String an : attributes.keySet()) {
       if (an.equals("xmlns")) {
         return attributes.get(an);
@@ -335,6 +373,10 @@ public class XhtmlNode implements IBaseXhtml {
 
   @Override
   public String getValueAsString() {
+    String unparsed = unparsedValue;
+    if (unparsed != null) {
+      return unparsed;
+    }
     if (isEmpty()) {
       return null;
     }
@@ -350,13 +392,40 @@ public class XhtmlNode implements IBaseXhtml {
 
   @Override
   public void setValueAsString(String theValue) throws IllegalArgumentException {
+    clearValue();
+    String val = normalizeValue(theValue);
+    if (val != null) {
+      parseValue(val);
+    }
+  }
+
+  /**
+   * Stores the given XHTML without parsing it. The node tree is only built when it is
+   * first accessed, and until then {@link #getValueAsString()} returns the XHTML as
+   * supplied, so a narrative which is only ever re-encoded is never parsed at all.
+   * Any error caused by invalid XHTML is thrown when the tree is built.
+   */
+  @Override
+  public void setValueAsStringDeferred(String theValue) throws IllegalArgumentException {
+    clearValue();
+    unparsedValue = normalizeValue(theValue);
+  }
+
+  private void clearValue() {
     this.attributes = null;
     this.childNodes = null;
     this.content = null;
     this.name = null;
     this.nodeType= null;
+    this.unparsedValue = null;
+  }
+
+  /**
+   * Returns the value wrapped in a div with the XHTML namespace declared, or null if there is nothing to parse
+   */
+  private static String normalizeValue(String theValue) {
     if (theValue == null || theValue.length() == 0) {
-      return;
+      return null;
     }
 
     String val = theValue.trim();
@@ -365,11 +434,13 @@ public class XhtmlNode implements IBaseXhtml {
       val = "<div" + DECL_XMLNS +">" + val + "</div>";
     }
     if (val.startsWith("<?") && val.endsWith("?>")) {
-      return;
+      return null;
     }
 
-    val = XhtmlDt.preprocessXhtmlNamespaceDeclaration(val);
+    return XhtmlDt.preprocessXhtmlNamespaceDeclaration(val);
+  }
 
+  private void parseValue(String val) {
     try {
       // TODO: this is ugly
       XhtmlNode fragment = new XhtmlParser().parseFragment(val);
@@ -382,10 +453,35 @@ public class XhtmlNode implements IBaseXhtml {
       // TODO: composer shouldn't throw exception like this
       throw new RuntimeException(e);
     }
+  }
+
+  /**
+   * Builds the node tree from a value that was set using {@link #setValueAsStringDeferred(String)},
+   * if this hasn't happened yet
+   */
+  private void parseDeferredValue() {
+    if (unparsedValue != null) {
+      parseDeferredValueLocked();
+    }
+  }
 
+  /**
+   * Parsed resources are often shared between threads, so the tree is built under a lock
+   * and the unparsed value is only cleared once the tree is complete. If the value is
+   * invalid, it stays unparsed so that every access reports the problem.
+   */
+  private synchronized void parseDeferredValueLocked() {
+    String val = unparsedValue;
+    if (val == null) {
+      // Another thread built the tree while this one was waiting for the lock
+      return;
+    }
+    parseValue(val);
+    unparsedValue = null;
   }
 
   public XhtmlNode getElementByIndex(int i) {
+    parseDeferredValue();
     int c = 0;
     for (XhtmlNode n : childNodes)
       if (n.getNodeType() == NodeType.Element) {
@@ -543,6 +639,7 @@ public class XhtmlNode implements IBaseXhtml {
 
   @Override
   public String toString() {
+    parseDeferredValue();
     switch (nodeType) {
     case Document: 
     case Element:
@@ -565,6 +662,7 @@ public class XhtmlNode implements IBaseXhtml {
 
 
   public XhtmlNode getNextElement(XhtmlNode c) {
+    parseDeferredValue();
     boolean f = false;
     for (XhtmlNode n : childNodes) {
       if (n == c)
@@ -0,0 +1,251 @@
+package ca.uhn.fhir.context.support;
+
+import ca.uhn.fhir.util.XmlUtil;
+import org.apache.commons.lang3.Validate;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.events.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.Deflater;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Builds a {@link ConformancePackage} from one or more FHIR Bundles in XML format. This is
+ * build tooling rather than part of the library: it is run (see {@link #main(String[])}) from
+ * the test classpath of this module when the module is built, and is not packaged.
+ * <p>
+ * The bundles are processed using a streaming parser, so this class does not depend on
+ * any particular version of the FHIR structures. Each resource is stored without its
+ * narrative and without insignificant whitespace. If more than one resource of the same
+ * type has the same canonical URL, the one added last is kept.
+ * </p>
+ */
+public class ConformancePackageBuilder {
+
+	private static final String FHIR_NS = "http://hl7.org/fhir";
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ConformancePackageBuilder.class);
+	private final Map<String, byte[]> myResources = new LinkedHashMap<>();
+
+	/**
+	 * Adds the resources of the given types contained in a Bundle
+	 *
+	 * @param theReader        The XML encoded Bundle
+	 * @param theResourceTypes The resource types to add (resources of other types, and resources without a URL, are skipped)
+	 * @return Returns the number of resources added
+	 */
+	public int addBundle(Reader theReader, Collection<String> theResourceTypes) throws IOException {
+		Validate.notNull(theReader, "theReader must not be null");
+		Validate.notEmpty(theResourceTypes, "theResourceTypes must not be empty");
+
+		int count = 0;
+		try {
+			XMLEventReader reader = XmlUtil.createXmlReader(theReader);
+			Deque<String> path = new ArrayDeque<>();
+			while (reader.hasNext()) {
+				XMLEvent next = reader.nextEvent();
+				if (next.isStartElement()) {
+					StartElement element = next.asStartElement();
+					String name = element.getName().getLocalPart();
+					if (path.size() == 3 && "resource".equals(path.peekLast()) && theResourceTypes.contains(name)) {
+						if (addResource(reader, element)) {
+							count++;
+						}
+						continue;
+					}
+					path.addLast(name);
+				} else if (next.isEndElement()) {
+					path.pollLast();
+				}
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Failed to parse bundle: " + e.getMessage(), e);
+		}
+		return count;
+	}
+
+	/**
+	 * Copies the resource whose start element has just been read, returning <code>true</code> if it was added
+	 */
+	private boolean addResource(XMLEventReader theReader, StartElement theResourceElement) throws XMLStreamException {
+		String resourceType = theResourceElement.getName().getLocalPart();
+		StringWriter stringWriter = new StringWriter();
+		XMLStreamWriter writer = XmlUtil.createXmlStreamWriter(stringWriter);
+		writer.writeStartElement(resourceType);
+		writer.writeDefaultNamespace(FHIR_NS);
+
+		Deque<String> namespaces = new ArrayDeque<>();
+		namespaces.push(FHIR_NS);
+		String url = null;
+		int skipDepth = 0;
+
+		while (!namespaces.isEmpty()) {
+			XMLEvent next = theReader.nextEvent();
+			if (skipDepth > 0) {
+				if (next.isStartElement()) {
+					skipDepth++;
+				} else if (next.isEndElement()) {
+					skipDepth--;
+				}
+				continue;
+			}
+
+			if (next.isStartElement()) {
+				StartElement element = next.asStartElement();
+				String name = element.getName().getLocalPart();
+				String namespace = element.getName().getNamespaceURI();
+				if (namespaces.size() == 1 && "text".equals(name)) {
+					// Narrative isn't needed for validation
+					skipDepth = 1;
+					continue;
+				}
+
+				if (namespace.equals(namespaces.peek())) {
+					writer.writeStartElement(name);
+				} else {
+					writer.writeStartElement("", name, namespace);
+					writer.writeDefaultNamespace(namespace);
+				}
+				namespaces.push(namespace);
+
+				for (Iterator<?> iter = element.getAttributes(); iter.hasNext(); ) {
+					Attribute attribute = (Attribute) iter.next();
+					writer.writeAttribute(attribute.getName().getLocalPart(), attribute.getValue());
+					if (namespaces.size() == 2 && "url".equals(name) && "value".equals(attribute.getName().getLocalPart())) {
+						url = attribute.getValue();
+					}
+				}
+			} else if (next.isEndElement()) {
+				namespaces.pop();
+				if (!namespaces.isEmpty()) {
+					writer.writeEndElement();
+				}
+			} else if (next.isCharacters()) {
+				String text = next.asCharacters().getData();
+				if (!FHIR_NS.equals(namespaces.peek()) || !isBlank(text)) {
+					writer.writeCharacters(text);
+				}
+			}
+		}
+
+		writer.writeEndElement();
+		writer.close();
+
+		if (isBlank(url)) {
+			ourLog.debug("Skipping {} without a URL", resourceType);
+			return false;
+		}
+
+		byte[] previous = myResources.put(resourceType + '|' + url, stringWriter.toString().getBytes(StandardCharsets.UTF_8));
+		if (previous != null) {
+			ourLog.debug("Replacing {} with URL {}", resourceType, url);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of resources which have been added
+	 */
+	public int size() {
+		return myResources.size();
+	}
+
+	/**
+	 * Writes the package
+	 */
+	public void write(OutputStream theOutputStream) throws IOException {
+		List<String> types = new ArrayList<>();
+		List<String> urls = new ArrayList<>();
+		List<byte[]> compressed = new ArrayList<>();
+		List<Integer> uncompressedLengths = new ArrayList<>();
+
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try {
+			byte[] buffer = new byte[64 * 1024];
+			for (Map.Entry<String, byte[]> next : myResources.entrySet()) {
+				int separator = next.getKey().indexOf('|');
+				types.add(next.getKey().substring(0, separator));
+				urls.add(next.getKey().substring(separator + 1));
+				uncompressedLengths.add(next.getValue().length);
+
+				deflater.reset();
+				deflater.setInput(next.getValue());
+				deflater.finish();
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				while (!deflater.finished()) {
+					int count = deflater.deflate(buffer);
+					bytes.write(buffer, 0, count);
+				}
+				compressed.add(bytes.toByteArray());
+			}
+		} finally {
+			deflater.end();
+		}
+
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(theOutputStream));
+		output.writeInt(ConformancePackage.MAGIC);
+		output.writeInt(ConformancePackage.FORMAT_VERSION);
+		output.writeInt(compressed.size());
+		int offset = 0;
+		for (int i = 0; i < compressed.size(); i++) {
+			writeString(output, types.get(i));
+			writeString(output, urls.get(i));
+			output.writeInt(offset);
+			output.writeInt(compressed.get(i).length);
+			output.writeInt(uncompressedLengths.get(i));
+			offset += compressed.get(i).length;
+		}
+		for (byte[] next : compressed) {
+			output.write(next);
+		}
+		output.flush();
+	}
+
+	private static void writeString(DataOutputStream theOutput, String theString) throws IOException {
+		byte[] bytes = theString.getBytes(StandardCharsets.UTF_8);
+		Validate.isTrue(bytes.length <= 0xFFFF, "String too long: %s", theString);
+		theOutput.writeShort(bytes.length);
+		theOutput.write(bytes);
+	}
+
+	/**
+	 * Builds a package file. The first argument is the output file, and each subsequent
+	 * argument is a comma separated list of resource types followed by "=" and the path to
+	 * a Bundle, e.g. <code>CodeSystem,ValueSet=src/main/resources/valuesets.xml</code>. Bundles
+	 * which don't exist are skipped.
+	 */
+	public static void main(String[] theArgs) throws IOException {
+		Validate.isTrue(theArgs.length >= 2, "Usage: ConformancePackageBuilder <output file> <ResourceType[,ResourceType...]=bundle file>...");
+
+		ConformancePackageBuilder builder = new ConformancePackageBuilder();
+		for (int i = 1; i < theArgs.length; i++) {
+			String spec = theArgs[i].trim();
+			int separator = spec.indexOf('=');
+			Validate.isTrue(separator > 0, "Invalid input specification: %s", spec);
+			List<String> types = Arrays.asList(spec.substring(0, separator).split(","));
+			File file = new File(spec.substring(separator + 1));
+			if (!file.exists()) {
+				ourLog.warn("Skipping missing bundle: {}", file);
+				continue;
+			}
+			try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+				int count = builder.addBundle(reader, types);
+				ourLog.info("Added {} resources of type {} from {}", count, types, file);
+			}
+		}
+
+		File outputFile = new File(theArgs[0]);
+		if (outputFile.getParentFile() != null) {
+			outputFile.getParentFile().mkdirs();
+		}
+		try (OutputStream outputStream = new FileOutputStream(outputFile)) {
+			builder.write(outputStream);
+		}
+		ourLog.info("Wrote conformance package with {} resources to {} ({} bytes)", builder.size(), outputFile, outputFile.length());
+	}
+
+}
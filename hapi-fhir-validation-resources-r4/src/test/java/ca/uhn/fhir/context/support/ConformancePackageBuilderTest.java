@@ -0,0 +1,127 @@
+package ca.uhn.fhir.context.support;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.*;
+
+public class ConformancePackageBuilderTest {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ConformancePackageBuilderTest.class);
+
+	private String createBundle() {
+		return "<Bundle xmlns=\"http://hl7.org/fhir\">\n" +
+			"  <type value=\"collection\"/>\n" +
+			"  <entry>\n" +
+			"    <resource>\n" +
+			"      <CodeSystem>\n" +
+			"        <text>\n" +
+			"          <status value=\"generated\"/>\n" +
+			"          <div xmlns=\"http://www.w3.org/1999/xhtml\">A <b>big</b> narrative</div>\n" +
+			"        </text>\n" +
+			"        <url value=\"http://example.com/cs\"/>\n" +
+			"        <concept>\n" +
+			"          <code value=\"A\"/>\n" +
+			"          <display value=\"Code A\"/>\n" +
+			"        </concept>\n" +
+			"        <concept>\n" +
+			"          <code value=\"B\"/>\n" +
+			"          <display value=\"Code B &amp; more\"/>\n" +
+			"        </concept>\n" +
+			"      </CodeSystem>\n" +
+			"    </resource>\n" +
+			"  </entry>\n" +
+			"  <entry>\n" +
+			"    <resource>\n" +
+			"      <ValueSet>\n" +
+			"        <url value=\"http://example.com/vs\"/>\n" +
+			"        <compose>\n" +
+			"          <include>\n" +
+			"            <system value=\"http://example.com/cs\"/>\n" +
+			"          </include>\n" +
+			"        </compose>\n" +
+			"      </ValueSet>\n" +
+			"    </resource>\n" +
+			"  </entry>\n" +
+			// Same URL as an earlier entry, so should replace it
+			"  <entry>\n" +
+			"    <resource>\n" +
+			"      <ValueSet>\n" +
+			"        <url value=\"http://example.com/vs\"/>\n" +
+			"        <name value=\"Replacement\"/>\n" +
+			"      </ValueSet>\n" +
+			"    </resource>\n" +
+			"  </entry>\n" +
+			// No URL, so should be skipped
+			"  <entry>\n" +
+			"    <resource>\n" +
+			"      <ValueSet>\n" +
+			"        <name value=\"NoUrl\"/>\n" +
+			"      </ValueSet>\n" +
+			"    </resource>\n" +
+			"  </entry>\n" +
+			"  <entry>\n" +
+			"    <resource>\n" +
+			"      <StructureDefinition>\n" +
+			"        <url value=\"http://example.com/sd\"/>\n" +
+			"        <type value=\"Patient\"/>\n" +
+			"        <snapshot>\n" +
+			"          <element>\n" +
+			"            <path value=\"Patient\"/>\n" +
+			"            <short value=\"A patient\"/>\n" +
+			"          </element>\n" +
+			"        </snapshot>\n" +
+			"      </StructureDefinition>\n" +
+			"    </resource>\n" +
+			"  </entry>\n" +
+			// Not a requested type
+			"  <entry>\n" +
+			"    <resource>\n" +
+			"      <Patient>\n" +
+			"        <active value=\"true\"/>\n" +
+			"      </Patient>\n" +
+			"    </resource>\n" +
+			"  </entry>\n" +
+			"</Bundle>";
+	}
+
+	@Test
+	public void testBuildAndRead() throws Exception {
+		ConformancePackageBuilder builder = new ConformancePackageBuilder();
+		int added = builder.addBundle(new StringReader(createBundle()), Arrays.asList("CodeSystem", "ValueSet", "StructureDefinition"));
+		assertEquals(4, added);
+		assertEquals(3, builder.size());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		builder.write(bytes);
+		ConformancePackage conformancePackage = ConformancePackage.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+		assertEquals(3, conformancePackage.size());
+		assertThat(conformancePackage.getUrls("CodeSystem"), containsInAnyOrder("http://example.com/cs"));
+		assertThat(conformancePackage.getUrls("ValueSet"), containsInAnyOrder("http://example.com/vs"));
+		assertThat(conformancePackage.getUrls("Patient"), empty());
+		assertNull(conformancePackage.getResourceText("CodeSystem", "http://example.com/foo"));
+
+		String csText = conformancePackage.getResourceText("CodeSystem", "http://example.com/cs");
+		ourLog.info("CodeSystem: {}", csText);
+		assertThat(csText, containsString("http://example.com/cs"));
+		assertThat(csText, not(containsString("narrative")));
+		assertThat(csText, not(containsString("<text>")));
+		assertThat(csText, containsString("<display value=\"Code B &amp; more\""));
+
+		String vsText = conformancePackage.getResourceText("ValueSet", "http://example.com/vs");
+		assertThat(vsText, containsString("<name value=\"Replacement\""));
+		assertThat(vsText, not(containsString("<compose>")));
+
+		String sdText = conformancePackage.getResourceText("StructureDefinition", "http://example.com/sd");
+		assertThat(sdText, containsString("<short value=\"A patient\""));
+	}
+
+}
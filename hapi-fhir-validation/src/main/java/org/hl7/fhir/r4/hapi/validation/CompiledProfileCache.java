@@ -0,0 +1,188 @@
+package org.hl7.fhir.r4.hapi.validation;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.Constants;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.commons.lang3.time.DateUtils;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.conformance.ProfileUtilities;
+import org.hl7.fhir.r4.hapi.ctx.HapiWorkerContext;
+import org.hl7.fhir.r4.hapi.ctx.IValidationSupport;
+import org.hl7.fhir.r4.model.CodeSystem;
+import org.hl7.fhir.r4.model.ElementDefinition;
+import org.hl7.fhir.r4.model.ElementDefinition.ElementDefinitionConstraintComponent;
+import org.hl7.fhir.r4.model.StructureDefinition;
+import org.hl7.fhir.r4.model.ValueSet;
+import org.hl7.fhir.r4.terminologies.ValueSetExpander;
+import org.hl7.fhir.r4.utils.FHIRPathEngine;
+import org.hl7.fhir.utilities.validation.ValidationMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Validation support which hands out profiles that have been prepared for validation.
+ * Preparing a profile generates its snapshot (if it only has a differential), parses the
+ * FHIRPath expression of every invariant in the snapshot, and resolves the ValueSet of every
+ * binding so that this work isn't repeated each time a resource is validated against the profile.
+ * <p>
+ * Every StructureDefinition fetched through this class (the profiles declared in
+ * <code>meta.profile</code> and the type profiles referenced by them included) is prepared on a
+ * private copy, which is cached by the canonical URL it was requested with. The instances held by
+ * the wrapped validation support are never modified. Prepared profiles are cached for the same
+ * period as the resources cached by the {@link #getWorkerContext() worker context}.
+ * </p>
+ */
+class CompiledProfileCache implements IValidationSupport {
+
+	/**
+	 * User data key under which {@link org.hl7.fhir.r4.validation.InstanceValidator} caches
+	 * the parsed expression of an invariant
+	 */
+	static final String EXPRESSION_CACHE_USERDATA_KEY = "validator.expression.cache";
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(CompiledProfileCache.class);
+	private final IValidationSupport myWrap;
+	private final HapiWorkerContext myWorkerContext;
+	private final Cache<String, StructureDefinition> myCache;
+	private final Cache<StructureDefinition, StructureDefinition> myExplicitProfileCache;
+
+	CompiledProfileCache(FhirContext theCtx, IValidationSupport theWrap) {
+		myWrap = theWrap;
+		myWorkerContext = new HapiWorkerContext(theCtx, this);
+
+		long timeoutMillis = 10 * DateUtils.MILLIS_PER_SECOND;
+		if (System.getProperties().containsKey(Constants.TEST_SYSTEM_PROP_VALIDATION_RESOURCE_CACHES_MS)) {
+			timeoutMillis = Long.parseLong(System.getProperty(Constants.TEST_SYSTEM_PROP_VALIDATION_RESOURCE_CACHES_MS));
+		}
+		myCache = Caffeine.newBuilder()
+			.expireAfterWrite(timeoutMillis, TimeUnit.MILLISECONDS)
+			.maximumSize(1000)
+			.build();
+		myExplicitProfileCache = Caffeine.newBuilder()
+			.weakKeys()
+			.build();
+	}
+
+	/**
+	 * Returns the worker context which fetches its resources through this cache
+	 */
+	HapiWorkerContext getWorkerContext() {
+		return myWorkerContext;
+	}
+
+	/**
+	 * Returns a prepared copy of a profile which was not fetched from the validation
+	 * support. The copy is kept for as long as the given instance is in use.
+	 */
+	StructureDefinition getCompiledProfile(StructureDefinition theProfile) {
+		return myExplicitProfileCache.get(theProfile, this::compile);
+	}
+
+	private StructureDefinition getCompiledProfile(String theUrl, Supplier<StructureDefinition> theFetcher) {
+		/*
+		 * Preparing a profile fetches other profiles (its base and the types it uses) through
+		 * the worker context, so this doesn't use a computing get, which can't be nested
+		 */
+		StructureDefinition retVal = myCache.getIfPresent(theUrl);
+		if (retVal == null) {
+			StructureDefinition profile = theFetcher.get();
+			if (profile != null) {
+				retVal = compile(profile);
+				myCache.put(theUrl, retVal);
+			}
+		}
+		return retVal;
+	}
+
+	private StructureDefinition compile(StructureDefinition theProfile) {
+		StructureDefinition retVal = theProfile.copy();
+
+		if (!retVal.hasSnapshot() && retVal.hasDifferential() && retVal.hasBaseDefinition()) {
+			StructureDefinition base = myWorkerContext.fetchResource(StructureDefinition.class, retVal.getBaseDefinition());
+			if (base != null && base.hasSnapshot()) {
+				List<ValidationMessage> messages = new ArrayList<>();
+				try {
+					new ProfileUtilities(myWorkerContext, messages, null).generateSnapshot(base, retVal, retVal.getUrl(), retVal.getName());
+				} catch (Exception e) {
+					ourLog.warn("Failed to generate snapshot for profile {}: {}", theProfile.getUrl(), e.toString());
+					retVal = theProfile.copy();
+				}
+			}
+		}
+
+		FHIRPathEngine fhirPathEngine = new FHIRPathEngine(myWorkerContext);
+		for (ElementDefinition nextElement : retVal.getSnapshot().getElement()) {
+			for (ElementDefinitionConstraintComponent nextConstraint : nextElement.getConstraint()) {
+				if (nextConstraint.hasExpression()) {
+					try {
+						nextConstraint.setUserData(EXPRESSION_CACHE_USERDATA_KEY, fhirPathEngine.parse(nextConstraint.getExpression()));
+					} catch (Exception e) {
+						// Leave it for the validator to report when the invariant is evaluated
+						ourLog.debug("Failed to parse invariant {} in profile {}: {}", nextConstraint.getKey(), theProfile.getUrl(), e.toString());
+					}
+				}
+			}
+
+			if (nextElement.hasBinding()) {
+				String valueSetUrl = nextElement.getBinding().getValueSet();
+				if (isNotBlank(valueSetUrl) && !valueSetUrl.startsWith("#")) {
+					myWorkerContext.fetchResource(ValueSet.class, valueSetUrl);
+				}
+			}
+		}
+
+		ourLog.debug("Compiled profile {} with {} elements", theProfile.getUrl(), retVal.getSnapshot().getElement().size());
+		return retVal;
+	}
+
+	@Override
+	public ValueSetExpander.ValueSetExpansionOutcome expandValueSet(FhirContext theContext, ValueSet.ConceptSetComponent theInclude) {
+		return myWrap.expandValueSet(theContext, theInclude);
+	}
+
+	@Override
+	public List<IBaseResource> fetchAllConformanceResources(FhirContext theContext) {
+		return myWrap.fetchAllConformanceResources(theContext);
+	}
+
+	@Override
+	public List<StructureDefinition> fetchAllStructureDefinitions(FhirContext theContext) {
+		return myWrap.fetchAllStructureDefinitions(theContext);
+	}
+
+	@Override
+	public CodeSystem fetchCodeSystem(FhirContext theContext, String theSystem) {
+		return myWrap.fetchCodeSystem(theContext, theSystem);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends IBaseResource> T fetchResource(FhirContext theContext, Class<T> theClass, String theUri) {
+		if (StructureDefinition.class.equals(theClass)) {
+			return (T) getCompiledProfile(theUri, () -> myWrap.fetchResource(theContext, StructureDefinition.class, theUri));
+		}
+		return myWrap.fetchResource(theContext, theClass, theUri);
+	}
+
+	@Override
+	public StructureDefinition fetchStructureDefinition(FhirContext theCtx, String theUrl) {
+		return getCompiledProfile(theUrl, () -> myWrap.fetchStructureDefinition(theCtx, theUrl));
+	}
+
+	@Override
+	public boolean isCodeSystemSupported(FhirContext theContext, String theSystem) {
+		return myWrap.isCodeSystemSupported(theContext, theSystem);
+	}
+
+	@Override
+	public CodeValidationResult validateCode(FhirContext theContext, String theCodeSystem, String theCode, String theDisplay) {
+		return myWrap.validateCode(theContext, theCodeSystem, theCode, theDisplay);
+	}
+
+}
@@ -49,6 +49,7 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 	private List<String> extensionDomains = Collections.emptyList();
 
 	private IValidationSupport myValidationSupport;
+	private volatile CompiledProfileCache myCompiledProfileCache;
 
 	/**
 	 * Constructor
@@ -135,7 +136,7 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 		return profileNames;
 	}
 
-	private StructureDefinition findStructureDefinitionForResourceName(final FhirContext theCtx, String resourceName) {
+	private StructureDefinition findStructureDefinitionForResourceName(final FhirContext theCtx, CompiledProfileCache theCompiledProfileCache, String resourceName) {
 		String sdName = null;
 		try {
 			// Test if a URL was passed in specifying the structure definition and test if "StructureDefinition" is part of the URL
@@ -144,10 +145,24 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 		} catch (MalformedURLException e) {
 			sdName = "http://hl7.org/fhir/StructureDefinition/" + resourceName;
 		}
-		StructureDefinition profile = myStructureDefintion != null ? myStructureDefintion : myValidationSupport.fetchStructureDefinition(theCtx, sdName);
+		StructureDefinition profile = myStructureDefintion != null ? theCompiledProfileCache.getCompiledProfile(myStructureDefintion) : theCompiledProfileCache.fetchStructureDefinition(theCtx, sdName);
 		return profile;
 	}
 
+	/**
+	 * Discards the worker context and the prepared profiles held by this validator, so that
+	 * all conformance resources are fetched from the {@link #getValidationSupport() validation support}
+	 * again. This should be called when profiles, ValueSets or CodeSystems provided by the
+	 * validation support have been modified. Cached content otherwise expires after a short period.
+	 */
+	public void flushCaches() {
+		CompiledProfileCache compiledProfileCache = myCompiledProfileCache;
+		if (compiledProfileCache != null) {
+			compiledProfileCache.getWorkerContext().flushCaches();
+		}
+		myCompiledProfileCache = null;
+	}
+
 	/**
 	 * Returns the "best practice" warning level (default is {@link BestPracticeWarningLevel#Hint}).
 	 * <p>
@@ -194,6 +209,7 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 	 */
 	public void setValidationSupport(IValidationSupport theValidationSupport) {
 		myValidationSupport = theValidationSupport;
+		flushCaches();
 	}
 
 	/**
@@ -233,7 +249,12 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 	}
 
 	protected List<ValidationMessage> validate(final FhirContext theCtx, String theInput, EncodingEnum theEncoding) {
-		HapiWorkerContext workerContext = new HapiWorkerContext(theCtx, myValidationSupport);
+		CompiledProfileCache compiledProfileCache = myCompiledProfileCache;
+		if (compiledProfileCache == null) {
+			compiledProfileCache = new CompiledProfileCache(theCtx, myValidationSupport);
+			myCompiledProfileCache = compiledProfileCache;
+		}
+		HapiWorkerContext workerContext = compiledProfileCache.getWorkerContext();
 
 		InstanceValidator v;
 		IEvaluationContext evaluationCtx = new NullEvaluationContext();
@@ -272,19 +293,19 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 			}
 
 			for (String resourceName : resourceNames) {
-				StructureDefinition profile = findStructureDefinitionForResourceName(theCtx, resourceName);
+				StructureDefinition profile = findStructureDefinitionForResourceName(theCtx, compiledProfileCache, resourceName);
 				if (profile != null) {
 					try {
-						v.validate(null, messages, document, profile.getUrl());
+						v.validate(null, messages, document, profile);
 					} catch (Exception e) {
 						ourLog.error("Failure during validation", e);
 						throw new InternalErrorException("Unexpected failure while validating resource", e);
 					}
 				} else {
-					profile = findStructureDefinitionForResourceName(theCtx, determineResourceName(document));
+					profile = findStructureDefinitionForResourceName(theCtx, compiledProfileCache, determineResourceName(document));
 					if (profile != null) {
 						try {
-							v.validate(null, messages, document, profile.getUrl());
+							v.validate(null, messages, document, profile);
 						} catch (Exception e) {
 							ourLog.error("Failure during validation", e);
 							throw new InternalErrorException("Unexpected failure while validating resource", e);
@@ -308,18 +329,18 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 			}
 
 			for (String resourceName : resourceNames) {
-				StructureDefinition profile = findStructureDefinitionForResourceName(theCtx, resourceName);
+				StructureDefinition profile = findStructureDefinitionForResourceName(theCtx, compiledProfileCache, resourceName);
 				if (profile != null) {
 					try {
-						v.validate(null, messages, json, profile.getUrl());
+						v.validate(null, messages, json, profile);
 					} catch (Exception e) {
 						throw new InternalErrorException("Unexpected failure while validating resource", e);
 					}
 				} else {
-					profile = findStructureDefinitionForResourceName(theCtx, json.get("resourceType").getAsString());
+					profile = findStructureDefinitionForResourceName(theCtx, compiledProfileCache, json.get("resourceType").getAsString());
 					if (profile != null) {
 						try {
-							v.validate(null, messages, json, profile.getUrl());
+							v.validate(null, messages, json, profile);
 						} catch (Exception e) {
 							ourLog.error("Failure during validation", e);
 							throw new InternalErrorException("Unexpected failure while validating resource", e);
@@ -0,0 +1,105 @@
+package ca.uhn.fhir.validation;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.r4.hapi.ctx.DefaultProfileValidationSupport;
+import org.hl7.fhir.r4.hapi.validation.FhirInstanceValidator;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.*;
+
+public class BulkValidatorR4Test {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BulkValidatorR4Test.class);
+	private static FhirContext ourCtx = FhirContext.forR4();
+	private static DefaultProfileValidationSupport ourValidationSupport = new DefaultProfileValidationSupport();
+	private FhirValidator myValidator;
+	private List<Integer> myIndexes;
+	private List<ValidationResult> myResults;
+
+	@Before
+	public void before() {
+		myValidator = ourCtx.newValidator();
+		myValidator.registerValidatorModule(new FhirInstanceValidator(ourValidationSupport));
+		myIndexes = new ArrayList<>();
+		myResults = new ArrayList<>();
+	}
+
+	private void handleResult(int theIndex, ValidationResult theResult) {
+		ourLog.info("Result {}: {}", theIndex, theResult);
+		myIndexes.add(theIndex);
+		myResults.add(theResult);
+	}
+
+	@Test
+	public void testValidateNdjson() throws Exception {
+		String input = "{\"resourceType\":\"Patient\",\"active\":true}\n" +
+			"{\"resourceType\":\"Patient\",\"foo\":\"bar\"}\n" +
+			"\n" +
+			"{\"resourceType\":\"Patient\",\n" +
+			"{\"resourceType\":\"Patient\",\"gender\":\"female\"}\n";
+
+		BulkValidator.Summary summary = myValidator
+			.newBulkValidator()
+			.setThreadCount(2)
+			.validateNdjson(new StringReader(input), this::handleResult);
+		ourLog.info(summary.toString());
+
+		assertThat(myIndexes, contains(1, 2, 4, 5));
+		assertTrue(myResults.get(0).isSuccessful());
+		assertFalse(myResults.get(1).isSuccessful());
+		assertFalse(myResults.get(2).isSuccessful());
+		assertTrue(myResults.get(3).isSuccessful());
+
+		assertEquals(4, summary.getResourceCount());
+		assertEquals(2, summary.getFailedResourceCount());
+		assertFalse(summary.isSuccessful());
+	}
+
+	@Test
+	public void testValidateBundleEntries() {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.COLLECTION);
+		for (int i = 0; i < 100; i++) {
+			if (i % 10 == 0) {
+				// Missing the required status and code
+				bundle.addEntry().setResource(new Observation());
+			} else {
+				bundle.addEntry().setResource(new Patient().setActive(true));
+			}
+		}
+
+		BulkValidator.Summary summary = myValidator
+			.newBulkValidator()
+			.setThreadCount(4)
+			.setLogInterval(25)
+			.validateBundleEntries(bundle, this::handleResult);
+		ourLog.info(summary.toString());
+
+		assertEquals(100, myIndexes.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, myIndexes.get(i).intValue());
+			assertEquals(i % 10 != 0, myResults.get(i).isSuccessful());
+		}
+		assertEquals(100, summary.getResourceCount());
+		assertEquals(10, summary.getFailedResourceCount());
+		assertTrue(summary.getErrorCount() >= 20);
+		assertNotNull(myResults.get(0).toOperationOutcome());
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		ourValidationSupport.flush();
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
@@ -39,6 +39,8 @@ import org.junit.*;
 import org.junit.rules.TestRule;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
+import org.mockito.AdditionalAnswers;
+import org.mockito.invocation.Invocation;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
@@ -50,8 +52,17 @@ import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class FhirInstanceValidatorR4Test {
@@ -1185,6 +1196,199 @@ public class FhirInstanceValidatorR4Test {
 		ourLog.info(output.getMessages().get(0).getMessage());
 	}
 
+	private StructureDefinition createPatientProfile(int theBirthDateMin) {
+		StructureDefinition sd = new StructureDefinition();
+		sd.setUrl("http://example.com/fhir/StructureDefinition/my-patient");
+		sd.setName("MyPatient");
+		sd.setStatus(Enumerations.PublicationStatus.ACTIVE);
+		sd.setKind(StructureDefinitionKind.RESOURCE);
+		sd.setAbstract(false);
+		sd.setType("Patient");
+		sd.setBaseDefinition("http://hl7.org/fhir/StructureDefinition/Patient");
+		sd.setDerivation(StructureDefinition.TypeDerivationRule.CONSTRAINT);
+		sd.getDifferential().addElement()
+			.setId("Patient")
+			.setPath("Patient")
+			.addConstraint()
+			.setKey("myp-1")
+			.setSeverity(ElementDefinition.ConstraintSeverity.ERROR)
+			.setHuman("Patients must have a name")
+			.setExpression("name.exists()");
+		sd.getDifferential().addElement()
+			.setId("Patient.birthDate")
+			.setPath("Patient.birthDate")
+			.setMin(theBirthDateMin);
+
+		StructureDefinition base = myDefaultValidationSupport.fetchStructureDefinition(ourCtx, sd.getBaseDefinition());
+		IWorkerContext worker = new HapiWorkerContext(ourCtx, myDefaultValidationSupport);
+		new ProfileUtilities(worker, new ArrayList<>(), null).generateSnapshot(base, sd, sd.getUrl(), sd.getName());
+		return sd;
+	}
+
+	@Test
+	public void testValidateAgainstProfileRepeatedlyWithSharedWorkerContext() {
+		PrePopulatedValidationSupport prePopulatedSupport = new PrePopulatedValidationSupport();
+		prePopulatedSupport.addStructureDefinition(createPatientProfile(1));
+		FhirInstanceValidator instanceValidator = new FhirInstanceValidator(new ValidationSupportChain(prePopulatedSupport, myDefaultValidationSupport));
+		FhirValidator val = ourCtx.newValidator();
+		val.setValidateAgainstStandardSchema(false);
+		val.setValidateAgainstStandardSchematron(false);
+		val.registerValidatorModule(instanceValidator);
+
+		Patient patient = new Patient();
+		patient.getText().setDiv(new XhtmlNode().setValue("<div>AA</div>")).setStatus(Narrative.NarrativeStatus.GENERATED);
+		patient.getMeta().addProfile("http://example.com/fhir/StructureDefinition/my-patient");
+
+		for (int i = 0; i < 3; i++) {
+			List<SingleValidationMessage> errors = logResultsAndReturnErrorOnes(val.validateWithResult(patient));
+			assertThat(errors.toString(), containsString("Patient.birthDate"));
+			assertThat(errors.toString(), containsString("Patients must have a name"));
+		}
+
+		// A modified profile is picked up as soon as the caches are flushed
+		prePopulatedSupport.addStructureDefinition(createPatientProfile(0));
+		instanceValidator.flushCaches();
+		patient.addName().setFamily("FAMILY");
+		List<SingleValidationMessage> errors = logResultsAndReturnErrorOnes(val.validateWithResult(patient));
+		assertEquals(errors.toString(), 0, errors.size());
+	}
+
+	@Test
+	public void testValidateAgainstDifferentialProfilePreparesItOnce() {
+		String url = "http://example.com/fhir/StructureDefinition/my-patient";
+		StructureDefinition profile = createPatientProfile(1);
+		profile.setSnapshot(null);
+		PrePopulatedValidationSupport prePopulatedSupport = new PrePopulatedValidationSupport();
+		prePopulatedSupport.addStructureDefinition(profile);
+		IValidationSupport validationSupport = mock(IValidationSupport.class, AdditionalAnswers.delegatesTo(new ValidationSupportChain(prePopulatedSupport, myDefaultValidationSupport)));
+		FhirValidator val = ourCtx.newValidator();
+		val.setValidateAgainstStandardSchema(false);
+		val.setValidateAgainstStandardSchematron(false);
+		val.registerValidatorModule(new FhirInstanceValidator(validationSupport));
+
+		Patient patient = new Patient();
+		patient.getText().setDiv(new XhtmlNode().setValue("<div>AA</div>")).setStatus(Narrative.NarrativeStatus.GENERATED);
+		patient.getMeta().addProfile(url);
+
+		for (int i = 0; i < 3; i++) {
+			List<SingleValidationMessage> errors = logResultsAndReturnErrorOnes(val.validateWithResult(patient));
+			assertThat(errors.toString(), containsString("Patient.birthDate"));
+			assertThat(errors.toString(), containsString("Patients must have a name"));
+		}
+
+		// The declared profile is only resolved once for all of the validations
+		int fetchCount = 0;
+		for (Invocation next : mockingDetails(validationSupport).getInvocations()) {
+			String method = next.getMethod().getName();
+			if ((method.equals("fetchStructureDefinition") || method.equals("fetchResource")) && url.equals(next.getArgument(next.getArguments().length - 1))) {
+				fetchCount++;
+			}
+		}
+		assertEquals(1, fetchCount);
+
+		// ..and the instance held by the validation support is left untouched
+		assertFalse(profile.hasSnapshot());
+		for (ElementDefinition next : profile.getDifferential().getElement()) {
+			for (ElementDefinition.ElementDefinitionConstraintComponent nextConstraint : next.getConstraint()) {
+				assertNull(nextConstraint.getUserData("validator.expression.cache"));
+			}
+		}
+	}
+
+	@Test
+	public void testValidateDoesNotListAllStructureDefinitions() {
+		IValidationSupport validationSupport = mock(IValidationSupport.class);
+		FhirInstanceValidator instanceValidator = new FhirInstanceValidator(new ValidationSupportChain(myDefaultValidationSupport, validationSupport));
+		FhirValidator val = ourCtx.newValidator();
+		val.setValidateAgainstStandardSchema(false);
+		val.setValidateAgainstStandardSchematron(false);
+		val.registerValidatorModule(instanceValidator);
+
+		Patient patient = new Patient();
+		patient.getText().setDiv(new XhtmlNode().setValue("<div>AA</div>")).setStatus(Narrative.NarrativeStatus.GENERATED);
+		patient.setGender(Enumerations.AdministrativeGender.FEMALE);
+		for (int i = 0; i < 3; i++) {
+			List<SingleValidationMessage> errors = logResultsAndReturnErrorOnes(val.validateWithResult(patient));
+			assertEquals(errors.toString(), 0, errors.size());
+		}
+
+		// Structure definitions are resolved by URL as they are needed, so the full list is never loaded
+		verify(validationSupport, never()).fetchAllStructureDefinitions(any());
+	}
+
+	@Test
+	public void testValidateOnlyFetchesNeededStructureDefinitions() {
+		IValidationSupport validationSupport = mock(IValidationSupport.class, AdditionalAnswers.delegatesTo(new DefaultProfileValidationSupport()));
+		FhirValidator val = ourCtx.newValidator();
+		val.setValidateAgainstStandardSchema(false);
+		val.setValidateAgainstStandardSchematron(false);
+		val.registerValidatorModule(new FhirInstanceValidator(validationSupport));
+
+		Patient patient = new Patient();
+		patient.getText().setDiv(new XhtmlNode().setValue("<div>AA</div>")).setStatus(Narrative.NarrativeStatus.GENERATED);
+		patient.setGender(Enumerations.AdministrativeGender.FEMALE);
+		List<SingleValidationMessage> errors = logResultsAndReturnErrorOnes(val.validateWithResult(patient));
+		assertEquals(errors.toString(), 0, errors.size());
+
+		Set<String> fetched = new TreeSet<>();
+		for (Invocation next : mockingDetails(validationSupport).getInvocations()) {
+			String method = next.getMethod().getName();
+			if (method.equals("fetchStructureDefinition") || (method.equals("fetchResource") && StructureDefinition.class.equals(next.getArgument(1)))) {
+				fetched.add(next.getArgument(next.getArguments().length - 1));
+			}
+		}
+		ourLog.info("Fetched {} structure definitions: {}", fetched.size(), fetched);
+
+		verify(validationSupport, never()).fetchAllStructureDefinitions(any());
+		verify(validationSupport, never()).fetchAllConformanceResources(any());
+		assertThat(fetched, hasItem("http://hl7.org/fhir/StructureDefinition/Patient"));
+		assertThat(fetched.size(), lessThan(100));
+	}
+
+	@Test
+	public void testValidateUsesCachedExpansion() {
+		String genderSystem = "http://hl7.org/fhir/administrative-gender";
+
+		// Hide the gender CodeSystem so that the binding can only be checked by expanding it using the support
+		IValidationSupport validationSupport = mock(IValidationSupport.class, AdditionalAnswers.delegatesTo(myDefaultValidationSupport));
+		doReturn(null).when(validationSupport).fetchCodeSystem(any(), eq(genderSystem));
+		doAnswer(t -> {
+			ConceptSetComponent include = t.getArgument(1);
+			if (!genderSystem.equals(include.getSystem())) {
+				return myDefaultValidationSupport.expandValueSet(ourCtx, include);
+			}
+			ValueSet valueSet = new ValueSet();
+			for (String next : new String[]{"male", "female", "other", "unknown"}) {
+				valueSet.getExpansion().addContains().setSystem(genderSystem).setCode(next);
+			}
+			return new ValueSetExpander.ValueSetExpansionOutcome(valueSet);
+		}).when(validationSupport).expandValueSet(any(), any());
+
+		FhirInstanceValidator instanceValidator = new FhirInstanceValidator(validationSupport);
+		FhirValidator val = ourCtx.newValidator();
+		val.setValidateAgainstStandardSchema(false);
+		val.setValidateAgainstStandardSchematron(false);
+		val.registerValidatorModule(instanceValidator);
+
+		Patient patient = new Patient();
+		patient.getText().setDiv(new XhtmlNode().setValue("<div>AA</div>")).setStatus(Narrative.NarrativeStatus.GENERATED);
+		patient.setGender(Enumerations.AdministrativeGender.FEMALE);
+		for (int i = 0; i < 2; i++) {
+			List<SingleValidationMessage> errors = logResultsAndReturnErrorOnes(val.validateWithResult(patient));
+			assertEquals(errors.toString(), 0, errors.size());
+		}
+
+		// The gender ValueSet is only expanded once for both validations
+		verify(validationSupport, times(1)).expandValueSet(any(), argThat(t -> t != null && genderSystem.equals(t.getSystem())));
+
+		// ..until the caches are flushed
+		instanceValidator.flushCaches();
+		patient.setGender(Enumerations.AdministrativeGender.MALE);
+		List<SingleValidationMessage> errors = logResultsAndReturnErrorOnes(val.validateWithResult(patient));
+		assertEquals(errors.toString(), 0, errors.size());
+		verify(validationSupport, times(2)).expandValueSet(any(), argThat(t -> t != null && genderSystem.equals(t.getSystem())));
+	}
+
 	@AfterClass
 	public static void afterClassClearContext() {
 		myDefaultValidationSupport.flush();